@@ -130,6 +130,12 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
 
     private transient LogStorageRetriever logStorageRetriever;
 
+    /**
+     * Configuration from which {@link #logStorageRetriever} was created. Kept in memory to keep the retriever and its
+     * HTTP connection pool across reconfigurations that don't change it.
+     */
+    private transient String logStorageRetrieverConfiguration;
+
     private boolean exportOtelConfigurationAsEnvironmentVariables;
 
     private final transient ConcurrentMap<String, StepPlugin> loadedStepsPlugins = new ConcurrentHashMap<>();
@@ -288,6 +294,12 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
             this.currentOpenTelemetryConfiguration = newOpenTelemetryConfiguration;
         }
 
+        String newLogStorageRetrieverConfiguration = toLogStorageRetrieverConfiguration();
+        if (logStorageRetriever != null
+                && Objects.equals(this.logStorageRetrieverConfiguration, newLogStorageRetrieverConfiguration)) {
+            LOGGER.log(Level.FINE, "Log storage retriever configuration didn't change, keep " + logStorageRetriever);
+            return;
+        }
         if (logStorageRetriever != null && logStorageRetriever instanceof Closeable) {
             LOGGER.log(Level.FINE, () -> "Close " + logStorageRetriever + "...");
             try {
@@ -300,6 +312,19 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
             }
         }
         this.logStorageRetriever = resolveLogStorageRetriever();
+        this.logStorageRetrieverConfiguration = newLogStorageRetrieverConfiguration;
+    }
+
+    /**
+     * @return the inputs of {@link #resolveLogStorageRetriever()}: the observability backends and the service name and
+     * namespace of the OpenTelemetry resource
+     */
+    @NonNull
+    private String toLogStorageRetrieverConfiguration() {
+        Resource otelSdkResource = openTelemetry.getResource();
+        return otelSdkResource.getAttribute(ServiceAttributes.SERVICE_NAME) + "|"
+                + otelSdkResource.getAttribute(ServiceIncubatingAttributes.SERVICE_NAMESPACE) + "|"
+                + Jenkins.XSTREAM2.toXML(getObservabilityBackends());
     }
 
     /**
@@ -6,13 +6,22 @@
 package io.jenkins.plugins.opentelemetry;
 
 import hudson.Extension;
+import hudson.model.Job;
 import hudson.model.RootAction;
+import hudson.util.HttpResponses;
 import io.jenkins.plugins.opentelemetry.api.ReconfigurableOpenTelemetry;
 import io.jenkins.plugins.opentelemetry.backend.ObservabilityBackend;
+import io.jenkins.plugins.opentelemetry.job.RunIdentifier;
+import io.jenkins.plugins.opentelemetry.job.TraceIdIndex;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.inject.Inject;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.verb.GET;
 
 /**
  * Decorates Jenkins navigation GUI with the OpenTelemetry dashboard link if defined
@@ -67,4 +76,48 @@ public class OpenTelemetryRootAction implements RootAction {
     public void setOpenTelemetry(ReconfigurableOpenTelemetry openTelemetry) {
         this.openTelemetry = openTelemetry;
     }
+
+    /**
+     * <p>
+     * Redirects the links from the observability backends, that only know the trace ID, to the run of the trace.
+     * {@code GET /otel/trace/:traceId} looks up the run in the {@link TraceIdIndex} without loading any build record.
+     * </p>
+     * <p>
+     * Not served by {@link OpenTelemetryRootAction} whose URL is the one of the metrics dashboard.
+     * </p>
+     */
+    @Extension
+    public static class TraceRedirectAction implements RootAction {
+
+        @GET
+        public HttpResponse doTrace(StaplerRequest2 req) {
+            String traceId = StringUtils.strip(req.getRestOfPath(), "/");
+            RunIdentifier runIdentifier = TraceIdIndex.get().get(traceId);
+            if (runIdentifier == null) {
+                logger.log(Level.FINE, () -> "Trace " + traceId + " not found");
+                return HttpResponses.notFound();
+            }
+            // null if the job no longer exists or isn't readable by the user
+            Job<?, ?> job = Jenkins.get().getItemByFullName(runIdentifier.getJobName(), Job.class);
+            if (job == null) {
+                return HttpResponses.notFound();
+            }
+            return HttpResponses.redirectViaContextPath(job.getUrl() + runIdentifier.getRunNumber() + "/");
+        }
+
+        @Override
+        public String getIconFileName() {
+            return null;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "OpenTelemetry";
+        }
+
+        @Override
+        public String getUrlName() {
+            return "otel";
+        }
+    }
 }
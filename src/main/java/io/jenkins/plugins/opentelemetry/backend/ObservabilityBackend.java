@@ -102,10 +102,9 @@ public abstract class ObservabilityBackend
         if (traceVisualisationUrlGTemplate == ERROR_TEMPLATE) {
             return null;
         } else if (this.traceVisualisationUrlGTemplate == null) {
-            GStringTemplateEngine gStringTemplateEngine = new GStringTemplateEngine();
             try {
                 this.traceVisualisationUrlGTemplate =
-                        gStringTemplateEngine.createTemplate(this.getTraceVisualisationUrlTemplate());
+                        UrlTemplate.createTemplate(this.getTraceVisualisationUrlTemplate());
             } catch (IOException | ClassNotFoundException e) {
                 LOGGER.log(
                         Level.WARNING,
@@ -126,10 +125,9 @@ public abstract class ObservabilityBackend
         if (metricsVisualizationUrlGTemplate == ERROR_TEMPLATE) {
             return null;
         } else if (this.metricsVisualizationUrlGTemplate == null) {
-            GStringTemplateEngine gStringTemplateEngine = new GStringTemplateEngine();
             try {
                 this.metricsVisualizationUrlGTemplate =
-                        gStringTemplateEngine.createTemplate(this.getMetricsVisualizationUrlTemplate());
+                        UrlTemplate.createTemplate(this.getMetricsVisualizationUrlTemplate());
             } catch (IOException | ClassNotFoundException e) {
                 LOGGER.log(
                         Level.WARNING,
@@ -0,0 +1,213 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import groovy.lang.MissingPropertyException;
+import groovy.lang.Writable;
+import groovy.text.GStringTemplateEngine;
+import groovy.text.Template;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import net.jcip.annotations.Immutable;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * <p>
+ * Template of the URLs of the observability backends only made of {@code ${variable}} substitutions, compiled once
+ * into a list of literal and variable segments and rendered with a {@link StringBuilder} rather than by the Groovy
+ * {@link GStringTemplateEngine} for each link, environment variable and log query.
+ * </p>
+ * <p>
+ * The rendering is the one of the {@link GStringTemplateEngine}: the values are rendered with
+ * {@link InvokerHelper#toString(Object)} and a {@link MissingPropertyException} is thrown for a variable missing from
+ * the bindings. The templates using expressions, {@code $variable}, {@code <% %>} or escapes are rendered by the
+ * {@link GStringTemplateEngine}, see {@link #createTemplate(String)}.
+ * </p>
+ */
+@Immutable
+public class UrlTemplate implements Template {
+
+    @NonNull
+    private final List<Segment> segments;
+
+    /**
+     * Bindings computed from the other bindings at render time
+     */
+    @NonNull
+    private final Map<String, Function<Map<?, ?>, Object>> computedBindings;
+
+    private final int literalsLength;
+
+    private UrlTemplate(
+            @NonNull List<Segment> segments, @NonNull Map<String, Function<Map<?, ?>, Object>> computedBindings) {
+        this.segments = segments;
+        this.computedBindings = computedBindings;
+        this.literalsLength = segments.stream()
+                .filter(segment -> segment.literal != null)
+                .mapToInt(segment -> segment.literal.length())
+                .sum();
+    }
+
+    /**
+     * @return the template precompiled if it's only made of {@code ${variable}} substitutions, the template compiled
+     * by the {@link GStringTemplateEngine} otherwise
+     */
+    @NonNull
+    public static Template createTemplate(@NonNull String template) throws IOException, ClassNotFoundException {
+        UrlTemplate urlTemplate = compile(template);
+        return urlTemplate == null ? new GStringTemplateEngine().createTemplate(template) : urlTemplate;
+    }
+
+    /**
+     * @return {@code null} if the template isn't only made of {@code ${variable}} substitutions
+     */
+    @CheckForNull
+    public static UrlTemplate compile(@NonNull String template) {
+        if (template.contains("<%") || template.indexOf('\\') != -1) {
+            return null;
+        }
+        List<Segment> segments = new ArrayList<>();
+        int position = 0;
+        while (position < template.length()) {
+            int dollar = template.indexOf('$', position);
+            if (dollar == -1) {
+                segments.add(Segment.literal(template.substring(position)));
+                break;
+            }
+            if (dollar > position) {
+                segments.add(Segment.literal(template.substring(position, dollar)));
+            }
+            int end = template.indexOf('}', dollar);
+            if (dollar + 1 >= template.length() || template.charAt(dollar + 1) != '{' || end == -1) {
+                return null;
+            }
+            String variable = template.substring(dollar + 2, end);
+            if (!isIdentifier(variable)) {
+                return null;
+            }
+            segments.add(Segment.variable(variable));
+            position = end + 1;
+        }
+        return new UrlTemplate(Collections.unmodifiableList(segments), Collections.emptyMap());
+    }
+
+    /**
+     * @param name     name of the binding referenced by the template
+     * @param function computes the value of the binding from the other bindings
+     * @return a template computing the given binding at render time
+     */
+    @NonNull
+    public UrlTemplate withComputedBinding(@NonNull String name, @NonNull Function<Map<?, ?>, Object> function) {
+        Map<String, Function<Map<?, ?>, Object>> computedBindings = new LinkedHashMap<>(this.computedBindings);
+        computedBindings.put(name, function);
+        return new UrlTemplate(segments, Collections.unmodifiableMap(computedBindings));
+    }
+
+    @NonNull
+    public String render(@NonNull Map<?, ?> bindings) {
+        Map<String, Object> computedValues = computedBindings.isEmpty() ? Collections.emptyMap() : new HashMap<>();
+        computedBindings.forEach((name, function) -> computedValues.put(name, function.apply(bindings)));
+        StringBuilder url = new StringBuilder(literalsLength + 32 * segments.size());
+        for (Segment segment : segments) {
+            if (segment.literal != null) {
+                url.append(segment.literal);
+            } else if (computedValues.containsKey(segment.variable)) {
+                url.append(InvokerHelper.toString(computedValues.get(segment.variable)));
+            } else if (bindings.containsKey(segment.variable)) {
+                url.append(InvokerHelper.toString(bindings.get(segment.variable)));
+            } else {
+                throw new MissingPropertyException(segment.variable, UrlTemplate.class);
+            }
+        }
+        return url.toString();
+    }
+
+    @Override
+    public Writable make() {
+        return make(Collections.emptyMap());
+    }
+
+    @Override
+    public Writable make(Map binding) {
+        return new RenderedUrl(render(binding == null ? Collections.emptyMap() : binding));
+    }
+
+    private static boolean isIdentifier(@NonNull String variable) {
+        if (variable.isEmpty() || !Character.isJavaIdentifierStart(variable.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < variable.length(); i++) {
+            if (!Character.isJavaIdentifierPart(variable.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder template = new StringBuilder();
+        for (Segment segment : segments) {
+            template.append(segment.literal != null ? segment.literal : "${" + segment.variable + "}");
+        }
+        return "UrlTemplate{" + template + '}';
+    }
+
+    @Immutable
+    private static class Segment {
+        @CheckForNull
+        final String literal;
+
+        @CheckForNull
+        final String variable;
+
+        private Segment(@CheckForNull String literal, @CheckForNull String variable) {
+            this.literal = literal;
+            this.variable = variable;
+        }
+
+        static Segment literal(@NonNull String literal) {
+            return new Segment(literal, null);
+        }
+
+        static Segment variable(@NonNull String variable) {
+            return new Segment(null, variable);
+        }
+    }
+
+    /**
+     * {@link Writable} of a rendered URL, rendered by {@link #toString()} as the {@link Writable}s returned by the
+     * {@link GStringTemplateEngine}
+     */
+    private static class RenderedUrl implements Writable {
+        @NonNull
+        private final String url;
+
+        RenderedUrl(@NonNull String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Writer writeTo(Writer out) throws IOException {
+            out.write(url);
+            return out;
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+}
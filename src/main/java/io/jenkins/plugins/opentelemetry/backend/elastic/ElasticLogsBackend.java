@@ -7,7 +7,6 @@ package io.jenkins.plugins.opentelemetry.backend.elastic;
 
 import com.google.errorprone.annotations.MustBeClosed;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
-import groovy.text.GStringTemplateEngine;
 import groovy.text.Template;
 import hudson.DescriptorExtensionList;
 import hudson.ExtensionPoint;
@@ -16,6 +15,7 @@ import hudson.model.Descriptor;
 import io.jenkins.plugins.opentelemetry.TemplateBindingsProvider;
 import io.jenkins.plugins.opentelemetry.backend.ElasticBackend;
 import io.jenkins.plugins.opentelemetry.backend.ObservabilityBackend;
+import io.jenkins.plugins.opentelemetry.backend.UrlTemplate;
 import io.jenkins.plugins.opentelemetry.job.log.LogStorageRetriever;
 import java.io.IOException;
 import java.util.Collections;
@@ -39,7 +39,7 @@ public abstract class ElasticLogsBackend extends AbstractDescribableImpl<Elastic
 
     public Template getBuildLogsVisualizationMessageTemplate() {
         try {
-            return new GStringTemplateEngine().createTemplate("View build logs in ${backendName}");
+            return UrlTemplate.createTemplate("View build logs in ${backendName}");
         } catch (ClassNotFoundException | IOException e) {
             throw new IllegalStateException(e);
         }
@@ -58,9 +58,8 @@ public abstract class ElasticLogsBackend extends AbstractDescribableImpl<Elastic
                     + "query:(match_phrase:(trace.id:%27${traceId}%27))"
                     + ")))"
                     + "&_g=(filters:!(),time:(from:now-40d,to:now))";
-            GStringTemplateEngine gStringTemplateEngine = new GStringTemplateEngine();
             try {
-                this.buildLogsVisualizationUrlGTemplate = gStringTemplateEngine.createTemplate(urlTemplate);
+                this.buildLogsVisualizationUrlGTemplate = UrlTemplate.createTemplate(urlTemplate);
             } catch (IOException | ClassNotFoundException e) {
                 logger.log(Level.WARNING, "Invalid build logs Visualisation URL Template '" + urlTemplate + "'", e);
                 this.buildLogsVisualizationUrlGTemplate = ObservabilityBackend.ERROR_TEMPLATE;
@@ -16,16 +16,24 @@ import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHits;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.console.ConsoleNote;
 import io.jenkins.plugins.opentelemetry.backend.ElasticBackend;
 import io.jenkins.plugins.opentelemetry.job.log.ConsoleNotes;
 import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.jenkins.plugins.opentelemetry.job.log.LogSearchHit;
+import io.jenkins.plugins.opentelemetry.job.log.LogSearchResult;
 import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIterator;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalMetrics;
 import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsBackendValues;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsOperationValues;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.Tracer;
@@ -33,14 +41,21 @@ import io.opentelemetry.api.trace.TracerProvider;
 import io.opentelemetry.context.Scope;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import net.sf.json.JSONArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * https://www.elastic.co/guide/en/elasticsearch/reference/7.17/point-in-time-api.html
@@ -52,6 +67,12 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
     public static final int PAGE_SIZE = 200;
     public static final int MAX_LINES_PAGINATED = 10_000;
 
+    /**
+     * Max number of log lines retrieved at once for several flow nodes, see {@link #loadLogLinesByFlowNodeId()}
+     */
+    public static final int MAX_FLOW_NODES_LOG_LINES = Integer.getInteger(
+            ElasticsearchBuildLogsLineIterator.class.getName() + ".maxFlowNodesLogLines", 50_000);
+
     final String jobFullName;
     final int runNumber;
     long lineNumber;
@@ -59,6 +80,12 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
     @Nullable
     final String flowNodeId;
 
+    /**
+     * Flow nodes of which the log lines are retrieved by {@link #loadLogLinesByFlowNodeId()}
+     */
+    @Nullable
+    final Set<String> flowNodeIds;
+
     final String traceId;
     final ElasticsearchClient esClient;
     final Tracer tracer;
@@ -68,6 +95,11 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
     @VisibleForTesting
     int queryCounter;
 
+    /**
+     * The iteration ended after {@link #MAX_LINES_PAGINATED} log lines, before the end of the log
+     */
+    volatile boolean truncated;
+
     Iterator<LogLine<Long>> delegate;
     boolean endOfStream;
 
@@ -88,11 +120,36 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
             @Nullable String flowNodeId,
             @NonNull ElasticsearchClient esClient,
             @NonNull Tracer tracer) {
+        this(jobFullName, runNumber, traceId, flowNodeId, null, esClient, tracer);
+    }
+
+    /**
+     * Iterator on the log lines of several flow nodes, see {@link #loadLogLinesByFlowNodeId()}
+     */
+    public ElasticsearchBuildLogsLineIterator(
+            @NonNull String jobFullName,
+            int runNumber,
+            @NonNull String traceId,
+            @NonNull Set<String> flowNodeIds,
+            @NonNull ElasticsearchClient esClient,
+            @NonNull Tracer tracer) {
+        this(jobFullName, runNumber, traceId, null, flowNodeIds, esClient, tracer);
+    }
+
+    private ElasticsearchBuildLogsLineIterator(
+            @NonNull String jobFullName,
+            int runNumber,
+            @NonNull String traceId,
+            @Nullable String flowNodeId,
+            @Nullable Set<String> flowNodeIds,
+            @NonNull ElasticsearchClient esClient,
+            @NonNull Tracer tracer) {
         this.tracer = tracer;
         this.jobFullName = jobFullName;
         this.runNumber = runNumber;
         this.traceId = traceId;
         this.flowNodeId = flowNodeId;
+        this.flowNodeIds = flowNodeIds;
         this.esClient = esClient;
         setEDOTMode();
     }
@@ -185,6 +242,11 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
         return getCurrentIterator().hasNext();
     }
 
+    @Override
+    public boolean isTruncated() {
+        return truncated;
+    }
+
     @Override
     public LogLine<Long> next() {
         return getCurrentIterator().next();
@@ -193,10 +255,12 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
     protected Iterator<LogLine<Long>> loadNextFormattedLogLines() throws IOException {
         if (queryCounter == Integer.MAX_VALUE) {
             logger.log(Level.INFO, () -> "Skip more than Integer.MAX_VALUE pages, return empty result");
+            truncated = true;
             return Collections.emptyIterator();
         }
         if (this.lineNumber > MAX_LINES_PAGINATED) {
             logger.log(Level.INFO, () -> "Skip more than " + MAX_LINES_PAGINATED + " pages, return empty result");
+            truncated = true;
             return Collections.emptyIterator();
         }
         String loadPointInTimeId = this.lazyLoadPointInTimeId();
@@ -223,15 +287,23 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
                     .query(query)
                     .build();
             SearchResponse<ObjectNode> searchResponse = this.esClient.search(searchRequest, ObjectNode.class);
+            LogRetrievalMetrics.recordPage(LogsBackendValues.ELASTICSEARCH, getOperation());
 
             List<Hit<ObjectNode>> hits = searchResponse.hits().hits();
             esSearchSpan.setAttribute("response.size", hits.size());
+            long pageStartLineNumber = this.lineNumber;
             this.lineNumber += hits.size();
             if (hits.size() == 0) {
                 endOfStream = true;
             }
-            return hits.stream()
-                    .map(new ElasticsearchHitToFormattedLogLine(getAttributesField()))
+            // identify the log lines by the number of hits up to and including the line, it's the `from` of the
+            // query resuming after the line, see `skipLines(Long)`
+            ElasticsearchHitToFormattedLogLine hitToFormattedLogLine =
+                    new ElasticsearchHitToFormattedLogLine(getAttributesField());
+            return IntStream.range(0, hits.size())
+                    .mapToObj(i -> Optional.ofNullable(hitToFormattedLogLine.apply(hits.get(i)))
+                            .map(logLine -> new LogLine<>(pageStartLineNumber + i + 1, logLine.getMessage()))
+                            .orElse(null))
                     .filter(Objects::nonNull)
                     .iterator();
         } catch (ElasticsearchException e) {
@@ -243,6 +315,355 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
         }
     }
 
+    /**
+     * Page through the log lines sorted by descending timestamp (and descending {@code _shard_doc}, the reverse of
+     * the implicit tiebreaker of the ascending point in time search) and reverse them in memory. The ids of the log
+     * lines are derived from the total number of hits.
+     */
+    @Nullable
+    @Override
+    public LogTail<Long> tail(long minLengthInBytes) throws IOException {
+        String loadPointInTimeId = this.lazyLoadPointInTimeId();
+        Span span = tracer.spanBuilder("ElasticsearchLogsSearchIterator.tail")
+                .setAttribute("query.pointInTimeId", loadPointInTimeId)
+                .setAttribute("query.minLengthInBytes", minLengthInBytes)
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            Query query = getQuery(span);
+            ElasticsearchHitToFormattedLogLine hitToFormattedLogLine =
+                    new ElasticsearchHitToFormattedLogLine(getAttributesField());
+            // log lines in descending order, identified by their index in the descending hits
+            List<LogLine<Long>> descendingLogLines = new ArrayList<>();
+            long lengthInBytes = 0;
+            int from = 0;
+            Long totalHits = null;
+            while (lengthInBytes < minLengthInBytes && from + PAGE_SIZE <= MAX_LINES_PAGINATED) {
+                SearchRequest searchRequest = new SearchRequest.Builder()
+                        .pit(pit -> pit.id(loadPointInTimeId).keepAlive(POINT_IN_TIME_KEEP_ALIVE))
+                        .from(from)
+                        .size(PAGE_SIZE)
+                        .sort(s -> s.field(
+                                f -> f.field(ElasticsearchFields.FIELD_TIMESTAMP).order(SortOrder.Desc)))
+                        .sort(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Desc)))
+                        .trackTotalHits(t -> t.enabled(true))
+                        .query(query)
+                        .build();
+                SearchResponse<ObjectNode> searchResponse = this.esClient.search(searchRequest, ObjectNode.class);
+                queryCounter++;
+                LogRetrievalMetrics.recordPage(LogsBackendValues.ELASTICSEARCH, LogsOperationValues.TAIL);
+                if (totalHits == null) {
+                    totalHits = Optional.ofNullable(searchResponse.hits().total())
+                            .map(TotalHits::value)
+                            .orElse(null);
+                    if (totalHits == null) {
+                        span.addEvent("Total hits not returned");
+                        return null;
+                    }
+                }
+                List<Hit<ObjectNode>> hits = searchResponse.hits().hits();
+                for (int i = 0; i < hits.size(); i++) {
+                    LogLine<Long> logLine = hitToFormattedLogLine.apply(hits.get(i));
+                    if (logLine != null) {
+                        descendingLogLines.add(new LogLine<>((long) from + i, logLine.getMessage()));
+                        lengthInBytes += logLine.getLengthInBytes();
+                    }
+                }
+                from += hits.size();
+                if (hits.size() < PAGE_SIZE) {
+                    break;
+                }
+            }
+            span.setAttribute("response.size", descendingLogLines.size());
+            span.setAttribute("response.totalHits", totalHits == null ? -1 : totalHits);
+            if (totalHits == null) {
+                return null;
+            }
+            // identify the log lines as `loadNextFormattedLogLines()` does, by the number of hits up to and
+            // including the line
+            long total = totalHits;
+            List<LogLine<Long>> logLines = new ArrayList<>(descendingLogLines.size());
+            for (int i = descendingLogLines.size() - 1; i >= 0; i--) {
+                LogLine<Long> logLine = descendingLogLines.get(i);
+                logLines.add(new LogLine<>(total - logLine.getId(), logLine.getMessage()));
+            }
+            long previousLogLineId = total - from;
+            return new LogTail<>(logLines, previousLogLineId > 0 ? previousLogLineId : null);
+        } catch (ElasticsearchException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Retrieve with a single query paginated in ascending order the log lines of the flow nodes {@link #flowNodeIds}
+     * and group them by flow node. The pages are retrieved with {@code search_after} on the point in time, they are
+     * not limited by {@link #MAX_LINES_PAGINATED}. The log lines of each flow node are identified as the log lines of a
+     * {@link #ElasticsearchBuildLogsLineIterator(String, int, String, String, ElasticsearchClient, Tracer) flow node
+     * iterator}: by the number of hits of the flow node up to and including the line.
+     *
+     * @return the log lines of each flow node, flow nodes without log lines are omitted. {@code null} if the flow nodes
+     * have more than {@link #MAX_FLOW_NODES_LOG_LINES} log lines, the log lines of each flow node should then be
+     * retrieved separately
+     */
+    @CheckForNull
+    public Map<String, List<LogLine<Long>>> loadLogLinesByFlowNodeId() throws IOException {
+        if (flowNodeIds == null || flowNodeIds.isEmpty()) {
+            return Map.of();
+        }
+        String loadPointInTimeId = this.lazyLoadPointInTimeId();
+        Span span = tracer.spanBuilder("ElasticsearchLogsSearchIterator.searchFlowNodes")
+                .setAttribute("query.pointInTimeId", loadPointInTimeId)
+                .setAttribute("query.match.traceId", traceId)
+                .setAttribute("query.match.jobFullName", jobFullName)
+                .setAttribute("query.match.runNumber", runNumber)
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            Query query = getQuery(span);
+            ElasticsearchHitToFormattedLogLine hitToFormattedLogLine =
+                    new ElasticsearchHitToFormattedLogLine(getAttributesField());
+            Map<String, List<LogLine<Long>>> logLinesByFlowNodeId = new LinkedHashMap<>();
+            List<FieldValue> searchAfter = null;
+            int hitsCount = 0;
+            while (true) {
+                if (hitsCount >= MAX_FLOW_NODES_LOG_LINES) {
+                    span.addEvent("More than " + MAX_FLOW_NODES_LOG_LINES + " log lines");
+                    span.setAttribute("response.size", hitsCount);
+                    return null;
+                }
+                SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
+                        .pit(pit -> pit.id(loadPointInTimeId).keepAlive(POINT_IN_TIME_KEEP_ALIVE))
+                        .size(PAGE_SIZE)
+                        .sort(s -> s.field(
+                                f -> f.field(ElasticsearchFields.FIELD_TIMESTAMP).order(SortOrder.Asc)))
+                        .sort(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Asc)))
+                        .query(query);
+                if (searchAfter != null) {
+                    searchRequestBuilder.searchAfter(searchAfter);
+                }
+                SearchResponse<ObjectNode> searchResponse =
+                        this.esClient.search(searchRequestBuilder.build(), ObjectNode.class);
+                queryCounter++;
+                LogRetrievalMetrics.recordPage(LogsBackendValues.ELASTICSEARCH, getOperation());
+                List<Hit<ObjectNode>> hits = searchResponse.hits().hits();
+                addLogLinesByFlowNodeId(hits, hitToFormattedLogLine, getAttributesField(), logLinesByFlowNodeId);
+                hitsCount += hits.size();
+                if (hits.size() < PAGE_SIZE) {
+                    break;
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+            }
+            span.setAttribute("query.queryCounter", queryCounter);
+            span.setAttribute("response.size", hitsCount);
+            span.setAttribute("response.flowNodes", logLinesByFlowNodeId.size());
+            return logLinesByFlowNodeId;
+        } catch (ElasticsearchException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Append the log lines of the given hits, sorted in ascending order, to the log lines of their flow node
+     */
+    @VisibleForTesting
+    static void addLogLinesByFlowNodeId(
+            @NonNull List<Hit<ObjectNode>> hits,
+            @NonNull ElasticsearchHitToFormattedLogLine hitToFormattedLogLine,
+            @NonNull String attributesField,
+            @NonNull Map<String, List<LogLine<Long>>> logLinesByFlowNodeId) {
+        for (Hit<ObjectNode> hit : hits) {
+            String hitFlowNodeId = getFlowNodeId(hit, attributesField);
+            LogLine<Long> logLine = hitToFormattedLogLine.apply(hit);
+            if (hitFlowNodeId == null || logLine == null) {
+                continue;
+            }
+            List<LogLine<Long>> flowNodeLogLines =
+                    logLinesByFlowNodeId.computeIfAbsent(hitFlowNodeId, id -> new ArrayList<>());
+            flowNodeLogLines.add(new LogLine<>((long) flowNodeLogLines.size() + 1, logLine.getMessage()));
+        }
+    }
+
+    /**
+     * Search the log lines of the run matching the given phrase with a {@code match_phrase} query. The line number of
+     * each matching log line is the number of log lines of the run before its timestamp, retrieved with a
+     * {@code count} query, plus its position among the log lines sharing its timestamp, which are ordered by
+     * {@code _shard_doc} in the point in time like when the log lines are iterated.
+     *
+     * @param from offset of the first matching log line to return
+     */
+    @NonNull
+    public LogSearchResult search(@NonNull String phrase, int from, int size) throws IOException {
+        String loadPointInTimeId = this.lazyLoadPointInTimeId();
+        Span span = tracer.spanBuilder("ElasticsearchLogsSearchIterator.searchPhrase")
+                .setAttribute("query.pointInTimeId", loadPointInTimeId)
+                .setAttribute("query.match.traceId", traceId)
+                .setAttribute("query.match.jobFullName", jobFullName)
+                .setAttribute("query.match.runNumber", runNumber)
+                .setAttribute("query.from", from)
+                .setAttribute("query.size", size)
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            if (from + size > MAX_LINES_PAGINATED) {
+                span.addEvent("Skip more than " + MAX_LINES_PAGINATED + " matching lines");
+                return new LogSearchResult(List.of(), null);
+            }
+            Query runQuery = getQuery(span);
+            Query query = QueryBuilders.bool()
+                    .must(runQuery)
+                    .must(QueryBuilders.matchPhrase()
+                            .field(enableEDOT ? ElasticsearchFields.FIELD_MESSAGE + ".text" : "message")
+                            .query(phrase)
+                            .build()
+                            ._toQuery())
+                    .build()
+                    ._toQuery();
+            SearchRequest searchRequest = new SearchRequest.Builder()
+                    .pit(pit -> pit.id(loadPointInTimeId).keepAlive(POINT_IN_TIME_KEEP_ALIVE))
+                    .from(from)
+                    .size(size)
+                    .sort(s -> s.field(f -> f.field(ElasticsearchFields.FIELD_TIMESTAMP).order(SortOrder.Asc)))
+                    .sort(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Asc)))
+                    .query(query)
+                    .build();
+            SearchResponse<ObjectNode> searchResponse = this.esClient.search(searchRequest, ObjectNode.class);
+            queryCounter++;
+            List<Hit<ObjectNode>> hits = searchResponse.hits().hits();
+            ElasticsearchHitToFormattedLogLine hitToFormattedLogLine =
+                    new ElasticsearchHitToFormattedLogLine(getAttributesField());
+            // matching log lines often share their timestamp, query each timestamp once
+            Map<String, Long> previousLogLinesByTimestamp = new HashMap<>();
+            Map<String, List<Hit<ObjectNode>>> logLinesByTimestamp = new HashMap<>();
+            List<LogSearchHit> logSearchHits = new ArrayList<>(hits.size());
+            for (Hit<ObjectNode> hit : hits) {
+                LogLine<Long> logLine = hitToFormattedLogLine.apply(hit);
+                JsonNode timestampAsJsonNode = hit.source() == null
+                        ? null
+                        : hit.source().findValue(ElasticsearchFields.FIELD_TIMESTAMP);
+                if (logLine == null || timestampAsJsonNode == null) {
+                    continue;
+                }
+                String timestamp = timestampAsJsonNode.asText();
+                Long previousLogLines = previousLogLinesByTimestamp.get(timestamp);
+                if (previousLogLines == null) {
+                    previousLogLines = countLogLinesBefore(runQuery, timestamp);
+                    previousLogLinesByTimestamp.put(timestamp, previousLogLines);
+                }
+                List<Hit<ObjectNode>> sameTimestampLogLines = logLinesByTimestamp.get(timestamp);
+                if (sameTimestampLogLines == null) {
+                    sameTimestampLogLines = loadLogLinesAt(runQuery, timestamp, loadPointInTimeId);
+                    logLinesByTimestamp.put(timestamp, sameTimestampLogLines);
+                }
+                logSearchHits.add(new LogSearchHit(
+                        previousLogLines + getPositionInTimestamp(hit, sameTimestampLogLines) + 1,
+                        getFlowNodeId(hit),
+                        ConsoleNote.removeNotes(logLine.getMessage())));
+            }
+            span.setAttribute("response.size", logSearchHits.size());
+            span.setAttribute("query.queryCounter", queryCounter);
+            String nextCursor = hits.size() < size ? null : String.valueOf(from + hits.size());
+            return new LogSearchResult(logSearchHits, nextCursor);
+        } catch (IOException | RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * @return the number of log lines of the run before the given timestamp
+     */
+    private long countLogLinesBefore(@NonNull Query runQuery, @NonNull String timestamp) throws IOException {
+        Query previousLogLinesQuery = QueryBuilders.bool()
+                .must(runQuery)
+                .must(QueryBuilders.range(range ->
+                        range.date(date -> date.field(ElasticsearchFields.FIELD_TIMESTAMP).lt(timestamp))))
+                .build()
+                ._toQuery();
+        queryCounter++;
+        return esClient.count(count -> count.index(ElasticsearchFields.INDEX_TEMPLATE_PATTERNS)
+                        .query(previousLogLinesQuery))
+                .count();
+    }
+
+    /**
+     * @return the first {@link #PAGE_SIZE} log lines of the run with the given timestamp, without their source, in the
+     * order of the point in time
+     */
+    @NonNull
+    private List<Hit<ObjectNode>> loadLogLinesAt(
+            @NonNull Query runQuery, @NonNull String timestamp, @NonNull String pointInTimeId) throws IOException {
+        Query sameTimestampQuery = QueryBuilders.bool()
+                .must(runQuery)
+                .must(QueryBuilders.range(range -> range.date(date ->
+                        date.field(ElasticsearchFields.FIELD_TIMESTAMP).gte(timestamp).lte(timestamp))))
+                .build()
+                ._toQuery();
+        SearchRequest searchRequest = new SearchRequest.Builder()
+                .pit(pit -> pit.id(pointInTimeId).keepAlive(POINT_IN_TIME_KEEP_ALIVE))
+                .size(PAGE_SIZE)
+                .source(source -> source.fetch(false))
+                .sort(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Asc)))
+                .query(sameTimestampQuery)
+                .build();
+        queryCounter++;
+        return this.esClient.search(searchRequest, ObjectNode.class).hits().hits();
+    }
+
+    /**
+     * @param sameTimestampLogLines log lines of the run sharing the timestamp of the given hit, in log order
+     * @return the number of log lines of the given list before the given hit, {@code 0} if the hit isn't in the list
+     */
+    @VisibleForTesting
+    static int getPositionInTimestamp(
+            @NonNull Hit<ObjectNode> hit, @NonNull List<Hit<ObjectNode>> sameTimestampLogLines) {
+        for (int i = 0; i < sameTimestampLogLines.size(); i++) {
+            Hit<ObjectNode> sameTimestampLogLine = sameTimestampLogLines.get(i);
+            if (Objects.equals(hit.index(), sameTimestampLogLine.index())
+                    && Objects.equals(hit.id(), sameTimestampLogLine.id())) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the operation of the retrieval of the log lines, see {@link LogRetrievalMetrics}
+     */
+    @NonNull
+    private String getOperation() {
+        return LogRetrievalMetrics.getOperation(
+                flowNodeId == null && flowNodeIds == null ? LogsOperationValues.OVERALL : LogsOperationValues.STEP);
+    }
+
+    @Nullable
+    private String getFlowNodeId(@NonNull Hit<ObjectNode> hit) {
+        return getFlowNodeId(hit, getAttributesField());
+    }
+
+    @Nullable
+    private static String getFlowNodeId(@NonNull Hit<ObjectNode> hit, @NonNull String attributesField) {
+        ObjectNode source = hit.source();
+        if (source == null) {
+            return null;
+        }
+        JsonNode attributes = source.findValue(attributesField);
+        if (attributes == null) {
+            return null;
+        }
+        JsonNode flowNodeIdAsJsonNode = attributes.get(ExtendedJenkinsAttributes.JENKINS_STEP_ID.getKey());
+        if (flowNodeIdAsJsonNode == null) {
+            // Legacy APM ingestion replaces the dots of the labels by underscores
+            flowNodeIdAsJsonNode = attributes.get(
+                    ElasticsearchFields.LEGACY_FIELD_JENKINS_STEP_ID.substring("labels.".length()));
+        }
+        return flowNodeIdAsJsonNode == null ? null : flowNodeIdAsJsonNode.asText();
+    }
+
     private String getAttributesField() {
         return this.enableEDOT ? "attributes" : "labels";
     }
@@ -283,6 +704,15 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
                     .build()
                     ._toQuery());
         }
+        if (flowNodeIds != null) {
+            esSearchSpan.setAttribute("query.terms.flowNodeIds", String.join(",", flowNodeIds));
+            queryBuilder.must(QueryBuilders.terms()
+                    .field(fieldFlowNodeId)
+                    .terms(terms -> terms.value(
+                            flowNodeIds.stream().map(FieldValue::of).collect(Collectors.toList())))
+                    .build()
+                    ._toQuery());
+        }
         Query query = queryBuilder.build()._toQuery();
         return query;
     }
@@ -328,7 +758,7 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
          * @return the message with the Jenkins annotations
          */
         private String composeAnnotatedMessage(@NonNull String message, @Nullable ObjectNode labels) {
-            JSONArray annotations;
+            List<ConsoleNotes.Annotation> annotations;
             if (labels == null) {
                 annotations = null;
             } else {
@@ -336,7 +766,7 @@ public class ElasticsearchBuildLogsLineIterator implements LogLineIterator<Long>
                 if (annotationsAsText == null) {
                     annotations = null;
                 } else {
-                    annotations = JSONArray.fromObject(annotationsAsText.asText());
+                    annotations = ConsoleNotes.decodeAnnotations(annotationsAsText.asText());
                 }
             }
             String annotatedMessage = ConsoleNotes.readFormattedMessage(message, annotations);
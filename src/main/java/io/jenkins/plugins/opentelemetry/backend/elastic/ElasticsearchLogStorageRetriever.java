@@ -24,13 +24,21 @@ import io.jenkins.plugins.opentelemetry.TemplateBindingsProvider;
 import io.jenkins.plugins.opentelemetry.backend.ElasticBackend;
 import io.jenkins.plugins.opentelemetry.backend.ObservabilityBackend;
 import io.jenkins.plugins.opentelemetry.jenkins.HttpAuthHeaderFactory;
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.jenkins.plugins.opentelemetry.job.log.LogSearchResult;
 import io.jenkins.plugins.opentelemetry.job.log.LogStorageRetriever;
 import io.jenkins.plugins.opentelemetry.job.log.LogsQueryResult;
 import io.jenkins.plugins.opentelemetry.job.log.LogsViewHeader;
+import io.jenkins.plugins.opentelemetry.job.log.util.HttpConnectionPoolConfiguration;
+import io.jenkins.plugins.opentelemetry.job.log.util.HttpConnectionPoolInstrumentation;
 import io.jenkins.plugins.opentelemetry.job.log.util.InputStreamByteBuffer;
+import io.jenkins.plugins.opentelemetry.job.log.util.InstrumentedAsyncClientConnectionManager;
+import io.jenkins.plugins.opentelemetry.job.log.util.ListLogLineIterator;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogBytesToLogLineIdIndex;
 import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIterator;
 import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIteratorInputStream;
 import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
+import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.Tracer;
@@ -48,13 +56,16 @@ import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.SSLContext;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
 import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
@@ -64,6 +75,7 @@ import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
 import org.apache.hc.client5.http.ssl.TrustAllStrategy;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
 import org.apache.hc.core5.ssl.SSLContextBuilder;
 import org.apache.hc.core5.util.TimeValue;
 import org.kohsuke.stapler.framework.io.ByteBuffer;
@@ -128,9 +140,20 @@ public class ElasticsearchLogStorageRetriever implements LogStorageRetriever, Cl
         RequestConfig requestConfig = RequestConfig.custom()
                 .setConnectionKeepAlive(TimeValue.ofMilliseconds(KEEPALIVE_INTERVAL))
                 .build();
-        CloseableHttpAsyncClient httpclient =
-                HttpAsyncClients.custom().setDefaultRequestConfig(requestConfig).build();
 
+        // long-lived connection pool shared by all the log retrievals, closed with the retriever
+        HttpConnectionPoolConfiguration connectionPoolConfiguration =
+                HttpConnectionPoolConfiguration.fromSystemProperties(ElasticsearchLogStorageRetriever.class);
+        PoolingAsyncClientConnectionManagerBuilder connectionManagerBuilder =
+                PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnPerRoute(connectionPoolConfiguration.getMaxConnectionsPerRoute())
+                        .setMaxConnTotal(connectionPoolConfiguration.getMaxConnectionsTotal())
+                        .setDefaultTlsConfig(TlsConfig.custom()
+                                .setVersionPolicy(
+                                        connectionPoolConfiguration.isHttp2()
+                                                ? HttpVersionPolicy.NEGOTIATE
+                                                : HttpVersionPolicy.FORCE_HTTP_1)
+                                .build());
         if (disableSslVerifications) {
             SSLContext sslContext;
             try {
@@ -145,14 +168,19 @@ public class ElasticsearchLogStorageRetriever implements LogStorageRetriever, Cl
                     .setSslContext(sslContext)
                     .setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
                     .build();
-            PoolingAsyncClientConnectionManager cm = PoolingAsyncClientConnectionManagerBuilder.create()
-                    .setTlsStrategy(tlsStrategy)
-                    .build();
-            httpclient = HttpAsyncClients.custom()
-                    .setDefaultRequestConfig(requestConfig)
-                    .setConnectionManager(cm)
-                    .build();
+            connectionManagerBuilder.setTlsStrategy(tlsStrategy);
         }
+        PoolingAsyncClientConnectionManager connectionManager = connectionManagerBuilder.build();
+        HttpConnectionPoolInstrumentation connectionPoolInstrumentation = new HttpConnectionPoolInstrumentation(
+                ExtendedJenkinsAttributes.LogsBackendValues.ELASTICSEARCH,
+                connectionManager,
+                connectionPoolConfiguration,
+                GlobalOpenTelemetry.get());
+        CloseableHttpAsyncClient httpclient = HttpAsyncClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setConnectionManager(
+                        new InstrumentedAsyncClientConnectionManager(connectionManager, connectionPoolInstrumentation))
+                .build();
 
         HttpAuthHeaderFactory httpAuthHeaderFactory = new HttpAuthHeaderFactory(elasticsearchCredentialsId);
         Header[] headers = {httpAuthHeaderFactory.createAuthHeader()};
@@ -191,10 +219,15 @@ public class ElasticsearchLogStorageRetriever implements LogStorageRetriever, Cl
             LogLineIterator<Long> logLines =
                     new ElasticsearchBuildLogsLineIterator(jobFullName, runNumber, traceId, esClient, getTracer());
 
-            LogLineIterator.JenkinsHttpSessionLineBytesToLogLineIdMapper<Long> lineBytesToLineNumberConverter =
-                    new LogLineIterator.JenkinsHttpSessionLineBytesToLogLineIdMapper<>(jobFullName, runNumber, null);
+            LogLineIterator.LogLineBytesToLogLineIdMapper<Long> lineBytesToLineNumberConverter =
+                    LogBytesToLogLineIdIndex.get(jobFullName, runNumber, null);
             InputStream lineIteratorInputStream =
-                    new LogLineIteratorInputStream<>(logLines, lineBytesToLineNumberConverter, getTracer());
+                    new LogLineIteratorInputStream<>(
+                            logLines,
+                            lineBytesToLineNumberConverter,
+                            getTracer(),
+                            ExtendedJenkinsAttributes.LogsBackendValues.ELASTICSEARCH,
+                            ExtendedJenkinsAttributes.LogsOperationValues.OVERALL);
             ByteBuffer byteBuffer = new InputStreamByteBuffer(lineIteratorInputStream, getTracer());
 
             Map<String, Object> localBindings = Map.of(
@@ -250,10 +283,14 @@ public class ElasticsearchLogStorageRetriever implements LogStorageRetriever, Cl
                     jobFullName, runNumber, traceId, flowNodeId, esClient, getTracer());
 
             LogLineIterator.LogLineBytesToLogLineIdMapper<Long> logLineBytesToLogLineIdMapper =
-                    new LogLineIterator.JenkinsHttpSessionLineBytesToLogLineIdMapper<>(
-                            jobFullName, runNumber, flowNodeId);
+                    LogBytesToLogLineIdIndex.get(jobFullName, runNumber, flowNodeId);
             InputStream logLineIteratorInputStream =
-                    new LogLineIteratorInputStream<>(logLines, logLineBytesToLogLineIdMapper, getTracer());
+                    new LogLineIteratorInputStream<>(
+                            logLines,
+                            logLineBytesToLogLineIdMapper,
+                            getTracer(),
+                            ExtendedJenkinsAttributes.LogsBackendValues.ELASTICSEARCH,
+                            ExtendedJenkinsAttributes.LogsOperationValues.STEP);
             ByteBuffer byteBuffer = new InputStreamByteBuffer(logLineIteratorInputStream, getTracer());
 
             Map<String, Object> localBindings = new HashMap<>();
@@ -281,6 +318,126 @@ public class ElasticsearchLogStorageRetriever implements LogStorageRetriever, Cl
         }
     }
 
+    /**
+     * Retrieve the log lines of all the flow nodes with a single search using a {@code terms} query on the flow node
+     * id. The log lines are held in memory and served to each flow node log.
+     * When the flow nodes have too many log lines, the logs of each flow node are retrieved separately.
+     */
+    @NonNull
+    @Override
+    public Map<String, LogsQueryResult> stepLogs(
+            @NonNull String jobFullName,
+            int runNumber,
+            @NonNull Set<String> flowNodeIds,
+            @NonNull String traceId,
+            @NonNull String spanId,
+            boolean complete,
+            @NonNull Instant startTime,
+            @Nullable Instant endTime)
+            throws IOException {
+        final Charset charset = StandardCharsets.UTF_8;
+
+        SpanBuilder spanBuilder = getTracer()
+                .spanBuilder("ElasticsearchLogStorageRetriever.stepLogs")
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_ID, jobFullName)
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_RUN_NUMBER, (long) runNumber)
+                .setAttribute("flowNodes", flowNodeIds.size())
+                .setAttribute("complete", complete);
+
+        Span span = spanBuilder.startSpan();
+
+        try (Scope scope = span.makeCurrent()) {
+            Map<String, List<LogLine<Long>>> logLinesByFlowNodeId;
+            try (ElasticsearchBuildLogsLineIterator logLines = new ElasticsearchBuildLogsLineIterator(
+                    jobFullName, runNumber, traceId, flowNodeIds, esClient, getTracer())) {
+                logLinesByFlowNodeId = logLines.loadLogLinesByFlowNodeId();
+            }
+            if (logLinesByFlowNodeId == null) {
+                // too many log lines to hold in memory at once
+                span.setAttribute("fallback", true);
+                return LogStorageRetriever.super.stepLogs(
+                        jobFullName, runNumber, flowNodeIds, traceId, spanId, complete, startTime, endTime);
+            }
+
+            Map<String, Object> localBindings = new HashMap<>();
+            localBindings.put(ObservabilityBackend.TemplateBindings.TRACE_ID, traceId);
+            localBindings.put(ObservabilityBackend.TemplateBindings.SPAN_ID, spanId);
+
+            Map<String, Object> bindings = TemplateBindingsProvider.compose(
+                            this.templateBindingsProvider, localBindings)
+                    .getBindings();
+            String logsVisualizationUrl =
+                    this.buildLogsVisualizationUrlTemplate.make(bindings).toString();
+            LogsViewHeader logsViewHeader = new LogsViewHeader(
+                    bindings.get(ElasticBackend.TemplateBindings.BACKEND_NAME).toString(),
+                    logsVisualizationUrl,
+                    bindings.get(ElasticBackend.TemplateBindings.BACKEND_24_24_ICON_URL)
+                            .toString());
+
+            Map<String, LogsQueryResult> logsQueryResults = new LinkedHashMap<>();
+            for (String flowNodeId : flowNodeIds) {
+                LogLineIterator<Long> flowNodeLogLines =
+                        new ListLogLineIterator<>(logLinesByFlowNodeId.getOrDefault(flowNodeId, List.of()));
+                LogLineIterator.LogLineBytesToLogLineIdMapper<Long> logLineBytesToLogLineIdMapper =
+                        LogBytesToLogLineIdIndex.get(jobFullName, runNumber, flowNodeId);
+                InputStream logLineIteratorInputStream = new LogLineIteratorInputStream<>(
+                        flowNodeLogLines,
+                        logLineBytesToLogLineIdMapper,
+                        getTracer(),
+                        ExtendedJenkinsAttributes.LogsBackendValues.ELASTICSEARCH,
+                        ExtendedJenkinsAttributes.LogsOperationValues.STEP);
+                ByteBuffer byteBuffer = new InputStreamByteBuffer(logLineIteratorInputStream, getTracer());
+                logsQueryResults.put(flowNodeId, new LogsQueryResult(byteBuffer, logsViewHeader, charset, complete));
+            }
+            return logsQueryResults;
+        } catch (IOException | RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Search with a {@code match_phrase} query, the cursor is the offset of the next page of matching log lines
+     */
+    @NonNull
+    @Override
+    public LogSearchResult search(
+            @NonNull String jobFullName,
+            int runNumber,
+            @NonNull String traceId,
+            @NonNull String phrase,
+            @Nullable String cursor,
+            int pageSize,
+            @NonNull Instant startTime,
+            @Nullable Instant endTime)
+            throws IOException {
+        SpanBuilder spanBuilder = getTracer()
+                .spanBuilder("ElasticsearchLogStorageRetriever.search")
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_ID, jobFullName)
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_RUN_NUMBER, (long) runNumber);
+
+        Span span = spanBuilder.startSpan();
+        try (Scope scope = span.makeCurrent()) {
+            int from;
+            try {
+                from = cursor == null ? 0 : Integer.parseInt(cursor);
+            } catch (NumberFormatException e) {
+                throw new LogSearchResult.InvalidCursorException(cursor, e);
+            }
+            if (from < 0) {
+                throw new LogSearchResult.InvalidCursorException(cursor, null);
+            }
+            try (ElasticsearchBuildLogsLineIterator logLines =
+                    new ElasticsearchBuildLogsLineIterator(jobFullName, runNumber, traceId, esClient, getTracer())) {
+                return logLines.search(phrase, from, pageSize);
+            }
+        } finally {
+            span.end();
+        }
+    }
+
     /**
      * Example of a successful check:
      * <pre>{@code
@@ -374,9 +531,18 @@ public class ElasticsearchLogStorageRetriever implements LogStorageRetriever, Cl
         return phaseName + "[" + retentionPolicySpec + "]";
     }
 
+    /**
+     * The console notes are reinserted in the log lines, see {@link ElasticsearchBuildLogsLineIterator}
+     */
+    @Override
+    public boolean isRenderingConsoleNotes() {
+        return true;
+    }
+
     @Override
     public void close() throws IOException {
         logger.log(Level.FINE, () -> "Shutdown Elasticsearch client...");
+        LogBytesToLogLineIdIndex.invalidateAll();
         this.elasticsearchTransport.close();
         this.restClient.close();
     }
@@ -8,7 +8,7 @@ package io.jenkins.plugins.opentelemetry.backend.grafana;
 import com.google.errorprone.annotations.MustBeClosed;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
-import groovy.text.GStringTemplateEngine;
+import groovy.lang.MissingPropertyException;
 import groovy.text.Template;
 import hudson.DescriptorExtensionList;
 import hudson.ExtensionPoint;
@@ -18,6 +18,7 @@ import hudson.util.ListBoxModel;
 import io.jenkins.plugins.opentelemetry.TemplateBindingsProvider;
 import io.jenkins.plugins.opentelemetry.backend.GrafanaBackend;
 import io.jenkins.plugins.opentelemetry.backend.ObservabilityBackend;
+import io.jenkins.plugins.opentelemetry.backend.UrlTemplate;
 import io.jenkins.plugins.opentelemetry.job.log.LogStorageRetriever;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
@@ -25,6 +26,8 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
@@ -51,6 +54,13 @@ public abstract class GrafanaLogsBackend extends AbstractDescribableImpl<Grafana
 
     private static final Logger logger = Logger.getLogger(GrafanaLogsBackend.class.getName());
 
+    /**
+     * Bindings of the build logs visualization URL computed from the start time and end time of the run
+     */
+    static final String RANGE_FROM_EPOCH_MILLIS = "logsRangeFromEpochMillis";
+
+    static final String RANGE_TO_EPOCH_MILLIS = "logsRangeToEpochMillis";
+
     private transient Template buildLogsVisualizationUrlGTemplate;
 
     protected LokiOTelLogFormat lokiOTelLogFormat;
@@ -65,7 +75,7 @@ public abstract class GrafanaLogsBackend extends AbstractDescribableImpl<Grafana
     @NonNull
     public Template getBuildLogsVisualizationMessageTemplate() {
         try {
-            return new GStringTemplateEngine().createTemplate("View build logs in ${backendName}");
+            return UrlTemplate.createTemplate("View build logs in ${backendName}");
         } catch (ClassNotFoundException | IOException e) {
             throw new IllegalStateException(e);
         }
@@ -131,20 +141,12 @@ public abstract class GrafanaLogsBackend extends AbstractDescribableImpl<Grafana
             StringWriter panesAsStringWriter = new StringWriter();
             Json.createWriter(panesAsStringWriter).writeObject(panesAsJson);
 
-            // starttime and endtime are of type java.time.Instant
+            // the range of the query is computed from the start time and end time of the run, see below
             String panes = URLEncoder.encode(panesAsStringWriter.toString(), StandardCharsets.UTF_8)
                     .replace(START, "${")
                     .replace(END, "}")
-                    .replace(
-                            "--start_time--",
-                            "${" + GrafanaBackend.TemplateBindings.START_TIME
-                                    + ".minus(1, java.time.temporal.ChronoUnit.DAYS).atZone(java.util.TimeZone.getDefault().toZoneId()).toInstant().toEpochMilli()"
-                                    + "}")
-                    .replace(
-                            "--end_time--",
-                            "${" + GrafanaBackend.TemplateBindings.END_TIME
-                                    + ".plus(1, java.time.temporal.ChronoUnit.DAYS).atZone(java.util.TimeZone.getDefault().toZoneId()).toInstant().toEpochMilli()"
-                                    + "}");
+                    .replace("--start_time--", "${" + RANGE_FROM_EPOCH_MILLIS + "}")
+                    .replace("--end_time--", "${" + RANGE_TO_EPOCH_MILLIS + "}");
 
             String urlTemplate = "${" + GrafanaBackend.TemplateBindings.GRAFANA_BASE_URL + "}/" + "explore?"
                     + "panes="
@@ -152,17 +154,37 @@ public abstract class GrafanaLogsBackend extends AbstractDescribableImpl<Grafana
                     + "&orgId=${"
                     + GrafanaBackend.TemplateBindings.GRAFANA_ORG_ID + "}";
 
-            GStringTemplateEngine gStringTemplateEngine = new GStringTemplateEngine();
-            try {
-                this.buildLogsVisualizationUrlGTemplate = gStringTemplateEngine.createTemplate(urlTemplate);
-            } catch (IOException | ClassNotFoundException e) {
-                logger.log(Level.WARNING, "Invalid build logs Visualisation URL Template '" + urlTemplate + "'", e);
+            UrlTemplate compiledUrlTemplate = UrlTemplate.compile(urlTemplate);
+            if (compiledUrlTemplate == null) {
+                logger.log(Level.WARNING, "Invalid build logs Visualisation URL Template '" + urlTemplate + "'");
                 this.buildLogsVisualizationUrlGTemplate = ObservabilityBackend.ERROR_TEMPLATE;
+            } else {
+                // starttime and endtime are of type java.time.Instant
+                this.buildLogsVisualizationUrlGTemplate = compiledUrlTemplate
+                        .withComputedBinding(
+                                RANGE_FROM_EPOCH_MILLIS,
+                                bindings -> getInstant(bindings, GrafanaBackend.TemplateBindings.START_TIME)
+                                        .minus(1, ChronoUnit.DAYS)
+                                        .toEpochMilli())
+                        .withComputedBinding(
+                                RANGE_TO_EPOCH_MILLIS,
+                                bindings -> getInstant(bindings, GrafanaBackend.TemplateBindings.END_TIME)
+                                        .plus(1, ChronoUnit.DAYS)
+                                        .toEpochMilli());
             }
         }
         return buildLogsVisualizationUrlGTemplate;
     }
 
+    @NonNull
+    private static Instant getInstant(@NonNull Map<?, ?> bindings, @NonNull String name) {
+        Object instant = bindings.get(name);
+        if (instant == null) {
+            throw new MissingPropertyException(name, GrafanaLogsBackend.class);
+        }
+        return (Instant) instant;
+    }
+
     public Map<String, String> getOtelConfigurationProperties() {
         return Collections.singletonMap("otel.logs.exporter", "otlp");
     }
@@ -6,32 +6,49 @@
 package io.jenkins.plugins.opentelemetry.backend.grafana;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.jayway.jsonpath.JsonPath;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.console.ConsoleNote;
 import io.jenkins.plugins.opentelemetry.jenkins.HttpAuthHeaderFactory;
 import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.jenkins.plugins.opentelemetry.job.log.LogSearchHit;
+import io.jenkins.plugins.opentelemetry.job.log.LogSearchResult;
 import io.jenkins.plugins.opentelemetry.job.log.util.CloseableIterator;
 import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIterator;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalMetrics;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsBackendValues;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsOperationValues;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.trace.TracerProvider;
 import io.opentelemetry.context.Scope;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nonnull;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.ParseException;
-import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
 import org.apache.hc.core5.http.protocol.HttpContext;
 
 /*
@@ -42,6 +59,30 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
 
     protected static final Logger logger = Logger.getLogger(LokiBuildLogsLineIterator.class.getName());
     public static final int MAX_QUERIES = 100;
+    /**
+     * Default value of the {@code limit} parameter of the Loki {@code query_range} API
+     */
+    public static final int DEFAULT_LIMIT = 100;
+    /**
+     * Number of log lines per query when retrieving the tail of the log, lower than the default
+     * {@code max_entries_limit_per_query} of Loki ({@code 5000})
+     */
+    static final int TAIL_PAGE_SIZE =
+            Integer.getInteger(LokiBuildLogsLineIterator.class.getName() + ".tailPageSize", 1_000);
+
+    /**
+     * Number of log lines per query when retrieving the logs of several flow nodes at once, see
+     * {@link #loadLogLinesByFlowNodeId()}
+     */
+    static final int FLOW_NODES_PAGE_SIZE =
+            Integer.getInteger(LokiBuildLogsLineIterator.class.getName() + ".flowNodesPageSize", 1_000);
+
+    /**
+     * Max number of steps of the range query counting the log lines of the run between the matching log lines of a
+     * search page, lower than the max resolution of 11,000 points per series of Loki
+     */
+    static final int MAX_COUNT_STEPS =
+            Integer.getInteger(LokiBuildLogsLineIterator.class.getName() + ".maxCountSteps", 10_000);
 
     protected final LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters;
 
@@ -55,11 +96,27 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
     @VisibleForTesting
     int queryCounter;
 
+    /**
+     * The iteration ended after {@link #MAX_QUERIES} queries, before the end of the log
+     */
+    volatile boolean truncated;
+
     final Tracer tracer;
 
     Iterator<LogLine<Long>> delegate;
     boolean endOfStream;
 
+    /**
+     * Log line read from the current page but not yet returned by {@link #next()}
+     */
+    @Nullable
+    LogLine<Long> peekedLogLine;
+
+    /**
+     * Start time of the query before any skip, start of the time range of the tail and of the search
+     */
+    final long initialStartTimeInNanos;
+
     public LokiBuildLogsLineIterator(
             @NonNull LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters,
             @NonNull CloseableHttpClient httpClient,
@@ -79,6 +136,8 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
         this.httpContext = httpContext;
 
         this.tracer = tracer;
+
+        this.initialStartTimeInNanos = lokiQueryParameters.getStartTimeInNanos();
     }
 
     @NonNull
@@ -94,6 +153,7 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
             if (delegate.hasNext()) {
                 return delegate;
             }
+            closeDelegate();
             delegate = loadNextLogLines();
             if (!delegate.hasNext()) {
                 endOfStream = true;
@@ -108,74 +168,601 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
         if (queryCounter > MAX_QUERIES) {
             logger.log(
                     Level.INFO, () -> "Circuit breaker: " + queryCounter + " queries for " + this.lokiQueryParameters);
+            truncated = true;
             return Collections.emptyIterator();
         }
 
         Span loadNextLogLinesSpan = tracer.spanBuilder("LokiBuildLogsLineIterator.loadNextLogLines")
                 .setAllAttributes(this.lokiQueryParameters.toAttributes())
                 .startSpan();
+        // when the response is streamed, the span ends when the returned iterator is closed
+        boolean streamed = false;
         try (Scope loadNextLogLinesScope = loadNextLogLinesSpan.makeCurrent()) {
 
-            ClassicHttpRequest lokiQueryRangeRequest = this.lokiQueryParameters.toHttpRequest(lokiUrl);
-            httpAuthHeaderFactory.ifPresent(factory -> {
-                // preemptive authentication due to a limitation of Grafana Cloud Logs (Loki) that doesn't return
-                // `WWW-Authenticate` header to trigger traditional authentication
-                lokiQueryRangeRequest.addHeader(factory.createAuthHeader());
-            });
-            lokiTenantId.ifPresent(tenantId -> lokiQueryRangeRequest.addHeader(new LokiTenantHeader(tenantId)));
+            ClassicHttpRequest lokiQueryRangeRequest = newQueryRangeRequest(this.lokiQueryParameters);
+
+            queryCounter++;
+            LogRetrievalMetrics.recordPage(LogsBackendValues.LOKI, getOperation());
+            // don't use a `HttpClientResponseHandler` as the response is consumed lazily, line by line, after
+            // `loadNextLogLines()` returns. The response is released when the returned iterator is closed.
+            ClassicHttpResponse lokiQueryRangeResponse =
+                    httpClient.executeOpen(null, lokiQueryRangeRequest, httpContext);
+            try {
+                if (lokiQueryRangeResponse.getCode() != 200) {
+                    throw new IOException("Loki logs query failure: " + lokiQueryRangeResponse.getReasonPhrase() + " - "
+                            + EntityUtils.toString(lokiQueryRangeResponse.getEntity()));
+                }
+                HttpEntity entity = lokiQueryRangeResponse.getEntity();
+                if (entity == null) {
+                    logger.log(Level.INFO, "No content in response for " + lokiQueryParameters);
+                    lokiQueryRangeResponse.close();
+                    return Collections.emptyIterator();
+                }
+                Iterator<LogLine<Long>> logLines = loadLogLines(entity.getContent(), loadNextLogLinesSpan);
+                streamed = true;
+                return new CloseableIterator<>(logLines, lokiQueryRangeResponse);
+            } catch (ParseException e) {
+                lokiQueryRangeResponse.close();
+                loadNextLogLinesSpan.recordException(e);
+                throw new IOException(e);
+            } catch (IOException | RuntimeException e) {
+                lokiQueryRangeResponse.close();
+                loadNextLogLinesSpan.recordException(e);
+                throw e;
+            }
+        } finally {
+            if (!streamed) {
+                loadNextLogLinesSpan.end();
+            }
+        }
+    }
+
+    /**
+     * @return the operation of the retrieval of the log lines, see {@link LogRetrievalMetrics}
+     */
+    @NonNull
+    private String getOperation() {
+        return LogRetrievalMetrics.getOperation(
+                lokiQueryParameters.getFlowNodeId().isEmpty()
+                                && lokiQueryParameters.getFlowNodeIds().isEmpty()
+                        ? LogsOperationValues.OVERALL
+                        : LogsOperationValues.STEP);
+    }
+
+    @NonNull
+    ClassicHttpRequest newQueryRangeRequest(@NonNull LokiGetJenkinsBuildLogsQueryParameters queryParameters) {
+        return withHeaders(queryParameters.toHttpRequest(lokiUrl));
+    }
+
+    @NonNull
+    ClassicHttpRequest withHeaders(@NonNull ClassicHttpRequest lokiRequest) {
+        httpAuthHeaderFactory.ifPresent(factory -> {
+            // preemptive authentication due to a limitation of Grafana Cloud Logs (Loki) that doesn't return
+            // `WWW-Authenticate` header to trigger traditional authentication
+            lokiRequest.addHeader(factory.createAuthHeader());
+        });
+        lokiTenantId.ifPresent(tenantId -> lokiRequest.addHeader(new LokiTenantHeader(tenantId)));
+        return lokiRequest;
+    }
+
+    /**
+     * Search the log lines containing the given phrase with a {@code |=} line filter. The matching log lines of a page
+     * are numbered with two {@code count_over_time} queries whatever their number, see {@link #numberLogLines}.
+     *
+     * @param cursor {@link LogSearchResult#getNextCursor()} of the previous page, {@code null} to search from the start
+     *               time of the query
+     * @return the matching log lines, the cursor of the next page being the start time in nanoseconds of its query and
+     * the number of log lines before it, see {@link SearchCursor}
+     * @throws LogSearchResult.InvalidCursorException if the given cursor is invalid
+     */
+    @NonNull
+    public LogSearchResult search(@NonNull String phrase, @Nullable String cursor, int pageSize) throws IOException {
+        SearchCursor searchCursor = cursor == null
+                ? new SearchCursor(lokiQueryParameters.getStartTimeInNanos(), 0)
+                : SearchCursor.parse(cursor);
+        Span span = tracer.spanBuilder("LokiBuildLogsLineIterator.search")
+                .setAllAttributes(this.lokiQueryParameters.toAttributes())
+                .setAttribute("query.size", pageSize)
+                .setAttribute("query.startTimeInNanos", searchCursor.startTimeInNanos)
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            long endTimeInNanos = lokiQueryParameters
+                    .getEndTimeInNanos()
+                    .orElseGet(() -> LokiGetJenkinsBuildLogsQueryParameters.instantToEpochNanos(Instant.now()));
+            LokiGetJenkinsBuildLogsQueryParameters searchQueryParameters =
+                    lokiQueryParameters.withTimeRange(searchCursor.startTimeInNanos, endTimeInNanos);
+            searchQueryParameters.addLineFilter(phrase);
+            searchQueryParameters.setKeepFlowNodeId(true);
+            searchQueryParameters.setLimit(pageSize);
 
+            List<LogLine<Long>> logLines = new ArrayList<>();
+            Map<LogLine<Long>, String> flowNodeIds = new IdentityHashMap<>();
             queryCounter++;
-            return httpClient.execute(
-                    lokiQueryRangeRequest, this.httpContext, new HttpClientResponseHandler<Iterator<LogLine<Long>>>() {
-                        @Override
-                        public Iterator<LogLine<Long>> handleResponse(ClassicHttpResponse lokiQueryRangeResponse)
-                                throws IOException {
-                            try {
-                                if (lokiQueryRangeResponse.getCode() != 200) {
-                                    throw new IOException(
-                                            "Loki logs query failure: " + lokiQueryRangeResponse.getReasonPhrase()
-                                                    + " - " + EntityUtils.toString(lokiQueryRangeResponse.getEntity()));
-                                }
-                                HttpEntity entity = lokiQueryRangeResponse.getEntity();
-                                if (entity == null) {
-                                    logger.log(Level.INFO, "No content in response for " + lokiQueryParameters);
-                                    return Collections.emptyIterator();
-                                }
-                                InputStream lokiQueryLogsResponseStream = entity.getContent();
-                                return loadLogLines(lokiQueryLogsResponseStream);
-                            } catch (ParseException e) {
-                                throw new IOException(e);
+            try (ClassicHttpResponse lokiQueryRangeResponse =
+                    httpClient.executeOpen(null, newQueryRangeRequest(searchQueryParameters), httpContext)) {
+                HttpEntity entity = lokiQueryRangeResponse.getEntity();
+                if (lokiQueryRangeResponse.getCode() != 200) {
+                    throw new IOException("Loki logs query failure: " + lokiQueryRangeResponse.getReasonPhrase()
+                            + " - " + EntityUtils.toString(entity));
+                }
+                if (entity != null) {
+                    try (LokiQueryRangeResponseParser parser = new LokiQueryRangeResponseParser(entity.getContent())) {
+                        while (parser.hasNext()) {
+                            LogLine<Long> logLine = parser.next();
+                            logLines.add(logLine);
+                            flowNodeIds.put(
+                                    logLine,
+                                    parser.getCurrentStreamLabels()
+                                            .get(LokiMetadata.META_DATA_JENKINS_PIPELINE_STEP_ID));
+                        }
+                    }
+                }
+            } catch (ParseException e) {
+                throw new IOException(e);
+            }
+            // the log lines of the different streams of the response are not interleaved, the stable sort keeps the
+            // log lines sharing the same timestamp in their order in their stream
+            logLines.sort(Comparator.comparing(LogLine::getId));
+
+            // number of log lines of the run up to and including countedUpToTimeInNanos
+            long logLinesCount = searchCursor.previousLogLines;
+            long countedUpToTimeInNanos = searchCursor.startTimeInNanos - 1;
+            long[] lineNumbers = new long[logLines.size()];
+            if (!logLines.isEmpty()) {
+                long lastTimeInNanos = logLines.get(logLines.size() - 1).getId();
+                logLinesCount += countLogLines(countedUpToTimeInNanos, lastTimeInNanos);
+                countedUpToTimeInNanos = lastTimeInNanos;
+                lineNumbers = numberLogLines(logLines, logLinesCount, searchCursor.previousLogLines);
+            }
+            List<LogSearchHit> logSearchHits = new ArrayList<>(logLines.size());
+            for (int i = 0; i < logLines.size(); i++) {
+                LogLine<Long> logLine = logLines.get(i);
+                logSearchHits.add(new LogSearchHit(
+                        lineNumbers[i], flowNodeIds.get(logLine), ConsoleNote.removeNotes(logLine.getMessage())));
+            }
+            span.setAttribute("response.size", logSearchHits.size());
+            span.setAttribute("query.queryCounter", queryCounter);
+            String nextCursor = logLines.size() < pageSize
+                    ? null
+                    : new SearchCursor(countedUpToTimeInNanos + 1, logLinesCount).toString();
+            return new LogSearchResult(logSearchHits, nextCursor);
+        } catch (IOException | RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * @return the number of log lines of the run, without line filter, after the given start time and up to and
+     * including the given end time
+     */
+    long countLogLines(long afterTimeInNanos, long upToTimeInNanos) throws IOException {
+        String logQl =
+                LokiLogQlQueryPlanner.INSTANCE.planCount(lokiQueryParameters, upToTimeInNanos - afterTimeInNanos);
+        ClassicHttpRequest lokiQueryRequest = withHeaders(ClassicRequestBuilder.get()
+                .setUri(lokiUrl + "/loki/api/v1/query")
+                .addParameter("query", logQl)
+                .addParameter("time", String.valueOf(upToTimeInNanos))
+                .build());
+        queryCounter++;
+        try (ClassicHttpResponse lokiQueryResponse = httpClient.executeOpen(null, lokiQueryRequest, httpContext)) {
+            String body = EntityUtils.toString(lokiQueryResponse.getEntity());
+            if (lokiQueryResponse.getCode() != 200) {
+                throw new IOException("Loki logs count query failure: " + lokiQueryResponse.getReasonPhrase() + " - "
+                        + body);
+            }
+            return parseCount(body);
+        } catch (ParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Number the given matching log lines of a search page. A single range query counts the log lines of the run per
+     * step between the first and the last matching log line, at most {@link #MAX_COUNT_STEPS} steps. The matching log
+     * lines of a step are numbered backward from the number of log lines up to the end of the step, in their order in
+     * the page so that the log lines sharing the same timestamp are told apart. The line number of a matching log line
+     * is exact when no other log line follows it in its step, at worst it's off by the number of log lines of its
+     * step.
+     *
+     * @param logLines         matching log lines sorted by timestamp
+     * @param logLinesCount    number of log lines of the run up to and including the last matching log line
+     * @param previousLogLines number of log lines of the run before the first matching log line
+     * @return the line number of each matching log line
+     */
+    @NonNull
+    long[] numberLogLines(@NonNull List<LogLine<Long>> logLines, long logLinesCount, long previousLogLines)
+            throws IOException {
+        long firstTimeInNanos = logLines.get(0).getId();
+        long lastTimeInNanos = logLines.get(logLines.size() - 1).getId();
+        long stepInNanos = Math.max(1, (lastTimeInNanos - firstTimeInNanos + MAX_COUNT_STEPS) / MAX_COUNT_STEPS);
+        // the matching log lines of the step ending at the last matching log line don't need any count
+        int steps = (int) ((lastTimeInNanos - firstTimeInNanos) / stepInNanos);
+        long[] countsPerStep = steps == 0 ? new long[0] : countLogLinesPerStep(lastTimeInNanos, steps, stepInNanos);
+
+        long[] lineNumbers = new long[logLines.size()];
+        int step = 0;
+        long countUpToStepEnd = logLinesCount;
+        long lineNumber = logLinesCount;
+        for (int i = logLines.size() - 1; i >= 0; i--) {
+            long logLineStep = (lastTimeInNanos - logLines.get(i).getId()) / stepInNanos;
+            while (step < logLineStep) {
+                countUpToStepEnd -= countsPerStep[step++];
+                lineNumber = Math.min(lineNumber, countUpToStepEnd);
+            }
+            // never before the log lines of the previous pages
+            lineNumbers[i] = Math.max(lineNumber, previousLogLines + i + 1);
+            lineNumber--;
+        }
+        return lineNumbers;
+    }
+
+    /**
+     * @return the number of log lines of the run, without line filter, of each of the given number of steps ending at
+     * the given end time, the most recent step first: {@code counts[i]} is the number of log lines after
+     * {@code endTimeInNanos - (i + 1) * stepInNanos} and up to and including {@code endTimeInNanos - i * stepInNanos}
+     */
+    @NonNull
+    long[] countLogLinesPerStep(long endTimeInNanos, int steps, long stepInNanos) throws IOException {
+        // `or vector(0)` returns a value for the steps without log lines, one value per step
+        String logQl = LokiLogQlQueryPlanner.INSTANCE.planCount(lokiQueryParameters, stepInNanos) + " or vector(0)";
+        long startTimeInNanos = endTimeInNanos - (steps - 1) * stepInNanos;
+        ClassicHttpRequest lokiQueryRangeRequest = withHeaders(ClassicRequestBuilder.get()
+                .setUri(lokiUrl + "/loki/api/v1/query_range")
+                .addParameter("query", logQl)
+                .addParameter("start", String.valueOf(startTimeInNanos))
+                .addParameter("end", String.valueOf(endTimeInNanos))
+                .addParameter("step", BigDecimal.valueOf(stepInNanos, 9).toPlainString())
+                .build());
+        queryCounter++;
+        try (ClassicHttpResponse lokiQueryRangeResponse =
+                httpClient.executeOpen(null, lokiQueryRangeRequest, httpContext)) {
+            String body = EntityUtils.toString(lokiQueryRangeResponse.getEntity());
+            if (lokiQueryRangeResponse.getCode() != 200) {
+                throw new IOException("Loki logs count query failure: " + lokiQueryRangeResponse.getReasonPhrase()
+                        + " - " + body);
+            }
+            long[] counts = parseCountsPerStep(body, steps);
+            // the values are in ascending order of time
+            for (int i = 0, j = steps - 1; i < j; i++, j--) {
+                long count = counts[i];
+                counts[i] = counts[j];
+                counts[j] = count;
+            }
+            return counts;
+        } catch (ParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @param body response of a {@link LokiLogQlQueryPlanner#planCount count} range query {@code or vector(0)}, for
+     *             example {@code {"data":{"resultType":"matrix","result":[{"metric":{},"values":[[1718111754.042,"42"],
+     *             [1718111754.043,"0"]]}]}}}
+     * @return the count of each step in ascending order of time
+     */
+    @VisibleForTesting
+    static long[] parseCountsPerStep(@NonNull String body, int steps) throws IOException {
+        try {
+            JSONArray result = JSONObject.fromObject(body).getJSONObject("data").getJSONArray("result");
+            JSONArray values = result.size() == 1 ? result.getJSONObject(0).getJSONArray("values") : null;
+            if (values == null || values.size() != steps) {
+                throw new IOException("Invalid Loki logs count query response, expected " + steps + " values: " + body);
+            }
+            long[] counts = new long[steps];
+            for (int i = 0; i < steps; i++) {
+                counts[i] = Long.parseLong(values.getJSONArray(i).getString(1));
+            }
+            return counts;
+        } catch (JSONException | NumberFormatException e) {
+            throw new IOException("Invalid Loki logs count query response: " + body, e);
+        }
+    }
+
+    /**
+     * @param body response of a {@link LokiLogQlQueryPlanner#planCount count} instant query, for example
+     *             {@code {"data":{"resultType":"vector","result":[{"metric":{},"value":[1718111754.042,"42"]}]}}}
+     * @return the count, {@code 0} if the result is empty because no log line matched
+     */
+    @VisibleForTesting
+    static long parseCount(@NonNull String body) throws IOException {
+        try {
+            JSONArray result = JSONObject.fromObject(body).getJSONObject("data").getJSONArray("result");
+            if (result.isEmpty()) {
+                return 0;
+            }
+            return Long.parseLong(result.getJSONObject(0).getJSONArray("value").getString(1));
+        } catch (JSONException | NumberFormatException e) {
+            throw new IOException("Invalid Loki logs count query response: " + body, e);
+        }
+    }
+
+    /**
+     * Position of the next page of a {@link #search}: start time in nanoseconds of its query and number of log lines
+     * of the run before this start time, formatted as {@code <startTimeInNanos>:<previousLogLines>}
+     */
+    @VisibleForTesting
+    static class SearchCursor {
+        final long startTimeInNanos;
+        final long previousLogLines;
+
+        SearchCursor(long startTimeInNanos, long previousLogLines) {
+            this.startTimeInNanos = startTimeInNanos;
+            this.previousLogLines = previousLogLines;
+        }
+
+        @NonNull
+        static SearchCursor parse(@NonNull String cursor) {
+            int separator = cursor.indexOf(':');
+            if (separator == -1) {
+                throw new LogSearchResult.InvalidCursorException(cursor, null);
+            }
+            try {
+                long startTimeInNanos = Long.parseLong(cursor.substring(0, separator));
+                long previousLogLines = Long.parseLong(cursor.substring(separator + 1));
+                if (startTimeInNanos < 0 || previousLogLines < 0) {
+                    throw new LogSearchResult.InvalidCursorException(cursor, null);
+                }
+                return new SearchCursor(startTimeInNanos, previousLogLines);
+            } catch (NumberFormatException e) {
+                throw new LogSearchResult.InvalidCursorException(cursor, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return startTimeInNanos + ":" + previousLogLines;
+        }
+    }
+
+    /**
+     * Page backward ({@code direction=backward}) from the end of the time range of the query and reverse the log lines
+     * in memory. Each page ends at the oldest log line of the previous page, inclusive, so that the log lines sharing
+     * its timestamp but not returned by the previous page aren't lost. The log lines of this timestamp already returned
+     * come first in the page, they are told apart by their position and dropped.
+     */
+    @Nullable
+    @Override
+    public LogTail<Long> tail(long minLengthInBytes) throws IOException {
+        Span span = tracer.spanBuilder("LokiBuildLogsLineIterator.tail")
+                .setAllAttributes(this.lokiQueryParameters.toAttributes())
+                .setAttribute("query.minLengthInBytes", minLengthInBytes)
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            List<LogLine<Long>> logLines = new ArrayList<>();
+            long lengthInBytes = 0;
+            long endTimeInNanos = lokiQueryParameters
+                    .getEndTimeInNanos()
+                    .orElseGet(() -> LokiGetJenkinsBuildLogsQueryParameters.instantToEpochNanos(Instant.now()));
+            // number of log lines of the previous pages at the last timestamp of the time range of the next page
+            int returnedLinesAtEndTime = 0;
+            boolean startOfLogReached = false;
+            while (lengthInBytes < minLengthInBytes && !startOfLogReached) {
+                if (queryCounter > MAX_QUERIES) {
+                    logger.log(Level.INFO, () -> "Circuit breaker: " + queryCounter + " queries for tail of "
+                            + this.lokiQueryParameters);
+                    return null;
+                }
+                LokiGetJenkinsBuildLogsQueryParameters pageQueryParameters =
+                        lokiQueryParameters.withTimeRange(initialStartTimeInNanos, endTimeInNanos);
+                pageQueryParameters.setBackward(true);
+                pageQueryParameters.setLimit(TAIL_PAGE_SIZE);
+
+                queryCounter++;
+                LogRetrievalMetrics.recordPage(LogsBackendValues.LOKI, LogsOperationValues.TAIL);
+                int pageSize = 0;
+                int retainedLines = 0;
+                int droppedLines = 0;
+                try (ClassicHttpResponse lokiQueryRangeResponse =
+                        httpClient.executeOpen(null, newQueryRangeRequest(pageQueryParameters), httpContext)) {
+                    HttpEntity entity = lokiQueryRangeResponse.getEntity();
+                    if (lokiQueryRangeResponse.getCode() != 200) {
+                        throw new IOException("Loki logs query failure: " + lokiQueryRangeResponse.getReasonPhrase()
+                                + " - " + EntityUtils.toString(entity));
+                    }
+                    if (entity == null) {
+                        break;
+                    }
+                    try (LokiQueryRangeResponseParser parser = new LokiQueryRangeResponseParser(entity.getContent())) {
+                        while (parser.hasNext()) {
+                            LogLine<Long> logLine = parser.next();
+                            pageSize++;
+                            if (logLine.getId() >= endTimeInNanos) {
+                                // the end of the time range is exclusive, ignore duplicates if it isn't
+                                continue;
+                            }
+                            if (logLine.getId() == endTimeInNanos - 1 && droppedLines < returnedLinesAtEndTime) {
+                                // returned by the previous page
+                                droppedLines++;
+                                continue;
+                            }
+                            logLines.add(logLine);
+                            lengthInBytes += logLine.getLengthInBytes();
+                            retainedLines++;
+                        }
+                    }
+                } catch (ParseException e) {
+                    throw new IOException(e);
+                }
+                if (pageSize > 0 && retainedLines == 0) {
+                    // can't page further back, all the lines of the page share the same timestamp
+                    return null;
+                }
+                startOfLogReached = pageSize < TAIL_PAGE_SIZE;
+                long oldestTimeInNanos = logLines.stream()
+                        .mapToLong(LogLine::getId)
+                        .min()
+                        .orElse(initialStartTimeInNanos);
+                returnedLinesAtEndTime = (int) logLines.stream()
+                        .filter(logLine -> logLine.getId() == oldestTimeInNanos)
+                        .count();
+                endTimeInNanos = oldestTimeInNanos + 1;
+            }
+            // stable sort, log lines sharing the same timestamp remain in the reverse of the backward order
+            Collections.reverse(logLines);
+            logLines.sort(Comparator.comparing(LogLine::getId));
+            span.setAttribute("response.size", logLines.size());
+            Long previousLogLineId =
+                    startOfLogReached || logLines.isEmpty() ? null : logLines.get(0).getId() - 1;
+            return new LogTail<>(logLines, previousLogLineId);
+        } catch (IOException | RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Retrieve in ascending order the log lines of the flow nodes of
+     * {@link LokiGetJenkinsBuildLogsQueryParameters#getFlowNodeIds()}, paginated with a query per
+     * {@link #FLOW_NODES_PAGE_SIZE} log lines, and group them by the flow node id of their stream labels.
+     *
+     * @return the log lines of each flow node identified by their timestamp, flow nodes without log lines are omitted.
+     * {@code null} if the flow nodes have more log lines than {@link #MAX_QUERIES} pages, the log lines of each flow
+     * node should then be retrieved separately
+     */
+    @CheckForNull
+    public Map<String, List<LogLine<Long>>> loadLogLinesByFlowNodeId() throws IOException {
+        Span span = tracer.spanBuilder("LokiBuildLogsLineIterator.loadLogLinesByFlowNodeId")
+                .setAllAttributes(this.lokiQueryParameters.toAttributes())
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            Map<String, List<LogLine<Long>>> logLinesByFlowNodeId = new LinkedHashMap<>();
+            int logLinesCount = 0;
+            boolean endOfLogReached = false;
+            while (!endOfLogReached) {
+                if (queryCounter > MAX_QUERIES) {
+                    logger.log(Level.FINE, () -> "Circuit breaker: " + queryCounter + " queries for "
+                            + this.lokiQueryParameters);
+                    span.addEvent("More than " + MAX_QUERIES + " queries");
+                    span.setAttribute("response.size", logLinesCount);
+                    return null;
+                }
+                LokiGetJenkinsBuildLogsQueryParameters pageQueryParameters = lokiQueryParameters.withTimeRange(
+                        lokiQueryParameters.getStartTimeInNanos(),
+                        lokiQueryParameters
+                                .getEndTimeInNanos()
+                                .orElseGet(() ->
+                                        LokiGetJenkinsBuildLogsQueryParameters.instantToEpochNanos(Instant.now())));
+                pageQueryParameters.setLimit(FLOW_NODES_PAGE_SIZE);
+
+                queryCounter++;
+                LogRetrievalMetrics.recordPage(LogsBackendValues.LOKI, getOperation());
+                int pageSize = 0;
+                try (ClassicHttpResponse lokiQueryRangeResponse =
+                        httpClient.executeOpen(null, newQueryRangeRequest(pageQueryParameters), httpContext)) {
+                    HttpEntity entity = lokiQueryRangeResponse.getEntity();
+                    if (lokiQueryRangeResponse.getCode() != 200) {
+                        throw new IOException("Loki logs query failure: " + lokiQueryRangeResponse.getReasonPhrase()
+                                + " - " + EntityUtils.toString(entity));
+                    }
+                    if (entity == null) {
+                        break;
+                    }
+                    try (LokiQueryRangeResponseParser parser = new LokiQueryRangeResponseParser(entity.getContent())) {
+                        while (parser.hasNext()) {
+                            LogLine<Long> logLine = parser.next();
+                            pageSize++;
+                            lokiQueryParameters.setStartTimeInNanos(
+                                    Math.max(lokiQueryParameters.getStartTimeInNanos(), logLine.getId() + 1));
+                            String flowNodeId = parser.getCurrentStreamLabels()
+                                    .get(LokiMetadata.META_DATA_JENKINS_PIPELINE_STEP_ID);
+                            if (flowNodeId != null) {
+                                logLinesByFlowNodeId
+                                        .computeIfAbsent(flowNodeId, id -> new ArrayList<>())
+                                        .add(logLine);
                             }
                         }
-                    });
+                    }
+                } catch (ParseException e) {
+                    throw new IOException(e);
+                }
+                logLinesCount += pageSize;
+                endOfLogReached = pageSize < FLOW_NODES_PAGE_SIZE;
+            }
+            // the log lines of the different streams of a page are not interleaved
+            logLinesByFlowNodeId.values().forEach(logLines -> logLines.sort(Comparator.comparing(LogLine::getId)));
+            span.setAttribute("response.size", logLinesCount);
+            span.setAttribute("response.flowNodes", logLinesByFlowNodeId.size());
+            return logLinesByFlowNodeId;
+        } catch (IOException | RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
         }
     }
 
     @Nonnull
     @VisibleForTesting
     protected Iterator<LogLine<Long>> loadLogLines(InputStream lokiQueryResponseInputStream) throws IOException {
-        Iterator<LogLine<Long>> logLineIterator =
-                JsonPath.<List<List<String>>>read(lokiQueryResponseInputStream, "$.data.result[*].values[*]").stream()
-                        .map(valueKeyPair -> {
-                            long timestampInNanos = Long.parseLong(valueKeyPair.get(0));
-                            String msg = valueKeyPair.get(1);
-                            if (timestampInNanos < lokiQueryParameters.getStartTimeInNanos()) {
-                                logger.log(
-                                        Level.INFO,
-                                        () -> "Unordered timestamps " + timestampInNanos + " < "
-                                                + lokiQueryParameters.getStartTimeInNanos() + " for "
-                                                + lokiQueryParameters);
-                            } else {
-                                lokiQueryParameters.setStartTimeInNanos(
-                                        timestampInNanos + 1); // +1 because `start` is >=
-                            }
-                            return new LogLine<>(timestampInNanos, msg);
-                        })
-                        .iterator();
+        return loadLogLines(lokiQueryResponseInputStream, Span.getInvalid());
+    }
+
+    /**
+     * Streams the {@code [timestamp, line, metadata]} tuples of the given Loki {@code query_range} response rather
+     * than loading the whole response in memory.
+     *
+     * @param span span of the query, the statistics of the query are recorded on it once all the log lines have been
+     *             read and it is ended when the returned iterator is closed
+     */
+    @Nonnull
+    protected Iterator<LogLine<Long>> loadLogLines(InputStream lokiQueryResponseInputStream, @NonNull Span span)
+            throws IOException {
+        LokiQueryRangeResponseParser lokiQueryRangeResponseParser =
+                new LokiQueryRangeResponseParser(lokiQueryResponseInputStream);
+        Iterator<LogLine<Long>> logLineIterator = new Iterator<>() {
+            int logLinesCount;
+            boolean statisticsRecorded;
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = lokiQueryRangeResponseParser.hasNext();
+                if (!hasNext && !statisticsRecorded) {
+                    statisticsRecorded = true;
+                    span.setAttribute("response.size", logLinesCount);
+                    LokiQueryStatistics statistics = lokiQueryRangeResponseParser.getStatistics();
+                    if (statistics != null) {
+                        statistics.record(span);
+                        logger.log(Level.FINE, () -> "Query " + lokiQueryParameters + ": " + statistics);
+                    }
+                }
+                return hasNext;
+            }
+
+            @Override
+            public LogLine<Long> next() {
+                LogLine<Long> logLine = lokiQueryRangeResponseParser.next();
+                logLinesCount++;
+                long timestampInNanos = logLine.getId();
+                if (timestampInNanos < lokiQueryParameters.getStartTimeInNanos()) {
+                    logger.log(
+                            Level.INFO,
+                            () -> "Unordered timestamps " + timestampInNanos + " < "
+                                    + lokiQueryParameters.getStartTimeInNanos() + " for " + lokiQueryParameters);
+                } else {
+                    lokiQueryParameters.setStartTimeInNanos(timestampInNanos + 1); // +1 because `start` is >=
+                }
+                return logLine;
+            }
+        };
 
-        return new CloseableIterator<>(logLineIterator, lokiQueryResponseInputStream);
+        return new CloseableIterator<>(logLineIterator, () -> {
+            try {
+                lokiQueryRangeResponseParser.close();
+            } finally {
+                span.end();
+            }
+        });
     }
 
+    /**
+     * Skip the log lines up to the given timestamp, advancing within the current page when it contains the target
+     * line and jumping to the timestamp with a new query otherwise.
+     */
     @Override
     public void skipLines(Long lastLogTimestampInNanos) {
         Tracer tracer = logger.isLoggable(Level.FINE)
@@ -185,12 +772,12 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
                 .setAllAttributes(this.lokiQueryParameters.toAttributes())
                 .setAttribute("lastLogTimestampInNanos", lastLogTimestampInNanos)
                 .startSpan();
-        long newStartTimeInNanos = lastLogTimestampInNanos + 1;
         try {
-            if (this.delegate == null) {
-                span.setAttribute("skippedLines", -1);
-                lokiQueryParameters.setStartTimeInNanos(newStartTimeInNanos);
-            } else {
+            if (peekedLogLine != null && peekedLogLine.getId() > lastLogTimestampInNanos) {
+                span.setAttribute("skippedLines", 0);
+                return;
+            }
+            if (this.delegate != null) {
                 /*
                  * Happens when invoked by:
                  * GET /job/:jobFullName/:runNumber/consoleText
@@ -201,27 +788,63 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
                  *
                  * When invoked by "/job/:jobFullName/:runNumber/consoleText", it's the second call to LargeText.writeLogTo() and it's EOF
                  */
+                int skippedLines = 0;
+                while (peekedLogLine != null || delegate.hasNext()) {
+                    LogLine<Long> logLine = peekedLogLine != null ? peekedLogLine : delegate.next();
+                    peekedLogLine = null;
+                    if (logLine.getId() > lastLogTimestampInNanos) {
+                        peekedLogLine = logLine;
+                        span.setAttribute("skippedLines", skippedLines);
+                        return;
+                    }
+                    skippedLines++;
+                }
+                span.setAttribute("skippedLines", skippedLines);
+            } else {
                 span.setAttribute("skippedLines", -1);
-                lokiQueryParameters.setStartTimeInNanos(newStartTimeInNanos);
-                this.delegate = null; // TODO optimize to skip lines in the current delegate
             }
+            // the target line is beyond the current page
+            jumpTo(lastLogTimestampInNanos + 1);
         } finally {
             span.end();
         }
     }
 
+    /**
+     * Drop the current page and restart the retrieval at the given timestamp
+     */
+    void jumpTo(long startTimeInNanos) {
+        closeDelegate();
+        this.delegate = null;
+        this.peekedLogLine = null;
+        this.endOfStream = false;
+        lokiQueryParameters.setStartTimeInNanos(startTimeInNanos);
+    }
+
     @Override
     public boolean hasNext() {
-        return getCurrentIterator().hasNext();
+        return peekedLogLine != null || getCurrentIterator().hasNext();
+    }
+
+    @Override
+    public boolean isTruncated() {
+        return truncated;
     }
 
     @Override
     public LogLine<Long> next() {
+        if (peekedLogLine != null) {
+            LogLine<Long> logLine = peekedLogLine;
+            peekedLogLine = null;
+            return logLine;
+        }
         return getCurrentIterator().next();
     }
 
-    @Override
-    public void close() throws Exception {
+    /**
+     * Release the HTTP response backing the current page
+     */
+    void closeDelegate() {
         if (delegate instanceof AutoCloseable) {
             try {
                 ((AutoCloseable) delegate).close();
@@ -229,10 +852,13 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
                 logger.log(Level.WARNING, "Failed to close delegate for " + lokiQueryParameters, e);
             }
         }
-        try {
-            this.httpClient.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    }
+
+    /**
+     * Release the HTTP response of the current page, the HTTP client is owned by the {@link LokiLogStorageRetriever}
+     */
+    @Override
+    public void close() {
+        closeDelegate();
     }
 }
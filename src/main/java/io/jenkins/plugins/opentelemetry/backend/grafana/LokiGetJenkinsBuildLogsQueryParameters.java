@@ -5,18 +5,21 @@
 
 package io.jenkins.plugins.opentelemetry.backend.grafana;
 
-import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.LABEL_SERVICE_NAME;
-import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.LABEL_SERVICE_NAMESPACE;
 import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.META_DATA_CI_PIPELINE_ID;
 import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.META_DATA_CI_PIPELINE_RUN_NUMBER;
 import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.META_DATA_JENKINS_PIPELINE_STEP_ID;
 import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.META_DATA_TRACE_ID;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.common.AttributesBuilder;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import javax.annotation.Nonnull;
@@ -47,6 +50,35 @@ public class LokiGetJenkinsBuildLogsQueryParameters {
     @NonNull
     private final Optional<String> serviceNamespace;
 
+    /**
+     * Max number of lines returned per query, Loki's default ({@code 100}) if empty
+     */
+    @NonNull
+    private Optional<Integer> limit = Optional.empty();
+
+    /**
+     * Strings that the returned log lines must contain
+     */
+    @NonNull
+    private List<String> lineFilters = Collections.emptyList();
+
+    /**
+     * Flow nodes of which the log lines are retrieved with a single query, the stream labels of the returned log lines
+     * then contain the flow node id
+     */
+    @NonNull
+    private Set<String> flowNodeIds = Collections.emptySet();
+
+    /**
+     * Keep the flow node id in the stream labels of the returned log lines
+     */
+    private boolean keepFlowNodeId;
+
+    /**
+     * Return the most recent log lines first ({@code direction=backward}), the oldest first if {@code false}
+     */
+    private boolean backward;
+
     public LokiGetJenkinsBuildLogsQueryParameters(
             @NonNull String jobFullName,
             int runNumber,
@@ -66,33 +98,47 @@ public class LokiGetJenkinsBuildLogsQueryParameters {
         this.serviceNamespace = serviceNamespace;
     }
 
+    private LokiGetJenkinsBuildLogsQueryParameters(
+            @NonNull LokiGetJenkinsBuildLogsQueryParameters other,
+            long startTimeInNanos,
+            @NonNull Optional<Long> endTimeInNanos) {
+        this.jobFullName = other.jobFullName;
+        this.runNumber = other.runNumber;
+        this.traceId = other.traceId;
+        this.flowNodeId = other.flowNodeId;
+        this.startTimeInNanos = startTimeInNanos;
+        this.endTimeInNanos = endTimeInNanos;
+        this.serviceName = other.serviceName;
+        this.serviceNamespace = other.serviceNamespace;
+        this.limit = other.limit;
+        this.lineFilters = other.lineFilters;
+        this.flowNodeIds = other.flowNodeIds;
+        this.keepFlowNodeId = other.keepFlowNodeId;
+        this.backward = other.backward;
+    }
+
+    /**
+     * @return a copy of these query parameters restricted to the {@code [startTimeInNanos, endTimeInNanos)} time range
+     */
+    @NonNull
+    public LokiGetJenkinsBuildLogsQueryParameters withTimeRange(long startTimeInNanos, long endTimeInNanos) {
+        return new LokiGetJenkinsBuildLogsQueryParameters(this, startTimeInNanos, Optional.of(endTimeInNanos));
+    }
+
     public ClassicHttpRequest toHttpRequest(@Nonnull String lokiUrl) {
         // https://grafana.com/docs/loki/latest/reference/loki-http-api/#query-logs-within-a-range-of-time
 
-        final StringBuilder logQl = new StringBuilder("{");
-        serviceNamespace.ifPresent(serviceNamespace -> logQl.append(LABEL_SERVICE_NAMESPACE)
-                .append("=\"")
-                .append(serviceNamespace)
-                .append("\", "));
-        logQl.append(LABEL_SERVICE_NAME + "=\"" + serviceName + "\"}");
-
-        logQl.append("|" + META_DATA_TRACE_ID
-                + "=\"" + traceId + "\", " + META_DATA_CI_PIPELINE_ID
-                + "=\"" + jobFullName + "\", " + META_DATA_CI_PIPELINE_RUN_NUMBER
-                + "=" + runNumber);
-        flowNodeId.ifPresent(
-                flowNodeId -> logQl.append(", " + META_DATA_JENKINS_PIPELINE_STEP_ID + "=\"" + flowNodeId + "\""));
-
-        logQl.append(" | keep __line__");
+        String logQl = LokiLogQlQueryPlanner.INSTANCE.plan(this);
 
         ClassicRequestBuilder lokiQueryRangeRequestBuilder = ClassicRequestBuilder.get()
                 .setUri(lokiUrl + "/loki/api/v1/query_range")
-                .addParameter("query", logQl.toString())
+                .addParameter("query", logQl)
                 .addParameter("start", startTimeInNanos + "")
-                .addParameter("direction", "forward");
+                .addParameter("direction", backward ? "backward" : "forward");
 
         endTimeInNanos.ifPresent(
                 endTimeInNanos -> lokiQueryRangeRequestBuilder.addParameter("end", String.valueOf(endTimeInNanos)));
+        limit.ifPresent(limit -> lokiQueryRangeRequestBuilder.addParameter("limit", String.valueOf(limit)));
 
         return lokiQueryRangeRequestBuilder.build();
     }
@@ -104,13 +150,92 @@ public class LokiGetJenkinsBuildLogsQueryParameters {
         attributesBuilder.put("query." + META_DATA_CI_PIPELINE_RUN_NUMBER, runNumber);
         flowNodeId.ifPresent(
                 flowNodeId -> attributesBuilder.put("query." + META_DATA_JENKINS_PIPELINE_STEP_ID, flowNodeId));
+        if (!flowNodeIds.isEmpty()) {
+            attributesBuilder.put(
+                    AttributeKey.stringArrayKey("query." + META_DATA_JENKINS_PIPELINE_STEP_ID + "s"),
+                    List.copyOf(flowNodeIds));
+        }
 
         attributesBuilder.put("query.startTimeInNanos", startTimeInNanos);
         endTimeInNanos.ifPresent(endTimeInNanos -> attributesBuilder.put("query.endTimeInNanos", endTimeInNanos));
+        limit.ifPresent(limit -> attributesBuilder.put("query.limit", limit));
+        if (backward) {
+            attributesBuilder.put("query.direction", "backward");
+        }
+        if (!lineFilters.isEmpty()) {
+            attributesBuilder.put(AttributeKey.stringArrayKey("query.lineFilters"), lineFilters);
+        }
 
         return attributesBuilder.build();
     }
 
+    @NonNull
+    public String getJobFullName() {
+        return jobFullName;
+    }
+
+    public int getRunNumber() {
+        return runNumber;
+    }
+
+    @NonNull
+    public Optional<String> getFlowNodeId() {
+        return flowNodeId;
+    }
+
+    @NonNull
+    public Set<String> getFlowNodeIds() {
+        return flowNodeIds;
+    }
+
+    /**
+     * Return the log lines of any of the given flow nodes
+     */
+    public void setFlowNodeIds(@NonNull Set<String> flowNodeIds) {
+        this.flowNodeIds = Collections.unmodifiableSet(flowNodeIds);
+    }
+
+    /**
+     * @return {@code true} if the flow node id must be kept in the stream labels of the returned log lines, always the
+     * case when retrieving the log lines of several flow nodes
+     */
+    public boolean isKeepFlowNodeId() {
+        return keepFlowNodeId || !flowNodeIds.isEmpty();
+    }
+
+    public void setKeepFlowNodeId(boolean keepFlowNodeId) {
+        this.keepFlowNodeId = keepFlowNodeId;
+    }
+
+    @NonNull
+    public String getTraceId() {
+        return traceId;
+    }
+
+    @NonNull
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    @NonNull
+    public Optional<String> getServiceNamespace() {
+        return serviceNamespace;
+    }
+
+    @NonNull
+    public List<String> getLineFilters() {
+        return lineFilters;
+    }
+
+    /**
+     * Only return the log lines containing the given string
+     */
+    public void addLineFilter(@NonNull String lineFilter) {
+        List<String> lineFilters = new ArrayList<>(this.lineFilters);
+        lineFilters.add(lineFilter);
+        this.lineFilters = Collections.unmodifiableList(lineFilters);
+    }
+
     public void setStartTimeInNanos(long startTimeInNanos) {
         this.startTimeInNanos = startTimeInNanos;
     }
@@ -120,15 +245,41 @@ public class LokiGetJenkinsBuildLogsQueryParameters {
         return startTimeInNanos;
     }
 
+    @NonNull
+    public Optional<Long> getEndTimeInNanos() {
+        return endTimeInNanos;
+    }
+
+    @NonNull
+    public Optional<Integer> getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = Optional.of(limit);
+    }
+
+    public boolean isBackward() {
+        return backward;
+    }
+
+    public void setBackward(boolean backward) {
+        this.backward = backward;
+    }
+
     @Override
     public String toString() {
         return "LokiGetJenkinsBuildLogsQueryParameters{" + "jobFullName='"
                 + jobFullName + '\'' + ", runNumber="
                 + runNumber + ", traceId='"
                 + traceId + '\'' + ", flowNodeId="
-                + flowNodeId + ", startTimeInNanos="
+                + flowNodeId + ", flowNodeIds="
+                + flowNodeIds + ", startTimeInNanos="
                 + startTimeInNanos + ", endTimeInNanos="
-                + endTimeInNanos + ", serviceName='"
+                + endTimeInNanos + ", limit="
+                + limit + ", backward="
+                + backward + ", lineFilters="
+                + lineFilters + ", serviceName='"
                 + serviceName + '\'' + ", serviceNamespace="
                 + serviceNamespace + '}';
     }
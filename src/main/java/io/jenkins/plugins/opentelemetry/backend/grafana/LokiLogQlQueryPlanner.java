@@ -0,0 +1,157 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.grafana;
+
+import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.LABEL_SERVICE_NAME;
+import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.LABEL_SERVICE_NAMESPACE;
+import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.META_DATA_CI_PIPELINE_ID;
+import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.META_DATA_CI_PIPELINE_RUN_NUMBER;
+import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.META_DATA_JENKINS_PIPELINE_STEP_ID;
+import static io.jenkins.plugins.opentelemetry.backend.grafana.LokiMetadata.META_DATA_TRACE_ID;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * Builds the LogQL query retrieving the logs of a pipeline run or of a flow node, ordering the stages so that Loki
+ * reads as few chunks and decodes as little structured metadata as possible:
+ * </p>
+ * <ol>
+ *     <li>
+ *         Stream selector made of the service labels and of the Jenkins metadata promoted to stream labels by the
+ *         OpenTelemetry Collector (see {@link #STREAM_LABELS_PROPERTY}). Stream labels are indexed, they restrict the
+ *         chunks Loki has to fetch.
+ *     </li>
+ *     <li>Line filters, evaluated on the raw log line before any metadata is decoded.</li>
+ *     <li>
+ *         Structured metadata filters, from the most selective (flow node id, trace id) to the least selective,
+ *         string matchers before the numeric comparison of the run number.
+ *     </li>
+ *     <li>
+ *         {@code keep __line__} to drop the labels from the response, the flow node id is kept when the logs of
+ *         several flow nodes are retrieved at once or when searching the logs.
+ *     </li>
+ * </ol>
+ */
+public class LokiLogQlQueryPlanner {
+
+    /**
+     * Comma separated list of the Jenkins metadata ({@code trace_id}, {@code ci_pipeline_id},
+     * {@code ci_pipeline_run_number}, {@code jenkins_pipeline_step_id}) that are stream labels rather than structured
+     * metadata in Loki.
+     */
+    public static final String STREAM_LABELS_PROPERTY = LokiLogQlQueryPlanner.class.getName() + ".streamLabels";
+
+    static final LokiLogQlQueryPlanner INSTANCE = new LokiLogQlQueryPlanner(
+            Arrays.stream(System.getProperty(STREAM_LABELS_PROPERTY, "").split(","))
+                    .map(String::trim)
+                    .filter(label -> !label.isEmpty())
+                    .collect(Collectors.toSet()));
+
+    @NonNull
+    private final Set<String> streamLabels;
+
+    LokiLogQlQueryPlanner(@NonNull Set<String> streamLabels) {
+        this.streamLabels = streamLabels;
+    }
+
+    @NonNull
+    public String plan(@NonNull LokiGetJenkinsBuildLogsQueryParameters queryParameters) {
+        List<String> streamMatchers = new ArrayList<>();
+        queryParameters
+                .getServiceNamespace()
+                .ifPresent(serviceNamespace ->
+                        streamMatchers.add(equalsMatcher(LABEL_SERVICE_NAMESPACE, serviceNamespace)));
+        streamMatchers.add(equalsMatcher(LABEL_SERVICE_NAME, queryParameters.getServiceName()));
+
+        // most selective first
+        Map<String, String> jenkinsMetadata = new LinkedHashMap<>();
+        queryParameters
+                .getFlowNodeId()
+                .ifPresent(flowNodeId -> jenkinsMetadata.put(META_DATA_JENKINS_PIPELINE_STEP_ID, flowNodeId));
+        jenkinsMetadata.put(META_DATA_TRACE_ID, queryParameters.getTraceId());
+        jenkinsMetadata.put(META_DATA_CI_PIPELINE_ID, queryParameters.getJobFullName());
+
+        List<String> metadataFilters = new ArrayList<>();
+        Set<String> flowNodeIds = queryParameters.getFlowNodeIds();
+        if (!flowNodeIds.isEmpty()) {
+            String flowNodeIdsMatcher = regexMatcher(META_DATA_JENKINS_PIPELINE_STEP_ID, flowNodeIds);
+            if (streamLabels.contains(META_DATA_JENKINS_PIPELINE_STEP_ID)) {
+                streamMatchers.add(flowNodeIdsMatcher);
+            } else {
+                metadataFilters.add(flowNodeIdsMatcher);
+            }
+        }
+        jenkinsMetadata.forEach((name, value) -> {
+            if (streamLabels.contains(name)) {
+                streamMatchers.add(equalsMatcher(name, value));
+            } else {
+                metadataFilters.add(equalsMatcher(name, value));
+            }
+        });
+        if (streamLabels.contains(META_DATA_CI_PIPELINE_RUN_NUMBER)) {
+            streamMatchers.add(
+                    equalsMatcher(META_DATA_CI_PIPELINE_RUN_NUMBER, String.valueOf(queryParameters.getRunNumber())));
+        } else {
+            metadataFilters.add(META_DATA_CI_PIPELINE_RUN_NUMBER + "=" + queryParameters.getRunNumber());
+        }
+
+        StringBuilder logQl = new StringBuilder("{").append(String.join(", ", streamMatchers)).append("}");
+        for (String lineFilter : queryParameters.getLineFilters()) {
+            logQl.append(" |= ").append(quote(lineFilter));
+        }
+        if (!metadataFilters.isEmpty()) {
+            logQl.append(" | ").append(String.join(", ", metadataFilters));
+        }
+        logQl.append(" | keep __line__");
+        if (queryParameters.isKeepFlowNodeId()) {
+            logQl.append(", ").append(META_DATA_JENKINS_PIPELINE_STEP_ID);
+        }
+        return logQl.toString();
+    }
+
+    /**
+     * @return a matcher of the label or metadata equal to any of the given values
+     */
+    @NonNull
+    static String regexMatcher(@NonNull String name, @NonNull Collection<String> values) {
+        String regex = values.stream()
+                .map(value -> value.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0"))
+                .collect(Collectors.joining("|"));
+        return name + "=~" + quote(regex);
+    }
+
+    /**
+     * @return a metric query counting the log lines of the given query over the given range, evaluated as an instant
+     * query, the range ending at the evaluation time. The range is expressed in nanoseconds so that the log lines of
+     * the same millisecond are told apart
+     */
+    @NonNull
+    public String planCount(@NonNull LokiGetJenkinsBuildLogsQueryParameters queryParameters, long rangeInNanos) {
+        return "sum(count_over_time(" + plan(queryParameters) + " [" + rangeInNanos + "ns]))";
+    }
+
+    @NonNull
+    static String equalsMatcher(@NonNull String name, @NonNull String value) {
+        return name + "=" + quote(value);
+    }
+
+    /**
+     * @return the given value as a LogQL double-quoted string
+     */
+    @NonNull
+    static String quote(@NonNull String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
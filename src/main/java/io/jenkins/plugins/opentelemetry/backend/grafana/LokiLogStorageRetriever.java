@@ -8,15 +8,25 @@ package io.jenkins.plugins.opentelemetry.backend.grafana;
 import com.google.errorprone.annotations.MustBeClosed;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import groovy.text.Template;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
+import hudson.util.NamingThreadFactory;
 import io.jenkins.plugins.opentelemetry.TemplateBindingsProvider;
 import io.jenkins.plugins.opentelemetry.backend.GrafanaBackend;
 import io.jenkins.plugins.opentelemetry.backend.ObservabilityBackend;
 import io.jenkins.plugins.opentelemetry.jenkins.HttpAuthHeaderFactory;
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.jenkins.plugins.opentelemetry.job.log.LogSearchResult;
 import io.jenkins.plugins.opentelemetry.job.log.LogStorageRetriever;
 import io.jenkins.plugins.opentelemetry.job.log.LogsQueryResult;
 import io.jenkins.plugins.opentelemetry.job.log.LogsViewHeader;
+import io.jenkins.plugins.opentelemetry.job.log.util.HttpConnectionPoolConfiguration;
+import io.jenkins.plugins.opentelemetry.job.log.util.HttpConnectionPoolInstrumentation;
 import io.jenkins.plugins.opentelemetry.job.log.util.InputStreamByteBuffer;
+import io.jenkins.plugins.opentelemetry.job.log.util.InstrumentedHttpClientConnectionManager;
+import io.jenkins.plugins.opentelemetry.job.log.util.ListLogLineIterator;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogBytesToLogLineIdIndex;
 import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIterator;
 import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIteratorInputStream;
 import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
@@ -26,6 +36,7 @@ import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
 import io.opentelemetry.context.Scope;
 import io.opentelemetry.instrumentation.apachehttpclient.v5_2.ApacheHttpClientTelemetry;
 import java.io.Closeable;
@@ -35,9 +46,14 @@ import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nonnull;
@@ -65,6 +81,32 @@ import org.kohsuke.stapler.framework.io.ByteBuffer;
 public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
     private static final Logger logger = Logger.getLogger(LokiLogStorageRetriever.class.getName());
 
+    /**
+     * Retrieve the logs of completed builds with concurrent time sharded queries,
+     * see {@link LokiShardedBuildLogsLineIterator}
+     */
+    public static final String SHARDED_QUERIES_PROPERTY =
+            LokiLogStorageRetriever.class.getName() + ".shardedQueries.enabled";
+
+    public static final String SHARDED_QUERIES_PARALLELISM_PROPERTY =
+            LokiLogStorageRetriever.class.getName() + ".shardedQueries.parallelism";
+    public static final String SHARDED_QUERIES_LINES_PER_SHARD_PROPERTY =
+            LokiLogStorageRetriever.class.getName() + ".shardedQueries.linesPerShard";
+    public static final String SHARDED_QUERIES_INITIAL_SHARD_DURATION_PROPERTY =
+            LokiLogStorageRetriever.class.getName() + ".shardedQueries.initialShardDurationInSeconds";
+    public static final boolean SHARDED_QUERIES =
+            Boolean.parseBoolean(System.getProperty(SHARDED_QUERIES_PROPERTY, "false"));
+    public static final int SHARDED_QUERIES_PARALLELISM =
+            Integer.parseInt(System.getProperty(SHARDED_QUERIES_PARALLELISM_PROPERTY, "4"));
+    /**
+     * Loki's default `max_entries_limit_per_query` is 5000
+     */
+    public static final int SHARDED_QUERIES_LINES_PER_SHARD =
+            Integer.parseInt(System.getProperty(SHARDED_QUERIES_LINES_PER_SHARD_PROPERTY, "1000"));
+
+    public static final int SHARDED_QUERIES_INITIAL_SHARD_DURATION_IN_SECONDS =
+            Integer.parseInt(System.getProperty(SHARDED_QUERIES_INITIAL_SHARD_DURATION_PROPERTY, "60"));
+
     private final Template buildLogsVisualizationUrlTemplate;
 
     private final TemplateBindingsProvider templateBindingsProvider;
@@ -79,6 +121,9 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
     private final OpenTelemetry openTelemetry;
     private final Tracer tracer;
 
+    @Nullable
+    private final ExecutorService shardedQueriesExecutorService;
+
     @MustBeClosed
     public LokiLogStorageRetriever(
             @Nonnull String lokiUrl,
@@ -101,8 +146,16 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
         this.openTelemetry = GlobalOpenTelemetry.get();
         this.tracer = openTelemetry.getTracer(ExtendedJenkinsAttributes.INSTRUMENTATION_NAME);
 
-        HttpClientBuilder httpClientBuilder =
-                ApacheHttpClientTelemetry.create(openTelemetry).newHttpClientBuilder();
+        // long-lived connection pool shared by all the log retrievals, closed with the retriever
+        HttpConnectionPoolConfiguration connectionPoolConfiguration =
+                HttpConnectionPoolConfiguration.fromSystemProperties(LokiLogStorageRetriever.class);
+        if (connectionPoolConfiguration.isHttp2()) {
+            logger.log(Level.INFO, () -> "HTTP/2 not supported by the Loki log storage retriever, use HTTP/1.1");
+        }
+        PoolingHttpClientConnectionManagerBuilder connectionManagerBuilder =
+                PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnPerRoute(connectionPoolConfiguration.getMaxConnectionsPerRoute())
+                        .setMaxConnTotal(connectionPoolConfiguration.getMaxConnectionsTotal());
         if (disableSslVerifications) {
             try {
                 SSLContext sslContext = new SSLContextBuilder()
@@ -110,17 +163,34 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
                         .build();
                 SSLConnectionSocketFactory sslConnectionSocketFactory =
                         new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
-                PoolingHttpClientConnectionManager cm = PoolingHttpClientConnectionManagerBuilder.create()
-                        .setSSLSocketFactory(sslConnectionSocketFactory)
-                        .build();
-                httpClientBuilder.setConnectionManager(cm);
+                connectionManagerBuilder.setSSLSocketFactory(sslConnectionSocketFactory);
             } catch (GeneralSecurityException e) {
                 logger.log(Level.WARNING, "IllegalStateException: failure to disable SSL certs verification");
             }
         }
+        PoolingHttpClientConnectionManager connectionManager = connectionManagerBuilder.build();
+        HttpConnectionPoolInstrumentation connectionPoolInstrumentation = new HttpConnectionPoolInstrumentation(
+                ExtendedJenkinsAttributes.LogsBackendValues.LOKI,
+                connectionManager,
+                connectionPoolConfiguration,
+                openTelemetry);
+        HttpClientBuilder httpClientBuilder = ApacheHttpClientTelemetry.create(openTelemetry)
+                .newHttpClientBuilder()
+                .setConnectionManager(
+                        new InstrumentedHttpClientConnectionManager(connectionManager, connectionPoolInstrumentation));
 
         this.httpClient = httpClientBuilder.build();
 
+        if (SHARDED_QUERIES) {
+            this.shardedQueriesExecutorService = Context.taskWrapping(Executors.newFixedThreadPool(
+                    SHARDED_QUERIES_PARALLELISM,
+                    new NamingThreadFactory(
+                            new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()),
+                            LokiLogStorageRetriever.class.getName() + ".shardedQueries")));
+        } else {
+            this.shardedQueriesExecutorService = null;
+        }
+
         this.buildLogsVisualizationUrlTemplate = buildLogsVisualizationUrlTemplate;
         this.templateBindingsProvider = templateBindingsProvider;
     }
@@ -154,19 +224,18 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
                             .setServiceName(serviceName)
                             .setServiceNamespace(serviceNamespace)
                             .build();
-            LogLineIterator<Long> logLines = new LokiBuildLogsLineIterator(
-                    lokiQueryParameters,
-                    httpClient,
-                    httpContext,
-                    lokiUrl,
-                    httpAuthHeaderFactory,
-                    lokiTenantId,
-                    openTelemetry.getTracer(ExtendedJenkinsAttributes.INSTRUMENTATION_NAME));
+            LogLineIterator<Long> logLines = newLogLineIterator(
+                    lokiQueryParameters, openTelemetry.getTracer(ExtendedJenkinsAttributes.INSTRUMENTATION_NAME));
 
-            LogLineIterator.JenkinsHttpSessionLineBytesToLogLineIdMapper<Long> lineBytesToLineNumberConverter =
-                    new LogLineIterator.JenkinsHttpSessionLineBytesToLogLineIdMapper<>(jobFullName, runNumber, null);
+            LogLineIterator.LogLineBytesToLogLineIdMapper<Long> lineBytesToLineNumberConverter =
+                    LogBytesToLogLineIdIndex.get(jobFullName, runNumber, null);
             InputStream lineIteratorInputStream =
-                    new LogLineIteratorInputStream<>(logLines, lineBytesToLineNumberConverter, tracer);
+                    new LogLineIteratorInputStream<>(
+                            logLines,
+                            lineBytesToLineNumberConverter,
+                            tracer,
+                            ExtendedJenkinsAttributes.LogsBackendValues.LOKI,
+                            ExtendedJenkinsAttributes.LogsOperationValues.OVERALL);
             ByteBuffer byteBuffer = new InputStreamByteBuffer(lineIteratorInputStream, tracer);
 
             Map<String, Object> localBindings = Map.of(
@@ -235,19 +304,18 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
                             .setServiceName(serviceName)
                             .setServiceNamespace(serviceNamespace)
                             .build();
-            LogLineIterator<Long> logLines = new LokiBuildLogsLineIterator(
-                    lokiQueryParameters,
-                    httpClient,
-                    httpContext,
-                    lokiUrl,
-                    httpAuthHeaderFactory,
-                    lokiTenantId,
-                    openTelemetry.getTracer("io.jenkins"));
+            LogLineIterator<Long> logLines =
+                    newLogLineIterator(lokiQueryParameters, openTelemetry.getTracer("io.jenkins"));
 
             LogLineIterator.LogLineBytesToLogLineIdMapper<Long> logLineBytesToLogLineIdMapper =
-                    new LogLineIterator.JenkinsHttpSessionLineBytesToLogLineIdMapper<>(jobFullName, runNumber, null);
+                    LogBytesToLogLineIdIndex.get(jobFullName, runNumber, flowNodeId);
             InputStream logLineIteratorInputStream =
-                    new LogLineIteratorInputStream<>(logLines, logLineBytesToLogLineIdMapper, tracer);
+                    new LogLineIteratorInputStream<>(
+                            logLines,
+                            logLineBytesToLogLineIdMapper,
+                            tracer,
+                            ExtendedJenkinsAttributes.LogsBackendValues.LOKI,
+                            ExtendedJenkinsAttributes.LogsOperationValues.STEP);
             ByteBuffer byteBuffer = new InputStreamByteBuffer(logLineIteratorInputStream, tracer);
 
             Map<String, Object> localBindings = Map.of(
@@ -284,6 +352,185 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
         }
     }
 
+    /**
+     * Retrieve the log lines of all the flow nodes with a single paginated query using a regex matcher on the flow
+     * node id. The log lines are held in memory and served to each flow node log.
+     * When the flow nodes have too many log lines, the logs of each flow node are retrieved separately.
+     */
+    @Nonnull
+    @Override
+    public Map<String, LogsQueryResult> stepLogs(
+            String jobFullName,
+            int runNumber,
+            Set<String> flowNodeIds,
+            String traceId,
+            String spanId,
+            boolean complete,
+            Instant startTime,
+            @Nullable Instant endTime)
+            throws IOException {
+        SpanBuilder spanBuilder = tracer.spanBuilder("LokiLogStorageRetriever.stepLogs")
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_ID, jobFullName)
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_RUN_NUMBER, (long) runNumber)
+                .setAttribute("flowNodes", flowNodeIds.size())
+                .setAttribute("complete", complete);
+
+        Span span = spanBuilder.startSpan();
+
+        try (Scope ignored = span.makeCurrent()) {
+
+            LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters =
+                    new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                            .setJobFullName(jobFullName)
+                            .setRunNumber(runNumber)
+                            .setTraceId(traceId)
+                            .setStartTime(startTime)
+                            .setEndTime(endTime)
+                            .setServiceName(serviceName)
+                            .setServiceNamespace(serviceNamespace)
+                            .build();
+            lokiQueryParameters.setFlowNodeIds(flowNodeIds);
+            Map<String, List<LogLine<Long>>> logLinesByFlowNodeId;
+            try (LokiBuildLogsLineIterator logLines = new LokiBuildLogsLineIterator(
+                    lokiQueryParameters,
+                    httpClient,
+                    httpContext,
+                    lokiUrl,
+                    httpAuthHeaderFactory,
+                    lokiTenantId,
+                    tracer)) {
+                logLinesByFlowNodeId = logLines.loadLogLinesByFlowNodeId();
+            }
+            if (logLinesByFlowNodeId == null) {
+                // too many log lines to hold in memory at once
+                span.setAttribute("fallback", true);
+                return LogStorageRetriever.super.stepLogs(
+                        jobFullName, runNumber, flowNodeIds, traceId, spanId, complete, startTime, endTime);
+            }
+
+            Map<String, Object> localBindings = Map.of(
+                    ObservabilityBackend.TemplateBindings.TRACE_ID, traceId,
+                    ObservabilityBackend.TemplateBindings.SPAN_ID, spanId,
+                    ObservabilityBackend.TemplateBindings.START_TIME, startTime,
+                    ObservabilityBackend.TemplateBindings.END_TIME,
+                            Optional.ofNullable(endTime)
+                                    .or(() -> Optional.of(Instant.now()))
+                                    .get());
+
+            Map<String, Object> bindings = TemplateBindingsProvider.compose(
+                            this.templateBindingsProvider, localBindings)
+                    .getBindings();
+            String logsVisualizationUrl =
+                    this.buildLogsVisualizationUrlTemplate.make(bindings).toString();
+            LogsViewHeader logsViewHeader = new LogsViewHeader(
+                    bindings.get(GrafanaBackend.TemplateBindings.BACKEND_NAME).toString(),
+                    logsVisualizationUrl,
+                    bindings.get(GrafanaBackend.TemplateBindings.BACKEND_24_24_ICON_URL)
+                            .toString());
+
+            Map<String, LogsQueryResult> logsQueryResults = new LinkedHashMap<>();
+            for (String flowNodeId : flowNodeIds) {
+                LogLineIterator<Long> flowNodeLogLines =
+                        new ListLogLineIterator<>(logLinesByFlowNodeId.getOrDefault(flowNodeId, List.of()));
+                LogLineIterator.LogLineBytesToLogLineIdMapper<Long> logLineBytesToLogLineIdMapper =
+                        LogBytesToLogLineIdIndex.get(jobFullName, runNumber, flowNodeId);
+                InputStream logLineIteratorInputStream =
+                        new LogLineIteratorInputStream<>(
+                                flowNodeLogLines,
+                                logLineBytesToLogLineIdMapper,
+                                tracer,
+                                ExtendedJenkinsAttributes.LogsBackendValues.LOKI,
+                                ExtendedJenkinsAttributes.LogsOperationValues.STEP);
+                ByteBuffer byteBuffer = new InputStreamByteBuffer(logLineIteratorInputStream, tracer);
+                logsQueryResults.put(
+                        flowNodeId,
+                        new LogsQueryResult(byteBuffer, logsViewHeader, StandardCharsets.UTF_8, complete));
+            }
+            return logsQueryResults;
+        } catch (IOException | RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR, e.getMessage());
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Search with a {@code |=} line filter, the cursor is the start time in nanoseconds of the query of the next page
+     * and the number of log lines before it
+     */
+    @Nonnull
+    @Override
+    public LogSearchResult search(
+            String jobFullName,
+            int runNumber,
+            String traceId,
+            String phrase,
+            @Nullable String cursor,
+            int pageSize,
+            Instant startTime,
+            @Nullable Instant endTime)
+            throws IOException {
+        SpanBuilder spanBuilder = tracer.spanBuilder("LokiLogStorageRetriever.search")
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_ID, jobFullName)
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_RUN_NUMBER, (long) runNumber);
+
+        Span span = spanBuilder.startSpan();
+
+        try (Scope ignored = span.makeCurrent()) {
+            LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters =
+                    new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                            .setJobFullName(jobFullName)
+                            .setRunNumber(runNumber)
+                            .setTraceId(traceId)
+                            .setStartTime(startTime)
+                            .setEndTime(endTime)
+                            .setServiceName(serviceName)
+                            .setServiceNamespace(serviceNamespace)
+                            .build();
+            try (LokiBuildLogsLineIterator logLines = new LokiBuildLogsLineIterator(
+                    lokiQueryParameters,
+                    httpClient,
+                    httpContext,
+                    lokiUrl,
+                    httpAuthHeaderFactory,
+                    lokiTenantId,
+                    tracer)) {
+                return logLines.search(phrase, cursor, pageSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR, e.getMessage());
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Use concurrent time sharded queries for completed builds when enabled, see {@link #SHARDED_QUERIES_PROPERTY}
+     */
+    @NonNull
+    LogLineIterator<Long> newLogLineIterator(
+            @NonNull LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters, @NonNull Tracer tracer) {
+        if (shardedQueriesExecutorService != null && lokiQueryParameters.getEndTimeInNanos().isPresent()) {
+            return new LokiShardedBuildLogsLineIterator(
+                    lokiQueryParameters,
+                    httpClient,
+                    lokiUrl,
+                    httpAuthHeaderFactory,
+                    lokiTenantId,
+                    tracer,
+                    shardedQueriesExecutorService,
+                    SHARDED_QUERIES_PARALLELISM,
+                    SHARDED_QUERIES_LINES_PER_SHARD,
+                    TimeUnit.SECONDS.toNanos(SHARDED_QUERIES_INITIAL_SHARD_DURATION_IN_SECONDS));
+        }
+        return new LokiBuildLogsLineIterator(
+                lokiQueryParameters, httpClient, httpContext, lokiUrl, httpAuthHeaderFactory, lokiTenantId, tracer);
+    }
+
     public List<FormValidation> checkLokiSetup() {
         List<FormValidation> validations = new ArrayList<>();
 
@@ -330,6 +577,10 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
 
     @Override
     public void close() throws IOException {
+        if (shardedQueriesExecutorService != null) {
+            shardedQueriesExecutorService.shutdownNow();
+        }
+        LogBytesToLogLineIdIndex.invalidateAll();
         this.httpClient.close();
     }
 }
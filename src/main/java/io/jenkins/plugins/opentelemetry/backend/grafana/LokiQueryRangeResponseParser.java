@@ -0,0 +1,334 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.grafana;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Streaming parser of the response of the Loki
+ * <a href="https://grafana.com/docs/loki/latest/reference/loki-http-api/#query-logs-within-a-range-of-time">query_range</a>
+ * API.
+ * </p>
+ * <p>
+ * The {@code [timestamp, line, metadata]} tuples of {@code $.data.result[*].values[*]} are read one at a time from
+ * the response stream so that the memory used per page doesn't depend on the number of returned lines.
+ * </p>
+ * <p>
+ * The {@code $.data.stats} block, returned after the results, is available through {@link #getStatistics()} once
+ * all the log lines have been read.
+ * </p>
+ */
+class LokiQueryRangeResponseParser implements Iterator<LogLine<Long>>, Closeable {
+
+    static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private enum State {
+        /**
+         * Looking for {@code $.data.result}
+         */
+        ROOT,
+        /**
+         * In the {@code $.data.result} array, looking for the next stream object
+         */
+        RESULT,
+        /**
+         * In a stream object, looking for the {@code values} array
+         */
+        STREAM,
+        /**
+         * In a {@code values} array
+         */
+        VALUES,
+        END
+    }
+
+    private final JsonParser parser;
+    private State state = State.ROOT;
+
+    @Nullable
+    private LogLine<Long> next;
+
+    @NonNull
+    private Map<String, String> currentStreamLabels = Collections.emptyMap();
+
+    @Nullable
+    private LokiQueryStatistics statistics;
+
+    LokiQueryRangeResponseParser(@NonNull InputStream lokiQueryRangeResponse) throws IOException {
+        this.parser = JSON_FACTORY.createParser(lokiQueryRangeResponse);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && state != State.END) {
+            try {
+                next = readNextLogLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public LogLine<Long> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        LogLine<Long> result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * @return the labels of the stream of the last returned log line
+     */
+    @NonNull
+    Map<String, String> getCurrentStreamLabels() {
+        return currentStreamLabels;
+    }
+
+    /**
+     * @return the statistics of the query, {@code null} if the log lines have not all been read or if the response
+     * doesn't contain statistics
+     */
+    @Nullable
+    LokiQueryStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Nullable
+    private LogLine<Long> readNextLogLine() throws IOException {
+        while (true) {
+            switch (state) {
+                case ROOT:
+                    if (!moveToResult()) {
+                        endOfResponse();
+                        return null;
+                    }
+                    state = State.RESULT;
+                    break;
+                case RESULT: {
+                    JsonToken token = parser.nextToken();
+                    if (token == JsonToken.START_OBJECT) {
+                        currentStreamLabels = Collections.emptyMap();
+                        state = State.STREAM;
+                    } else if (token == JsonToken.END_ARRAY) {
+                        readStatistics();
+                        endOfResponse();
+                        return null;
+                    } else if (token == null) {
+                        endOfResponse();
+                        return null;
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                }
+                case STREAM: {
+                    JsonToken token = parser.nextToken();
+                    if (token == JsonToken.FIELD_NAME) {
+                        String fieldName = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if ("values".equals(fieldName) && value == JsonToken.START_ARRAY) {
+                            state = State.VALUES;
+                        } else if ("stream".equals(fieldName) && value == JsonToken.START_OBJECT) {
+                            currentStreamLabels = readStringMap();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    } else if (token == null) {
+                        endOfResponse();
+                        return null;
+                    } else {
+                        // END_OBJECT
+                        state = State.RESULT;
+                    }
+                    break;
+                }
+                case VALUES: {
+                    JsonToken token = parser.nextToken();
+                    if (token == JsonToken.START_ARRAY) {
+                        LogLine<Long> logLine = readValue();
+                        if (logLine != null) {
+                            return logLine;
+                        }
+                    } else if (token == null) {
+                        endOfResponse();
+                        return null;
+                    } else {
+                        // END_ARRAY
+                        state = State.STREAM;
+                    }
+                    break;
+                }
+                case END:
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Position the parser on the {@code START_ARRAY} token of {@code $.data.result}
+     *
+     * @return {@code false} if the response has no {@code $.data.result} array
+     */
+    private boolean moveToResult() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String rootFieldName = parser.currentName();
+            JsonToken rootValue = parser.nextToken();
+            if ("data".equals(rootFieldName) && rootValue == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String dataFieldName = parser.currentName();
+                    JsonToken dataValue = parser.nextToken();
+                    if ("result".equals(dataFieldName) && dataValue == JsonToken.START_ARRAY) {
+                        return true;
+                    }
+                    parser.skipChildren();
+                }
+                return false;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * Read a {@code [timestamp, line, metadata]} tuple, the parser being positioned on its {@code START_ARRAY} token.
+     *
+     * @return {@code null} if the tuple is malformed
+     */
+    @Nullable
+    private LogLine<Long> readValue() throws IOException {
+        String timestamp = null;
+        String line = null;
+        int index = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (index == 0 && token == JsonToken.VALUE_STRING) {
+                timestamp = parser.getText();
+            } else if (index == 1 && token == JsonToken.VALUE_STRING) {
+                line = parser.getText();
+            } else {
+                // structured metadata and parsed labels are not used
+                parser.skipChildren();
+            }
+            index++;
+        }
+        if (timestamp == null || line == null) {
+            return null;
+        }
+        return new LogLine<>(Long.parseLong(timestamp), line);
+    }
+
+    @NonNull
+    private Map<String, String> readStringMap() throws IOException {
+        Map<String, String> result = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_STRING) {
+                result.put(name, parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read the fields of {@code $.data} following {@code $.data.result}, looking for {@code $.data.stats}
+     */
+    private void readStatistics() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("stats".equals(fieldName) && value == JsonToken.START_OBJECT) {
+                LokiQueryStatistics statistics = new LokiQueryStatistics();
+                readStatistics(statistics, "");
+                this.statistics = statistics;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Walk the stats object the parser is positioned in, collecting the {@code summary} and the chunk statistics of
+     * the {@code store} of the querier and of the ingester.
+     */
+    private void readStatistics(@NonNull LokiQueryStatistics statistics, @NonNull String path) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT) {
+                readStatistics(statistics, path + "/" + fieldName);
+            } else if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+                String fieldPath = path + "/" + fieldName;
+                switch (fieldPath) {
+                    case "/summary/totalBytesProcessed":
+                        statistics.totalBytesProcessed = parser.getLongValue();
+                        break;
+                    case "/summary/totalLinesProcessed":
+                        statistics.totalLinesProcessed = parser.getLongValue();
+                        break;
+                    case "/summary/totalEntriesReturned":
+                        statistics.totalEntriesReturned = parser.getLongValue();
+                        break;
+                    case "/summary/execTime":
+                        statistics.execTimeInSeconds = parser.getDoubleValue();
+                        break;
+                    case "/summary/queueTime":
+                        statistics.queueTimeInSeconds = parser.getDoubleValue();
+                        break;
+                    case "/querier/store/totalChunksRef":
+                    case "/ingester/store/totalChunksRef":
+                        statistics.totalChunksRef += parser.getLongValue();
+                        break;
+                    case "/querier/store/totalChunksDownloaded":
+                    case "/ingester/store/totalChunksDownloaded":
+                        statistics.totalChunksDownloaded += parser.getLongValue();
+                        break;
+                    default:
+                        // not used
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void endOfResponse() throws IOException {
+        state = State.END;
+        parser.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        state = State.END;
+        next = null;
+        parser.close();
+    }
+}
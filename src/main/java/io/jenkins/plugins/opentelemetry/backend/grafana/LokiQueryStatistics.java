@@ -0,0 +1,109 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.grafana;
+
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_LOKI_QUERY_BYTES_PROCESSED;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_LOKI_QUERY_CHUNKS_DOWNLOADED;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_LOKI_QUERY_EXEC_TIME;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalMetrics;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.Span;
+
+/**
+ * Statistics of a Loki query, from the {@code $.data.stats} block of the {@code query_range} response.
+ */
+public class LokiQueryStatistics {
+    long totalBytesProcessed;
+    long totalLinesProcessed;
+    long totalEntriesReturned;
+    long totalChunksRef;
+    long totalChunksDownloaded;
+    double execTimeInSeconds;
+    double queueTimeInSeconds;
+
+    public long getTotalBytesProcessed() {
+        return totalBytesProcessed;
+    }
+
+    public long getTotalLinesProcessed() {
+        return totalLinesProcessed;
+    }
+
+    public long getTotalEntriesReturned() {
+        return totalEntriesReturned;
+    }
+
+    public long getTotalChunksRef() {
+        return totalChunksRef;
+    }
+
+    public long getTotalChunksDownloaded() {
+        return totalChunksDownloaded;
+    }
+
+    public double getExecTimeInSeconds() {
+        return execTimeInSeconds;
+    }
+
+    public double getQueueTimeInSeconds() {
+        return queueTimeInSeconds;
+    }
+
+    /**
+     * Record these statistics as attributes of the given span and as metrics
+     */
+    public void record(@NonNull Span span) {
+        span.setAttribute("loki.stats.totalBytesProcessed", totalBytesProcessed);
+        span.setAttribute("loki.stats.totalLinesProcessed", totalLinesProcessed);
+        span.setAttribute("loki.stats.totalEntriesReturned", totalEntriesReturned);
+        span.setAttribute("loki.stats.totalChunksRef", totalChunksRef);
+        span.setAttribute("loki.stats.totalChunksDownloaded", totalChunksDownloaded);
+        span.setAttribute("loki.stats.execTime", execTimeInSeconds);
+        span.setAttribute("loki.stats.queueTime", queueTimeInSeconds);
+
+        Instruments.BYTES_PROCESSED.record(totalBytesProcessed);
+        Instruments.CHUNKS_DOWNLOADED.record(totalChunksDownloaded);
+        Instruments.EXEC_TIME.record(execTimeInSeconds);
+    }
+
+    @Override
+    public String toString() {
+        return "LokiQueryStatistics{" + "totalBytesProcessed="
+                + totalBytesProcessed + ", totalLinesProcessed="
+                + totalLinesProcessed + ", totalEntriesReturned="
+                + totalEntriesReturned + ", totalChunksRef="
+                + totalChunksRef + ", totalChunksDownloaded="
+                + totalChunksDownloaded + ", execTimeInSeconds="
+                + execTimeInSeconds + ", queueTimeInSeconds="
+                + queueTimeInSeconds + '}';
+    }
+
+    /**
+     * Lazily created on the first recorded query
+     */
+    private static class Instruments {
+        static final Meter METER = LogRetrievalMetrics.getMeter();
+        static final LongHistogram BYTES_PROCESSED = METER.histogramBuilder(JENKINS_LOGS_LOKI_QUERY_BYTES_PROCESSED)
+                .ofLongs()
+                .setDescription("Bytes processed by Loki to retrieve pipeline logs")
+                .setUnit("By")
+                .build();
+        static final LongHistogram CHUNKS_DOWNLOADED = METER.histogramBuilder(
+                        JENKINS_LOGS_LOKI_QUERY_CHUNKS_DOWNLOADED)
+                .ofLongs()
+                .setDescription("Chunks downloaded by Loki to retrieve pipeline logs")
+                .setUnit("{chunks}")
+                .build();
+        static final DoubleHistogram EXEC_TIME = METER.histogramBuilder(JENKINS_LOGS_LOKI_QUERY_EXEC_TIME)
+                .setDescription("Execution time reported by Loki for the queries retrieving pipeline logs")
+                .setUnit("s")
+                .build();
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.grafana;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterators;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.jenkins.HttpAuthHeaderFactory;
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIterator;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+
+/**
+ * <p>
+ * Retrieves the logs of a completed build splitting the {@code [build start, build end)} time range in shards that
+ * are queried concurrently, the log lines being returned in order.
+ * </p>
+ * <p>
+ * The duration of the shards adapts to the density of log lines observed on the shards already retrieved so that
+ * each shard returns about {@link #linesPerShard} lines.
+ * </p>
+ * <p>
+ * Only the first page of the shards, at most {@link #linesPerShard} lines, is retrieved ahead and held in memory, the
+ * next pages of a denser shard are streamed when the shard is iterated.
+ * </p>
+ */
+public class LokiShardedBuildLogsLineIterator implements LogLineIterator<Long>, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(LokiShardedBuildLogsLineIterator.class.getName());
+
+    static final long MIN_SHARD_DURATION_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @NonNull
+    private final LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters;
+
+    private final long endTimeInNanos;
+
+    @NonNull
+    private final CloseableHttpClient httpClient;
+
+    @NonNull
+    private final String lokiUrl;
+
+    @NonNull
+    private final Optional<HttpAuthHeaderFactory> httpAuthHeaderFactory;
+
+    @NonNull
+    private final Optional<String> lokiTenantId;
+
+    @NonNull
+    private final Tracer tracer;
+
+    @NonNull
+    private final ExecutorService executorService;
+
+    private final int parallelism;
+    private final int linesPerShard;
+
+    /**
+     * Shards being retrieved, in time order
+     */
+    private final Deque<Shard> shards = new ArrayDeque<>();
+
+    private long nextShardStartTimeInNanos;
+    private long nextShardDurationInNanos;
+
+    /**
+     * Statistics of the shards retrieved so far, used to size the next shards
+     */
+    private long observedLines;
+
+    private long observedDurationInNanos;
+
+    @VisibleForTesting
+    int shardCounter;
+
+    private Iterator<LogLine<Long>> delegate = Collections.emptyIterator();
+
+    /**
+     * Iterator of the pages of the current shard after its first page
+     */
+    @CheckForNull
+    private LokiBuildLogsLineIterator currentShardIterator;
+
+    /**
+     * A shard has been truncated by the circuit breaker of its {@link LokiBuildLogsLineIterator}
+     */
+    private boolean truncated;
+
+    /**
+     * @param lokiQueryParameters query parameters of a completed build, the end time must be defined
+     */
+    public LokiShardedBuildLogsLineIterator(
+            @NonNull LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters,
+            @NonNull CloseableHttpClient httpClient,
+            @NonNull String lokiUrl,
+            @NonNull Optional<HttpAuthHeaderFactory> httpAuthHeaderFactory,
+            @NonNull Optional<String> lokiTenantId,
+            @NonNull Tracer tracer,
+            @NonNull ExecutorService executorService,
+            int parallelism,
+            int linesPerShard,
+            long initialShardDurationInNanos) {
+        this.lokiQueryParameters = lokiQueryParameters;
+        this.endTimeInNanos = lokiQueryParameters
+                .getEndTimeInNanos()
+                .orElseThrow(() -> new IllegalArgumentException("End time required for " + lokiQueryParameters));
+        this.httpClient = httpClient;
+        this.lokiUrl = lokiUrl;
+        this.httpAuthHeaderFactory = httpAuthHeaderFactory;
+        this.lokiTenantId = lokiTenantId;
+        this.tracer = tracer;
+        this.executorService = executorService;
+        this.parallelism = Math.max(1, parallelism);
+        this.linesPerShard = Math.max(1, linesPerShard);
+        this.nextShardStartTimeInNanos = lokiQueryParameters.getStartTimeInNanos();
+        this.nextShardDurationInNanos = Math.max(MIN_SHARD_DURATION_IN_NANOS, initialShardDurationInNanos);
+    }
+
+    @NonNull
+    Iterator<LogLine<Long>> getCurrentIterator() {
+        while (!delegate.hasNext()) {
+            closeCurrentShard();
+            scheduleShards();
+            Shard shard = shards.pollFirst();
+            if (shard == null) {
+                return delegate;
+            }
+            ShardFirstPage firstPage;
+            try {
+                firstPage = shard.firstPage.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : new RuntimeException(e.getCause());
+            }
+            currentShardIterator = firstPage.nextPagesIterator;
+            delegate = currentShardIterator == null
+                    ? firstPage.logLines.iterator()
+                    : Iterators.concat(firstPage.logLines.iterator(), currentShardIterator);
+        }
+        return delegate;
+    }
+
+    /**
+     * Schedule the retrieval of the next shards until {@link #parallelism} shards are in flight
+     */
+    void scheduleShards() {
+        while (shards.size() < parallelism && nextShardStartTimeInNanos < endTimeInNanos) {
+            long shardStartTimeInNanos = nextShardStartTimeInNanos;
+            long shardEndTimeInNanos = Math.min(endTimeInNanos, shardStartTimeInNanos + computeNextShardDuration());
+            nextShardStartTimeInNanos = shardEndTimeInNanos;
+            shardCounter++;
+
+            LokiGetJenkinsBuildLogsQueryParameters shardQueryParameters =
+                    lokiQueryParameters.withTimeRange(shardStartTimeInNanos, shardEndTimeInNanos);
+            shardQueryParameters.setLimit(linesPerShard);
+            CompletableFuture<ShardFirstPage> firstPage =
+                    CompletableFuture.supplyAsync(() -> loadShardFirstPage(shardQueryParameters), executorService);
+            shards.addLast(new Shard(shardStartTimeInNanos, shardEndTimeInNanos, firstPage));
+        }
+    }
+
+    /**
+     * Load the first page of the shard, at most {@link #linesPerShard} log lines. The next pages of a shard denser than
+     * expected are streamed when the shard is iterated rather than held in memory.
+     */
+    @NonNull
+    ShardFirstPage loadShardFirstPage(@NonNull LokiGetJenkinsBuildLogsQueryParameters shardQueryParameters) {
+        Span span = tracer.spanBuilder("LokiShardedBuildLogsLineIterator.loadShard")
+                .setAllAttributes(shardQueryParameters.toAttributes())
+                .startSpan();
+        long shardStartTimeInNanos = shardQueryParameters.getStartTimeInNanos();
+        long shardEndTimeInNanos = shardQueryParameters.getEndTimeInNanos().orElse(endTimeInNanos);
+        LokiBuildLogsLineIterator shardIterator = newShardIterator(shardQueryParameters);
+        try (Scope ignored = span.makeCurrent()) {
+            List<LogLine<Long>> logLines = new ArrayList<>();
+            Iterator<LogLine<Long>> firstPage = shardIterator.loadNextLogLines();
+            try {
+                while (firstPage.hasNext()) {
+                    logLines.add(firstPage.next());
+                }
+            } finally {
+                if (firstPage instanceof AutoCloseable) {
+                    ((AutoCloseable) firstPage).close();
+                }
+            }
+            span.setAttribute("response.size", logLines.size());
+            if (logLines.size() < linesPerShard) {
+                recordShardStatistics(logLines.size(), shardEndTimeInNanos - shardStartTimeInNanos);
+                return new ShardFirstPage(logLines, null);
+            }
+            // more log lines than expected, only the time range covered by the first page is known
+            long lastLogLineTimestampInNanos = logLines.get(logLines.size() - 1).getId();
+            recordShardStatistics(logLines.size(), lastLogLineTimestampInNanos + 1 - shardStartTimeInNanos);
+            span.setAttribute("response.nextPages", true);
+            return new ShardFirstPage(logLines, shardIterator);
+        } catch (Exception e) {
+            span.recordException(e);
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * @return the iterator of the log lines of the shard, `HttpContext` is not thread safe, use one per shard
+     */
+    @NonNull
+    @VisibleForTesting
+    LokiBuildLogsLineIterator newShardIterator(@NonNull LokiGetJenkinsBuildLogsQueryParameters shardQueryParameters) {
+        return new LokiBuildLogsLineIterator(
+                shardQueryParameters,
+                httpClient,
+                HttpClientContext.create(),
+                lokiUrl,
+                httpAuthHeaderFactory,
+                lokiTenantId,
+                tracer);
+    }
+
+    synchronized void recordShardStatistics(long lines, long durationInNanos) {
+        observedLines += lines;
+        observedDurationInNanos += durationInNanos;
+    }
+
+    /**
+     * @return the duration of the next shard based on the density of log lines observed so far
+     */
+    @VisibleForTesting
+    synchronized long computeNextShardDuration() {
+        if (observedDurationInNanos == 0) {
+            return nextShardDurationInNanos;
+        }
+        if (observedLines == 0) {
+            // no log lines so far, widen the shards
+            nextShardDurationInNanos = Math.max(nextShardDurationInNanos, 2 * observedDurationInNanos);
+        } else {
+            double linesPerNano = (double) observedLines / observedDurationInNanos;
+            nextShardDurationInNanos = (long) (linesPerShard / linesPerNano);
+        }
+        nextShardDurationInNanos = Math.max(MIN_SHARD_DURATION_IN_NANOS, nextShardDurationInNanos);
+        return nextShardDurationInNanos;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return getCurrentIterator().hasNext();
+    }
+
+    @Override
+    public LogLine<Long> next() {
+        Iterator<LogLine<Long>> currentIterator = getCurrentIterator();
+        if (!currentIterator.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentIterator.next();
+    }
+
+    @Override
+    public boolean isTruncated() {
+        return truncated || currentShardIterator != null && currentShardIterator.isTruncated();
+    }
+
+    /**
+     * The tail of the log is retrieved by a single backward query rather than by shards
+     */
+    @Override
+    public LogTail<Long> tail(long minLengthInBytes) throws IOException {
+        LokiBuildLogsLineIterator tailIterator = new LokiBuildLogsLineIterator(
+                lokiQueryParameters.withTimeRange(lokiQueryParameters.getStartTimeInNanos(), endTimeInNanos),
+                httpClient,
+                HttpClientContext.create(),
+                lokiUrl,
+                httpAuthHeaderFactory,
+                lokiTenantId,
+                tracer);
+        try {
+            return tailIterator.tail(minLengthInBytes);
+        } finally {
+            tailIterator.closeDelegate();
+        }
+    }
+
+    /**
+     * Restart the retrieval after the given log line
+     */
+    @Override
+    public void skipLines(Long lastLogTimestampInNanos) {
+        cancelShards();
+        closeCurrentShard();
+        delegate = Collections.emptyIterator();
+        nextShardStartTimeInNanos = lastLogTimestampInNanos + 1;
+    }
+
+    void cancelShards() {
+        Shard shard;
+        while ((shard = shards.pollFirst()) != null) {
+            shard.firstPage.cancel(false);
+        }
+    }
+
+    /**
+     * Release the HTTP response of the page of the current shard streamed after its first page
+     */
+    void closeCurrentShard() {
+        if (currentShardIterator != null) {
+            truncated |= currentShardIterator.isTruncated();
+            currentShardIterator.close();
+            currentShardIterator = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        logger.log(Level.FINE, () -> "Close after " + shardCounter + " shards for " + lokiQueryParameters);
+        cancelShards();
+        closeCurrentShard();
+    }
+
+    static class Shard {
+        final long startTimeInNanos;
+        final long endTimeInNanos;
+        final CompletableFuture<ShardFirstPage> firstPage;
+
+        Shard(long startTimeInNanos, long endTimeInNanos, CompletableFuture<ShardFirstPage> firstPage) {
+            this.startTimeInNanos = startTimeInNanos;
+            this.endTimeInNanos = endTimeInNanos;
+            this.firstPage = firstPage;
+        }
+
+        @Override
+        public String toString() {
+            return "Shard{" + "startTimeInNanos=" + startTimeInNanos + ", endTimeInNanos=" + endTimeInNanos + '}';
+        }
+    }
+
+    static class ShardFirstPage {
+        @NonNull
+        final List<LogLine<Long>> logLines;
+
+        /**
+         * Iterator positioned after the first page, {@code null} if the shard has no other page
+         */
+        @CheckForNull
+        final LokiBuildLogsLineIterator nextPagesIterator;
+
+        ShardFirstPage(
+                @NonNull List<LogLine<Long>> logLines, @CheckForNull LokiBuildLogsLineIterator nextPagesIterator) {
+            this.logLines = logLines;
+            this.nextPagesIterator = nextPagesIterator;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.jcip.annotations.Immutable;
+
+/**
+ * <p>
+ * Cache of the trace of the last completed run of each job, updated by {@link LastRunListener} when any run completes,
+ * monitored or not, so that the {@link ViewColumn} of a list view renders without loading the builds of its jobs. The
+ * rendered links identify the trace and the links to the trace in the observability backends are computed when they
+ * are followed.
+ * </p>
+ * <p>
+ * The jobs are weakly referenced and at most {@link #MAX_SIZE} jobs are cached. The trace of a job missing from the
+ * cache, typically after a restart, is loaded in the background and shown by the next rendering.
+ * </p>
+ */
+public class LastRunTraces {
+    private static final Logger LOGGER = Logger.getLogger(LastRunTraces.class.getName());
+
+    public static final int MAX_SIZE = Integer.getInteger(LastRunTraces.class.getName() + ".maxSize", 50_000);
+
+    private static final Cache<Job<?, ?>, LastRun> LAST_RUN_TRACES =
+            CacheBuilder.newBuilder().weakKeys().maximumSize(MAX_SIZE).build();
+
+    private static final Set<Job<?, ?>> LOADS_IN_PROGRESS = ConcurrentHashMap.newKeySet();
+
+    private static final ExecutorService LOAD_EXECUTOR_SERVICE = new ThreadPoolExecutor(
+            1,
+            1,
+            0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(1_000),
+            new NamingThreadFactory(new DaemonThreadFactory(), LastRunTraces.class.getName()));
+
+    private LastRunTraces() {}
+
+    /**
+     * @return the trace of the last completed run of the job, {@code null} if the job has no monitored completed run
+     * or if its last completed run is being loaded in the background
+     */
+    @CheckForNull
+    public static LastRunTrace get(@NonNull Job<?, ?> job) {
+        LastRun lastRun = LAST_RUN_TRACES.getIfPresent(job);
+        if (lastRun != null) {
+            return lastRun.trace;
+        }
+        if (LOADS_IN_PROGRESS.add(job)) {
+            try {
+                LOAD_EXECUTOR_SERVICE.execute(() -> {
+                    try {
+                        load(job);
+                    } finally {
+                        LOADS_IN_PROGRESS.remove(job);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                LOADS_IN_PROGRESS.remove(job);
+                LOGGER.log(Level.FINE, () -> "Too many last runs to load, skip " + job);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the trace of the last completed run of the job, loading the last completed run if not cached
+     */
+    @CheckForNull
+    public static LastRunTrace getOrLoad(@NonNull Job<?, ?> job) {
+        LastRun lastRun = LAST_RUN_TRACES.getIfPresent(job);
+        return lastRun == null ? load(job) : lastRun.trace;
+    }
+
+    @CheckForNull
+    private static LastRunTrace load(@NonNull Job<?, ?> job) {
+        Run<?, ?> lastCompletedBuild = job.getLastCompletedBuild();
+        LastRunTrace lastRunTrace = lastCompletedBuild == null ? null : LastRunTrace.of(lastCompletedBuild);
+        // a run completed while loading the last completed run is more recent than the loaded one
+        int runNumber = lastCompletedBuild == null ? 0 : lastCompletedBuild.getNumber();
+        return merge(job, new LastRun(runNumber, lastRunTrace)).trace;
+    }
+
+    /**
+     * Record the given completed run, monitored or not, if it's the last completed run of its job
+     */
+    public static void onCompleted(@NonNull Run<?, ?> run) {
+        merge(run.getParent(), new LastRun(run.getNumber(), LastRunTrace.of(run)));
+    }
+
+    /**
+     * Record the given run of the job unless a more recent run is recorded
+     *
+     * @return the recorded run
+     */
+    @NonNull
+    private static LastRun merge(@NonNull Job<?, ?> job, @NonNull LastRun lastRun) {
+        return LAST_RUN_TRACES
+                .asMap()
+                .merge(
+                        job,
+                        lastRun,
+                        (previous, current) -> previous.runNumber > current.runNumber ? previous : current);
+    }
+
+    /**
+     * Forget the given deleted run, the trace of the new last completed run being loaded when needed
+     */
+    public static void onDeleted(@NonNull Run<?, ?> run) {
+        LAST_RUN_TRACES
+                .asMap()
+                .computeIfPresent(
+                        run.getParent(), (job, lastRun) -> lastRun.runNumber == run.getNumber() ? null : lastRun);
+    }
+
+    @VisibleForTesting
+    static void invalidateAll() {
+        LAST_RUN_TRACES.invalidateAll();
+    }
+
+    /**
+     * Last completed run of a job
+     */
+    private static class LastRun {
+        final int runNumber;
+
+        /**
+         * {@code null} if the run isn't monitored
+         */
+        @CheckForNull
+        final LastRunTrace trace;
+
+        LastRun(int runNumber, @CheckForNull LastRunTrace trace) {
+            this.runNumber = runNumber;
+            this.trace = trace;
+        }
+    }
+
+    /**
+     * Track the last completed run of the jobs, including the runs that aren't monitored so that a job whose last
+     * completed run isn't monitored no longer links to the trace of a previous run
+     */
+    @Extension
+    public static class LastRunListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(@NonNull Run<?, ?> run, @NonNull TaskListener listener) {
+            LastRunTraces.onCompleted(run);
+        }
+
+        @Override
+        public void onDeleted(@NonNull Run<?, ?> run) {
+            LastRunTraces.onDeleted(run);
+        }
+    }
+
+    /**
+     * Trace of a completed run, enough to compute the links to the trace without loading the run
+     */
+    @Immutable
+    public static class LastRunTrace {
+        private final int runNumber;
+
+        @NonNull
+        private final String traceId;
+
+        @Nullable
+        private final String spanId;
+
+        @Nullable
+        private final String rootSpanName;
+
+        private final long startTimeInMillis;
+
+        LastRunTrace(
+                int runNumber,
+                @NonNull String traceId,
+                @Nullable String spanId,
+                @Nullable String rootSpanName,
+                long startTimeInMillis) {
+            this.runNumber = runNumber;
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.rootSpanName = rootSpanName;
+            this.startTimeInMillis = startTimeInMillis;
+        }
+
+        /**
+         * @return {@code null} if the run isn't monitored
+         */
+        @CheckForNull
+        static LastRunTrace of(@NonNull Run<?, ?> run) {
+            MonitoringAction monitoringAction = run.getAction(MonitoringAction.class);
+            String traceId = monitoringAction == null ? null : monitoringAction.getTraceId();
+            if (traceId == null) {
+                return null;
+            }
+            return new LastRunTrace(
+                    run.getNumber(),
+                    traceId,
+                    monitoringAction.getSpanId(),
+                    monitoringAction.getSpanName(),
+                    run.getStartTimeInMillis());
+        }
+
+        public int getRunNumber() {
+            return runNumber;
+        }
+
+        @NonNull
+        public String getTraceId() {
+            return traceId;
+        }
+
+        public long getStartTimeInMillis() {
+            return startTimeInMillis;
+        }
+
+        @NonNull
+        public List<MonitoringAction.ObservabilityBackendLink> getLinks() {
+            return MonitoringAction.getLinks(traceId, spanId, rootSpanName, startTimeInMillis);
+        }
+
+        @Override
+        public String toString() {
+            return "LastRunTrace{" + "runNumber=" + runNumber + ", traceId='" + traceId + '\'' + '}';
+        }
+    }
+}
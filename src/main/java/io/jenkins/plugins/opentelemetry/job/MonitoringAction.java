@@ -8,6 +8,7 @@ package io.jenkins.plugins.opentelemetry.job;
 import com.google.common.collect.ImmutableList;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.model.Action;
 import hudson.model.Run;
 import io.jenkins.plugins.opentelemetry.JenkinsOpenTelemetryPluginConfiguration;
@@ -15,6 +16,8 @@ import io.jenkins.plugins.opentelemetry.OtelUtils;
 import io.jenkins.plugins.opentelemetry.backend.ObservabilityBackend;
 import io.jenkins.plugins.opentelemetry.job.action.AbstractMonitoringAction;
 import io.jenkins.plugins.opentelemetry.job.action.FlowNodeMonitoringAction;
+import io.jenkins.plugins.opentelemetry.job.log.LogCounters;
+import io.jenkins.plugins.opentelemetry.job.log.LogStatistics;
 import io.opentelemetry.api.trace.Span;
 import java.io.IOException;
 import java.time.Instant;
@@ -51,10 +54,30 @@ public class MonitoringAction extends AbstractMonitoringAction
 
     private transient Run run;
 
+    /**
+     * Counters of the logs emitted by the run, {@code null} when the action has been loaded from disk as the logs
+     * emitted before the restart of Jenkins are unknown.
+     */
+    @CheckForNull
+    private transient LogCounters logCounters;
+
+    /**
+     * Statistics of the logs of the run, recorded when the run is finalized
+     */
+    @CheckForNull
+    private LogStatistics logStatistics;
+
+    /**
+     * Statistics of the logs of the flow nodes that emitted logs, recorded when the run is finalized
+     */
+    @CheckForNull
+    private Map<String, LogStatistics> flowNodesLogStatistics;
+
     public MonitoringAction(Span span) {
         super(span, Collections.emptyList());
         this.rootSpanName = super.getSpanName();
         this.rootContext = super.getW3cTraceContext();
+        this.logCounters = new LogCounters();
     }
 
     @Override
@@ -108,6 +131,47 @@ public class MonitoringAction extends AbstractMonitoringAction
         return this;
     }
 
+    @CheckForNull
+    public LogCounters getLogCounters() {
+        return logCounters;
+    }
+
+    /**
+     * @param flowNodeId {@code null} to get the statistics of the logs of the run
+     * @return exact length of the logs or {@code null} if unknown
+     */
+    @CheckForNull
+    public LogStatistics getLogStatistics(@Nullable String flowNodeId) {
+        LogCounters logCounters = this.logCounters;
+        if (logCounters != null) {
+            return logCounters.getStatistics(flowNodeId);
+        } else if (logStatistics == null || flowNodeId == null) {
+            return logStatistics;
+        } else {
+            return Optional.ofNullable(flowNodesLogStatistics)
+                    .map(statistics -> statistics.get(flowNodeId))
+                    .orElse(LogStatistics.EMPTY);
+        }
+    }
+
+    /**
+     * Persist the statistics of the logs once the run is finalized and release the counters
+     *
+     * @return {@code true} if statistics have been recorded and the run must be saved
+     */
+    public boolean recordLogStatistics() {
+        LogCounters logCounters = this.logCounters;
+        if (logCounters == null) {
+            return false;
+        }
+        this.logStatistics = logCounters.getStatistics(null);
+        Map<String, LogStatistics> flowNodesLogStatistics = logCounters.getFlowNodesStatistics();
+        this.flowNodesLogStatistics = flowNodesLogStatistics.isEmpty() ? null : new HashMap<>(flowNodesLogStatistics);
+        this.logCounters = null;
+        LOGGER.log(Level.FINE, () -> run + " - recordLogStatistics: " + logStatistics);
+        return logStatistics != null;
+    }
+
     @CheckForNull
     public Map<String, String> getW3cTraceContext(@NonNull String flowNodeId) {
         Optional<FlowNode> flowNode = Optional.ofNullable(((WorkflowRun) run).getExecution())
@@ -132,17 +196,41 @@ public class MonitoringAction extends AbstractMonitoringAction
 
     @NonNull
     public List<ObservabilityBackendLink> getLinks() {
-        List<ObservabilityBackend> tracingCapableBackends =
-                JenkinsOpenTelemetryPluginConfiguration.get().getObservabilityBackends().stream()
-                        .filter(backend -> backend.getTraceVisualisationUrlTemplate() != null)
-                        .collect(Collectors.toList());
+        return getLinks(this.getTraceId(), this.getSpanId(), this.rootSpanName, run.getStartTimeInMillis());
+    }
+
+    /**
+     * @return the observability backends capable of visualizing the traces of the runs
+     */
+    @NonNull
+    static List<ObservabilityBackend> getTracingCapableBackends() {
+        return JenkinsOpenTelemetryPluginConfiguration.get().getObservabilityBackends().stream()
+                .filter(backend -> backend.getTraceVisualisationUrlTemplate() != null)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the link to the configuration of the observability backends when none can visualize the traces
+     */
+    @NonNull
+    static ObservabilityBackendLink getConfigurationLink() {
+        return new ObservabilityBackendLink(
+                "Please define an OpenTelemetry Visualisation URL of pipelines in Jenkins configuration",
+                Jenkins.get().getRootUrl() + "/configure",
+                "icon-gear2",
+                null);
+    }
+
+    /**
+     * Links to the trace of a run computed from its trace rather than from the run, see {@link LastRunTraces}
+     */
+    @NonNull
+    static List<ObservabilityBackendLink> getLinks(
+            @Nullable String traceId, @Nullable String spanId, @Nullable String rootSpanName, long startTimeInMillis) {
+        List<ObservabilityBackend> tracingCapableBackends = getTracingCapableBackends();
 
         if (tracingCapableBackends.isEmpty()) {
-            return Collections.singletonList(new ObservabilityBackendLink(
-                    "Please define an OpenTelemetry Visualisation URL of pipelines in Jenkins configuration",
-                    Jenkins.get().getRootUrl() + "/configure",
-                    "icon-gear2",
-                    null));
+            return Collections.singletonList(getConfigurationLink());
         }
         Map<String, Object> binding = new HashMap<>();
         binding.put(
@@ -154,10 +242,10 @@ public class MonitoringAction extends AbstractMonitoringAction
                 JenkinsOpenTelemetryPluginConfiguration.get().getServiceNamespace());
         binding.put(
                 ObservabilityBackend.TemplateBindings.ROOT_SPAN_NAME,
-                this.rootSpanName == null ? null : OtelUtils.urlEncode(this.rootSpanName));
-        binding.put(ObservabilityBackend.TemplateBindings.TRACE_ID, this.getTraceId());
-        binding.put(ObservabilityBackend.TemplateBindings.SPAN_ID, this.getSpanId());
-        binding.put(ObservabilityBackend.TemplateBindings.START_TIME, Instant.ofEpochMilli(run.getStartTimeInMillis()));
+                rootSpanName == null ? null : OtelUtils.urlEncode(rootSpanName));
+        binding.put(ObservabilityBackend.TemplateBindings.TRACE_ID, traceId);
+        binding.put(ObservabilityBackend.TemplateBindings.SPAN_ID, spanId);
+        binding.put(ObservabilityBackend.TemplateBindings.START_TIME, Instant.ofEpochMilli(startTimeInMillis));
 
         return tracingCapableBackends.stream()
                 .map(backend -> new ObservabilityBackendLink(
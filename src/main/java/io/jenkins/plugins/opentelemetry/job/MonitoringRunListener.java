@@ -347,6 +347,10 @@ public class MonitoringRunListener extends OtelContextAwareAbstractRunListener
         Span rootSpan = rootSpanBuilder.startSpan();
 
         this.getTraceService().putSpan(run, rootSpan);
+        if (rootSpan.getSpanContext().isValid()) {
+            TraceIdIndex.get()
+                    .put(rootSpan.getSpanContext().getTraceId(), run.getParent().getFullName(), run.getNumber());
+        }
         try (final Scope rootSpanScope = rootSpan.makeCurrent()) {
             LOGGER.log(
                     Level.FINE, () -> run.getFullDisplayName() + " - begin root " + OtelUtils.toDebugString(rootSpan));
@@ -365,6 +369,13 @@ public class MonitoringRunListener extends OtelContextAwareAbstractRunListener
         }
     }
 
+    @Override
+    public void _onDeleted(@NonNull Run<?, ?> run) {
+        Optional.ofNullable(run.getAction(MonitoringAction.class))
+                .map(MonitoringAction::getTraceId)
+                .ifPresent(traceId -> TraceIdIndex.get().remove(traceId));
+    }
+
     @Override
     public void _onStarted(@NonNull Run<?, ?> run, @NonNull TaskListener listener) {
         try (Scope parentScope = endPipelinePhaseSpan(run)) {
@@ -2,10 +2,15 @@ package io.jenkins.plugins.opentelemetry.job;
 
 import static io.jenkins.plugins.opentelemetry.semconv.ConfigurationKey.*;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.model.Run;
+import io.jenkins.plugins.opentelemetry.api.OpenTelemetryLifecycleListener;
 import io.jenkins.plugins.opentelemetry.api.ReconfigurableOpenTelemetry;
 import io.jenkins.plugins.opentelemetry.semconv.ConfigurationKey;
 import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
@@ -17,22 +22,31 @@ import io.opentelemetry.context.Context;
 import io.opentelemetry.context.Scope;
 import io.opentelemetry.context.propagation.TextMapSetter;
 import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 
 /**
  * Inject OpenTelemetry environment variables in shell steps: {@code TRACEPARENT}, {@code OTEL_EXPORTER_OTLP_ENDPOINT}...
+ * Only the variables of the span ({@code TRACE_ID}, {@code SPAN_ID}, {@code TRACEPARENT}) are computed for each step,
+ * the variables of the run and of the configuration are memoized.
  *
  * @see org.jenkinsci.plugins.workflow.steps.StepEnvironmentContributor
  * @see hudson.model.EnvironmentContributor
  */
 @Extension
-public class OtelEnvironmentContributorService {
+public class OtelEnvironmentContributorService implements OpenTelemetryLifecycleListener {
 
     public static final String SPAN_ID = "SPAN_ID";
     public static final String TRACE_ID = "TRACE_ID";
 
+    static final int RUN_ENVIRONMENT_VARIABLES_TTL_MINUTES = Integer.getInteger(
+            OtelEnvironmentContributorService.class.getName() + ".runEnvironmentVariablesTtlMinutes", 60);
+
     private final List<ConfigurationKey> exportedConfigKeys = List.of(
             OTEL_EXPORTER_OTLP_CERTIFICATE,
             OTEL_EXPORTER_OTLP_ENDPOINT,
@@ -45,9 +59,27 @@ public class OtelEnvironmentContributorService {
             OTEL_METRICS_EXPORTER,
             OTEL_TRACES_EXPORTER);
 
+    /**
+     * Environment variables of the runs that don't depend on the span: baggage of the run and links to the
+     * observability backends. Memoized per run as they are added to the environment of each step of the run.
+     */
+    private final Cache<Run<?, ?>, Map<String, String>> runEnvironmentVariables = CacheBuilder.newBuilder()
+            .weakKeys()
+            .expireAfterAccess(RUN_ENVIRONMENT_VARIABLES_TTL_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * {@code OTEL_*} environment variables exported from the configuration, {@code null} until computed
+     */
+    @CheckForNull
+    private volatile Map<String, String> otelConfigEnvironmentVariables;
+
     private ReconfigurableOpenTelemetry reconfigurableOpenTelemetry;
 
     public void addEnvironmentVariables(@NonNull Run<?, ?> run, @NonNull EnvVars envs, @NonNull Span span) {
+        envs.putAll(getRunEnvironmentVariables(run));
+        envs.putAll(getOtelConfigEnvironmentVariables());
+
         String spanId = span.getSpanContext().getSpanId();
         String traceId = span.getSpanContext().getTraceId();
         envs.put(TRACE_ID, traceId);
@@ -56,6 +88,19 @@ public class OtelEnvironmentContributorService {
             TextMapSetter<EnvVars> setter = (carrier, key, value) -> carrier.put(key.toUpperCase(), value);
             W3CTraceContextPropagator.getInstance().inject(Context.current(), envs, setter);
         }
+    }
+
+    /**
+     * @return the baggage and the links to the observability backends of the run, memoized once the run is monitored
+     */
+    @NonNull
+    @VisibleForTesting
+    Map<String, String> getRunEnvironmentVariables(@NonNull Run<?, ?> run) {
+        Map<String, String> memoized = runEnvironmentVariables.getIfPresent(run);
+        if (memoized != null) {
+            return memoized;
+        }
+        Map<String, String> environmentVariables = new HashMap<>();
         Baggage baggage = Baggage.builder()
                 .put(
                         ExtendedJenkinsAttributes.CI_PIPELINE_ID.getKey(),
@@ -63,27 +108,58 @@ public class OtelEnvironmentContributorService {
                 .put(ExtendedJenkinsAttributes.CI_PIPELINE_RUN_NUMBER.getKey(), String.valueOf(run.getNumber()))
                 .build();
         try (Scope ignored = baggage.makeCurrent()) {
-            TextMapSetter<EnvVars> setter = (carrier, key, value) -> carrier.put(key.toUpperCase(), value);
-            W3CBaggagePropagator.getInstance().inject(Context.current(), envs, setter);
+            TextMapSetter<Map<String, String>> setter = (carrier, key, value) -> carrier.put(key.toUpperCase(), value);
+            W3CBaggagePropagator.getInstance().inject(Context.current(), environmentVariables, setter);
         }
 
-        Optional.ofNullable(run.getAction(MonitoringAction.class)).ifPresent(monitoringAction -> {
-            // Add visualization link as environment variables to provide visualization links in notifications (to
-            // GitHub, slack messages...)
-            monitoringAction.getLinks().stream()
-                    .filter(link -> link.getEnvironmentVariableName() != null)
-                    .forEach(link -> envs.put(link.getEnvironmentVariableName(), link.getUrl()));
-        });
+        MonitoringAction monitoringAction = run.getAction(MonitoringAction.class);
+        if (monitoringAction == null) {
+            // don't memoize the environment of a run not yet monitored, it would miss the links
+            return environmentVariables;
+        }
+        // Add visualization link as environment variables to provide visualization links in notifications (to
+        // GitHub, slack messages...)
+        monitoringAction.getLinks().stream()
+                .filter(link -> link.getEnvironmentVariableName() != null)
+                .forEach(link -> environmentVariables.put(link.getEnvironmentVariableName(), link.getUrl()));
 
-        ConfigProperties config = reconfigurableOpenTelemetry.getConfig();
+        Map<String, String> unmodifiableEnvironmentVariables = Collections.unmodifiableMap(environmentVariables);
+        runEnvironmentVariables.put(run, unmodifiableEnvironmentVariables);
+        return unmodifiableEnvironmentVariables;
+    }
+
+    @NonNull
+    private Map<String, String> getOtelConfigEnvironmentVariables() {
+        Map<String, String> environmentVariables = otelConfigEnvironmentVariables;
+        if (environmentVariables == null) {
+            environmentVariables = toEnvironmentVariables(reconfigurableOpenTelemetry.getConfig());
+            otelConfigEnvironmentVariables = environmentVariables;
+        }
+        return environmentVariables;
+    }
+
+    @NonNull
+    private Map<String, String> toEnvironmentVariables(@NonNull ConfigProperties config) {
         boolean exportOTelConfigAsEnvVar =
                 config.getBoolean(OTEL_INSTRUMENTATION_JENKINS_EXPORT_OTEL_CONFIG_AS_ENV_VARS.asProperty(), true);
-        if (exportOTelConfigAsEnvVar) {
-            for (ConfigurationKey configKey : exportedConfigKeys) {
-                Optional.ofNullable(config.getString(configKey.asProperty()))
-                        .ifPresent(configValue -> envs.put(configKey.asEnvVar(), configValue));
-            }
+        if (!exportOTelConfigAsEnvVar) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> environmentVariables = new HashMap<>();
+        for (ConfigurationKey configKey : exportedConfigKeys) {
+            Optional.ofNullable(config.getString(configKey.asProperty()))
+                    .ifPresent(configValue -> environmentVariables.put(configKey.asEnvVar(), configValue));
         }
+        return Collections.unmodifiableMap(environmentVariables);
+    }
+
+    /**
+     * The exported configuration and the links to the observability backends may have changed
+     */
+    @Override
+    public void afterConfiguration(ConfigProperties configProperties) {
+        otelConfigEnvironmentVariables = toEnvironmentVariables(configProperties);
+        runEnvironmentVariables.invalidateAll();
     }
 
     @Inject
@@ -0,0 +1,333 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import io.opentelemetry.api.trace.TraceId;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import net.jcip.annotations.Immutable;
+
+/**
+ * <p>
+ * Persisted index of the trace IDs of the runs to their job and run number, so that the run of a trace ID linked
+ * from an observability backend is found without loading the build records, see
+ * {@link io.jenkins.plugins.opentelemetry.OpenTelemetryRootAction.TraceRedirectAction}.
+ * </p>
+ * <p>
+ * The index is held in memory, the trace IDs being stored as two {@code long}s and the job names being interned, and
+ * is persisted as an append only file of records replayed at startup, before the jobs are loaded. The oldest entries
+ * are evicted beyond {@link #MAX_ENTRIES} and the file is compacted once it holds twice as many records as entries.
+ * The runs of renamed or moved jobs are indexed under their new name.
+ * </p>
+ */
+public class TraceIdIndex {
+    private static final Logger LOGGER = Logger.getLogger(TraceIdIndex.class.getName());
+
+    public static final int MAX_ENTRIES = Integer.getInteger(TraceIdIndex.class.getName() + ".maxEntries", 200_000);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 0;
+
+    private static volatile TraceIdIndex INSTANCE;
+
+    @NonNull
+    private final Path file;
+
+    private final int maxEntries;
+
+    private final Interner<String> jobNames = Interners.newWeakInterner();
+
+    /**
+     * Entries in insertion order, the oldest runs first
+     */
+    private final LinkedHashMap<Key, RunIdentifier> entries;
+
+    private boolean loaded;
+
+    private int records;
+
+    @CheckForNull
+    private DataOutputStream out;
+
+    @VisibleForTesting
+    TraceIdIndex(@NonNull Path file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, RunIdentifier> eldest) {
+                return size() > TraceIdIndex.this.maxEntries;
+            }
+        };
+    }
+
+    @NonNull
+    public static TraceIdIndex get() {
+        if (INSTANCE == null) {
+            synchronized (TraceIdIndex.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new TraceIdIndex(
+                            new File(Jenkins.get().getRootDir(), "opentelemetry-trace-ids.idx").toPath(),
+                            MAX_ENTRIES);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Replay the index at startup rather than on the first lookup or on the first run initialized while loading the
+     * jobs
+     */
+    @Initializer(after = InitMilestone.PLUGINS_STARTED, before = InitMilestone.JOB_LOADED)
+    public static void loadAtStartup() {
+        get().load();
+    }
+
+    /**
+     * Index the trace ID of the given run
+     */
+    public synchronized void put(@NonNull String traceId, @NonNull String jobFullName, int runNumber) {
+        Key key = Key.parse(traceId);
+        if (key == null) {
+            return;
+        }
+        load();
+        RunIdentifier runIdentifier = new RunIdentifier(jobNames.intern(jobFullName), runNumber);
+        entries.put(key, runIdentifier);
+        append(PUT, key, runIdentifier);
+    }
+
+    public synchronized void remove(@NonNull String traceId) {
+        Key key = Key.parse(traceId);
+        if (key == null) {
+            return;
+        }
+        load();
+        if (entries.remove(key) != null) {
+            append(REMOVE, key, null);
+        }
+    }
+
+    /**
+     * Index the runs of a renamed or moved job under its new name
+     */
+    public synchronized void onLocationChanged(@NonNull String oldFullName, @NonNull String newFullName) {
+        load();
+        String jobFullName = jobNames.intern(newFullName);
+        for (Map.Entry<Key, RunIdentifier> entry : entries.entrySet()) {
+            RunIdentifier runIdentifier = entry.getValue();
+            if (runIdentifier.getJobName().equals(oldFullName)) {
+                runIdentifier = new RunIdentifier(jobFullName, runIdentifier.getRunNumber());
+                // keep the insertion order of the entry
+                entry.setValue(runIdentifier);
+                append(PUT, entry.getKey(), runIdentifier);
+            }
+        }
+    }
+
+    /**
+     * @return {@code null} if the trace ID isn't indexed
+     */
+    @CheckForNull
+    public synchronized RunIdentifier get(@NonNull String traceId) {
+        Key key = Key.parse(traceId);
+        if (key == null) {
+            return null;
+        }
+        load();
+        return entries.get(key);
+    }
+
+    @VisibleForTesting
+    synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOGGER.log(Level.INFO, () -> "Ignore the trace IDs index " + file + " of an unknown format");
+                return;
+            }
+            while (true) {
+                byte operation = in.readByte();
+                Key key = new Key(in.readLong(), in.readLong());
+                if (operation == PUT) {
+                    String jobFullName = in.readUTF();
+                    int runNumber = in.readInt();
+                    entries.put(key, new RunIdentifier(jobNames.intern(jobFullName), runNumber));
+                } else {
+                    entries.remove(key);
+                }
+                records++;
+            }
+        } catch (NoSuchFileException e) {
+            // empty index
+        } catch (EOFException e) {
+            // end of the index, the last record may have been partially written
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.INFO, "Failure to load the trace IDs index " + file + ", entries are missing", e);
+        }
+        // start from a file holding the loaded entries, dropping any partially written record
+        compact();
+    }
+
+    private void append(byte operation, @NonNull Key key, @CheckForNull RunIdentifier runIdentifier) {
+        if (records >= 2 * maxEntries) {
+            compact();
+            return;
+        }
+        try {
+            if (out == null) {
+                out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+            write(out, operation, key, runIdentifier);
+            out.flush();
+            records++;
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Failure to persist the trace IDs index " + file, e);
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Rewrite the file with the entries of the index
+     */
+    private void compact() {
+        closeQuietly();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream tmpOut =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                tmpOut.writeInt(FORMAT_VERSION);
+                for (Map.Entry<Key, RunIdentifier> entry : entries.entrySet()) {
+                    write(tmpOut, PUT, entry.getKey(), entry.getValue());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            records = entries.size();
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Failure to compact the trace IDs index " + file, e);
+        }
+    }
+
+    private static void write(
+            @NonNull DataOutputStream out,
+            byte operation,
+            @NonNull Key key,
+            @CheckForNull RunIdentifier runIdentifier)
+            throws IOException {
+        out.writeByte(operation);
+        out.writeLong(key.high);
+        out.writeLong(key.low);
+        if (operation == PUT) {
+            Objects.requireNonNull(runIdentifier);
+            out.writeUTF(runIdentifier.getJobName());
+            out.writeInt(runIdentifier.getRunNumber());
+        }
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, () -> "Failure to close the trace IDs index " + file + ": " + e);
+            }
+            out = null;
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void close() {
+        closeQuietly();
+    }
+
+    @Extension
+    public static class JobLocationListener extends ItemListener {
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            // also invoked for each job of a renamed or moved folder
+            if (item instanceof Job) {
+                get().onLocationChanged(oldFullName, newFullName);
+            }
+        }
+    }
+
+    /**
+     * Trace ID stored as two {@code long}s rather than as a 32 characters string
+     */
+    @Immutable
+    static class Key {
+        final long high;
+        final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        /**
+         * @return {@code null} if the trace ID is invalid
+         */
+        @CheckForNull
+        static Key parse(@NonNull String traceId) {
+            traceId = traceId.toLowerCase(Locale.ROOT);
+            if (!TraceId.isValid(traceId)) {
+                return null;
+            }
+            return new Key(
+                    Long.parseUnsignedLong(traceId.substring(0, 16), 16),
+                    Long.parseUnsignedLong(traceId.substring(16), 16));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return high == key.high && low == key.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high) * 31 + Long.hashCode(low);
+        }
+    }
+}
@@ -8,13 +8,28 @@ package io.jenkins.plugins.opentelemetry.job;
 import hudson.Extension;
 import hudson.model.Job;
 import hudson.model.Run;
+import hudson.util.HttpResponses;
 import hudson.views.ListViewColumn;
 import hudson.views.ListViewColumnDescriptor;
 import io.jenkins.plugins.opentelemetry.Messages;
+import io.jenkins.plugins.opentelemetry.backend.ObservabilityBackend;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.verb.GET;
 
+/**
+ * Links to the trace of the last completed run of the jobs of a list view. The column is rendered from the
+ * {@link LastRunTraces} without loading any build, the links identify the trace and point to
+ * {@link DescriptorImpl#doTraceLink} that computes the link to this trace when it's followed, even if a more recent run
+ * has completed since the rendering.
+ */
 public class ViewColumn extends ListViewColumn {
 
     @DataBoundConstructor
@@ -23,15 +38,27 @@ public class ViewColumn extends ListViewColumn {
     }
 
     public List<MonitoringAction.ObservabilityBackendLink> getLinks(final Job<?, ?> job) {
-        Run<?, ?> lastCompletedBuild = job.getLastCompletedBuild();
-        if (lastCompletedBuild == null) {
+        LastRunTraces.LastRunTrace lastRunTrace = LastRunTraces.get(job);
+        if (lastRunTrace == null) {
             return null;
         }
-        job.getLastCompletedBuild().getActions(MonitoringAction.class);
-        return lastCompletedBuild.getActions(MonitoringAction.class).stream()
-                .map(MonitoringAction::getLinks)
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
+        List<ObservabilityBackend> tracingCapableBackends = MonitoringAction.getTracingCapableBackends();
+        if (tracingCapableBackends.isEmpty()) {
+            return Collections.singletonList(MonitoringAction.getConfigurationLink());
+        }
+        String traceLinkUrl = Jenkins.get().getRootUrlFromRequest() + getDescriptor().getDescriptorUrl()
+                + "/traceLink?job=" + URLEncoder.encode(job.getFullName(), StandardCharsets.UTF_8) + "&run="
+                + lastRunTrace.getRunNumber() + "&traceId=" + lastRunTrace.getTraceId() + "&backend=";
+        List<MonitoringAction.ObservabilityBackendLink> links = new ArrayList<>();
+        for (int i = 0; i < tracingCapableBackends.size(); i++) {
+            ObservabilityBackend backend = tracingCapableBackends.get(i);
+            links.add(new MonitoringAction.ObservabilityBackendLink(
+                    "View pipeline with " + backend.getName(),
+                    traceLinkUrl + i,
+                    backend.getIconPath(),
+                    backend.getEnvVariableName()));
+        }
+        return links;
     }
 
     @Extension
@@ -47,5 +74,40 @@ public class ViewColumn extends ListViewColumn {
         public boolean shownByDefault() {
             return false;
         }
+
+        /**
+         * Redirect to the trace of the given run of the given job in the given observability backend
+         *
+         * @param job     full name of the job
+         * @param run     number of the run, the last completed run when the link was rendered
+         * @param traceId trace of the run
+         * @param backend index of the backend among the backends capable of visualizing traces
+         */
+        @GET
+        public HttpResponse doTraceLink(
+                @QueryParameter String job,
+                @QueryParameter int run,
+                @QueryParameter String traceId,
+                @QueryParameter int backend) {
+            // null if the job no longer exists or isn't readable by the user
+            Job<?, ?> item = job == null ? null : Jenkins.get().getItemByFullName(job, Job.class);
+            if (item == null || traceId == null) {
+                return HttpResponses.notFound();
+            }
+            LastRunTraces.LastRunTrace lastRunTrace = LastRunTraces.getOrLoad(item);
+            if (lastRunTrace == null || !lastRunTrace.getTraceId().equals(traceId)) {
+                // a more recent run has completed since the rendering of the link
+                Run<?, ?> build = item.getBuildByNumber(run);
+                lastRunTrace = build == null ? null : LastRunTraces.LastRunTrace.of(build);
+            }
+            if (lastRunTrace == null || !lastRunTrace.getTraceId().equals(traceId)) {
+                return HttpResponses.notFound();
+            }
+            List<MonitoringAction.ObservabilityBackendLink> links = lastRunTrace.getLinks();
+            if (backend < 0 || backend >= links.size() || links.get(backend).getUrl() == null) {
+                return HttpResponses.notFound();
+            }
+            return HttpResponses.redirectTo(links.get(backend).getUrl());
+        }
     }
 }
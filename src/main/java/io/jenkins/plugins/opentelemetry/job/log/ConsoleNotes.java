@@ -7,23 +7,46 @@ package io.jenkins.plugins.opentelemetry.job.log;
 
 import com.google.common.collect.ImmutableMap;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.console.ConsoleNote;
 import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
+import java.nio.BufferUnderflowException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import net.jcip.annotations.Immutable;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 /**
  * Utilities for extracting and reinserting {@link ConsoleNote}s.
  * copied from https://github.com/jenkinsci/pipeline-cloudwatch-logs-plugin
+ * <p>
+ * The console notes of a log line are exported in the {@link ExtendedJenkinsAttributes#JENKINS_ANSI_ANNOTATIONS}
+ * attribute with a compact binary encoding, see {@link #encodeAnnotations(List)}. The JSON array of
+ * {@code {"position": ..., "note": ...}} exported by previous versions is still accepted.
+ * </p>
  */
 public class ConsoleNotes {
 
+    /**
+     * Export the console notes as a JSON array as previous versions did
+     */
+    static final boolean LEGACY_JSON_ANNOTATIONS =
+            Boolean.getBoolean(ConsoleNotes.class.getName() + ".legacyJsonAnnotations");
+
+    static final String ANNOTATIONS_V1_PREFIX = "v1:";
+
+    private static final String NOTE_HASH_PREFIX = "ha:";
+    private static final int NOTE_HASH = 0;
+    private static final int NOTE_TEXT = 1;
+
     private ConsoleNotes() {}
 
     public static TextAndAnnotations parse(byte[] bytes, int len) {
@@ -45,7 +68,7 @@ public class ConsoleNotes {
             return new TextAndAnnotations(line, null);
         } else {
             StringBuilder buf = new StringBuilder();
-            List<Map<String, Object>> annotations = new ArrayList<>();
+            List<Annotation> annotations = new ArrayList<>();
             int pos = 0;
             while (true) {
                 int preamble = line.indexOf(ConsoleNote.PREAMBLE_STR, pos);
@@ -59,15 +82,11 @@ public class ConsoleNotes {
                     break;
                 }
                 buf.append(line, pos, preamble);
-                annotations.add(ImmutableMap.of(
-                        ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD,
-                        buf.length(),
-                        ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD,
-                        line.substring(endOfPreamble, postamble)));
+                annotations.add(new Annotation(buf.length(), line.substring(endOfPreamble, postamble)));
                 pos = postamble + ConsoleNote.POSTAMBLE_STR.length();
             }
             buf.append(line, pos, line.length()); // append tail
-            return new TextAndAnnotations(buf.toString(), JSONArray.fromObject(annotations));
+            return new TextAndAnnotations(buf.toString(), annotations);
         }
     }
 
@@ -75,27 +94,174 @@ public class ConsoleNotes {
         final String text;
 
         @CheckForNull
-        final JSONArray annotations;
+        final List<Annotation> annotations;
 
-        public TextAndAnnotations(String text, @Nullable JSONArray annotations) {
+        public TextAndAnnotations(String text, @Nullable List<Annotation> annotations) {
             this.text = text;
             this.annotations = annotations;
         }
     }
 
-    public static String readFormattedMessage(String message, @Nullable JSONArray annotations) {
+    /**
+     * Console note inserted at a position of the plain text of a log line
+     */
+    @Immutable
+    public static class Annotation {
+        final int position;
+
+        @NonNull
+        final String note;
+
+        public Annotation(int position, @NonNull String note) {
+            this.position = position;
+            this.note = note;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Annotation that = (Annotation) o;
+            return position == that.position && note.equals(that.note);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(position, note);
+        }
+
+        @Override
+        public String toString() {
+            return "Annotation{" + "position=" + position + ", note='" + note + '\'' + '}';
+        }
+    }
+
+    /**
+     * <p>
+     * Encode the console notes of a log line: {@code v1:} followed by the base64 encoding of the number of notes and,
+     * for each note, the increment of its position, its kind and its length, as unsigned varints, followed by its
+     * payload. The payload of the notes serialized by {@link ConsoleNote#encode()} ({@code ha:<base64>}) is the raw
+     * serialized note rather than its base64 encoding.
+     * </p>
+     */
+    @NonNull
+    public static String encodeAnnotations(@NonNull List<Annotation> annotations) {
+        if (LEGACY_JSON_ANNOTATIONS) {
+            List<Map<String, Object>> jsonAnnotations = new ArrayList<>();
+            for (Annotation annotation : annotations) {
+                jsonAnnotations.add(ImmutableMap.of(
+                        ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD,
+                        annotation.position,
+                        ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD,
+                        annotation.note));
+            }
+            return JSONArray.fromObject(jsonAnnotations).toString();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarInt(out, annotations.size());
+        int previousPosition = 0;
+        for (Annotation annotation : annotations) {
+            writeVarInt(out, annotation.position - previousPosition);
+            previousPosition = annotation.position;
+            byte[] rawNote = rawNote(annotation.note);
+            byte[] payload = rawNote == null ? annotation.note.getBytes(StandardCharsets.UTF_8) : rawNote;
+            out.write(rawNote == null ? NOTE_TEXT : NOTE_HASH);
+            writeVarInt(out, payload.length);
+            out.writeBytes(payload);
+        }
+        return ANNOTATIONS_V1_PREFIX + Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * Decode the console notes encoded by {@link #encodeAnnotations(List)} or by previous versions as a JSON array
+     *
+     * @throws IllegalArgumentException if the given console notes are malformed
+     */
+    @NonNull
+    public static List<Annotation> decodeAnnotations(@NonNull String encodedAnnotations) {
+        if (encodedAnnotations.startsWith(ANNOTATIONS_V1_PREFIX)) {
+            java.nio.ByteBuffer in = java.nio.ByteBuffer.wrap(
+                    Base64.getDecoder().decode(encodedAnnotations.substring(ANNOTATIONS_V1_PREFIX.length())));
+            try {
+                int count = readVarInt(in);
+                List<Annotation> annotations = new ArrayList<>(Math.min(count, 64));
+                int position = 0;
+                for (int i = 0; i < count; i++) {
+                    position += readVarInt(in);
+                    int kind = in.get();
+                    byte[] payload = new byte[readVarInt(in)];
+                    in.get(payload);
+                    String note = kind == NOTE_HASH
+                            ? NOTE_HASH_PREFIX + Base64.getEncoder().encodeToString(payload)
+                            : new String(payload, StandardCharsets.UTF_8);
+                    annotations.add(new Annotation(position, note));
+                }
+                return annotations;
+            } catch (BufferUnderflowException | NegativeArraySizeException e) {
+                throw new IllegalArgumentException("Malformed console notes " + encodedAnnotations, e);
+            }
+        }
+        // JSON array exported by previous versions
+        List<Annotation> annotations = new ArrayList<>();
+        for (Object o : JSONArray.fromObject(encodedAnnotations)) {
+            JSONObject annotation = (JSONObject) o;
+            annotations.add(new Annotation(
+                    annotation.getInt(ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD),
+                    annotation.getString(ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD)));
+        }
+        return annotations;
+    }
+
+    /**
+     * @return the raw serialized note if the given note is the base64 encoding of a serialized note, {@code null}
+     * otherwise
+     */
+    @CheckForNull
+    private static byte[] rawNote(@NonNull String note) {
+        if (!note.startsWith(NOTE_HASH_PREFIX)) {
+            return null;
+        }
+        String base64 = note.substring(NOTE_HASH_PREFIX.length());
+        try {
+            byte[] rawNote = Base64.getDecoder().decode(base64);
+            // only if the note is restored as is
+            return Base64.getEncoder().encodeToString(rawNote).equals(base64) ? rawNote : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeVarInt(@NonNull ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(@NonNull java.nio.ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static String readFormattedMessage(String message, @Nullable List<Annotation> annotations) {
         if (annotations == null) {
             return message;
         } else {
             StringWriter formattedMessage = new StringWriter();
             int pos = 0;
-            for (Object o : annotations) {
-                JSONObject annotation = (JSONObject) o;
-                int position = annotation.getInt(ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD);
-                String note = annotation.getString(ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD);
+            for (Annotation annotation : annotations) {
+                int position = annotation.position;
                 formattedMessage.write(message, pos, position - pos);
                 formattedMessage.write(ConsoleNote.PREAMBLE_STR);
-                formattedMessage.write(note);
+                formattedMessage.write(annotation.note);
                 formattedMessage.write(ConsoleNote.POSTAMBLE_STR);
                 pos = position;
             }
@@ -0,0 +1,256 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Run;
+import io.jenkins.plugins.opentelemetry.job.RunIdentifier;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalMetrics;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsOperationValues;
+import io.opentelemetry.context.Scope;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Cursor tailing the logs of a running run shared by all the viewers streaming the logs of the run with the
+ * {@link LogStreamAction}: the logs are read at most once per {@link #POLL_INTERVAL_MILLIS} whatever the number of
+ * viewers, by the first viewer waiting for new log lines, and the recent log lines are retained in memory, up to
+ * {@link #MAX_RETAINED_BYTES}, for the other viewers.
+ * </p>
+ * <p>
+ * Only complete log lines are read from running runs so that the offsets are always at the start of a log line.
+ * </p>
+ */
+class LiveLogTail {
+    private static final Logger LOGGER = Logger.getLogger(LiveLogTail.class.getName());
+
+    static final long POLL_INTERVAL_MILLIS =
+            Long.getLong(LiveLogTail.class.getName() + ".pollIntervalMillis", 1_000);
+
+    static final int MAX_RETAINED_BYTES =
+            Integer.getInteger(LiveLogTail.class.getName() + ".maxRetainedBytes", 256 * 1024);
+
+    private static final Cache<RunIdentifier, LiveLogTail> TAILS = CacheBuilder.newBuilder()
+            .expireAfterAccess(1, TimeUnit.MINUTES)
+            .build();
+
+    @NonNull
+    private final LogSource logSource;
+
+    private final long pollIntervalInNanos;
+
+    private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+
+    private long retainedBytes;
+
+    /**
+     * Offset of the end of the log lines read so far
+     */
+    private long offset;
+
+    private long lastPollInNanos;
+
+    private boolean polling;
+
+    private boolean complete;
+
+    LiveLogTail(@NonNull LogSource logSource, long offset, long pollIntervalInNanos) {
+        this.logSource = logSource;
+        this.offset = offset;
+        this.pollIntervalInNanos = pollIntervalInNanos;
+        this.lastPollInNanos = System.nanoTime() - pollIntervalInNanos;
+    }
+
+    /**
+     * @param offset offset from which the tail is created if no viewer is streaming the logs of the run
+     */
+    @NonNull
+    static LiveLogTail get(@NonNull Run<?, ?> run, long offset) {
+        return TAILS.asMap()
+                .computeIfAbsent(
+                        new RunIdentifier(run.getParent().getFullName(), run.getNumber()),
+                        k -> new LiveLogTail(
+                                LogSource.of(run), offset, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MILLIS)));
+    }
+
+    /**
+     * Wait for the log lines following the given offset
+     *
+     * @return the log lines following the given offset, empty if no log line was emitted before the given timeout,
+     * {@code null} if the given offset precedes the retained log lines and the caller must read the logs by itself
+     */
+    @CheckForNull
+    Chunk read(long from, long timeoutInNanos) throws IOException, InterruptedException {
+        long deadlineInNanos = System.nanoTime() + timeoutInNanos;
+        while (true) {
+            long pollFrom;
+            synchronized (this) {
+                while (true) {
+                    long retainedStart = chunks.isEmpty() ? offset : chunks.getFirst().start;
+                    if (from < retainedStart) {
+                        return null;
+                    } else if (from < offset) {
+                        return retainedFrom(from);
+                    } else if (complete) {
+                        return new Chunk(from, new byte[0], true);
+                    }
+                    long nowInNanos = System.nanoTime();
+                    long nextPollInNanos = lastPollInNanos + pollIntervalInNanos;
+                    if (!polling && nowInNanos >= nextPollInNanos) {
+                        polling = true;
+                        pollFrom = offset;
+                        break;
+                    } else if (nowInNanos >= deadlineInNanos) {
+                        return new Chunk(from, new byte[0], false);
+                    }
+                    long waitUntilInNanos = polling ? deadlineInNanos : Math.min(deadlineInNanos, nextPollInNanos);
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitUntilInNanos - nowInNanos, 1));
+                }
+            }
+            // read the new log lines out of the lock so that the other viewers keep reading the retained log lines
+            Chunk polled = null;
+            try {
+                polled = readLogLines(logSource, pollFrom);
+            } finally {
+                synchronized (this) {
+                    polling = false;
+                    lastPollInNanos = System.nanoTime();
+                    if (polled != null) {
+                        append(polled);
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private void append(@NonNull Chunk chunk) {
+        complete = chunk.complete;
+        if (chunk.bytes.length == 0) {
+            return;
+        }
+        LOGGER.log(Level.FINER, () -> "Append " + chunk);
+        chunks.addLast(chunk);
+        offset = chunk.getEnd();
+        retainedBytes += chunk.bytes.length;
+        while (retainedBytes > MAX_RETAINED_BYTES && chunks.size() > 1) {
+            retainedBytes -= chunks.removeFirst().bytes.length;
+        }
+    }
+
+    @NonNull
+    private Chunk retainedFrom(long from) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Chunk chunk : chunks) {
+            if (chunk.getEnd() > from) {
+                int index = (int) Math.max(0, from - chunk.start);
+                bytes.write(chunk.bytes, index, chunk.bytes.length - index);
+            }
+        }
+        return new Chunk(from, bytes.toByteArray(), false);
+    }
+
+    /**
+     * @return the complete log lines of the given log source from the given offset
+     */
+    @NonNull
+    static Chunk readLogLines(@NonNull LogSource logSource, long from) throws IOException {
+        boolean complete = logSource.isComplete();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        logSource.writeLogTo(from, out);
+        byte[] bytes = out.toByteArray();
+        if (complete) {
+            return new Chunk(from, bytes, true);
+        }
+        // the last log line may not be complete yet
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != '\n') {
+            length--;
+        }
+        return new Chunk(from, length == bytes.length ? bytes : Arrays.copyOf(bytes, length), false);
+    }
+
+    /**
+     * Log lines from the offset {@link #start}
+     */
+    static class Chunk {
+        final long start;
+
+        @NonNull
+        final byte[] bytes;
+
+        /**
+         * {@code true} if the log is complete and no log line follows
+         */
+        final boolean complete;
+
+        Chunk(long start, @NonNull byte[] bytes, boolean complete) {
+            this.start = start;
+            this.bytes = bytes;
+            this.complete = complete;
+        }
+
+        long getEnd() {
+            return start + bytes.length;
+        }
+
+        @Override
+        public String toString() {
+            return "Chunk{" + "start=" + start + ", length=" + bytes.length + ", complete=" + complete + '}';
+        }
+    }
+
+    /**
+     * Logs of a run
+     */
+    interface LogSource {
+        /**
+         * @return {@code true} if no log line will be added to the logs
+         */
+        boolean isComplete();
+
+        /**
+         * @return the length of the logs emitted so far
+         */
+        long length();
+
+        void writeLogTo(long start, @NonNull OutputStream out) throws IOException;
+
+        @NonNull
+        static LogSource of(@NonNull Run<?, ?> run) {
+            return new LogSource() {
+                @Override
+                public boolean isComplete() {
+                    return !run.isLogUpdated();
+                }
+
+                @Override
+                public long length() {
+                    try (Scope ignored = LogRetrievalMetrics.withOperation(LogsOperationValues.TAIL)) {
+                        return run.getLogText().length();
+                    }
+                }
+
+                @Override
+                public void writeLogTo(long start, @NonNull OutputStream out) throws IOException {
+                    try (Scope ignored = LogRetrievalMetrics.withOperation(LogsOperationValues.TAIL)) {
+                        run.getLogText().writeRawLogTo(start, out);
+                    }
+                }
+            };
+        }
+    }
+}
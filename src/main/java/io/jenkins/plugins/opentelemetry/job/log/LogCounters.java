@@ -0,0 +1,199 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.remoting.Asynchronous;
+import hudson.remoting.Channel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * Byte and line counters of the logs of a run and of each of its flow nodes, incremented by
+ * {@link OtelLogOutputStream} while the log lines are emitted.
+ * </p>
+ * <p>
+ * The log lines emitted on the Jenkins Agents are counted on the Jenkins Agent and the counts are reported
+ * asynchronously to the Jenkins Controller through the {@link Sink} exported on the remoting channel of the agent, see
+ * {@link #export()}. When the counters can't be exported, the counters are marked as incomplete and no
+ * {@link LogStatistics} is reported.
+ * </p>
+ * <p>
+ * The most recent log lines are kept in {@link RecentLogLines} to serve the live tail of the console, the Jenkins
+ * Agents reporting their log lines with their counts.
+ * </p>
+ */
+public class LogCounters implements LogCounters.Sink {
+    private final Counter overall = new Counter();
+    private final ConcurrentMap<String, Counter> flowNodes = new ConcurrentHashMap<>();
+    private final RecentLogLines recentLogLines = new RecentLogLines(RecentLogLines.MAX_BYTES);
+    private volatile boolean incomplete;
+
+    /**
+     * @param flowNodeId id of the flow node emitting the log line, {@code null} for the log lines of the run
+     * @param plainLogLine log line as sent to the observability backend, without the trailing {@code \n}
+     */
+    public void onLogLine(@Nullable String flowNodeId, @NonNull String plainLogLine) {
+        long lengthInBytes = LogLine.lengthInBytes(plainLogLine);
+        add(flowNodeId, lengthInBytes, lengthInBytes, 1);
+    }
+
+    @Override
+    public void add(
+            @Nullable String flowNodeId, long lengthInBytes, long lengthWithConsoleNotesInBytes, long lineCount) {
+        overall.add(lengthInBytes, lengthWithConsoleNotesInBytes, lineCount);
+        if (flowNodeId != null) {
+            flowNodes
+                    .computeIfAbsent(flowNodeId, id -> new Counter())
+                    .add(lengthInBytes, lengthWithConsoleNotesInBytes, lineCount);
+        }
+    }
+
+    @Override
+    public void addRecentLogLines(
+            @Nullable String flowNodeId,
+            @NonNull long[] timestampsInNanos,
+            @NonNull String[] plainLogLines,
+            boolean consoleNotes) {
+        for (int i = 0; i < plainLogLines.length; i++) {
+            recentLogLines.onLogLine(flowNodeId, timestampsInNanos[i], plainLogLines[i], consoleNotes);
+        }
+    }
+
+    /**
+     * @return {@code true} if the log lines must be reported with {@link #addRecentLogLines}
+     */
+    public boolean isRecentLogLinesEnabled() {
+        return RecentLogLines.MAX_BYTES > 0 && !incomplete;
+    }
+
+    /**
+     * Export the counters on the remoting channel of the Jenkins Agent being sent the listener of the logs, must be
+     * invoked while serializing the listener
+     *
+     * @return {@code null} if not serializing over a remoting channel, the counters are then marked as incomplete
+     */
+    @CheckForNull
+    public Sink export() {
+        Channel channel = Channel.current();
+        if (channel == null) {
+            markIncomplete();
+            return null;
+        }
+        return channel.export(Sink.class, this);
+    }
+
+    /**
+     * Invoked when log lines of the run are emitted without being counted
+     */
+    public void markIncomplete() {
+        incomplete = true;
+        recentLogLines.disable();
+    }
+
+    public boolean isIncomplete() {
+        return incomplete;
+    }
+
+    /**
+     * @param flowNodeId {@code null} to get the statistics of the run
+     * @return {@code null} if some log lines have not been counted
+     */
+    @CheckForNull
+    public LogStatistics getStatistics(@Nullable String flowNodeId) {
+        if (incomplete) {
+            return null;
+        }
+        if (flowNodeId == null) {
+            return overall.toStatistics();
+        }
+        Counter counter = flowNodes.get(flowNodeId);
+        return counter == null ? LogStatistics.EMPTY : counter.toStatistics();
+    }
+
+    /**
+     * @param flowNodeId {@code null} to get the tail of the logs of the run
+     * @param renderingConsoleNotes see {@link LogStorageRetriever#isRenderingConsoleNotes()}
+     * @return {@code null} if the tail of the logs isn't kept in memory
+     */
+    @CheckForNull
+    public LogTail getRecentLogLines(@Nullable String flowNodeId, boolean renderingConsoleNotes) {
+        if (incomplete) {
+            return null;
+        }
+        return recentLogLines.getTail(flowNodeId, renderingConsoleNotes);
+    }
+
+    /**
+     * @return the statistics of the flow nodes that emitted log lines, empty if some log lines have not been counted
+     */
+    @NonNull
+    public Map<String, LogStatistics> getFlowNodesStatistics() {
+        if (incomplete) {
+            return Map.of();
+        }
+        return flowNodes.entrySet().stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey, entry -> entry.getValue().toStatistics()));
+    }
+
+    private static class Counter {
+        final LongAdder lengthInBytes = new LongAdder();
+        final LongAdder lengthWithConsoleNotesInBytes = new LongAdder();
+        final LongAdder lineCount = new LongAdder();
+
+        void add(long lengthInBytes, long lengthWithConsoleNotesInBytes, long lineCount) {
+            this.lengthInBytes.add(lengthInBytes);
+            this.lengthWithConsoleNotesInBytes.add(lengthWithConsoleNotesInBytes);
+            this.lineCount.add(lineCount);
+        }
+
+        LogStatistics toStatistics() {
+            return new LogStatistics(lengthInBytes.sum(), lengthWithConsoleNotesInBytes.sum(), lineCount.sum());
+        }
+    }
+
+    /**
+     * Receive the counts of the emitted log lines, exported to the Jenkins Agents as a remoting proxy
+     */
+    public interface Sink {
+        /**
+         * @param flowNodeId id of the flow node emitting the log lines, {@code null} for the log lines of the run
+         * @param lengthInBytes length of the plain text of the log lines, see {@link LogLine#lengthInBytes(String)}
+         * @param lengthWithConsoleNotesInBytes length of the log lines with their console notes reinserted
+         */
+        @Asynchronous
+        void add(@Nullable String flowNodeId, long lengthInBytes, long lengthWithConsoleNotesInBytes, long lineCount);
+
+        /**
+         * @param flowNodeId id of the flow node emitting the log lines, {@code null} for the log lines of the run
+         * @param timestampsInNanos timestamps of the log lines as sent to the observability backend
+         * @param plainLogLines log lines as sent to the observability backend, without the trailing {@code \n}
+         * @param consoleNotes {@code true} if console notes have been sent with some log lines
+         * @see RecentLogLines
+         */
+        @Asynchronous
+        void addRecentLogLines(
+                @Nullable String flowNodeId,
+                @NonNull long[] timestampsInNanos,
+                @NonNull String[] plainLogLines,
+                boolean consoleNotes);
+    }
+
+    @Override
+    public String toString() {
+        return "LogCounters{" + "overall="
+                + overall.toStatistics() + ", flowNodes="
+                + flowNodes.size() + ", incomplete="
+                + incomplete + '}';
+    }
+}
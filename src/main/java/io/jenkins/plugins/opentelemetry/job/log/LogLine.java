@@ -5,6 +5,8 @@
 
 package io.jenkins.plugins.opentelemetry.job.log;
 
+import com.google.common.base.Utf8;
+import java.nio.charset.StandardCharsets;
 import javax.annotation.Nonnull;
 
 /**
@@ -38,6 +40,27 @@ public class LogLine<Id> {
         return message;
     }
 
+    /**
+     * @return the length of the log line in the log: its message encoded in UTF-8 followed by {@code \n}
+     */
+    public long getLengthInBytes() {
+        return lengthInBytes(message);
+    }
+
+    /**
+     * @return the length of the given message encoded in UTF-8 followed by {@code \n}, unpaired surrogates being
+     * replaced by {@code ?} as {@link io.jenkins.plugins.opentelemetry.job.log.util.LogLineIteratorInputStream} does
+     */
+    public static long lengthInBytes(@Nonnull String message) {
+        long length;
+        try {
+            length = Utf8.encodedLength(message);
+        } catch (IllegalArgumentException e) {
+            length = message.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return length + 1;
+    }
+
     @Override
     public String toString() {
         return "LogLine{" + "id=" + id + ", message='" + message + '\'' + '}';
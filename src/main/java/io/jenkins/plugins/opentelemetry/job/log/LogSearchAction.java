@@ -0,0 +1,176 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.util.HttpResponses;
+import io.jenkins.plugins.opentelemetry.JenkinsControllerOpenTelemetry;
+import io.jenkins.plugins.opentelemetry.JenkinsOpenTelemetryPluginConfiguration;
+import io.jenkins.plugins.opentelemetry.job.MonitoringAction;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalExecutor;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.TransientActionFactory;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+
+/**
+ * <p>
+ * Search the logs of a run stored in the observability backend, the search being pushed down to the backend by the
+ * {@link LogStorageRetriever} so that only the matching log lines are transferred.
+ * </p>
+ * <p>
+ * {@code GET /job/:jobFullName/:runNumber/otel-logs-search/?q=:phrase&size=:pageSize&cursor=:cursor} returns the
+ * matching log lines with their line number and flow node id, and the cursor of the next page.
+ * </p>
+ */
+public class LogSearchAction implements Action {
+    private static final Logger LOGGER = Logger.getLogger(LogSearchAction.class.getName());
+
+    static final int DEFAULT_PAGE_SIZE = 20;
+
+    static final int MAX_PAGE_SIZE = Integer.getInteger(LogSearchAction.class.getName() + ".maxPageSize", 100);
+
+    @NonNull
+    final Run<?, ?> run;
+
+    @NonNull
+    final MonitoringAction monitoringAction;
+
+    LogSearchAction(@NonNull Run<?, ?> run, @NonNull MonitoringAction monitoringAction) {
+        this.run = run;
+        this.monitoringAction = monitoringAction;
+    }
+
+    @GET
+    public HttpResponse doIndex(@QueryParameter String q, @QueryParameter String cursor, @QueryParameter String size)
+            throws IOException {
+        run.getParent().checkPermission(Item.READ);
+        if (StringUtils.isBlank(q)) {
+            return badRequest("Missing search phrase 'q'");
+        }
+        int requestedPageSize;
+        try {
+            requestedPageSize = StringUtils.isBlank(size) ? DEFAULT_PAGE_SIZE : Integer.parseInt(size);
+        } catch (NumberFormatException e) {
+            return badRequest("Invalid page size '" + size + "'");
+        }
+        int pageSize = Math.max(1, Math.min(requestedPageSize, MAX_PAGE_SIZE));
+        String traceId = monitoringAction.getTraceId();
+        if (traceId == null) {
+            return HttpResponses.errorJSON("No trace found for " + run);
+        }
+
+        Tracer tracer = JenkinsControllerOpenTelemetry.get().getDefaultTracer();
+        Span span = tracer.spanBuilder("LogSearchAction.doIndex")
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_ID, run.getParent().getFullName())
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_RUN_NUMBER, (long) run.getNumber())
+                .setAttribute("query.pageSize", pageSize)
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            LogStorageRetriever logStorageRetriever =
+                    JenkinsOpenTelemetryPluginConfiguration.get().getLogStorageRetriever();
+            Instant startTime = Instant.ofEpochMilli(run.getStartTimeInMillis());
+            Instant endTime = run.getDuration() == 0 ? null : startTime.plusMillis(run.getDuration());
+            LogSearchResult logSearchResult = LogRetrievalExecutor.get()
+                    .call(
+                            () -> logStorageRetriever.search(
+                                    run.getParent().getFullName(),
+                                    run.getNumber(),
+                                    traceId,
+                                    q,
+                                    StringUtils.defaultIfBlank(cursor, null),
+                                    pageSize,
+                                    startTime,
+                                    endTime),
+                            LogRetrievalExecutor.newDeadlineInNanos());
+            if (logSearchResult == null) {
+                return HttpResponses.errorJSON("Log search is not supported by " + logStorageRetriever);
+            }
+            span.setAttribute("response.size", logSearchResult.getHits().size());
+            return HttpResponses.okJSON(logSearchResult.toJson());
+        } catch (LogSearchResult.InvalidCursorException e) {
+            span.recordException(e);
+            return badRequest(e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            span.recordException(e);
+            LOGGER.log(Level.INFO, "Failure to search the logs of " + run, e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * @return a JSON error response with the status {@code 400 Bad Request}
+     */
+    @NonNull
+    static HttpResponse badRequest(@NonNull String message) {
+        return new HttpResponse() {
+            @Override
+            public void generateResponse(StaplerRequest2 req, StaplerResponse2 rsp, Object node)
+                    throws IOException, ServletException {
+                rsp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                HttpResponses.errorJSON(message).generateResponse(req, rsp, node);
+            }
+        };
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "OpenTelemetry logs search";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "otel-logs-search";
+    }
+
+    /**
+     * Add the {@link LogSearchAction} to the runs monitored with OpenTelemetry when their logs are stored in the
+     * observability backend
+     */
+    @Extension
+    public static class Factory extends TransientActionFactory<Run> {
+        @Override
+        public Class<Run> type() {
+            return Run.class;
+        }
+
+        @NonNull
+        @Override
+        public Collection<? extends Action> createFor(@NonNull Run target) {
+            MonitoringAction monitoringAction = target.getAction(MonitoringAction.class);
+            if (monitoringAction == null || !JenkinsControllerOpenTelemetry.get().isLogsEnabled()) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(new LogSearchAction(target, monitoringAction));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import net.jcip.annotations.Immutable;
+import net.sf.json.JSONObject;
+
+/**
+ * Log line of a run matching a {@link LogStorageRetriever#search search}
+ */
+@Immutable
+public class LogSearchHit {
+    private final long lineNumber;
+
+    @Nullable
+    private final String flowNodeId;
+
+    @NonNull
+    private final String message;
+
+    /**
+     * @param lineNumber 1 based number of the line in the logs of the run
+     * @param flowNodeId {@code null} if the log line has not been emitted by a flow node
+     * @param message    plain text of the log line, without console notes
+     */
+    public LogSearchHit(long lineNumber, @Nullable String flowNodeId, @NonNull String message) {
+        this.lineNumber = lineNumber;
+        this.flowNodeId = flowNodeId;
+        this.message = message;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @CheckForNull
+    public String getFlowNodeId() {
+        return flowNodeId;
+    }
+
+    @NonNull
+    public String getMessage() {
+        return message;
+    }
+
+    @NonNull
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("lineNumber", lineNumber);
+        if (flowNodeId != null) {
+            json.put("flowNodeId", flowNodeId);
+        }
+        json.put("message", message);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "LogSearchHit{" + "lineNumber=" + lineNumber + ", flowNodeId=" + flowNodeId + ", message='" + message
+                + '\'' + '}';
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.List;
+import net.jcip.annotations.Immutable;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Page of the log lines of a run matching a {@link LogStorageRetriever#search search}
+ */
+@Immutable
+public class LogSearchResult {
+    @NonNull
+    private final List<LogSearchHit> hits;
+
+    @Nullable
+    private final String nextCursor;
+
+    /**
+     * @param hits       matching log lines in ascending order
+     * @param nextCursor opaque cursor of the next page, {@code null} if this page is the last one
+     */
+    public LogSearchResult(@NonNull List<LogSearchHit> hits, @Nullable String nextCursor) {
+        this.hits = List.copyOf(hits);
+        this.nextCursor = nextCursor;
+    }
+
+    @NonNull
+    public List<LogSearchHit> getHits() {
+        return hits;
+    }
+
+    @CheckForNull
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @NonNull
+    public JSONObject toJson() {
+        JSONArray hits = new JSONArray();
+        this.hits.forEach(hit -> hits.add(hit.toJson()));
+        JSONObject json = new JSONObject();
+        json.put("hits", hits);
+        if (nextCursor != null) {
+            json.put("nextCursor", nextCursor);
+        }
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "LogSearchResult{" + "hits=" + hits.size() + ", nextCursor='" + nextCursor + '\'' + '}';
+    }
+
+    /**
+     * The cursor given to {@link LogStorageRetriever#search search} isn't a {@link #getNextCursor()} of a previous
+     * search of the same observability backend
+     */
+    public static class InvalidCursorException extends IllegalArgumentException {
+        public InvalidCursorException(@NonNull String cursor, @Nullable Throwable cause) {
+            super("Invalid cursor '" + cursor + "'", cause);
+        }
+    }
+}
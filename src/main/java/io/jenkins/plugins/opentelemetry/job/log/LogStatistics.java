@@ -0,0 +1,67 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Exact length of the logs of a run or of a flow node as rendered by the {@link LogStorageRetriever}: the UTF-8 plain
+ * text of each log line followed by {@code \n}, the console notes being reinserted in the log lines when the
+ * {@link LogStorageRetriever} renders them, see {@link LogStorageRetriever#isRenderingConsoleNotes()}.
+ */
+@Immutable
+public class LogStatistics {
+    public static final LogStatistics EMPTY = new LogStatistics(0, 0);
+
+    private final long lengthInBytes;
+
+    /**
+     * {@code 0} for the statistics recorded by previous versions, which didn't record the statistics of logs with
+     * console notes
+     */
+    private final long lengthWithConsoleNotesInBytes;
+
+    private final long lineCount;
+
+    public LogStatistics(long lengthInBytes, long lineCount) {
+        this(lengthInBytes, lengthInBytes, lineCount);
+    }
+
+    public LogStatistics(long lengthInBytes, long lengthWithConsoleNotesInBytes, long lineCount) {
+        this.lengthInBytes = lengthInBytes;
+        this.lengthWithConsoleNotesInBytes = lengthWithConsoleNotesInBytes;
+        this.lineCount = lineCount;
+    }
+
+    public long getLengthInBytes() {
+        return lengthInBytes;
+    }
+
+    public long getLengthWithConsoleNotesInBytes() {
+        return Math.max(lengthInBytes, lengthWithConsoleNotesInBytes);
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the statistics of the logs as rendered by the given {@link LogStorageRetriever}
+     */
+    public LogStatistics renderedBy(LogStorageRetriever logStorageRetriever) {
+        if (!logStorageRetriever.isRenderingConsoleNotes() || getLengthWithConsoleNotesInBytes() == lengthInBytes) {
+            return this;
+        }
+        long lengthInBytes = getLengthWithConsoleNotesInBytes();
+        return new LogStatistics(lengthInBytes, lengthInBytes, lineCount);
+    }
+
+    @Override
+    public String toString() {
+        return "LogStatistics{" + "lengthInBytes=" + lengthInBytes + ", lengthWithConsoleNotesInBytes="
+                + lengthWithConsoleNotesInBytes + ", lineCount=" + lineCount + '}';
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import io.jenkins.plugins.opentelemetry.job.MonitoringAction;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persist the {@link LogStatistics} of the run on its {@link MonitoringAction} once the run is finalized so that
+ * {@link OtelLogStorage} reports the exact length of the logs of completed runs.
+ */
+@Extension
+public class LogStatisticsRunListener extends RunListener<Run<?, ?>> {
+    private static final Logger LOGGER = Logger.getLogger(LogStatisticsRunListener.class.getName());
+
+    @Override
+    public void onFinalized(@NonNull Run<?, ?> run) {
+        MonitoringAction monitoringAction = run.getAction(MonitoringAction.class);
+        if (monitoringAction == null || !monitoringAction.recordLogStatistics()) {
+            return;
+        }
+        try {
+            run.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failure to save the log statistics of " + run, e);
+        }
+    }
+}
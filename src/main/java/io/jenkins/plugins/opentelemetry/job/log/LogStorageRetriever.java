@@ -5,11 +5,15 @@
 
 package io.jenkins.plugins.opentelemetry.job.log;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.model.Run;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 public interface LogStorageRetriever extends AutoCloseable {
 
@@ -50,4 +54,65 @@ public interface LogStorageRetriever extends AutoCloseable {
             @NonNull Instant startTime,
             @Nullable Instant endTime)
             throws IOException;
+
+    /**
+     * Retrieve the logs of several flow nodes of the same run. Implementations should override this method to retrieve
+     * the log lines of all the flow nodes with a single query to the observability backend, the default implementation
+     * invokes {@link #stepLog(String, int, String, String, String, boolean, Instant, Instant)} for each flow node.
+     *
+     * @param flowNodeIds see {@link org.jenkinsci.plugins.workflow.graph.FlowNode#getId()}
+     * @return the logs of each flow node, in the iteration order of the given flow node ids
+     * @see #stepLog(String, int, String, String, String, boolean, Instant, Instant)
+     */
+    @NonNull
+    default Map<String, LogsQueryResult> stepLogs(
+            @NonNull String jobFullName,
+            int runNumber,
+            @NonNull Set<String> flowNodeIds,
+            @NonNull String traceId,
+            @NonNull String spanId,
+            boolean complete,
+            @NonNull Instant startTime,
+            @Nullable Instant endTime)
+            throws IOException {
+        Map<String, LogsQueryResult> logsQueryResults = new LinkedHashMap<>();
+        for (String flowNodeId : flowNodeIds) {
+            logsQueryResults.put(
+                    flowNodeId,
+                    stepLog(jobFullName, runNumber, flowNodeId, traceId, spanId, complete, startTime, endTime));
+        }
+        return logsQueryResults;
+    }
+
+    /**
+     * Search the log lines of a run containing the given phrase, the search being executed by the observability
+     * backend so that the non-matching log lines are not transferred.
+     *
+     * @param phrase   text that the log lines must contain
+     * @param cursor   {@link LogSearchResult#getNextCursor()} of the previous page, {@code null} for the first page
+     * @param pageSize max number of log lines returned
+     * @return {@code null} if the observability backend doesn't support searching
+     * @throws LogSearchResult.InvalidCursorException if the given cursor wasn't returned by a previous search
+     */
+    @CheckForNull
+    default LogSearchResult search(
+            @NonNull String jobFullName,
+            int runNumber,
+            @NonNull String traceId,
+            @NonNull String phrase,
+            @Nullable String cursor,
+            int pageSize,
+            @NonNull Instant startTime,
+            @Nullable Instant endTime)
+            throws IOException {
+        return null;
+    }
+
+    /**
+     * @return {@code true} if the console notes of the log lines are reinserted in the retrieved log lines, see
+     * {@link ConsoleNotes#readFormattedMessage(String, java.util.List)}
+     */
+    default boolean isRenderingConsoleNotes() {
+        return false;
+    }
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.console.ConsoleNote;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.Action;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.jenkins.plugins.opentelemetry.job.MonitoringAction;
+import jakarta.servlet.AsyncContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.TransientActionFactory;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+
+/**
+ * <p>
+ * Stream the log lines of a run as <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">Server-Sent
+ * Events</a> as they are emitted, rather than polling {@code progressiveHtml} every second. The viewers of a running
+ * run share a {@link LiveLogTail} so that the logs are read once per poll interval whatever the number of viewers.
+ * </p>
+ * <p>
+ * {@code GET /job/:jobFullName/:runNumber/otel-logs-stream/?start=:offset} sends an event per log line, identified by
+ * the offset following the log line so that an {@code EventSource} reconnecting with the {@code Last-Event-ID} header
+ * resumes after the last received log line, and an {@code end} event once the log is complete. When more than
+ * {@link #MAX_CATCH_UP_BYTES} precede the end of the log, the stream starts at the tail of the log with a {@code skip}
+ * event carrying the number of skipped bytes, like the console does.
+ * </p>
+ * <p>
+ * The requests are processed asynchronously so that the HTTP request threads are not held by the streams, the
+ * streams are written by a dedicated pool of at most {@link #MAX_STREAMS} threads. The stream is closed after
+ * {@link #MAX_STREAM_DURATION_MILLIS}, the {@code EventSource} reconnects.
+ * </p>
+ */
+public class LogStreamAction implements Action {
+    private static final Logger LOGGER = Logger.getLogger(LogStreamAction.class.getName());
+
+    static final int MAX_STREAMS = Integer.getInteger(LogStreamAction.class.getName() + ".maxStreams", 100);
+
+    static final long MAX_STREAM_DURATION_MILLIS =
+            Long.getLong(LogStreamAction.class.getName() + ".maxStreamDurationMillis", TimeUnit.MINUTES.toMillis(5));
+
+    static final long KEEP_ALIVE_MILLIS = Long.getLong(LogStreamAction.class.getName() + ".keepAliveMillis", 15_000);
+
+    static final long MAX_CATCH_UP_BYTES =
+            Long.getLong(LogStreamAction.class.getName() + ".maxCatchUpBytes", 1024 * 1024);
+
+    private static final Semaphore STREAMS = new Semaphore(MAX_STREAMS);
+
+    private static final ThreadPoolExecutor STREAM_EXECUTOR = newStreamExecutor();
+
+    @NonNull
+    final Run<?, ?> run;
+
+    LogStreamAction(@NonNull Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @GET
+    public void doIndex(StaplerRequest2 req, StaplerResponse2 rsp, @QueryParameter String start) throws IOException {
+        run.getParent().checkPermission(Item.READ);
+        String from = StringUtils.defaultIfBlank(req.getHeader("Last-Event-ID"), start);
+        long position;
+        try {
+            position = StringUtils.isBlank(from) ? 0 : Long.parseLong(from);
+        } catch (NumberFormatException e) {
+            rsp.sendError(400, "Invalid start offset '" + from + "'");
+            return;
+        }
+        if (!STREAMS.tryAcquire()) {
+            rsp.sendError(503, "Too many log streams, retry later");
+            return;
+        }
+        AsyncContext asyncContext;
+        try {
+            rsp.setContentType("text/event-stream;charset=UTF-8");
+            rsp.setHeader("Cache-Control", "no-cache");
+            rsp.setHeader("X-Accel-Buffering", "no");
+            asyncContext = req.startAsync();
+            asyncContext.setTimeout(0);
+        } catch (RuntimeException e) {
+            STREAMS.release();
+            throw e;
+        }
+        long streamPosition = position;
+        // never rejected, the streams are limited by the semaphore
+        STREAM_EXECUTOR.execute(() -> {
+            try {
+                stream(streamPosition, asyncContext.getResponse().getOutputStream());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // most likely the viewer closed the stream
+                LOGGER.log(Level.FINE, () -> "Log stream of " + run + " closed: " + e);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failure to stream the logs of " + run, e);
+            } finally {
+                STREAMS.release();
+                asyncContext.complete();
+            }
+        });
+    }
+
+    void stream(long position, @NonNull OutputStream out) throws IOException, InterruptedException {
+        long deadlineInNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_STREAM_DURATION_MILLIS);
+        LiveLogTail.LogSource logSource = LiveLogTail.LogSource.of(run);
+
+        // catch up reading the log by itself, then follow the tail shared with the other viewers
+        EventOutputStream events = new EventOutputStream(position, out);
+        long skipped = logSource.length() - MAX_CATCH_UP_BYTES - position;
+        if (skipped > 0) {
+            out.write(("event: skip\ndata: " + skipped + "\n\n").getBytes(StandardCharsets.UTF_8));
+            position += skipped;
+            // the tail of the log starts with the end of a skipped log line
+            events = new EventOutputStream(position, out, true);
+        }
+        logSource.writeLogTo(position, events);
+        events.flush();
+        position = events.position;
+        LiveLogTail tail = LiveLogTail.get(run, position);
+        while (System.nanoTime() < deadlineInNanos) {
+            LiveLogTail.Chunk chunk = tail.read(position, TimeUnit.MILLISECONDS.toNanos(KEEP_ALIVE_MILLIS));
+            if (chunk == null) {
+                // too far behind the shared tail
+                chunk = LiveLogTail.readLogLines(logSource, position);
+            }
+            if (chunk.bytes.length == 0 && !chunk.complete) {
+                out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                continue;
+            }
+            events = new EventOutputStream(position, out);
+            events.write(chunk.bytes);
+            if (chunk.complete) {
+                events.close();
+                out.write("event: end\ndata:\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                return;
+            }
+            events.flush();
+            position = events.position;
+        }
+    }
+
+    /**
+     * Write each log line as a Server-Sent Event identified by the offset following the log line, the console notes
+     * being removed. An incomplete last log line is only written on {@link #close()}.
+     */
+    static class EventOutputStream extends LineTransformationOutputStream {
+        @NonNull
+        final OutputStream out;
+
+        /**
+         * Offset following the last written log line
+         */
+        long position;
+
+        /**
+         * {@code true} if the first log line is not written, the offset being in the middle of a log line
+         */
+        boolean skipFirstLine;
+
+        EventOutputStream(long position, @NonNull OutputStream out) {
+            this(position, out, false);
+        }
+
+        EventOutputStream(long position, @NonNull OutputStream out, boolean skipFirstLine) {
+            this.position = position;
+            this.out = out;
+            this.skipFirstLine = skipFirstLine;
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) throws IOException {
+            position += len;
+            if (skipFirstLine) {
+                skipFirstLine = false;
+                return;
+            }
+            String logLine = ConsoleNote.removeNotes(trimEOL(new String(b, 0, len, StandardCharsets.UTF_8)));
+            String event = "id: " + position + "\ndata: " + logLine.replace('\r', ' ') + "\n\n";
+            out.write(event.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            forceEol();
+            out.flush();
+        }
+    }
+
+    @NonNull
+    private static ThreadPoolExecutor newStreamExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_STREAMS,
+                MAX_STREAMS,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), LogStreamAction.class.getName()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "OpenTelemetry logs stream";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "otel-logs-stream";
+    }
+
+    /**
+     * Add the {@link LogStreamAction} to the runs monitored with OpenTelemetry
+     */
+    @Extension
+    public static class Factory extends TransientActionFactory<Run> {
+        @Override
+        public Class<Run> type() {
+            return Run.class;
+        }
+
+        @NonNull
+        @Override
+        public Collection<? extends Action> createFor(@NonNull Run target) {
+            if (target.getAction(MonitoringAction.class) == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(new LogStreamAction(target));
+        }
+    }
+}
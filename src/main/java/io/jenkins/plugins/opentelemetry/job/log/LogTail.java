@@ -0,0 +1,45 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Objects;
+import net.jcip.annotations.Immutable;
+
+/**
+ * Last bytes of the logs of a run or of a flow node, from the byte offset {@link #getStart()} to the end of the logs
+ */
+@Immutable
+public class LogTail {
+    private final long start;
+    private final byte[] bytes;
+
+    public LogTail(long start, @NonNull byte[] bytes) {
+        this.start = start;
+        this.bytes = Objects.requireNonNull(bytes);
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return the length of the logs
+     */
+    public long getEnd() {
+        return start + bytes.length;
+    }
+
+    @NonNull
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "LogTail{" + "start=" + start + ", length=" + bytes.length + '}';
+    }
+}
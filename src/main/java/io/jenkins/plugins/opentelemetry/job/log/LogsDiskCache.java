@@ -0,0 +1,645 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.jenkins.plugins.opentelemetry.JenkinsControllerOpenTelemetry;
+import io.jenkins.plugins.opentelemetry.job.MonitoringAction;
+import io.jenkins.plugins.opentelemetry.job.log.util.InputStreamByteBuffer;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalExecutor;
+import io.opentelemetry.context.Scope;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+/**
+ * <p>
+ * Size bounded cache on the disk of the Jenkins Controller of the logs of completed runs retrieved from the
+ * observability backend, so that the repeated views of the logs of a completed run don't query the observability
+ * backend. The logs of a run or of a flow node are cached on their second read, or when a failed run is finalized, by
+ * fetching them in the background. The logs read only once are not cached so that they don't query the observability
+ * backend twice.
+ * </p>
+ * <p>
+ * The logs are stored gzipped in blocks of {@link #BLOCK_SIZE} bytes cut at the end of a log line, indexed by their
+ * offset so that reading the tail of a large log only decompresses its last block. The least recently read logs are
+ * evicted beyond {@link #MAX_SIZE_IN_BYTES} and the logs not read for {@link #MAX_AGE_MILLIS} are evicted, after each
+ * fill and periodically, see {@link EvictionPeriodicWork}.
+ * </p>
+ * <p>
+ * Only the logs of runs completed for more than {@link #MIN_AGE_MILLIS} are cached to give the observability backend
+ * the time to index the last log lines, and logs whose length differs from the {@link LogStatistics} of the run or
+ * truncated by the limits of the observability backend are discarded, see {@link InputStreamByteBuffer#isTruncated()}.
+ * </p>
+ */
+public class LogsDiskCache {
+    private static final Logger LOGGER = Logger.getLogger(LogsDiskCache.class.getName());
+
+    public static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty(LogsDiskCache.class.getName() + ".enabled", "true"));
+
+    public static final long MAX_SIZE_IN_BYTES =
+            Long.getLong(LogsDiskCache.class.getName() + ".maxSizeInBytes", 512L * 1024 * 1024);
+
+    public static final long MAX_AGE_MILLIS =
+            Long.getLong(LogsDiskCache.class.getName() + ".maxAgeMillis", TimeUnit.DAYS.toMillis(7));
+
+    public static final long MIN_AGE_MILLIS =
+            Long.getLong(LogsDiskCache.class.getName() + ".minAgeMillis", TimeUnit.MINUTES.toMillis(1));
+
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String DATA_SUFFIX = ".log.gz";
+
+    private static volatile LogsDiskCache INSTANCE;
+
+    @NonNull
+    private final Path directory;
+
+    private final long maxSizeInBytes;
+
+    private final long maxAgeMillis;
+
+    private final Set<String> fillsInProgress = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Keys of the logs read while not cached
+     */
+    private final Cache<String, Boolean> misses = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    @CheckForNull
+    private final ExecutorService fillExecutorService;
+
+    @VisibleForTesting
+    LogsDiskCache(
+            @NonNull Path directory,
+            long maxSizeInBytes,
+            long maxAgeMillis,
+            @CheckForNull ExecutorService fillExecutorService) {
+        this.directory = directory;
+        this.maxSizeInBytes = maxSizeInBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.fillExecutorService = fillExecutorService;
+    }
+
+    @NonNull
+    public static LogsDiskCache get() {
+        if (INSTANCE == null) {
+            synchronized (LogsDiskCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new LogsDiskCache(
+                            new File(Jenkins.get().getRootDir(), "caches/opentelemetry-logs").toPath(),
+                            MAX_SIZE_IN_BYTES,
+                            MAX_AGE_MILLIS,
+                            new ThreadPoolExecutor(
+                                    1,
+                                    1,
+                                    0,
+                                    TimeUnit.MILLISECONDS,
+                                    new LinkedBlockingQueue<>(100),
+                                    new NamingThreadFactory(
+                                            new DaemonThreadFactory(), LogsDiskCache.class.getName())));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * @return {@code true} if the logs of the given run no longer change and can be cached
+     */
+    public static boolean isCacheable(@NonNull Run<?, ?> run) {
+        return ENABLED
+                && !run.isLogUpdated()
+                && run.getDuration() > 0
+                && run.getStartTimeInMillis() + run.getDuration() + MIN_AGE_MILLIS <= System.currentTimeMillis();
+    }
+
+    /**
+     * @param flowNodeId {@code null} for the logs of the run
+     * @return {@code null} if the logs are not cached
+     */
+    @CheckForNull
+    public LogsQueryResult get(@NonNull String traceId, @Nullable String flowNodeId) {
+        String key = key(traceId, flowNodeId);
+        Path index = directory.resolve(key + INDEX_SUFFIX);
+        Path data = directory.resolve(key + DATA_SUFFIX);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            LogsViewHeader logsViewHeader = new LogsViewHeader(in.readUTF(), in.readUTF(), in.readUTF());
+            Charset charset = Charset.forName(in.readUTF());
+            long length = in.readLong();
+            int blocks = in.readInt();
+            long[] blockStarts = new long[blocks];
+            long[] compressedBlockStarts = new long[blocks];
+            for (int i = 0; i < blocks; i++) {
+                blockStarts[i] = in.readLong();
+                compressedBlockStarts[i] = in.readLong();
+            }
+            if (!Files.exists(data)) {
+                return null;
+            }
+            // least recently read logs are evicted first
+            Files.setLastModifiedTime(index, FileTime.fromMillis(System.currentTimeMillis()));
+            return new LogsQueryResult(
+                    new CachedLogByteBuffer(data, length, blockStarts, compressedBlockStarts),
+                    logsViewHeader,
+                    charset,
+                    true);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.INFO, "Failure to read cached logs " + index + ", evict them", e);
+            delete(key);
+            return null;
+        }
+    }
+
+    /**
+     * @param flowNodeId {@code null} for the logs of the run
+     * @return {@code true} if the logs are cached, without reading them
+     */
+    public boolean contains(@NonNull String traceId, @Nullable String flowNodeId) {
+        return Files.exists(directory.resolve(key(traceId, flowNodeId) + INDEX_SUFFIX));
+    }
+
+    /**
+     * Record a read of logs that are not cached
+     *
+     * @param flowNodeId {@code null} for the logs of the run
+     * @return {@code true} if the logs have already been read while not cached and should now be cached
+     */
+    public boolean onMiss(@NonNull String traceId, @Nullable String flowNodeId) {
+        return misses.asMap().putIfAbsent(key(traceId, flowNodeId), Boolean.TRUE) != null;
+    }
+
+    /**
+     * Cache in the background the logs returned by the given query if they are not being cached. The fill is given up
+     * when too many fills are pending.
+     *
+     * @param flowNodeId {@code null} for the logs of the run
+     * @param expectedLength length of the logs, if known, the logs are not cached if their length differs
+     */
+    public void fillAsync(
+            @NonNull String traceId,
+            @Nullable String flowNodeId,
+            @Nullable Long expectedLength,
+            @NonNull LogsQuery logsQuery) {
+        String key = key(traceId, flowNodeId);
+        if (fillExecutorService == null || !fillsInProgress.add(key)) {
+            return;
+        }
+        try {
+            fillExecutorService.execute(() -> {
+                try (Scope ignored = LogRetrievalExecutor.withoutDeadline()) {
+                    fill(key, logsQuery.query(), expectedLength);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.FINE, () -> "Failure to cache logs " + traceId + "/" + flowNodeId + ": " + e);
+                } finally {
+                    fillsInProgress.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fillsInProgress.remove(key);
+            LOGGER.log(Level.FINE, () -> "Too many pending fills, don't cache logs " + traceId + "/" + flowNodeId);
+        }
+    }
+
+    /**
+     * @return {@code true} if the logs have been cached
+     */
+    @VisibleForTesting
+    boolean fill(@NonNull String key, @NonNull LogsQueryResult logsQueryResult, @Nullable Long expectedLength)
+            throws IOException {
+        Files.createDirectories(directory);
+        Path tmpData = Files.createTempFile(directory, key, DATA_SUFFIX + ".tmp");
+        Path tmpIndex = Files.createTempFile(directory, key, INDEX_SUFFIX + ".tmp");
+        try {
+            List<long[]> blocks = new ArrayList<>();
+            long length = 0;
+            ByteBuffer byteBuffer = logsQueryResult.getByteBuffer();
+            try (InputStream in = byteBuffer.newInputStream();
+                    CountingOutputStream out =
+                            new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpData)))) {
+                byte[] buffer = new byte[8192];
+                OutputStream block = null;
+                long blockLength = 0;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    int offset = 0;
+                    while (offset < read) {
+                        if (block == null) {
+                            blocks.add(new long[] {length, out.getByteCount()});
+                            block = new GZIPOutputStream(CloseShieldOutputStream.wrap(out));
+                            blockLength = 0;
+                        }
+                        int count;
+                        boolean endOfBlock = false;
+                        if (blockLength < BLOCK_SIZE) {
+                            count = (int) Math.min(read - offset, BLOCK_SIZE - blockLength);
+                        } else {
+                            // cut the block at the end of the log line
+                            int endOfLine = offset;
+                            while (endOfLine < read && buffer[endOfLine] != '\n') {
+                                endOfLine++;
+                            }
+                            endOfBlock = endOfLine < read;
+                            count = endOfBlock ? endOfLine + 1 - offset : read - offset;
+                        }
+                        block.write(buffer, offset, count);
+                        offset += count;
+                        blockLength += count;
+                        length += count;
+                        if (endOfBlock) {
+                            block.close();
+                            block = null;
+                        }
+                    }
+                }
+                if (block != null) {
+                    block.close();
+                }
+            }
+            if (byteBuffer instanceof InputStreamByteBuffer inputStreamByteBuffer
+                    && inputStreamByteBuffer.isTruncated()) {
+                LOGGER.log(Level.FINE, () -> "Don't cache truncated logs " + key + ", retrieved length: " + length);
+                return false;
+            }
+            if (expectedLength != null && expectedLength != length) {
+                LOGGER.log(
+                        Level.FINE,
+                        () -> "Don't cache incomplete logs " + key + ", expected length: " + expectedLength
+                                + ", retrieved length: " + length);
+                return false;
+            }
+            LogsViewHeader logsViewHeader = logsQueryResult.getLogsViewHeader();
+            try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpIndex)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(logsViewHeader.getBackendName());
+                out.writeUTF(logsViewHeader.getBackendUrl());
+                out.writeUTF(logsViewHeader.getBackendIconUrl());
+                out.writeUTF(logsQueryResult.getCharset().name());
+                out.writeLong(length);
+                out.writeInt(blocks.size());
+                for (long[] block : blocks) {
+                    out.writeLong(block[0]);
+                    out.writeLong(block[1]);
+                }
+            }
+            // the index is moved last, the logs being cached once their index exists
+            Files.move(
+                    tmpData,
+                    directory.resolve(key + DATA_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.move(
+                    tmpIndex,
+                    directory.resolve(key + INDEX_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.log(Level.FINE, () -> "Cached logs " + key + ", length: " + length);
+        } finally {
+            Files.deleteIfExists(tmpData);
+            Files.deleteIfExists(tmpIndex);
+        }
+        evict();
+        return true;
+    }
+
+    /**
+     * Evict the logs not read for {@link #maxAgeMillis} and the least recently read logs beyond
+     * {@link #maxSizeInBytes}
+     */
+    @VisibleForTesting
+    synchronized void evict() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<CachedLog> cachedLogs = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path index : (Iterable<Path>) paths::iterator) {
+                String fileName = index.getFileName().toString();
+                if (!fileName.endsWith(INDEX_SUFFIX)) {
+                    continue;
+                }
+                String key = fileName.substring(0, fileName.length() - INDEX_SUFFIX.length());
+                Path data = directory.resolve(key + DATA_SUFFIX);
+                try {
+                    cachedLogs.add(new CachedLog(
+                            key,
+                            Files.getLastModifiedTime(index).toMillis(),
+                            Files.size(index) + (Files.exists(data) ? Files.size(data) : 0)));
+                } catch (NoSuchFileException e) {
+                    // concurrently evicted
+                }
+            }
+        }
+        cachedLogs.sort(Comparator.comparingLong(cachedLog -> cachedLog.lastReadInMillis));
+        long sizeInBytes = cachedLogs.stream().mapToLong(cachedLog -> cachedLog.sizeInBytes).sum();
+        long now = System.currentTimeMillis();
+        for (CachedLog cachedLog : cachedLogs) {
+            if (sizeInBytes > maxSizeInBytes || now - cachedLog.lastReadInMillis > maxAgeMillis) {
+                delete(cachedLog.key);
+                sizeInBytes -= cachedLog.sizeInBytes;
+            }
+        }
+    }
+
+    private void delete(@NonNull String key) {
+        try {
+            Files.deleteIfExists(directory.resolve(key + INDEX_SUFFIX));
+            Files.deleteIfExists(directory.resolve(key + DATA_SUFFIX));
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Failure to evict cached logs " + key, e);
+        }
+    }
+
+    @NonNull
+    static String key(@NonNull String traceId, @Nullable String flowNodeId) {
+        return Hashing.sha256()
+                .hashString(traceId + "/" + (flowNodeId == null ? "" : flowNodeId), StandardCharsets.UTF_8)
+                .toString();
+    }
+
+    /**
+     * Query of the logs to cache
+     */
+    @FunctionalInterface
+    public interface LogsQuery {
+        @NonNull
+        LogsQueryResult query() throws IOException;
+    }
+
+    private static class CachedLog {
+        final String key;
+        final long lastReadInMillis;
+        final long sizeInBytes;
+
+        CachedLog(String key, long lastReadInMillis, long sizeInBytes) {
+            this.key = key;
+            this.lastReadInMillis = lastReadInMillis;
+            this.sizeInBytes = sizeInBytes;
+        }
+    }
+
+    /**
+     * Readonly {@link ByteBuffer} reading the cached logs from the block containing the offset of the first read
+     */
+    static class CachedLogByteBuffer extends ByteBuffer {
+        @NonNull
+        private final Path data;
+
+        private final long length;
+
+        private final long[] blockStarts;
+
+        private final long[] compressedBlockStarts;
+
+        CachedLogByteBuffer(
+                @NonNull Path data, long length, @NonNull long[] blockStarts, @NonNull long[] compressedBlockStarts) {
+            this.data = data;
+            this.length = length;
+            this.blockStarts = blockStarts;
+            this.compressedBlockStarts = compressedBlockStarts;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public InputStream newInputStream() {
+            return new InputStream() {
+                long position;
+
+                @CheckForNull
+                InputStream in;
+
+                @Override
+                public long skip(long n) throws IOException {
+                    if (n <= 0) {
+                        return 0;
+                    }
+                    if (in == null) {
+                        long skipped = Math.min(n, length - position);
+                        position += skipped;
+                        return skipped;
+                    }
+                    return in.skip(n);
+                }
+
+                @Override
+                public int read() throws IOException {
+                    return open().read();
+                }
+
+                @Override
+                public int read(@NonNull byte[] b, int off, int len) throws IOException {
+                    return open().read(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (in != null) {
+                        in.close();
+                    }
+                }
+
+                @NonNull
+                private InputStream open() throws IOException {
+                    if (in != null) {
+                        return in;
+                    }
+                    if (blockStarts.length == 0 || position >= length) {
+                        in = InputStream.nullInputStream();
+                        return in;
+                    }
+                    int block = Arrays.binarySearch(blockStarts, position);
+                    block = block >= 0 ? block : -block - 2;
+                    FileChannel channel = FileChannel.open(data);
+                    try {
+                        channel.position(compressedBlockStarts[block]);
+                        // the following blocks are read as the following members of the gzip stream
+                        in = new GZIPInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                        in.skipNBytes(position - blockStarts[block]);
+                    } catch (IOException | RuntimeException e) {
+                        channel.close();
+                        throw e;
+                    }
+                    return in;
+                }
+            };
+        }
+
+        /**
+         * Unsupported by this readonly {@link ByteBuffer}
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Unsupported by this readonly {@link ByteBuffer}
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public synchronized void write(int b) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Unsupported by this readonly {@link ByteBuffer}
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public synchronized void writeTo(OutputStream os) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Unsupported by this readonly {@link ByteBuffer}
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public void write(@NonNull byte[] b) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Unsupported by this readonly {@link ByteBuffer}
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public void flush() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Evict the logs cached before a restart of the Jenkins Controller and the logs no longer read when no logs are
+     * cached
+     */
+    @Extension
+    public static class EvictionPeriodicWork extends AsyncPeriodicWork {
+        public EvictionPeriodicWork() {
+            super(LogsDiskCache.class.getSimpleName() + " eviction");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return HOUR;
+        }
+
+        @Override
+        public long getInitialDelay() {
+            return MIN;
+        }
+
+        @Override
+        protected void execute(@NonNull TaskListener listener) throws IOException {
+            if (ENABLED) {
+                get().evict();
+            }
+        }
+    }
+
+    /**
+     * Cache the logs of the failed runs, likely to be viewed, once the observability backend has indexed their last
+     * log lines
+     */
+    @Extension
+    public static class PrewarmRunListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onFinalized(@NonNull Run<?, ?> run) {
+            Result result = run.getResult();
+            if (!ENABLED
+                    || result == null
+                    || !result.isWorseThan(Result.SUCCESS)
+                    || run.getAction(MonitoringAction.class) == null
+                    || !JenkinsControllerOpenTelemetry.get().isLogsEnabled()) {
+                return;
+            }
+            String traceId = run.getAction(MonitoringAction.class).getTraceId();
+            Timer.get()
+                    .schedule(
+                            () -> {
+                                if (traceId != null) {
+                                    // OtelLogStorage caches the logs on their second read
+                                    get().onMiss(traceId, null);
+                                }
+                                run.getLogText();
+                            },
+                            MIN_AGE_MILLIS + 1_000,
+                            TimeUnit.MILLISECONDS);
+        }
+    }
+}
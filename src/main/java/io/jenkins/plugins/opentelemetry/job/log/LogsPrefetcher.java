@@ -0,0 +1,319 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.Extension;
+import hudson.console.AnnotatedLargeText;
+import hudson.model.Action;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.jenkins.plugins.opentelemetry.JenkinsControllerOpenTelemetry;
+import io.jenkins.plugins.opentelemetry.JenkinsOpenTelemetryPluginConfiguration;
+import io.jenkins.plugins.opentelemetry.job.MonitoringAction;
+import io.jenkins.plugins.opentelemetry.job.RunFlowNodeIdentifier;
+import io.jenkins.plugins.opentelemetry.job.RunIdentifier;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalExecutor;
+import io.opentelemetry.context.Scope;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import jenkins.model.TransientActionFactory;
+import org.jenkinsci.plugins.workflow.actions.LogAction;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.ForkScanner;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.log.LogStorage;
+import org.kohsuke.stapler.Ancestor;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest2;
+
+/**
+ * <p>
+ * Prefetch in the background the tail of the logs of a completed non-successful run, and of its last failed steps,
+ * when the page of the run is requested, see {@link Trigger}, so that the console or the step log the user is likely
+ * to open next is served from memory rather than from the observability backend, see
+ * {@link OtelLogStorage#withExactLength}.
+ * </p>
+ * <p>
+ * The last {@link #TAIL_SIZE_IN_BYTES} bytes of the logs are kept for {@link #TTL_MILLIS} in a cache bounded to
+ * {@link #MAX_SIZE_IN_BYTES}. A run is prefetched at most once per {@link #TTL_MILLIS} and at most
+ * {@link #MAX_IN_FLIGHT} runs are prefetched concurrently so that crawling the run pages doesn't flood the
+ * observability backend. Only the tails whose end matches the {@link LogStatistics} of the run are kept.
+ * </p>
+ */
+public class LogsPrefetcher {
+    private static final Logger LOGGER = Logger.getLogger(LogsPrefetcher.class.getName());
+
+    public static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty(LogsPrefetcher.class.getName() + ".enabled", "false"));
+
+    /**
+     * Defaults to the console tail rendered by Jenkins, see system property 'hudson.consoleTailKB'
+     */
+    public static final long TAIL_SIZE_IN_BYTES = Long.getLong(
+                    LogsPrefetcher.class.getName() + ".tailSizeInKB",
+                    Long.parseLong(System.getProperty("hudson.consoleTailKB", "150")))
+            * 1024;
+
+    public static final int MAX_IN_FLIGHT = Integer.getInteger(LogsPrefetcher.class.getName() + ".maxInFlight", 4);
+
+    public static final int MAX_FAILED_STEPS =
+            Integer.getInteger(LogsPrefetcher.class.getName() + ".maxFailedSteps", 5);
+
+    public static final long MAX_SIZE_IN_BYTES =
+            Long.getLong(LogsPrefetcher.class.getName() + ".maxSizeInBytes", 32L * 1024 * 1024);
+
+    public static final long TTL_MILLIS =
+            Long.getLong(LogsPrefetcher.class.getName() + ".ttlMillis", TimeUnit.MINUTES.toMillis(5));
+
+    private static final Cache<RunFlowNodeIdentifier, LogTail> TAILS = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_SIZE_IN_BYTES)
+            .weigher((RunFlowNodeIdentifier key, LogTail tail) -> tail.getBytes().length)
+            .expireAfterWrite(TTL_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+
+    /**
+     * Runs prefetched or being prefetched
+     */
+    private static final Cache<RunIdentifier, Boolean> PREFETCHES = CacheBuilder.newBuilder()
+            .maximumSize(1_000)
+            .expireAfterWrite(TTL_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+
+    private static final Semaphore IN_FLIGHT = new Semaphore(MAX_IN_FLIGHT);
+
+    private static final ThreadPoolExecutor PREFETCH_EXECUTOR = newPrefetchExecutor();
+
+    private LogsPrefetcher() {}
+
+    /**
+     * Prefetch in the background the logs of the given run if it completed without succeeding, unless too many runs
+     * are being prefetched
+     */
+    public static void prefetch(@NonNull Run<?, ?> run) {
+        Result result = run.getResult();
+        if (!ENABLED || result == null || !result.isWorseThan(Result.SUCCESS) || run.isLogUpdated()) {
+            return;
+        }
+        MonitoringAction monitoringAction = run.getAction(MonitoringAction.class);
+        String traceId = monitoringAction == null ? null : monitoringAction.getTraceId();
+        if (traceId == null
+                || monitoringAction.getLogStatistics(null) == null
+                || !JenkinsControllerOpenTelemetry.get().isLogsEnabled()
+                // logs mirrored on the disk of the Jenkins Controller
+                || new File(run.getRootDir(), "log").exists()
+                || LogsDiskCache.ENABLED && LogsDiskCache.get().contains(traceId, null)) {
+            return;
+        }
+        RunIdentifier runIdentifier = new RunIdentifier(run.getParent().getFullName(), run.getNumber());
+        if (PREFETCHES.asMap().putIfAbsent(runIdentifier, Boolean.TRUE) != null) {
+            return;
+        }
+        if (!IN_FLIGHT.tryAcquire()) {
+            LOGGER.log(Level.FINE, () -> "Too many prefetches in flight, skip " + run);
+            PREFETCHES.invalidate(runIdentifier);
+            return;
+        }
+        try {
+            PREFETCH_EXECUTOR.execute(() -> {
+                try (Scope ignored = LogRetrievalExecutor.withoutDeadline()) {
+                    prefetch(run, monitoringAction);
+                } finally {
+                    IN_FLIGHT.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            IN_FLIGHT.release();
+            PREFETCHES.invalidate(runIdentifier);
+            LOGGER.log(Level.FINE, () -> "Failure to schedule the prefetch of the logs of " + run + ": " + e);
+        }
+    }
+
+    private static void prefetch(@NonNull Run<?, ?> run, @NonNull MonitoringAction monitoringAction) {
+        String jobFullName = run.getParent().getFullName();
+        try {
+            prefetch(
+                    new RunFlowNodeIdentifier(jobFullName, run.getNumber(), null),
+                    getLogStatistics(monitoringAction, null),
+                    run.getLogText());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, () -> "Failure to prefetch the logs of " + run + ": " + e);
+        }
+        if (!(run instanceof WorkflowRun workflowRun)) {
+            return;
+        }
+        List<FlowNode> failedSteps = getLastFailedSteps(workflowRun).stream()
+                .filter(failedStep -> failedStep.getPersistentAction(LogAction.class) != null)
+                .collect(Collectors.toList());
+        if (failedSteps.isEmpty()) {
+            return;
+        }
+        Map<String, AnnotatedLargeText<FlowNode>> stepLogs;
+        try {
+            // the logs of the failed steps are retrieved with a single query to the observability backend
+            LogStorage logStorage = LogStorage.of(workflowRun.asFlowExecutionOwner());
+            if (!(logStorage instanceof OtelLogStorage otelLogStorage)) {
+                return;
+            }
+            stepLogs = otelLogStorage.stepLogs(failedSteps, true);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, () -> "Failure to prefetch the logs of the steps of " + run + ": " + e);
+            return;
+        }
+        stepLogs.forEach((flowNodeId, logText) -> {
+            try {
+                prefetch(
+                        new RunFlowNodeIdentifier(jobFullName, run.getNumber(), flowNodeId),
+                        getLogStatistics(monitoringAction, flowNodeId),
+                        logText);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(
+                        Level.FINE,
+                        () -> "Failure to prefetch the logs of " + run + " step " + flowNodeId + ": " + e);
+            }
+        });
+    }
+
+    /**
+     * @return the exact length of the logs as rendered by the {@link LogStorageRetriever}, {@code null} if unknown
+     */
+    @CheckForNull
+    private static LogStatistics getLogStatistics(
+            @NonNull MonitoringAction monitoringAction, @Nullable String flowNodeId) {
+        LogStatistics logStatistics = monitoringAction.getLogStatistics(flowNodeId);
+        return logStatistics == null
+                ? null
+                : logStatistics.renderedBy(JenkinsOpenTelemetryPluginConfiguration.get().getLogStorageRetriever());
+    }
+
+    /**
+     * Prefetch the tail of the given complete logs
+     *
+     * @return {@code true} if the tail has been prefetched
+     */
+    @VisibleForTesting
+    static boolean prefetch(
+            @NonNull RunFlowNodeIdentifier runFlowNodeIdentifier,
+            @CheckForNull LogStatistics logStatistics,
+            @NonNull AnnotatedLargeText<?> logText)
+            throws IOException {
+        if (logStatistics == null || logStatistics.getLengthInBytes() == 0 || !logText.isComplete()) {
+            return false;
+        }
+        long length = logStatistics.getLengthInBytes();
+        long start = Math.max(0, length - TAIL_SIZE_IN_BYTES);
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) (length - start));
+        long end = logText.writeRawLogTo(start, out);
+        if (end != length || out.size() != length - start) {
+            LOGGER.log(
+                    Level.FINE,
+                    () -> "Don't prefetch incomplete logs " + runFlowNodeIdentifier + ", expected length: " + length
+                            + ", retrieved length: " + end);
+            return false;
+        }
+        TAILS.put(runFlowNodeIdentifier, new LogTail(start, out.toByteArray()));
+        return true;
+    }
+
+    /**
+     * @return the prefetched tail of the logs, {@code null} if not prefetched
+     */
+    @CheckForNull
+    static LogTail getTail(@NonNull RunFlowNodeIdentifier runFlowNodeIdentifier) {
+        return TAILS.getIfPresent(runFlowNodeIdentifier);
+    }
+
+    @VisibleForTesting
+    static void invalidateAll() {
+        TAILS.invalidateAll();
+        PREFETCHES.invalidateAll();
+    }
+
+    @NonNull
+    private static ThreadPoolExecutor newPrefetchExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_IN_FLIGHT,
+                MAX_IN_FLIGHT,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), LogsPrefetcher.class.getName()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return the last {@link #MAX_FAILED_STEPS} failed steps, the most recent first
+     */
+    @NonNull
+    static List<FlowNode> getLastFailedSteps(@NonNull WorkflowRun run) {
+        List<FlowNode> heads = Optional.ofNullable(run.getExecution())
+                .map(FlowExecution::getCurrentHeads)
+                .orElse(Collections.emptyList());
+        if (heads.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ForkScanner scanner = new ForkScanner();
+        scanner.setup(heads);
+        return StreamSupport.stream(scanner.spliterator(), false)
+                .filter(flowNode -> flowNode instanceof StepAtomNode && flowNode.getError() != null)
+                .limit(MAX_FAILED_STEPS)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Prefetch the logs of a run when the page of the run itself is requested. The actions of a run are also listed
+     * when rendering other pages or the REST API, these requests don't trigger a prefetch.
+     */
+    @Extension
+    public static class Trigger extends TransientActionFactory<Run> {
+        @Override
+        public Class<Run> type() {
+            return Run.class;
+        }
+
+        @NonNull
+        @Override
+        public Collection<? extends Action> createFor(@NonNull Run target) {
+            if (ENABLED && isPageOf(Stapler.getCurrentRequest2(), target)) {
+                prefetch(target);
+            }
+            return Collections.emptyList();
+        }
+
+        @VisibleForTesting
+        static boolean isPageOf(@CheckForNull StaplerRequest2 request, @NonNull Run<?, ?> run) {
+            if (request == null || !"GET".equals(request.getMethod())) {
+                return false;
+            }
+            List<Ancestor> ancestors = request.getAncestors();
+            return !ancestors.isEmpty() && ancestors.get(ancestors.size() - 1).getObject() == run;
+        }
+    }
+}
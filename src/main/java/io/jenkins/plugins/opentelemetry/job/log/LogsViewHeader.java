@@ -30,6 +30,18 @@ public class LogsViewHeader {
         this.backendIconUrl = backendIconUrl;
     }
 
+    public String getBackendName() {
+        return backendName;
+    }
+
+    public String getBackendUrl() {
+        return backendUrl;
+    }
+
+    public String getBackendIconUrl() {
+        return backendIconUrl;
+    }
+
     public String getMessage() {
         return messageFirstToken + backendName;
     }
@@ -1,5 +1,6 @@
 package io.jenkins.plugins.opentelemetry.job.log;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.console.LineTransformationOutputStream;
 import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
@@ -8,6 +9,9 @@ import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.api.logs.Severity;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.common.Clock;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,13 +34,48 @@ final class OtelLogOutputStream extends LineTransformationOutputStream {
     final io.opentelemetry.api.logs.Logger otelLogger;
     final Clock clock;
 
+    /**
+     * {@link LogCounters} of the run on the Jenkins Controller, remoting proxy of the {@link LogCounters} of the run
+     * on the Jenkins Agents. {@code null} if the log lines are not counted.
+     */
+    @CheckForNull
+    final LogCounters.Sink logCounters;
+
+    /**
+     * Counts of the log lines not yet added to the {@link #logCounters}, added once per write to limit the remoting
+     * calls of the Jenkins Agents
+     */
+    private long pendingLengthInBytes;
+
+    private long pendingLengthWithConsoleNotesInBytes;
+    private long pendingLineCount;
+
+    /**
+     * {@code true} to report the log lines to the {@link RecentLogLines} of the run with their counts
+     */
+    final boolean recentLogLines;
+
+    private final List<String> pendingLogLines = new ArrayList<>();
+    private final List<Long> pendingTimestampsInNanos = new ArrayList<>();
+    private boolean pendingConsoleNotes;
+
+    @CheckForNull
+    final String flowNodeId;
+
     public OtelLogOutputStream(
             @NonNull RunTraceContext runTraceContext,
             @NonNull io.opentelemetry.api.logs.Logger otelLogger,
-            @NonNull Clock clock) {
+            @NonNull Clock clock,
+            @CheckForNull LogCounters.Sink logCounters,
+            boolean recentLogLines) {
         this.runTraceContext = runTraceContext;
         this.otelLogger = otelLogger;
         this.clock = clock;
+        this.logCounters = logCounters;
+        this.recentLogLines = recentLogLines && logCounters != null;
+        this.flowNodeId = runTraceContext instanceof FlowNodeTraceContext flowNodeTraceContext
+                ? flowNodeTraceContext.getFlowNodeId()
+                : null;
     }
 
     @Override
@@ -52,18 +91,37 @@ final class OtelLogOutputStream extends LineTransformationOutputStream {
             AttributesBuilder attributesBuilder = Attributes.builder();
             if (ENABLE_LOG_FORMATTING && textAndAnnotations.annotations != null) {
                 attributesBuilder.put(
-                        ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS, textAndAnnotations.annotations.toString());
+                        ExtendedJenkinsAttributes.JENKINS_ANSI_ANNOTATIONS,
+                        ConsoleNotes.encodeAnnotations(textAndAnnotations.annotations));
             }
             attributesBuilder.putAll(runTraceContext.toAttributes());
 
+            long timestampInNanos = clock.now();
             otelLogger
                     .logRecordBuilder()
                     .setSeverity(Severity.INFO)
                     .setBody(plainLogLine)
                     .setAllAttributes(attributesBuilder.build())
                     .setContext(runTraceContext.getContext())
-                    .setTimestamp(clock.now(), TimeUnit.NANOSECONDS)
+                    .setTimestamp(timestampInNanos, TimeUnit.NANOSECONDS)
                     .emit();
+            if (logCounters != null) {
+                long lengthInBytes = LogLine.lengthInBytes(plainLogLine);
+                pendingLengthInBytes += lengthInBytes;
+                if (ENABLE_LOG_FORMATTING && textAndAnnotations.annotations != null) {
+                    // the length of the annotated log line depends on the backend restoring the annotations or not
+                    pendingLengthWithConsoleNotesInBytes += LogLine.lengthInBytes(
+                            ConsoleNotes.readFormattedMessage(plainLogLine, textAndAnnotations.annotations));
+                } else {
+                    pendingLengthWithConsoleNotesInBytes += lengthInBytes;
+                }
+                pendingLineCount++;
+                if (recentLogLines) {
+                    pendingTimestampsInNanos.add(timestampInNanos);
+                    pendingLogLines.add(plainLogLine);
+                    pendingConsoleNotes |= textAndAnnotations.annotations != null;
+                }
+            }
             LOGGER.log(
                     Level.FINEST,
                     () -> runTraceContext.jobFullName + "#" + runTraceContext.runNumber + " - emit body: '"
@@ -71,6 +129,38 @@ final class OtelLogOutputStream extends LineTransformationOutputStream {
         }
     }
 
+    @Override
+    public void write(int b) throws IOException {
+        super.write(b);
+        addPendingCounts();
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        super.write(bytes, off, len);
+        addPendingCounts();
+    }
+
+    private void addPendingCounts() {
+        if (pendingLineCount == 0 || logCounters == null) {
+            return;
+        }
+        logCounters.add(flowNodeId, pendingLengthInBytes, pendingLengthWithConsoleNotesInBytes, pendingLineCount);
+        pendingLengthInBytes = 0;
+        pendingLengthWithConsoleNotesInBytes = 0;
+        pendingLineCount = 0;
+        if (!pendingLogLines.isEmpty()) {
+            logCounters.addRecentLogLines(
+                    flowNodeId,
+                    pendingTimestampsInNanos.stream().mapToLong(Long::longValue).toArray(),
+                    pendingLogLines.toArray(new String[0]),
+                    pendingConsoleNotes);
+            pendingTimestampsInNanos.clear();
+            pendingLogLines.clear();
+            pendingConsoleNotes = false;
+        }
+    }
+
     @Override
     public void flush() {
         // there is no flush concept with the Otel Logger
@@ -54,8 +54,24 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
     @CheckForNull
     transient PrintStream logger;
 
-    public OtelLogSenderBuildListener(@NonNull RunTraceContext runTraceContext) {
+    /**
+     * Counters of the emitted logs, a remoting proxy of the {@link LogCounters} of the run on the Jenkins Agents
+     */
+    @CheckForNull
+    transient LogCounters.Sink logCounters;
+
+    /**
+     * {@code true} to report the log lines to the {@link RecentLogLines} of the run with their counts
+     */
+    transient boolean recentLogLines;
+
+    public OtelLogSenderBuildListener(
+            @NonNull RunTraceContext runTraceContext,
+            @CheckForNull LogCounters.Sink logCounters,
+            boolean recentLogLines) {
         this.runTraceContext = runTraceContext;
+        this.logCounters = logCounters;
+        this.recentLogLines = recentLogLines;
         this.clock = Clocks.monotonicClock();
         // Constructor must always be invoked on the Jenkins Controller.
         // Instantiation on the Jenkins Agents is done via deserialization.
@@ -66,7 +82,8 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
     @Override
     public final synchronized OutputStream getOutputStream() {
         if (outputStream == null) {
-            outputStream = new OtelLogOutputStream(runTraceContext, getOtelLogger(), clock);
+            outputStream =
+                    new OtelLogOutputStream(runTraceContext, getOtelLogger(), clock, logCounters, recentLogLines);
         }
         return outputStream;
     }
@@ -76,7 +93,9 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
     public final synchronized PrintStream getLogger() {
         if (logger == null) {
             logger = new PrintStream(
-                    new OtelLogOutputStream(runTraceContext, getOtelLogger(), clock), false, StandardCharsets.UTF_8);
+                    new OtelLogOutputStream(runTraceContext, getOtelLogger(), clock, logCounters, recentLogLines),
+                    false,
+                    StandardCharsets.UTF_8);
         }
         return logger;
     }
@@ -93,8 +112,9 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
 
         private static final Logger logger = Logger.getLogger(OtelLogSenderBuildListenerOnController.class.getName());
 
-        public OtelLogSenderBuildListenerOnController(@NonNull RunTraceContext runTraceContext) {
-            super(runTraceContext);
+        public OtelLogSenderBuildListenerOnController(
+                @NonNull RunTraceContext runTraceContext, @CheckForNull LogCounters logCounters) {
+            super(runTraceContext, logCounters, logCounters != null && logCounters.isRecentLogLinesEnabled());
             logger.log(Level.FINEST, () -> "new OtelLogSenderBuildListenerOnController()");
             JenkinsJVM.checkJenkinsJVM();
         }
@@ -115,7 +135,14 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
         private Object writeReplace() throws IOException {
             logger.log(Level.FINEST, () -> "writeReplace()");
             JenkinsJVM.checkJenkinsJVM();
-            return new OtelLogSenderBuildListenerOnAgent(runTraceContext);
+            // log lines emitted on the Jenkins Agent are counted on the agent and reported to the controller
+            LogCounters.Sink logCountersOnAgent = null;
+            boolean recentLogLinesOnAgent = false;
+            if (logCounters instanceof LogCounters controllerLogCounters) {
+                logCountersOnAgent = controllerLogCounters.export();
+                recentLogLinesOnAgent = logCountersOnAgent != null && controllerLogCounters.isRecentLogLinesEnabled();
+            }
+            return new OtelLogSenderBuildListenerOnAgent(runTraceContext, logCountersOnAgent, recentLogLinesOnAgent);
         }
     }
 
@@ -136,11 +163,27 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
          */
         private long instantInNanosOnJenkinsControllerBeforeSerialization;
 
+        /**
+         * Remoting proxy of the {@link LogCounters} of the run, see {@link LogCounters#export()}
+         */
+        @CheckForNull
+        private final LogCounters.Sink logCountersProxy;
+
+        /**
+         * {@code true} to report the log lines to the {@link RecentLogLines} of the run with their counts
+         */
+        private final boolean reportRecentLogLines;
+
         /**
          * Intended to be exclusively called on the Jenkins Controller by {@link OtelLogSenderBuildListenerOnController#writeReplace()}.
          */
-        private OtelLogSenderBuildListenerOnAgent(@NonNull RunTraceContext runTraceContext) {
-            super(runTraceContext);
+        private OtelLogSenderBuildListenerOnAgent(
+                @NonNull RunTraceContext runTraceContext,
+                @CheckForNull LogCounters.Sink logCountersProxy,
+                boolean reportRecentLogLines) {
+            super(runTraceContext, null, false);
+            this.logCountersProxy = logCountersProxy;
+            this.reportRecentLogLines = reportRecentLogLines;
             logger.log(Level.FINEST, () -> "new OtelLogSenderBuildListenerOnAgent()");
             JenkinsJVM.checkJenkinsJVM();
         }
@@ -165,6 +208,8 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
 
         private Object readResolve() {
             JenkinsJVM.checkNotJenkinsJVM();
+            this.logCounters = logCountersProxy;
+            this.recentLogLines = reportRecentLogLines;
 
             /*
              * Timestamps of the logs emitted by the Jenkins Agents must be chronologically ordered with the timestamps of
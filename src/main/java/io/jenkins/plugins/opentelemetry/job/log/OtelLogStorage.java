@@ -1,6 +1,8 @@
 package io.jenkins.plugins.opentelemetry.job.log;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.console.AnnotatedLargeText;
 import hudson.model.BuildListener;
 import hudson.model.Run;
@@ -9,9 +11,17 @@ import io.jenkins.plugins.opentelemetry.JenkinsControllerOpenTelemetry;
 import io.jenkins.plugins.opentelemetry.JenkinsOpenTelemetryPluginConfiguration;
 import io.jenkins.plugins.opentelemetry.job.MonitoringAction;
 import io.jenkins.plugins.opentelemetry.job.OtelTraceService;
+import io.jenkins.plugins.opentelemetry.job.RunFlowNodeIdentifier;
+import io.jenkins.plugins.opentelemetry.job.log.util.CircuitBreaker;
+import io.jenkins.plugins.opentelemetry.job.log.util.InputStreamByteBuffer;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalExecutor;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalMetrics;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogTailByteBuffer;
+import io.jenkins.plugins.opentelemetry.job.log.util.SingleFlightByteBuffer;
 import io.jenkins.plugins.opentelemetry.job.log.util.TeeBuildListener;
 import io.jenkins.plugins.opentelemetry.job.log.util.TeeOutputStreamBuildListener;
 import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsOperationValues;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Scope;
@@ -20,7 +30,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.util.BuildListenerAdapter;
@@ -30,6 +45,7 @@ import org.jenkinsci.plugins.workflow.log.BrokenLogStorage;
 import org.jenkinsci.plugins.workflow.log.FileLogStorage;
 import org.jenkinsci.plugins.workflow.log.LogStorage;
 import org.jenkinsci.plugins.workflow.log.OutputStreamTaskListener;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
 
 /**
  * Replaces the logs storage implementation with a custom one
@@ -41,6 +57,7 @@ class OtelLogStorage implements LogStorage {
 
     private static final Logger logger = Logger.getLogger(OtelLogStorage.class.getName());
     final Run run;
+    final MonitoringAction monitoringAction;
     final RunTraceContext runTraceContext;
     final String runFolderPath;
     final Tracer tracer;
@@ -49,7 +66,7 @@ class OtelLogStorage implements LogStorage {
 
     public OtelLogStorage(@NonNull Run run, @NonNull OtelTraceService otelTraceService, @NonNull Tracer tracer) {
         this.run = run;
-        MonitoringAction monitoringAction = Optional.ofNullable(run.getAction(MonitoringAction.class))
+        this.monitoringAction = Optional.ofNullable(run.getAction(MonitoringAction.class))
                 .orElseThrow(() -> new IllegalStateException("No MonitoringAction found for " + run));
 
         this.runTraceContext = new RunTraceContext(
@@ -67,7 +84,8 @@ class OtelLogStorage implements LogStorage {
     @Override
     public BuildListener overallListener() throws IOException {
         OtelLogSenderBuildListener otelLogSenderBuildListener =
-                new OtelLogSenderBuildListener.OtelLogSenderBuildListenerOnController(runTraceContext);
+                new OtelLogSenderBuildListener.OtelLogSenderBuildListenerOnController(
+                        runTraceContext, monitoringAction.getLogCounters());
 
         BuildListener result;
         if (JenkinsControllerOpenTelemetry.get().isOtelLogsMirrorToDisk()) {
@@ -108,7 +126,8 @@ class OtelLogStorage implements LogStorage {
         Span span = otelTraceService.getSpan(run, flowNode);
         FlowNodeTraceContext flowNodeTraceContext = FlowNodeTraceContext.newFlowNodeTraceContext(run, flowNode, span);
         OtelLogSenderBuildListener otelLogSenderBuildListener =
-                new OtelLogSenderBuildListener.OtelLogSenderBuildListenerOnController(flowNodeTraceContext);
+                new OtelLogSenderBuildListener.OtelLogSenderBuildListenerOnController(
+                        flowNodeTraceContext, monitoringAction.getLogCounters());
 
         BuildListener result;
         if (JenkinsControllerOpenTelemetry.get().isOtelLogsMirrorToDisk()) {
@@ -167,17 +186,21 @@ class OtelLogStorage implements LogStorage {
             LogStorageRetriever logStorageRetriever = getLogStorageRetriever();
             Instant startTime = Instant.ofEpochMilli(run.getStartTimeInMillis());
             Instant endTime = run.getDuration() == 0 ? null : startTime.plusMillis(run.getDuration());
-            LogsQueryResult logsQueryResult = logStorageRetriever.overallLog(
-                    run.getParent().getFullName(),
-                    run.getNumber(),
-                    runTraceContext.getTraceId(),
-                    runTraceContext.getSpanId(),
+            LogsQueryResult logsQueryResult = queryWithDiskCache(
+                    null,
                     complete,
-                    startTime,
-                    endTime);
+                    () -> logStorageRetriever.overallLog(
+                            run.getParent().getFullName(),
+                            run.getNumber(),
+                            runTraceContext.getTraceId(),
+                            runTraceContext.getSpanId(),
+                            complete,
+                            startTime,
+                            endTime),
+                    span);
             span.setAttribute("completed", logsQueryResult.isComplete());
             return new OverallLog(
-                    logsQueryResult.getByteBuffer(),
+                    withExactLength(logsQueryResult, null, span),
                     logsQueryResult.getLogsViewHeader(),
                     logsQueryResult.getCharset(),
                     logsQueryResult.isComplete(),
@@ -215,19 +238,23 @@ class OtelLogStorage implements LogStorage {
             LogStorageRetriever logStorageRetriever = getLogStorageRetriever();
             Instant startTime = Instant.ofEpochMilli(run.getStartTimeInMillis());
             Instant endTime = run.getDuration() == 0 ? null : startTime.plusMillis(run.getDuration());
-            LogsQueryResult logsQueryResult = logStorageRetriever.stepLog(
-                    run.getParent().getFullName(),
-                    run.getNumber(),
+            LogsQueryResult logsQueryResult = queryWithDiskCache(
                     flowNode.getId(),
-                    traceId,
-                    spanId,
                     complete,
-                    startTime,
-                    endTime);
-            span.setAttribute("completed", logsQueryResult.isComplete())
-                    .setAttribute("length", logsQueryResult.byteBuffer.length());
+                    () -> logStorageRetriever.stepLog(
+                            run.getParent().getFullName(),
+                            run.getNumber(),
+                            flowNode.getId(),
+                            traceId,
+                            spanId,
+                            complete,
+                            startTime,
+                            endTime),
+                    span);
+            ByteBuffer byteBuffer = withExactLength(logsQueryResult, flowNode.getId(), span);
+            span.setAttribute("completed", logsQueryResult.isComplete()).setAttribute("length", byteBuffer.length());
             return new AnnotatedLargeText<>(
-                    logsQueryResult.getByteBuffer(),
+                    byteBuffer,
                     logsQueryResult.getCharset(),
                     logsQueryResult.isComplete(),
                     flowNode);
@@ -239,6 +266,96 @@ class OtelLogStorage implements LogStorage {
         }
     }
 
+    /**
+     * Retrieve the logs of several flow nodes of the run with a single query to the observability backend, see
+     * {@link LogStorageRetriever#stepLogs(String, int, Set, String, String, boolean, Instant, Instant)}
+     *
+     * @return the logs of each flow node, in the iteration order of the given flow nodes
+     */
+    @NonNull
+    public Map<String, AnnotatedLargeText<FlowNode>> stepLogs(
+            @NonNull Collection<FlowNode> flowNodes, boolean complete) {
+        Map<String, AnnotatedLargeText<FlowNode>> stepLogs = new LinkedHashMap<>();
+        File logFile = new File(runFolderPath, "log");
+        if (logFile.exists()) {
+            LogStorage fileLogStorage = FileLogStorage.forFile(logFile);
+            flowNodes.forEach(flowNode -> stepLogs.put(flowNode.getId(), fileLogStorage.stepLog(flowNode, complete)));
+            return stepLogs;
+        }
+
+        Span span = tracer.spanBuilder("OtelLogStorage.stepLogs")
+                .setAttribute(
+                        ExtendedJenkinsAttributes.CI_PIPELINE_ID,
+                        run.getParent().getFullName())
+                .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_RUN_NUMBER, (long) run.getNumber())
+                .setAttribute("flowNodes", flowNodes.size())
+                .setAttribute("complete", complete)
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            String traceId = runTraceContext.getTraceId();
+            String spanId = runTraceContext.getSpanId();
+            if (traceId == null || spanId == null) {
+                throw new IllegalStateException("traceId or spanId is null for " + run);
+            }
+            Map<String, LogsQueryResult> logsQueryResults = new LinkedHashMap<>();
+            Set<String> flowNodeIds = new LinkedHashSet<>();
+            boolean cacheable = complete && LogsDiskCache.isCacheable(run);
+            for (FlowNode flowNode : flowNodes) {
+                LogsQueryResult cached = cacheable ? LogsDiskCache.get().get(traceId, flowNode.getId()) : null;
+                if (cached == null) {
+                    flowNodeIds.add(flowNode.getId());
+                } else {
+                    logsQueryResults.put(flowNode.getId(), cached);
+                }
+            }
+            span.setAttribute("diskCache.hits", (long) logsQueryResults.size());
+            if (!flowNodeIds.isEmpty()) {
+                LogStorageRetriever logStorageRetriever = getLogStorageRetriever();
+                Instant startTime = Instant.ofEpochMilli(run.getStartTimeInMillis());
+                Instant endTime = run.getDuration() == 0 ? null : startTime.plusMillis(run.getDuration());
+                // the log lines are retrieved eagerly, off the HTTP request thread
+                logsQueryResults.putAll(LogRetrievalExecutor.get()
+                        .call(
+                                () -> logStorageRetriever.stepLogs(
+                                        run.getParent().getFullName(),
+                                        run.getNumber(),
+                                        flowNodeIds,
+                                        traceId,
+                                        spanId,
+                                        complete,
+                                        startTime,
+                                        endTime),
+                                LogRetrievalExecutor.newDeadlineInNanos(),
+                                getCircuitBreaker()));
+            }
+            for (FlowNode flowNode : flowNodes) {
+                LogsQueryResult logsQueryResult = logsQueryResults.get(flowNode.getId());
+                if (logsQueryResult == null) {
+                    stepLogs.put(
+                            flowNode.getId(),
+                            new BrokenLogStorage(new IllegalStateException("No log returned for " + flowNode))
+                                    .stepLog(flowNode, complete));
+                    continue;
+                }
+                stepLogs.put(
+                        flowNode.getId(),
+                        new AnnotatedLargeText<>(
+                                withExactLength(logsQueryResult, flowNode.getId(), span),
+                                logsQueryResult.getCharset(),
+                                logsQueryResult.isComplete(),
+                                flowNode));
+            }
+            return stepLogs;
+        } catch (Exception x) {
+            span.recordException(x);
+            BrokenLogStorage brokenLogStorage = new BrokenLogStorage(x);
+            flowNodes.forEach(flowNode -> stepLogs.put(flowNode.getId(), brokenLogStorage.stepLog(flowNode, complete)));
+            return stepLogs;
+        } finally {
+            span.end();
+        }
+    }
+
     @Deprecated
     @Override
     public File getLogFile(@NonNull FlowExecutionOwner.Executable build, boolean complete) {
@@ -255,7 +372,9 @@ class OtelLogStorage implements LogStorage {
                 .setAttribute(ExtendedJenkinsAttributes.CI_PIPELINE_RUN_NUMBER, (long) run.getNumber())
                 .setAttribute("complete", complete)
                 .startSpan();
-        try (Scope ignored = span.makeCurrent()) {
+        try (Scope ignored = span.makeCurrent();
+                Scope ignoredOperation = LogRetrievalMetrics.withOperation(LogsOperationValues.DOWNLOAD);
+                Scope ignoredDeadline = LogRetrievalExecutor.withoutDeadline()) {
             AnnotatedLargeText<FlowExecutionOwner.Executable> logText = overallLog(build, complete);
             // Not creating a temp file since it would be too expensive to have multiples:
             File f = new File(((Run<?, ?>) build).getRootDir(), "log");
@@ -280,13 +399,114 @@ class OtelLogStorage implements LogStorage {
         }
     }
 
+    /**
+     * Serve the logs of the completed runs from the {@link LogsDiskCache}, caching them in the background on their
+     * second read
+     *
+     * @param flowNodeId {@code null} for the logs of the run
+     */
+    @NonNull
+    LogsQueryResult queryWithDiskCache(
+            @Nullable String flowNodeId,
+            boolean complete,
+            @NonNull LogsDiskCache.LogsQuery logsQuery,
+            @NonNull Span span)
+            throws IOException {
+        String traceId = runTraceContext.getTraceId();
+        if (!complete || traceId == null || !LogsDiskCache.isCacheable(run)) {
+            return logsQuery.query();
+        }
+        LogsDiskCache logsDiskCache = LogsDiskCache.get();
+        LogsQueryResult cached = logsDiskCache.get(traceId, flowNodeId);
+        span.setAttribute("diskCache.hit", cached != null);
+        if (cached != null) {
+            return cached;
+        }
+        LogsQueryResult logsQueryResult = logsQuery.query();
+        if (logsQueryResult.isComplete() && logsDiskCache.onMiss(traceId, flowNodeId)) {
+            LogStatistics logStatistics = getLogStatistics(flowNodeId);
+            logsDiskCache.fillAsync(
+                    traceId,
+                    flowNodeId,
+                    logStatistics == null ? null : logStatistics.getLengthInBytes(),
+                    logsQuery);
+        }
+        return logsQueryResult;
+    }
+
+    /**
+     * Report the exact length of the logs when the {@link LogCounters} of the run have counted all its log lines, so
+     * that the console tail and the progressive offsets are right. The tail of the log is reached by skipping from
+     * the closest checkpoint or, once the log is complete, by retrieving the tail of the log first rather than
+     * reading the log from its beginning.
+     * The concurrent polls of the logs of a running build are coalesced, see {@link SingleFlightByteBuffer}, and
+     * their live tail is served from memory, see {@link RecentLogLines}.
+     * The tail of the logs of a completed run prefetched when its page was rendered is served from memory, see
+     * {@link LogsPrefetcher}.
+     * The logs are truncated rather than failing when the backend is slow, see {@link CircuitBreaker}.
+     *
+     * @param flowNodeId {@code null} for the logs of the run
+     */
+    @NonNull
+    ByteBuffer withExactLength(
+            @NonNull LogsQueryResult logsQueryResult, @Nullable String flowNodeId, @NonNull Span span) {
+        ByteBuffer byteBuffer = logsQueryResult.getByteBuffer();
+        LogStatistics logStatistics = getLogStatistics(flowNodeId);
+        span.setAttribute("exactLength", logStatistics != null);
+        if (logStatistics != null && byteBuffer instanceof InputStreamByteBuffer inputStreamByteBuffer) {
+            byteBuffer =
+                    inputStreamByteBuffer.withLength(logStatistics.getLengthInBytes(), logsQueryResult.isComplete());
+        }
+        if (byteBuffer instanceof InputStreamByteBuffer inputStreamByteBuffer) {
+            CircuitBreaker circuitBreaker = getCircuitBreaker();
+            span.setAttribute("circuitBreaker.open", circuitBreaker.isOpen());
+            byteBuffer = inputStreamByteBuffer.withCircuitBreaker(circuitBreaker, logsQueryResult.isComplete());
+        }
+        if (!logsQueryResult.isComplete()) {
+            byteBuffer = new SingleFlightByteBuffer(
+                    new RunFlowNodeIdentifier(run.getParent().getFullName(), run.getNumber(), flowNodeId), byteBuffer);
+            LogCounters logCounters = monitoringAction.getLogCounters();
+            LogTail tail = logCounters == null
+                    ? null
+                    : logCounters.getRecentLogLines(flowNodeId, getLogStorageRetriever().isRenderingConsoleNotes());
+            span.setAttribute("recentLogLines", tail != null);
+            if (tail != null) {
+                byteBuffer = new LogTailByteBuffer(byteBuffer, tail);
+            }
+        } else if (logStatistics != null) {
+            LogTail tail = LogsPrefetcher.getTail(
+                    new RunFlowNodeIdentifier(run.getParent().getFullName(), run.getNumber(), flowNodeId));
+            boolean prefetched = tail != null && tail.getEnd() == logStatistics.getLengthInBytes();
+            span.setAttribute("prefetched", prefetched);
+            if (prefetched) {
+                byteBuffer = new LogTailByteBuffer(byteBuffer, tail);
+            }
+        }
+        return byteBuffer;
+    }
+
     @Override
     public String toString() {
         return "OtelLogStorage{" + "context=" + runTraceContext + '}';
     }
 
+    /**
+     * @param flowNodeId {@code null} for the logs of the run
+     * @return the exact length of the logs as rendered by the {@link LogStorageRetriever}, {@code null} if unknown
+     */
+    @CheckForNull
+    private LogStatistics getLogStatistics(@Nullable String flowNodeId) {
+        LogStatistics logStatistics = monitoringAction.getLogStatistics(flowNodeId);
+        return logStatistics == null ? null : logStatistics.renderedBy(getLogStorageRetriever());
+    }
+
     @NonNull
     public LogStorageRetriever getLogStorageRetriever() {
         return JenkinsOpenTelemetryPluginConfiguration.get().getLogStorageRetriever();
     }
+
+    @NonNull
+    CircuitBreaker getCircuitBreaker() {
+        return CircuitBreaker.forBackend(getLogStorageRetriever().getClass().getName());
+    }
 }
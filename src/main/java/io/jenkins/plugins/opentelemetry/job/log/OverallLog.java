@@ -5,8 +5,15 @@
 
 package io.jenkins.plugins.opentelemetry.job.log;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.Main;
 import hudson.console.AnnotatedLargeText;
+import hudson.model.Run;
+import io.jenkins.plugins.opentelemetry.job.RunIdentifier;
+import io.jenkins.plugins.opentelemetry.job.log.util.InputStreamByteBuffer;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalExecutor;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogRetrievalMetrics;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsOperationValues;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.trace.TracerProvider;
@@ -19,6 +26,7 @@ import java.nio.charset.Charset;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
 import org.kohsuke.stapler.framework.io.ByteBuffer;
@@ -28,6 +36,7 @@ public class OverallLog extends AnnotatedLargeText<FlowExecutionOwner.Executable
     private final FlowExecutionOwner.Executable context;
     private final transient Tracer tracer;
     private final LogsViewHeader logsViewHeader;
+    private final ByteBuffer memory;
 
     public OverallLog(
             ByteBuffer memory,
@@ -38,6 +47,7 @@ public class OverallLog extends AnnotatedLargeText<FlowExecutionOwner.Executable
             Tracer tracer) {
         super(memory, charset, completed, context);
         this.logsViewHeader = logsViewHeader;
+        this.memory = memory;
         this.context = context;
         this.tracer = tracer;
     }
@@ -126,7 +136,9 @@ public class OverallLog extends AnnotatedLargeText<FlowExecutionOwner.Executable
         Span span = tracer.spanBuilder("OverallLog.writeLogTo(outputStream)")
                 .setAttribute("start", start)
                 .startSpan();
-        try (Scope scope = span.makeCurrent()) {
+        try (Scope scope = span.makeCurrent();
+                Scope ignored = LogRetrievalMetrics.withOperation(LogsOperationValues.DOWNLOAD);
+                Scope ignoredDeadline = LogRetrievalExecutor.withoutDeadline()) {
             long length = super.writeLogTo(start, out);
             span.setAttribute("response.lengthInBytes", length);
             return length;
@@ -148,7 +160,8 @@ public class OverallLog extends AnnotatedLargeText<FlowExecutionOwner.Executable
         Span span = tracer.spanBuilder("OverallLog.writeRawLogTo")
                 .setAttribute("start", start)
                 .startSpan();
-        try (Scope scope = span.makeCurrent()) {
+        try (Scope scope = span.makeCurrent();
+                Scope ignoredDeadline = LogRetrievalExecutor.withoutDeadline()) {
             long length = super.writeRawLogTo(start, out);
             span.setAttribute("response.length", length);
             return length;
@@ -181,7 +194,31 @@ public class OverallLog extends AnnotatedLargeText<FlowExecutionOwner.Executable
                 w.write("\n\n"); // TODO increment length
             }
             // LOG LINES
-            long logLinesLengthInBytes = super.writeHtmlTo(start, w);
+            RenderedHtmlCache.Key renderedHtmlKey = getRenderedHtmlKey(start);
+            RenderedHtmlCache.Rendering rendering =
+                    renderedHtmlKey == null ? null : RenderedHtmlCache.get(renderedHtmlKey);
+            span.setAttribute("renderedHtmlCache.hit", rendering != null);
+            long logLinesLengthInBytes;
+            StaplerResponse2 currentResponse = Stapler.getCurrentResponse2();
+            if (rendering != null) {
+                logLinesLengthInBytes = rendering.writeTo(w);
+                if (currentResponse != null && rendering.consoleAnnotator != null) {
+                    currentResponse.setHeader("X-ConsoleAnnotator", rendering.consoleAnnotator);
+                }
+            } else if (renderedHtmlKey != null) {
+                RenderedHtmlCache.CapturingWriter capturingWriter = new RenderedHtmlCache.CapturingWriter(w);
+                logLinesLengthInBytes = super.writeHtmlTo(start, capturingWriter);
+                rendering = capturingWriter.toRendering(
+                        logLinesLengthInBytes,
+                        currentResponse == null ? null : currentResponse.getHeader("X-ConsoleAnnotator"));
+                boolean truncated = memory instanceof InputStreamByteBuffer inputStreamByteBuffer
+                        && inputStreamByteBuffer.isTruncated();
+                if (rendering != null && !truncated) {
+                    RenderedHtmlCache.put(renderedHtmlKey, rendering);
+                }
+            } else {
+                logLinesLengthInBytes = super.writeHtmlTo(start, w);
+            }
             span.setAttribute("response.lengthBytes", logLinesLengthInBytes);
 
             return logLinesLengthInBytes;
@@ -193,6 +230,26 @@ public class OverallLog extends AnnotatedLargeText<FlowExecutionOwner.Executable
         }
     }
 
+    /**
+     * @return {@code null} if the HTML rendered from the given offset can't be cached
+     */
+    @CheckForNull
+    private RenderedHtmlCache.Key getRenderedHtmlKey(long start) {
+        if (!RenderedHtmlCache.ENABLED || !isComplete() || !(context instanceof Run<?, ?> run)) {
+            return null;
+        }
+        StaplerRequest2 currentRequest = Stapler.getCurrentRequest2();
+        if (currentRequest != null && currentRequest.getHeader("X-ConsoleAnnotator") != null) {
+            // the rendering depends on the state of the console annotators at the end of the previous request
+            return null;
+        }
+        return new RenderedHtmlCache.Key(
+                new RunIdentifier(run.getParent().getFullName(), run.getNumber()),
+                start,
+                length(),
+                RenderedHtmlCache.annotationContext(currentRequest));
+    }
+
     @Override
     public Reader readAll() throws IOException {
         Tracer tracer = logger.isLoggable(Level.FINE)
@@ -0,0 +1,154 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * Bounded ring buffer of the most recent log lines of a running run, so that the live tail of the console of a running
+ * run is served from memory rather than from the observability backend which indexes the log lines with a delay of a
+ * few seconds. The buffer is fed by {@link LogCounters} with the log lines emitted on the Jenkins Controller and with
+ * the log lines that the Jenkins Agents report with their counts, see {@link LogCounters.Sink}.
+ * </p>
+ * <p>
+ * The log lines are ordered by their timestamp as the observability backend orders them, the log lines reported late
+ * by the Jenkins Agents being inserted at their position, and positioned at the byte offsets at which the
+ * {@link LogStorageRetriever} renders them. The buffer is disabled when log lines of the run are emitted without being
+ * counted and evicted with the {@link LogCounters} when the run is finalized.
+ * </p>
+ */
+public class RecentLogLines {
+    /**
+     * Max size of the buffer of each running run, {@code 0} to disable the buffer and the reporting of the log lines
+     * by the Jenkins Agents
+     */
+    public static final int MAX_BYTES = Integer.getInteger(RecentLogLines.class.getName() + ".maxBytes", 512 * 1024);
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong((Entry entry) -> entry.timestampInNanos)
+            .thenComparingLong(entry -> entry.sequence);
+
+    private final int maxBytes;
+
+    private final NavigableSet<Entry> entries = new TreeSet<>(ORDER);
+
+    private long sequence;
+
+    private long retainedBytes;
+
+    /**
+     * Length of the log lines evicted from the buffer
+     */
+    private long evictedLength;
+
+    private final Map<String, Long> evictedFlowNodesLength = new HashMap<>();
+
+    private boolean consoleNotes;
+
+    private boolean disabled;
+
+    public RecentLogLines(int maxBytes) {
+        this.maxBytes = maxBytes;
+        this.disabled = maxBytes <= 0;
+    }
+
+    /**
+     * @param flowNodeId id of the flow node emitting the log line, {@code null} for the log lines of the run
+     * @param timestampInNanos timestamp of the log line as sent to the observability backend
+     * @param plainLogLine log line as sent to the observability backend, without the trailing {@code \n}
+     * @param consoleNotes {@code true} if console notes have been sent with the log line
+     */
+    public synchronized void onLogLine(
+            @Nullable String flowNodeId, long timestampInNanos, @NonNull String plainLogLine, boolean consoleNotes) {
+        if (disabled) {
+            return;
+        }
+        this.consoleNotes |= consoleNotes;
+        // unpaired surrogates are replaced by '?' as LogLineIteratorInputStream does, see LogLine#lengthInBytes
+        byte[] bytes = (plainLogLine + '\n').getBytes(StandardCharsets.UTF_8);
+        Entry entry = new Entry(flowNodeId, timestampInNanos, sequence++, bytes);
+        if (!entries.isEmpty() && isEvicted(entry)) {
+            // log line reported late by a Jenkins Agent, older than the log lines kept in the buffer
+            evict(entry);
+            return;
+        }
+        entries.add(entry);
+        retainedBytes += bytes.length;
+        while (retainedBytes > maxBytes && !entries.isEmpty()) {
+            Entry evicted = entries.pollFirst();
+            retainedBytes -= evicted.bytes.length;
+            evict(evicted);
+        }
+    }
+
+    private boolean isEvicted(@NonNull Entry entry) {
+        return evictedLength > 0 && ORDER.compare(entry, entries.first()) < 0;
+    }
+
+    private void evict(@NonNull Entry entry) {
+        evictedLength += entry.bytes.length;
+        if (entry.flowNodeId != null) {
+            evictedFlowNodesLength.merge(entry.flowNodeId, (long) entry.bytes.length, Long::sum);
+        }
+    }
+
+    /**
+     * Invoked when log lines of the run are emitted without being counted, the offsets of the log lines are then
+     * unknown
+     */
+    public synchronized void disable() {
+        disabled = true;
+        entries.clear();
+        evictedFlowNodesLength.clear();
+        retainedBytes = 0;
+    }
+
+    /**
+     * @param flowNodeId {@code null} to get the tail of the logs of the run
+     * @param renderingConsoleNotes see {@link LogStorageRetriever#isRenderingConsoleNotes()}
+     * @return {@code null} if the buffer is disabled or if the log lines are rendered with console notes, which are
+     * not kept in the buffer
+     */
+    @CheckForNull
+    public synchronized LogTail getTail(@Nullable String flowNodeId, boolean renderingConsoleNotes) {
+        if (disabled || renderingConsoleNotes && consoleNotes) {
+            return null;
+        }
+        long start = flowNodeId == null ? evictedLength : evictedFlowNodesLength.getOrDefault(flowNodeId, 0L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Entry entry : entries) {
+            if (flowNodeId == null || flowNodeId.equals(entry.flowNodeId)) {
+                bytes.writeBytes(entry.bytes);
+            }
+        }
+        return new LogTail(start, bytes.toByteArray());
+    }
+
+    private static class Entry {
+        @CheckForNull
+        final String flowNodeId;
+
+        final long timestampInNanos;
+        final long sequence;
+        final byte[] bytes;
+
+        Entry(@Nullable String flowNodeId, long timestampInNanos, long sequence, byte[] bytes) {
+            this.flowNodeId = flowNodeId;
+            this.timestampInNanos = timestampInNanos;
+            this.sequence = sequence;
+            this.bytes = bytes;
+        }
+    }
+}
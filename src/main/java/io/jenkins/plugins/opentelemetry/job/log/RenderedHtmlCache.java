@@ -0,0 +1,275 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.console.ConsoleAnnotatorFactory;
+import io.jenkins.plugins.opentelemetry.job.RunIdentifier;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
+import net.jcip.annotations.Immutable;
+
+/**
+ * <p>
+ * Cache of the console of completed runs rendered in HTML by the {@link hudson.console.ConsoleAnnotator}s, so that
+ * the repeated views of the console of a large completed run neither query the observability backend nor annotate
+ * each log line again.
+ * </p>
+ * <p>
+ * The HTML rendered from an offset of the log is cached in chunks of {@link #CHUNK_SIZE} characters, the renderings
+ * longer than {@link #MAX_RENDERING_SIZE} characters are not cached. The cache is bounded to
+ * {@link #MAX_SIZE} characters.
+ * </p>
+ * <p>
+ * The rendering depends on the installed {@link ConsoleAnnotatorFactory}s and on the user and the request, such as
+ * the time zone of the timestamps rendered by the Timestamper plugin that is stored in a cookie, so the renderings are
+ * cached per {@link #annotationContext(HttpServletRequest) annotation context}. The {@code X-ConsoleAnnotator} header
+ * sent with the rendering is replayed with the cached rendering.
+ * </p>
+ */
+class RenderedHtmlCache {
+    static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty(RenderedHtmlCache.class.getName() + ".enabled", "true"));
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    static final int MAX_RENDERING_SIZE =
+            Integer.getInteger(RenderedHtmlCache.class.getName() + ".maxRenderingSize", 8 * 1024 * 1024);
+
+    static final long MAX_SIZE = Long.getLong(RenderedHtmlCache.class.getName() + ".maxSize", 32L * 1024 * 1024);
+
+    private static final Cache<Key, Rendering> RENDERINGS = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_SIZE)
+            .weigher((Key key, Rendering rendering) -> rendering.size)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            // the X-ConsoleAnnotator header replayed with the rendering is rejected after one hour
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    @CheckForNull
+    static Rendering get(@NonNull Key key) {
+        return RENDERINGS.getIfPresent(key);
+    }
+
+    static void put(@NonNull Key key, @NonNull Rendering rendering) {
+        RENDERINGS.put(key, rendering);
+    }
+
+    static void invalidateAll() {
+        RENDERINGS.invalidateAll();
+    }
+
+    /**
+     * @return a digest of what the rendering by the console annotators depends on for the given request
+     */
+    @NonNull
+    static String annotationContext(@CheckForNull HttpServletRequest request) {
+        return annotationContext(
+                Jenkins.getAuthentication2().getName(),
+                ConsoleAnnotatorFactory.all().stream()
+                        .map(factory -> factory.getClass().getName())
+                        .collect(Collectors.toList()),
+                request);
+    }
+
+    @NonNull
+    @VisibleForTesting
+    static String annotationContext(
+            @NonNull String user,
+            @NonNull Collection<String> consoleAnnotatorFactories,
+            @CheckForNull HttpServletRequest request) {
+        StringBuilder annotationContext = new StringBuilder(user);
+        consoleAnnotatorFactories.forEach(factory -> annotationContext.append('|').append(factory));
+        if (request != null) {
+            annotationContext.append('|').append(request.getHeader("Accept-Language"));
+            Cookie[] cookies = request.getCookies();
+            if (cookies != null) {
+                // the session cookies change the rendering of no annotator
+                Arrays.stream(cookies)
+                        .filter(cookie -> !cookie.getName().startsWith("JSESSIONID")
+                                && !cookie.getName().equals("remember-me"))
+                        .sorted(Comparator.comparing(Cookie::getName))
+                        .forEach(cookie -> annotationContext
+                                .append('|')
+                                .append(cookie.getName())
+                                .append('=')
+                                .append(cookie.getValue()));
+            }
+        }
+        return Hashing.sha256().hashString(annotationContext, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * HTML rendered from an offset of the log of a run whose length is {@link #length}, in the given
+     * {@link #annotationContext}
+     */
+    @Immutable
+    static class Key {
+        @NonNull
+        final RunIdentifier run;
+
+        final long start;
+        final long length;
+
+        @NonNull
+        final String annotationContext;
+
+        Key(@NonNull RunIdentifier run, long start, long length, @NonNull String annotationContext) {
+            this.run = run;
+            this.start = start;
+            this.length = length;
+            this.annotationContext = annotationContext;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return start == key.start
+                    && length == key.length
+                    && run.equals(key.run)
+                    && annotationContext.equals(key.annotationContext);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(run, start, length, annotationContext);
+        }
+
+        @Override
+        public String toString() {
+            return "Key{" + "run=" + run + ", start=" + start + ", length=" + length + ", annotationContext="
+                    + annotationContext + '}';
+        }
+    }
+
+    /**
+     * Rendered HTML, offset reached in the log and state of the console annotators at the end of the rendering
+     */
+    @Immutable
+    static class Rendering {
+        @NonNull
+        final List<String> chunks;
+
+        final long end;
+        final int size;
+
+        /**
+         * {@code X-ConsoleAnnotator} header sent with the rendering
+         */
+        @CheckForNull
+        final String consoleAnnotator;
+
+        Rendering(@NonNull List<String> chunks, long end, @CheckForNull String consoleAnnotator) {
+            this.chunks = List.copyOf(chunks);
+            this.end = end;
+            this.consoleAnnotator = consoleAnnotator;
+            this.size = chunks.stream().mapToInt(String::length).sum()
+                    + (consoleAnnotator == null ? 0 : consoleAnnotator.length());
+        }
+
+        /**
+         * @return the offset reached in the log
+         */
+        long writeTo(@NonNull Writer w) throws IOException {
+            for (String chunk : chunks) {
+                w.write(chunk);
+            }
+            return end;
+        }
+    }
+
+    /**
+     * {@link Writer} capturing in chunks the HTML written to the given {@link Writer}, until
+     * {@link #MAX_RENDERING_SIZE}
+     */
+    static class CapturingWriter extends Writer {
+        @NonNull
+        private final Writer delegate;
+
+        private final List<String> chunks = new ArrayList<>();
+
+        private final StringBuilder chunk = new StringBuilder();
+
+        private int size;
+
+        private boolean overflow;
+
+        CapturingWriter(@NonNull Writer delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(@NonNull char[] cbuf, int off, int len) throws IOException {
+            delegate.write(cbuf, off, len);
+            if (overflow) {
+                return;
+            }
+            size += len;
+            if (size > MAX_RENDERING_SIZE) {
+                overflow = true;
+                chunks.clear();
+                chunk.setLength(0);
+                return;
+            }
+            while (len > 0) {
+                int count = Math.min(len, CHUNK_SIZE - chunk.length());
+                chunk.append(cbuf, off, count);
+                off += count;
+                len -= count;
+                if (chunk.length() == CHUNK_SIZE) {
+                    chunks.add(chunk.toString());
+                    chunk.setLength(0);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        /**
+         * @param end offset reached in the log
+         * @param consoleAnnotator {@code X-ConsoleAnnotator} header sent with the rendering
+         * @return {@code null} if the rendering exceeded {@link #MAX_RENDERING_SIZE}
+         */
+        @CheckForNull
+        Rendering toRendering(long end, @CheckForNull String consoleAnnotator) {
+            if (overflow) {
+                return null;
+            }
+            List<String> renderedChunks = new ArrayList<>(chunks);
+            if (chunk.length() > 0) {
+                renderedChunks.add(chunk.toString());
+            }
+            return new Rendering(renderedChunks, end, consoleAnnotator);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Circuit breaker of the retrieval of the logs from an observability backend. After {@link #SLOW_CALLS_THRESHOLD}
+ * slow or failed calls within {@link #OPEN_DURATION_MILLIS}, the circuit opens: the calls to the backend are
+ * short-circuited and the log views fall back rather than wait for the backend. Once {@link #OPEN_DURATION_MILLIS}
+ * have elapsed, a single trial call is let through, the circuit closes if the trial call succeeds in time and opens
+ * again otherwise.
+ * </p>
+ * <p>
+ * A call is slow when it exceeds {@link #SLOW_CALL_MILLIS} or the deadline of its HTTP request. The calls without
+ * deadline, such as the downloads of logs, are not accounted as slow.
+ * </p>
+ */
+public class CircuitBreaker {
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public static final long SLOW_CALL_MILLIS =
+            Long.getLong(CircuitBreaker.class.getName() + ".slowCallMillis", 10_000);
+    public static final int SLOW_CALLS_THRESHOLD =
+            Integer.getInteger(CircuitBreaker.class.getName() + ".slowCallsThreshold", 5);
+    public static final long OPEN_DURATION_MILLIS =
+            Long.getLong(CircuitBreaker.class.getName() + ".openDurationMillis", 60_000);
+
+    private static final ConcurrentMap<String, CircuitBreaker> CIRCUIT_BREAKERS = new ConcurrentHashMap<>();
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    @NonNull
+    private final String backend;
+
+    private final long slowCallNanos;
+    private final int slowCallsThreshold;
+    private final long openDurationNanos;
+
+    private State state = State.CLOSED;
+    private int slowOrFailedCalls;
+    /**
+     * Start of the window counting the slow or failed calls when closed, time the circuit opened otherwise
+     */
+    private long sinceNanos = System.nanoTime();
+
+    private boolean trialCallInFlight;
+
+    @VisibleForTesting
+    CircuitBreaker(@NonNull String backend, long slowCallNanos, int slowCallsThreshold, long openDurationNanos) {
+        this.backend = backend;
+        this.slowCallNanos = slowCallNanos;
+        this.slowCallsThreshold = slowCallsThreshold;
+        this.openDurationNanos = openDurationNanos;
+    }
+
+    /**
+     * @param backend identifier of the observability backend, typically the class name of its
+     *                {@link io.jenkins.plugins.opentelemetry.job.log.LogStorageRetriever}
+     */
+    @NonNull
+    public static CircuitBreaker forBackend(@NonNull String backend) {
+        return CIRCUIT_BREAKERS.computeIfAbsent(
+                backend,
+                b -> new CircuitBreaker(
+                        b,
+                        TimeUnit.MILLISECONDS.toNanos(SLOW_CALL_MILLIS),
+                        SLOW_CALLS_THRESHOLD,
+                        TimeUnit.MILLISECONDS.toNanos(OPEN_DURATION_MILLIS)));
+    }
+
+    /**
+     * @return {@code false} if the call must not be sent to the observability backend. A call that is allowed must
+     * be reported with {@link #onCall(long)}, {@link #onSuccess()}, {@link #onSlowCall()}, {@link #onFailure()} or
+     * {@link #onCallNotSent()}
+     */
+    public boolean allowCall() {
+        return allowCall(System.nanoTime());
+    }
+
+    synchronized boolean allowCall(long nowNanos) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nowNanos - sinceNanos < openDurationNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialCallInFlight = true;
+                return true;
+            case HALF_OPEN:
+            default:
+                if (trialCallInFlight) {
+                    return false;
+                }
+                trialCallInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * Report a call that succeeded in the given duration
+     */
+    public void onCall(long durationNanos) {
+        if (durationNanos >= slowCallNanos) {
+            onSlowCall(System.nanoTime());
+        } else {
+            onSuccess();
+        }
+    }
+
+    /**
+     * Report a call that exceeded the deadline of its HTTP request
+     */
+    public void onSlowCall() {
+        onSlowCall(System.nanoTime());
+    }
+
+    /**
+     * Report a call that failed, whatever its duration
+     */
+    public void onFailure() {
+        onFailure(System.nanoTime());
+    }
+
+    synchronized void onFailure(long nowNanos) {
+        onSlowOrFailedCall(nowNanos);
+    }
+
+    synchronized void onSlowCall(long nowNanos) {
+        onSlowOrFailedCall(nowNanos);
+    }
+
+    private void onSlowOrFailedCall(long nowNanos) {
+        if (state == State.HALF_OPEN) {
+            open(nowNanos);
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        if (nowNanos - sinceNanos >= openDurationNanos) {
+            slowOrFailedCalls = 0;
+            sinceNanos = nowNanos;
+        }
+        slowOrFailedCalls++;
+        if (slowOrFailedCalls >= slowCallsThreshold) {
+            open(nowNanos);
+        }
+    }
+
+    /**
+     * Report an allowed call that has finally not been sent to the observability backend
+     */
+    public synchronized void onCallNotSent() {
+        trialCallInFlight = false;
+    }
+
+    /**
+     * Report a call that succeeded, whatever its duration
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            logger.log(Level.INFO, () -> "Close the circuit breaker of the logs retrieval from " + backend);
+            state = State.CLOSED;
+            trialCallInFlight = false;
+            slowOrFailedCalls = 0;
+            sinceNanos = System.nanoTime();
+        }
+    }
+
+    private void open(long nowNanos) {
+        logger.log(
+                Level.WARNING,
+                () -> "Open the circuit breaker of the logs retrieval from " + backend + " after " + slowOrFailedCalls
+                        + " slow or failed calls, the logs views fall back during "
+                        + TimeUnit.NANOSECONDS.toSeconds(openDurationNanos) + "s");
+        state = State.OPEN;
+        trialCallInFlight = false;
+        sinceNanos = nowNanos;
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    @NonNull
+    synchronized State getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{" + "backend='" + backend + '\'' + ", state=" + getState() + '}';
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link InputStream} delegating the reads, that may query the observability backend, to the
+ * {@link LogRetrievalExecutor}, each read having its own deadline so that a long log is bounded per page of log lines
+ * retrieved rather than as a whole. The bytes already retrieved by a {@link LogLineIteratorInputStream} are read on the
+ * calling thread. Once a read has failed, the underlying stream may still be in use by the interrupted call and must
+ * no longer be read.
+ * <p>
+ * When a {@link CircuitBreaker} is given, the stream is truncated rather than failing when the backend is slow: the
+ * log lines already read are kept, the stream then ends with the {@link #TRUNCATION_MARKER} if the log is complete,
+ * or ends right away if the log is still growing so that the next poll resumes from the offset actually reached.
+ * </p>
+ */
+class DeadlineInputStream extends FilterInputStream {
+    private static final Logger logger = Logger.getLogger(DeadlineInputStream.class.getName());
+
+    static final byte[] TRUNCATION_MARKER =
+            "\nlog truncated: backend slow, reload the page to retry\n".getBytes(StandardCharsets.UTF_8);
+
+    @NonNull
+    private final LogRetrievalExecutor logRetrievalExecutor;
+
+    /**
+     * Max duration of each read, see {@link LogRetrievalExecutor#DEADLINE_MILLIS}
+     */
+    private final long timeoutInNanos;
+
+    @CheckForNull
+    private final CircuitBreaker circuitBreaker;
+
+    private final boolean complete;
+
+    @CheckForNull
+    private final Runnable onTruncation;
+
+    /**
+     * Offset in the {@link #TRUNCATION_MARKER} once truncated, {@code -1} otherwise
+     */
+    private int truncationMarkerOffset = -1;
+
+    DeadlineInputStream(
+            @NonNull InputStream in, @NonNull LogRetrievalExecutor logRetrievalExecutor, long timeoutInNanos) {
+        this(in, logRetrievalExecutor, timeoutInNanos, null, false, null);
+    }
+
+    /**
+     * @param timeoutInNanos max duration of each read
+     * @param circuitBreaker {@code null} to fail rather than truncate the stream when the backend is slow
+     * @param complete       {@code true} if the log will no longer grow
+     * @param onTruncation   invoked when the stream is truncated
+     */
+    DeadlineInputStream(
+            @NonNull InputStream in,
+            @NonNull LogRetrievalExecutor logRetrievalExecutor,
+            long timeoutInNanos,
+            @Nullable CircuitBreaker circuitBreaker,
+            boolean complete,
+            @Nullable Runnable onTruncation) {
+        super(in);
+        this.logRetrievalExecutor = logRetrievalExecutor;
+        this.timeoutInNanos = timeoutInNanos;
+        this.circuitBreaker = circuitBreaker;
+        this.complete = complete;
+        this.onTruncation = onTruncation;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (truncationMarkerOffset == -1) {
+            if (getBufferedBytes() > 0) {
+                return in.read();
+            }
+            try {
+                return logRetrievalExecutor.call(in::read, newDeadlineInNanos(), circuitBreaker);
+            } catch (LogRetrievalExecutor.BackendSlowException e) {
+                truncate(e);
+            }
+        }
+        if (truncationMarkerOffset < truncationMarkerLength()) {
+            return TRUNCATION_MARKER[truncationMarkerOffset++] & 0xFF;
+        }
+        return -1;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        if (truncationMarkerOffset == -1) {
+            int bufferedBytes = getBufferedBytes();
+            if (bufferedBytes > 0) {
+                return in.read(b, off, Math.min(len, bufferedBytes));
+            }
+            try {
+                return logRetrievalExecutor.call(() -> in.read(b, off, len), newDeadlineInNanos(), circuitBreaker);
+            } catch (LogRetrievalExecutor.BackendSlowException e) {
+                truncate(e);
+            }
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int count = Math.min(len, truncationMarkerLength() - truncationMarkerOffset);
+        if (count <= 0) {
+            return -1;
+        }
+        System.arraycopy(TRUNCATION_MARKER, truncationMarkerOffset, b, off, count);
+        truncationMarkerOffset += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (truncationMarkerOffset == -1) {
+            try {
+                return logRetrievalExecutor.call(() -> in.skip(n), newDeadlineInNanos(), circuitBreaker);
+            } catch (LogRetrievalExecutor.BackendSlowException e) {
+                truncate(e);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (truncationMarkerOffset == -1) {
+            try {
+                return logRetrievalExecutor.call(in::available, newDeadlineInNanos(), circuitBreaker);
+            } catch (LogRetrievalExecutor.BackendSlowException e) {
+                truncate(e);
+            }
+        }
+        return truncationMarkerLength() - truncationMarkerOffset;
+    }
+
+    /**
+     * @return the number of bytes that can be read without querying the observability backend
+     */
+    private int getBufferedBytes() {
+        return in instanceof LogLineIteratorInputStream<?> logLineIteratorInputStream
+                ? logLineIteratorInputStream.getBufferedBytes()
+                : 0;
+    }
+
+    private long newDeadlineInNanos() {
+        return System.nanoTime() + timeoutInNanos;
+    }
+
+    private void truncate(@NonNull LogRetrievalExecutor.BackendSlowException e) throws IOException {
+        if (circuitBreaker == null) {
+            throw e;
+        }
+        logger.log(Level.FINE, () -> "Truncate the logs: " + e.getMessage());
+        truncationMarkerOffset = 0;
+        if (onTruncation != null) {
+            onTruncation.run();
+        }
+    }
+
+    private int truncationMarkerLength() {
+        return complete ? TRUNCATION_MARKER.length : 0;
+    }
+}
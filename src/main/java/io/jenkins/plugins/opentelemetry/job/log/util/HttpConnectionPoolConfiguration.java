@@ -0,0 +1,84 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.job.log.LogStorageRetriever;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * <p>
+ * Settings of the HTTP connection pool of a {@link LogStorageRetriever}, read from the system properties
+ * {@code <retriever class name>.http.maxConnectionsPerRoute}, {@code .http.maxConnectionsTotal},
+ * {@code .http.idleConnectionEvictionInSeconds} and {@code .http.http2.enabled}.
+ * </p>
+ * <p>
+ * HTTP/2 is only supported by the asynchronous HTTP client, it's negotiated through TLS ALPN.
+ * </p>
+ */
+public class HttpConnectionPoolConfiguration {
+    public static final int MAX_CONNECTIONS_PER_ROUTE_DEFAULT = 20;
+    public static final int MAX_CONNECTIONS_TOTAL_DEFAULT = 50;
+    public static final int IDLE_CONNECTION_EVICTION_IN_SECONDS_DEFAULT = 60;
+
+    private final int maxConnectionsPerRoute;
+    private final int maxConnectionsTotal;
+    @NonNull
+    private final TimeValue idleConnectionEviction;
+
+    private final boolean http2;
+
+    public HttpConnectionPoolConfiguration(
+            int maxConnectionsPerRoute,
+            int maxConnectionsTotal,
+            @NonNull TimeValue idleConnectionEviction,
+            boolean http2) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        this.idleConnectionEviction = idleConnectionEviction;
+        this.http2 = http2;
+    }
+
+    @NonNull
+    public static HttpConnectionPoolConfiguration fromSystemProperties(@NonNull Class<?> owner) {
+        String prefix = owner.getName() + ".http.";
+        return new HttpConnectionPoolConfiguration(
+                Integer.getInteger(prefix + "maxConnectionsPerRoute", MAX_CONNECTIONS_PER_ROUTE_DEFAULT),
+                Integer.getInteger(prefix + "maxConnectionsTotal", MAX_CONNECTIONS_TOTAL_DEFAULT),
+                TimeValue.ofSeconds(Integer.getInteger(
+                        prefix + "idleConnectionEvictionInSeconds", IDLE_CONNECTION_EVICTION_IN_SECONDS_DEFAULT)),
+                Boolean.parseBoolean(System.getProperty(prefix + "http2.enabled", "false")));
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * @return the duration after which idle connections are closed, idle eviction is disabled if not positive
+     */
+    @NonNull
+    public TimeValue getIdleConnectionEviction() {
+        return idleConnectionEviction;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpConnectionPoolConfiguration{" + "maxConnectionsPerRoute="
+                + maxConnectionsPerRoute + ", maxConnectionsTotal="
+                + maxConnectionsTotal + ", idleConnectionEviction="
+                + idleConnectionEviction + ", http2="
+                + http2 + '}';
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.JENKINS_LOGS_BACKEND;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_AVAILABLE;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_LEASED;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_LEASE_WAIT_TIME;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_PENDING;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.BatchCallback;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.IdleConnectionEvictor;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+
+/**
+ * <p>
+ * Exports the metrics of the HTTP connection pool of a log storage retriever (leased, pending and available
+ * connections, lease wait time) and evicts the idle connections of the pool.
+ * </p>
+ * <p>
+ * The lease wait time is recorded by {@link InstrumentedHttpClientConnectionManager} and
+ * {@link InstrumentedAsyncClientConnectionManager}.
+ * </p>
+ */
+public class HttpConnectionPoolInstrumentation implements Closeable {
+    private static final Logger logger = Logger.getLogger(HttpConnectionPoolInstrumentation.class.getName());
+
+    @NonNull
+    private final Attributes attributes;
+
+    @NonNull
+    private final BatchCallback poolStatsCallback;
+
+    @NonNull
+    private final DoubleHistogram leaseWaitTime;
+
+    @Nullable
+    private final IdleConnectionEvictor idleConnectionEvictor;
+
+    /**
+     * @param backend see {@link ExtendedJenkinsAttributes.LogsBackendValues}
+     */
+    public HttpConnectionPoolInstrumentation(
+            @NonNull String backend,
+            @NonNull ConnPoolControl<HttpRoute> pool,
+            @NonNull HttpConnectionPoolConfiguration configuration,
+            @NonNull OpenTelemetry openTelemetry) {
+        this.attributes = Attributes.of(JENKINS_LOGS_BACKEND, backend);
+        Meter meter = openTelemetry.getMeter(ExtendedJenkinsAttributes.INSTRUMENTATION_NAME);
+
+        ObservableLongMeasurement leased = meter.gaugeBuilder(JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_LEASED)
+                .ofLongs()
+                .setDescription("Number of HTTP connections of the logs retriever currently in use")
+                .setUnit("{connections}")
+                .buildObserver();
+        ObservableLongMeasurement pending = meter.gaugeBuilder(JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_PENDING)
+                .ofLongs()
+                .setDescription("Number of requests of the logs retriever waiting for an HTTP connection")
+                .setUnit("{requests}")
+                .buildObserver();
+        ObservableLongMeasurement available = meter.gaugeBuilder(JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_AVAILABLE)
+                .ofLongs()
+                .setDescription("Number of idle HTTP connections of the logs retriever")
+                .setUnit("{connections}")
+                .buildObserver();
+        this.poolStatsCallback = meter.batchCallback(
+                () -> {
+                    PoolStats totalStats = pool.getTotalStats();
+                    leased.record(totalStats.getLeased(), attributes);
+                    pending.record(totalStats.getPending(), attributes);
+                    available.record(totalStats.getAvailable(), attributes);
+                },
+                leased,
+                pending,
+                available);
+        this.leaseWaitTime = meter.histogramBuilder(JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_LEASE_WAIT_TIME)
+                .setDescription("Time spent by the logs retriever waiting for an HTTP connection")
+                .setUnit("s")
+                .build();
+
+        if (configuration.getIdleConnectionEviction().getDuration() > 0) {
+            this.idleConnectionEvictor = new IdleConnectionEvictor(
+                    pool,
+                    new NamingThreadFactory(
+                            new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()),
+                            HttpConnectionPoolInstrumentation.class.getName() + "." + backend),
+                    configuration.getIdleConnectionEviction(),
+                    configuration.getIdleConnectionEviction());
+            this.idleConnectionEvictor.start();
+        } else {
+            this.idleConnectionEvictor = null;
+        }
+    }
+
+    public void recordLeaseWaitTime(long durationInNanos) {
+        leaseWaitTime.record(durationInNanos / (double) TimeUnit.SECONDS.toNanos(1), attributes);
+    }
+
+    @Override
+    public void close() {
+        logger.log(Level.FINE, () -> "Close HTTP connection pool instrumentation " + attributes);
+        if (idleConnectionEvictor != null) {
+            idleConnectionEvictor.shutdown();
+        }
+        poolStatsCallback.close();
+    }
+}
@@ -5,6 +5,7 @@
 
 package io.jenkins.plugins.opentelemetry.job.log.util;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
@@ -13,6 +14,7 @@ import io.opentelemetry.context.Scope;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nonnull;
@@ -30,22 +32,93 @@ public class InputStreamByteBuffer extends ByteBuffer {
     @NonNull
     final InputStream in;
 
+    /**
+     * Exact length of the log, {@code null} if unknown
+     */
+    @CheckForNull
+    final Long length;
+
+    /**
+     * Circuit breaker of the observability backend, {@code null} to fail rather than truncate the log when the
+     * backend is slow
+     */
+    @CheckForNull
+    final CircuitBreaker circuitBreaker;
+
+    final boolean complete;
+
+    private volatile boolean truncated;
+
     public InputStreamByteBuffer(@Nonnull InputStream in, @Nonnull Tracer tracer) {
+        this(in, null, tracer);
+    }
+
+    public InputStreamByteBuffer(@Nonnull InputStream in, @CheckForNull Long length, @Nonnull Tracer tracer) {
+        this(in, length, null, false, tracer);
+    }
+
+    private InputStreamByteBuffer(
+            @Nonnull InputStream in,
+            @CheckForNull Long length,
+            @CheckForNull CircuitBreaker circuitBreaker,
+            boolean complete,
+            @Nonnull Tracer tracer) {
         this.in = in;
+        this.length = length;
+        this.circuitBreaker = circuitBreaker;
+        this.complete = complete;
         this.tracer = tracer;
     }
 
+    /**
+     * @param complete {@code true} if the log will no longer grow, the tail of the log can then be retrieved first
+     * @return a {@link ByteBuffer} reading the same {@link InputStream} and reporting the given exact length
+     */
+    @NonNull
+    public InputStreamByteBuffer withLength(long length, boolean complete) {
+        if (complete && in instanceof LogLineIteratorInputStream<?> logLineIteratorInputStream) {
+            logLineIteratorInputStream.setLogLength(length);
+        }
+        return new InputStreamByteBuffer(in, length, circuitBreaker, complete, tracer);
+    }
+
+    /**
+     * @param complete {@code true} if the log will no longer grow
+     * @return a {@link ByteBuffer} reading the same {@link InputStream} and truncating the log rather than failing
+     * when the backend is slow, see {@link DeadlineInputStream}
+     */
+    @NonNull
+    public InputStreamByteBuffer withCircuitBreaker(@NonNull CircuitBreaker circuitBreaker, boolean complete) {
+        return new InputStreamByteBuffer(in, length, circuitBreaker, complete, tracer);
+    }
+
+    /**
+     * @return {@code true} if a read of the log has been truncated because the backend was slow or because the backend
+     * limits were reached, see {@link LogLineIterator#isTruncated()}
+     */
+    public boolean isTruncated() {
+        return truncated
+                || in instanceof LogLineIteratorInputStream<?> logLineIteratorInputStream
+                        && logLineIteratorInputStream.isTruncated();
+    }
+
     @Override
     public synchronized long length() {
         Tracer tracer = logger.isLoggable(Level.FINER)
                 ? this.tracer
                 : TracerProvider.noop().get("noop");
-        // See system property 'hudson.consoleTailKB'
-        // workflow-job-2.41.jar!/org/jenkinsci/plugins/workflow/job/WorkflowRun/console.jelly
-        long length = Long.parseLong(System.getProperty("hudson.consoleTailKB", "150"))
-                * 1024; // lower than 150KB -  FIXME verify
+        long length;
+        if (this.length == null) {
+            // Unknown length, don't exceed the console tail so that the whole log is rendered
+            // See system property 'hudson.consoleTailKB'
+            // workflow-job-2.41.jar!/org/jenkinsci/plugins/workflow/job/WorkflowRun/console.jelly
+            length = Long.parseLong(System.getProperty("hudson.consoleTailKB", "150")) * 1024;
+        } else {
+            length = this.length;
+        }
         Span span = tracer.spanBuilder("InputStreamByteBuffer.length")
                 .setAttribute("response.length", length)
+                .setAttribute("response.exactLength", this.length != null)
                 .startSpan();
         try (Scope scope = span.makeCurrent()) {
             return length;
@@ -54,6 +127,10 @@ public class InputStreamByteBuffer extends ByteBuffer {
         }
     }
 
+    /**
+     * @return an {@link InputStream} reading the logs on the {@link LogRetrievalExecutor}, each read having its own
+     * deadline, or on the calling thread without deadline, see {@link LogRetrievalExecutor#withoutDeadline()}
+     */
     @Override
     public InputStream newInputStream() {
         Tracer tracer = logger.isLoggable(Level.FINEST)
@@ -61,7 +138,17 @@ public class InputStreamByteBuffer extends ByteBuffer {
                 : TracerProvider.noop().get("noop");
         Span span = tracer.spanBuilder("InputStreamByteBuffer.newInputStream").startSpan();
         try (Scope scope = span.makeCurrent()) {
-            return in;
+            if (!LogRetrievalExecutor.isDeadlineEnabled()) {
+                span.setAttribute("deadline", false);
+                return in;
+            }
+            return new DeadlineInputStream(
+                    in,
+                    LogRetrievalExecutor.get(),
+                    TimeUnit.MILLISECONDS.toNanos(LogRetrievalExecutor.DEADLINE_MILLIS),
+                    circuitBreaker,
+                    complete,
+                    () -> truncated = true);
         } finally {
             span.end();
         }
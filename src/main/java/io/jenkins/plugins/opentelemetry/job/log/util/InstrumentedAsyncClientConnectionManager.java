@@ -0,0 +1,120 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.nio.AsyncClientConnectionManager;
+import org.apache.hc.client5.http.nio.AsyncConnectionEndpoint;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ConnectionInitiator;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * {@link AsyncClientConnectionManager} recording the time spent waiting for a connection of the pool.
+ */
+public class InstrumentedAsyncClientConnectionManager implements AsyncClientConnectionManager {
+
+    @NonNull
+    private final AsyncClientConnectionManager delegate;
+
+    @NonNull
+    private final HttpConnectionPoolInstrumentation instrumentation;
+
+    public InstrumentedAsyncClientConnectionManager(
+            @NonNull AsyncClientConnectionManager delegate,
+            @NonNull HttpConnectionPoolInstrumentation instrumentation) {
+        this.delegate = delegate;
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    public Future<AsyncConnectionEndpoint> lease(
+            String id,
+            HttpRoute route,
+            Object state,
+            Timeout requestTimeout,
+            FutureCallback<AsyncConnectionEndpoint> callback) {
+        long startTimeInNanos = System.nanoTime();
+        return delegate.lease(id, route, state, requestTimeout, new FutureCallback<>() {
+            @Override
+            public void completed(AsyncConnectionEndpoint result) {
+                instrumentation.recordLeaseWaitTime(System.nanoTime() - startTimeInNanos);
+                if (callback != null) {
+                    callback.completed(result);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                instrumentation.recordLeaseWaitTime(System.nanoTime() - startTimeInNanos);
+                if (callback != null) {
+                    callback.failed(ex);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                if (callback != null) {
+                    callback.cancelled();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void release(AsyncConnectionEndpoint endpoint, Object newState, TimeValue validDuration) {
+        delegate.release(endpoint, newState, validDuration);
+    }
+
+    @Override
+    public Future<AsyncConnectionEndpoint> connect(
+            AsyncConnectionEndpoint endpoint,
+            ConnectionInitiator connectionInitiator,
+            Timeout connectTimeout,
+            Object attachment,
+            HttpContext context,
+            FutureCallback<AsyncConnectionEndpoint> callback) {
+        return delegate.connect(endpoint, connectionInitiator, connectTimeout, attachment, context, callback);
+    }
+
+    @Override
+    public void upgrade(AsyncConnectionEndpoint endpoint, Object attachment, HttpContext context) {
+        delegate.upgrade(endpoint, attachment, context);
+    }
+
+    @Override
+    public void upgrade(
+            AsyncConnectionEndpoint endpoint,
+            Object attachment,
+            HttpContext context,
+            FutureCallback<AsyncConnectionEndpoint> callback) {
+        delegate.upgrade(endpoint, attachment, context, callback);
+    }
+
+    @Override
+    public void close(CloseMode closeMode) {
+        try {
+            delegate.close(closeMode);
+        } finally {
+            instrumentation.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            instrumentation.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link LogLineIterator} over log lines already retrieved, sorted by increasing id
+ */
+public class ListLogLineIterator<Id extends Comparable<Id>> implements LogLineIterator<Id> {
+    @NonNull
+    private final List<LogLine<Id>> logLines;
+
+    private int index;
+
+    public ListLogLineIterator(@NonNull List<LogLine<Id>> logLines) {
+        this.logLines = logLines;
+    }
+
+    /**
+     * Position the iterator on the first log line whose id is greater than the given id
+     */
+    @Override
+    public void skipLines(Id toLogLineId) {
+        int low = 0;
+        int high = logLines.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (logLines.get(middle).getId().compareTo(toLogLineId) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        index = low;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index < logLines.size();
+    }
+
+    @Override
+    public LogLine<Id> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return logLines.get(index++);
+    }
+
+    @Override
+    public LogTail<Id> tail(long minLengthInBytes) {
+        int first = logLines.size();
+        long lengthInBytes = 0;
+        while (lengthInBytes < minLengthInBytes && first > 0) {
+            lengthInBytes += logLines.get(--first).getLengthInBytes();
+        }
+        return new LogTail<>(
+                logLines.subList(first, logLines.size()),
+                first == 0 ? null : logLines.get(first - 1).getId());
+    }
+}
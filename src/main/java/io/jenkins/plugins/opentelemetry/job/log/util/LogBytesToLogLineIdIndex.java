@@ -0,0 +1,125 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.jenkins.plugins.opentelemetry.job.RunFlowNodeIdentifier;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Index of the positions in the log of a pipeline run (or of a flow node of a pipeline run) mapping byte offsets to
+ * the id of the log line ending at this offset so that {@link LogLineIteratorInputStream#skip(long)} can resume from
+ * the closest preceding checkpoint.
+ * </p>
+ * <p>
+ * Indices are shared by all the HTTP requests retrieving the logs of the same run, the number of indices and the
+ * number of checkpoints per index are bounded. Offsets and ids are stored in sorted {@code long[]} arrays, when an
+ * index is full every other checkpoint is dropped.
+ * </p>
+ */
+public class LogBytesToLogLineIdIndex implements LogLineIterator.LogLineBytesToLogLineIdMapper<Long> {
+
+    public static final int MAX_CHECKPOINTS =
+            Integer.getInteger(LogBytesToLogLineIdIndex.class.getName() + ".maxCheckpoints", 1_024);
+
+    static final Cache<RunFlowNodeIdentifier, LogBytesToLogLineIdIndex> INDICES = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger(LogBytesToLogLineIdIndex.class.getName() + ".maxIndices", 1_000))
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
+    private final int maxCheckpoints;
+    private long[] logBytes = new long[16];
+    private long[] logLineIds = new long[16];
+    private int size;
+
+    LogBytesToLogLineIdIndex(int maxCheckpoints) {
+        this.maxCheckpoints = Math.max(2, maxCheckpoints);
+    }
+
+    @NonNull
+    public static LogBytesToLogLineIdIndex get(
+            @NonNull String jobFullName, int runNumber, @Nullable String flowNodeId) {
+        try {
+            return INDICES.get(
+                    new RunFlowNodeIdentifier(jobFullName, runNumber, flowNodeId),
+                    () -> new LogBytesToLogLineIdIndex(MAX_CHECKPOINTS));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Drop all the indices, invoked when the log storage retriever is closed as the ids of the log lines depend on
+     * the retriever
+     */
+    public static void invalidateAll() {
+        INDICES.invalidateAll();
+    }
+
+    @Nullable
+    @Override
+    public synchronized Long getLogLineIdFromLogBytes(long bytes) {
+        int idx = Arrays.binarySearch(logBytes, 0, size, bytes);
+        return idx < 0 ? null : logLineIds[idx];
+    }
+
+    @Nullable
+    @Override
+    public synchronized LogLineIterator.LogBytesCheckpoint<Long> getFloorLogLineIdFromLogBytes(long bytes) {
+        int idx = Arrays.binarySearch(logBytes, 0, size, bytes);
+        if (idx < 0) {
+            idx = -idx - 2;
+        }
+        return idx < 0 ? null : new LogLineIterator.LogBytesCheckpoint<>(logBytes[idx], logLineIds[idx]);
+    }
+
+    @Override
+    public synchronized void putLogBytesToLogLineId(long bytes, @NonNull Long logLineId) {
+        int idx = Arrays.binarySearch(logBytes, 0, size, bytes);
+        if (idx >= 0) {
+            logLineIds[idx] = logLineId;
+            return;
+        }
+        if (size == maxCheckpoints) {
+            compact();
+            idx = Arrays.binarySearch(logBytes, 0, size, bytes);
+        }
+        int insertionPoint = -idx - 1;
+        if (size == logBytes.length) {
+            int capacity = Math.min(maxCheckpoints, size * 2);
+            logBytes = Arrays.copyOf(logBytes, capacity);
+            logLineIds = Arrays.copyOf(logLineIds, capacity);
+        }
+        System.arraycopy(logBytes, insertionPoint, logBytes, insertionPoint + 1, size - insertionPoint);
+        System.arraycopy(logLineIds, insertionPoint, logLineIds, insertionPoint + 1, size - insertionPoint);
+        logBytes[insertionPoint] = bytes;
+        logLineIds[insertionPoint] = logLineId;
+        size++;
+    }
+
+    /**
+     * Drop every other checkpoint, keeping the first one
+     */
+    private void compact() {
+        int newSize = 0;
+        for (int i = 0; i < size; i += 2) {
+            logBytes[newSize] = logBytes[i];
+            logLineIds[newSize] = logLineIds[i];
+            newSize++;
+        }
+        size = newSize;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
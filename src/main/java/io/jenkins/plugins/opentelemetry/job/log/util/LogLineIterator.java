@@ -6,21 +6,35 @@
 package io.jenkins.plugins.opentelemetry.job.log.util;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
-import io.jenkins.plugins.opentelemetry.job.RunFlowNodeIdentifier;
 import io.jenkins.plugins.opentelemetry.job.log.LogLine;
-import jakarta.servlet.http.HttpSession;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Optional;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import org.kohsuke.stapler.Stapler;
-import org.kohsuke.stapler.StaplerRequest2;
+import java.util.List;
 
 public interface LogLineIterator<Id> extends Iterator<LogLine<Id>> {
     void skipLines(Id toLogLineId);
 
+    /**
+     * Retrieve the last log lines querying the backend from the end of the log rather than reading the log from its
+     * first line. Doesn't change the position of the iterator.
+     *
+     * @param minLengthInBytes minimum cumulated {@link LogLine#getLengthInBytes()} of the returned log lines, fewer
+     *                         bytes are returned if the log is shorter
+     * @return {@code null} if unsupported
+     */
+    @Nullable
+    default LogTail<Id> tail(long minLengthInBytes) throws IOException {
+        return null;
+    }
+
+    /**
+     * @return {@code true} if the iteration ended before the end of the log, when the backend limits the number of
+     * queries or of log lines retrieved. A truncated log must not be cached.
+     */
+    default boolean isTruncated() {
+        return false;
+    }
+
     interface LogLineBytesToLogLineIdMapper<Id> {
         /**
          * @return {@code null} if unknown
@@ -28,66 +42,80 @@ public interface LogLineIterator<Id> extends Iterator<LogLine<Id>> {
         @Nullable
         Id getLogLineIdFromLogBytes(long bytes);
 
+        /**
+         * @return the checkpoint with the greatest log bytes offset lower than or equal to the given offset,
+         * {@code null} if none
+         */
+        @Nullable
+        default LogBytesCheckpoint<Id> getFloorLogLineIdFromLogBytes(long bytes) {
+            Id logLineId = getLogLineIdFromLogBytes(bytes);
+            return logLineId == null ? null : new LogBytesCheckpoint<>(bytes, logLineId);
+        }
+
         void putLogBytesToLogLineId(long bytes, Id timestampInNanos);
     }
 
     /**
-     * Converter gets garbage collected when the HTTP session expires
+     * Position in the log bytes of the end of a log line
      */
-    class JenkinsHttpSessionLineBytesToLogLineIdMapper<Id> implements LogLineBytesToLogLineIdMapper<Id> {
-        private static final Logger logger =
-                Logger.getLogger(JenkinsHttpSessionLineBytesToLogLineIdMapper.class.getName());
+    class LogBytesCheckpoint<Id> {
+        final long logBytes;
+        final Id logLineId;
+
+        public LogBytesCheckpoint(long logBytes, Id logLineId) {
+            this.logBytes = logBytes;
+            this.logLineId = logLineId;
+        }
+
+        public long getLogBytes() {
+            return logBytes;
+        }
+
+        public Id getLogLineId() {
+            return logLineId;
+        }
+
+        @Override
+        public String toString() {
+            return "LogBytesCheckpoint{" + "logBytes=" + logBytes + ", logLineId=" + logLineId + '}';
+        }
+    }
 
-        public static final String HTTP_SESSION_KEY = "JenkinsHttpSessionLineBytesToLineNumberConverter";
-        final String jobFullName;
-        final int runNumber;
+    /**
+     * Last log lines of a log
+     */
+    class LogTail<Id> {
+        final List<LogLine<Id>> logLines;
 
         @Nullable
-        final String flowNodeId;
+        final Id previousLogLineId;
+
+        /**
+         * @param logLines          log lines in chronological order
+         * @param previousLogLineId id of the log line preceding the first returned log line, {@code null} if the
+         *                          first returned log line is the first line of the log
+         */
+        public LogTail(List<LogLine<Id>> logLines, @Nullable Id previousLogLineId) {
+            this.logLines = logLines;
+            this.previousLogLineId = previousLogLineId;
+        }
 
-        public JenkinsHttpSessionLineBytesToLogLineIdMapper(
-                String jobFullName, int runNumber, @Nullable String flowNodeId) {
-            this.jobFullName = jobFullName;
-            this.runNumber = runNumber;
-            this.flowNodeId = flowNodeId;
+        public List<LogLine<Id>> getLogLines() {
+            return logLines;
         }
 
         @Nullable
-        @Override
-        public Id getLogLineIdFromLogBytes(long bytes) {
-            RunFlowNodeIdentifier contextKey = new RunFlowNodeIdentifier(jobFullName, runNumber, flowNodeId);
-            return Optional.ofNullable(getContext().get(contextKey))
-                    .map(d -> d.get(bytes))
-                    .orElse(null);
+        public Id getPreviousLogLineId() {
+            return previousLogLineId;
         }
 
-        @Override
-        public void putLogBytesToLogLineId(long bytes, Id logLineId) {
-            RunFlowNodeIdentifier contextKey = new RunFlowNodeIdentifier(jobFullName, runNumber, flowNodeId);
-            getContext()
-                    .computeIfAbsent(contextKey, runFlowNodeIdentifier -> new HashMap<>())
-                    .put(bytes, logLineId);
+        public long getLengthInBytes() {
+            return logLines.stream().mapToLong(LogLine::getLengthInBytes).sum();
         }
 
-        Map<RunFlowNodeIdentifier, Map<Long, Id>> getContext() {
-            StaplerRequest2 currentRequest = Stapler.getCurrentRequest2();
-            if (currentRequest == null) {
-                // happens when reading logs is not tied to a web request
-                // (e.g. API call from within a pipeline as described in
-                // https://github.com/jenkinsci/opentelemetry-plugin/issues/564)
-                logger.log(Level.WARNING, "No current request found, default to default LogLineNumber context");
-                return new HashMap<>();
-            }
-            HttpSession session = currentRequest.getSession();
-            synchronized (session) {
-                Map<RunFlowNodeIdentifier, Map<Long, Id>> context =
-                        (Map<RunFlowNodeIdentifier, Map<Long, Id>>) session.getAttribute(HTTP_SESSION_KEY);
-                if (context == null) {
-                    context = new HashMap<>();
-                    session.setAttribute(HTTP_SESSION_KEY, context);
-                }
-                return context;
-            }
+        @Override
+        public String toString() {
+            return "LogTail{" + "logLines=" + logLines.size() + ", previousLogLineId=" + previousLogLineId + '}';
         }
     }
 }
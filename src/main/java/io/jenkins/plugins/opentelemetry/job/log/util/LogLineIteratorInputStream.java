@@ -5,17 +5,27 @@
 
 package io.jenkins.plugins.opentelemetry.job.log.util;
 
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsOperationValues;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.trace.TracerProvider;
 import io.opentelemetry.context.Scope;
-import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
-import java.util.Optional;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,44 +39,198 @@ public class LogLineIteratorInputStream<Id> extends InputStream {
     private final LogLineIterator<Id> logLines;
     protected final Tracer tracer;
 
-    private int cursorOnCurrentLine;
-    private byte[] currentLine;
+    /**
+     * Size of the buffer in which log lines are encoded, long lines are encoded in several chunks
+     */
+    static final int ENCODE_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Minimum number of bytes between two checkpoints recorded while reading so that a
+     * {@link #skip(long) skip} doesn't have to read and discard more than this number of bytes
+     */
+    static final int CHECKPOINT_INTERVAL_BYTES =
+            Integer.getInteger(LogLineIteratorInputStream.class.getName() + ".checkpointIntervalBytes", 64 * 1024);
+
+    /**
+     * Max distance to the end of the log of a {@link #skip(long) skip} target for the tail of the log to be retrieved
+     * with {@link LogLineIterator#tail(long)} rather than by reading the log forward
+     */
+    static final int TAIL_MAX_BYTES =
+            Integer.getInteger(LogLineIteratorInputStream.class.getName() + ".tailMaxBytes", 1024 * 1024);
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    /**
+     * Encoded bytes of the current line not yet read, in read mode
+     */
+    private final ByteBuffer encodedBytes = ByteBuffer.allocate(ENCODE_BUFFER_SIZE).flip();
+    /**
+     * Chars of the current line not yet encoded, {@code null} once the line and its line feed are encoded
+     */
+    @Nullable
+    private CharBuffer currentLine;
+
+    private boolean currentLineEncoded;
+
+    @Nullable
+    private Id currentLineId;
+
     private long readBytes;
+    /**
+     * Id of the last line entirely read and position of the end of this line
+     */
     private Id lastLogLineId;
 
+    private long lastLogLineEndBytes;
+
+    /**
+     * Position of the last checkpoint recorded in the {@link #logLineBytesToLogLineIdConverter}
+     */
+    private long lastCheckpointBytes;
+
+    /**
+     * Exact length of the complete log, {@code null} if unknown or if the log is still growing
+     */
+    @Nullable
+    private Long logLength;
+
+    /**
+     * Log lines retrieved by {@link LogLineIterator#tail(long)} not yet read
+     */
+    @Nullable
+    private Iterator<LogLine<Id>> tailLogLines;
+
+    /**
+     * Backend from which the log lines are retrieved, {@code null} if the retrieval isn't measured, see
+     * {@link LogRetrievalMetrics}
+     */
+    @Nullable
+    private final String backend;
+
+    @NonNull
+    private final String defaultOperation;
+
+    /**
+     * Started by the first read or skip
+     */
+    @Nullable
+    private LogRetrievalMetrics.Retrieval retrieval;
+
     public LogLineIteratorInputStream(
             LogLineIterator<Id> logLines,
             LogLineIterator.LogLineBytesToLogLineIdMapper<Id> logLineBytesToLogLineIdConverter,
             Tracer tracer) {
+        this(logLines, logLineBytesToLogLineIdConverter, tracer, null, LogsOperationValues.OVERALL);
+    }
+
+    /**
+     * @param backend          see {@link ExtendedJenkinsAttributes.LogsBackendValues}
+     * @param defaultOperation see {@link LogRetrievalMetrics#getOperation(String)}
+     */
+    public LogLineIteratorInputStream(
+            LogLineIterator<Id> logLines,
+            LogLineIterator.LogLineBytesToLogLineIdMapper<Id> logLineBytesToLogLineIdConverter,
+            Tracer tracer,
+            @Nullable String backend,
+            @NonNull String defaultOperation) {
         this.logLines = logLines;
         this.logLineBytesToLogLineIdConverter = logLineBytesToLogLineIdConverter;
         this.tracer = tracer;
+        this.backend = backend;
+        this.defaultOperation = defaultOperation;
+    }
+
+    /**
+     * Exact length of the log once it is complete, enables the retrieval of the tail of the log
+     * with {@link LogLineIterator#tail(long)} when skipping close to the end of the log
+     */
+    public void setLogLength(long logLength) {
+        this.logLength = logLength;
+    }
+
+    /**
+     * @see LogLineIterator#isTruncated()
+     */
+    public boolean isTruncated() {
+        return logLines.isTruncated();
     }
 
     @Override
     public int read() throws IOException {
+        if (!fillEncodedBytes()) {
+            return -1;
+        }
+        int result = encodedBytes.get() & 0xFF;
+        onBytesRead(1);
+        return result;
+    }
+
+    /**
+     * Copy the encoded log lines straight from the encode buffer rather than byte per byte
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        int count = 0;
+        while (count < len && fillEncodedBytes()) {
+            int chunk = Math.min(len - count, encodedBytes.remaining());
+            encodedBytes.get(b, off + count, chunk);
+            count += chunk;
+            onBytesRead(chunk);
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    /**
+     * Encode the next chunk of the current line, or of the next line, if all the encoded bytes have been read
+     *
+     * @return {@code false} if the end of the log is reached
+     */
+    private boolean fillEncodedBytes() {
+        if (encodedBytes.hasRemaining()) {
+            return true;
+        }
         if (currentLine == null) {
-            if (cursorOnCurrentLine != 0) {
-                throw new IllegalStateException(
-                        "Current line is null but cursorOnCurrentLine!=0: " + cursorOnCurrentLine);
-            }
-            currentLine = Optional.ofNullable(readLine())
-                    .map(line -> (line.getMessage() + "\n").getBytes(StandardCharsets.UTF_8))
-                    .orElse(null);
-            if (currentLine == null) {
-                return -1;
+            LogLine<Id> logLine = readLine();
+            if (logLine == null) {
+                return false;
             }
+            currentLine = CharBuffer.wrap(logLine.getMessage());
+            currentLineId = logLine.getId();
+            currentLineEncoded = false;
+            encoder.reset();
         }
-        if (cursorOnCurrentLine > currentLine.length) {
-            throw new IllegalStateException();
+        encodedBytes.clear();
+        if (!currentLineEncoded) {
+            CoderResult result = encoder.encode(currentLine, encodedBytes, true);
+            if (result.isUnderflow()) {
+                currentLineEncoded = encoder.flush(encodedBytes).isUnderflow();
+            }
         }
-        int result = currentLine[cursorOnCurrentLine++];
-        if (cursorOnCurrentLine == currentLine.length) {
+        if (currentLineEncoded && encodedBytes.hasRemaining()) {
+            encodedBytes.put((byte) '\n');
             currentLine = null;
-            cursorOnCurrentLine = 0;
         }
-        readBytes++;
-        return result;
+        encodedBytes.flip();
+        return true;
+    }
+
+    private void onBytesRead(int count) {
+        readBytes += count;
+        if (currentLine == null && !encodedBytes.hasRemaining()) {
+            // the current line is entirely read
+            lastLogLineId = currentLineId;
+            lastLogLineEndBytes = readBytes;
+            if (lastLogLineEndBytes - lastCheckpointBytes >= CHECKPOINT_INTERVAL_BYTES) {
+                logLineBytesToLogLineIdConverter.putLogBytesToLogLineId(lastLogLineEndBytes, lastLogLineId);
+                lastCheckpointBytes = lastLogLineEndBytes;
+            }
+        }
     }
 
     /**
@@ -74,13 +238,41 @@ public class LogLineIteratorInputStream<Id> extends InputStream {
      */
     @Nullable
     LogLine<Id> readLine() {
-        if (logLines.hasNext()) {
-            LogLine<Id> logLine = logLines.next();
-            lastLogLineId = logLine.getId();
-            return logLine;
+        LogRetrievalMetrics.Retrieval retrieval = getRetrieval();
+        LogLine<Id> logLine;
+        if (tailLogLines != null && tailLogLines.hasNext()) {
+            logLine = tailLogLines.next();
         } else {
-            return null;
+            tailLogLines = null;
+            try {
+                logLine = logLines.hasNext() ? logLines.next() : null;
+            } catch (RuntimeException e) {
+                if (retrieval != null) {
+                    retrieval.onError();
+                }
+                throw e;
+            }
         }
+        if (retrieval != null) {
+            if (logLine == null) {
+                retrieval.end();
+            } else {
+                retrieval.onLine(logLine.getLengthInBytes());
+            }
+        }
+        return logLine;
+    }
+
+    /**
+     * @return {@code null} if the retrieval isn't measured
+     */
+    @Nullable
+    @VisibleForTesting
+    LogRetrievalMetrics.Retrieval getRetrieval() {
+        if (retrieval == null && backend != null) {
+            retrieval = LogRetrievalMetrics.newRetrieval(backend, LogRetrievalMetrics.getOperation(defaultOperation));
+        }
+        return retrieval;
     }
 
     @Override
@@ -92,23 +284,106 @@ public class LogLineIteratorInputStream<Id> extends InputStream {
                 .setAttribute("skipBytes", skipBytes)
                 .startSpan();
         try (Scope scope = span.makeCurrent()) {
-            Optional<Id> logLineId =
-                    Optional.ofNullable(logLineBytesToLogLineIdConverter.getLogLineIdFromLogBytes(skipBytes));
-            logLineId.ifPresentOrElse(
-                    id -> {
-                        span.setAttribute("previousLastLogLineId", String.valueOf(this.lastLogLineId));
-                        span.setAttribute("lastLogLineId", String.valueOf(id));
-                        logLines.skipLines(id);
-                        readBytes += skipBytes;
-                        this.lastLogLineId = id;
-                    },
-                    () -> span.addEvent("LogLine Bytes to LogLine Id conversion not found"));
-            return skipBytes;
+            long startReadBytes = readBytes;
+            long targetReadBytes = readBytes + skipBytes;
+            LogLineIterator.LogBytesCheckpoint<Id> checkpoint =
+                    logLineBytesToLogLineIdConverter.getFloorLogLineIdFromLogBytes(targetReadBytes);
+            long forwardReadStartBytes =
+                    checkpoint == null ? readBytes : Math.max(readBytes, checkpoint.getLogBytes());
+            if (logLength != null
+                    && targetReadBytes - forwardReadStartBytes > CHECKPOINT_INTERVAL_BYTES
+                    && logLength - targetReadBytes <= TAIL_MAX_BYTES
+                    && skipToTail(targetReadBytes, forwardReadStartBytes, span)) {
+                span.setAttribute("tail", true);
+            } else if (checkpoint != null && checkpoint.getLogBytes() > readBytes) {
+                span.setAttribute("previousLastLogLineId", String.valueOf(this.lastLogLineId));
+                span.setAttribute("lastLogLineId", String.valueOf(checkpoint.getLogLineId()));
+                span.setAttribute("checkpointBytes", checkpoint.getLogBytes());
+                logLines.skipLines(checkpoint.getLogLineId());
+                // discard the line being read and the remaining tail log lines
+                tailLogLines = null;
+                currentLine = null;
+                encodedBytes.position(encodedBytes.limit());
+                readBytes = checkpoint.getLogBytes();
+                lastLogLineId = checkpoint.getLogLineId();
+                lastLogLineEndBytes = readBytes;
+                lastCheckpointBytes = readBytes;
+            } else {
+                span.addEvent("LogLine Bytes to LogLine Id checkpoint not found");
+            }
+            // read the bytes between the checkpoint and the target position
+            long bytesToDiscard = targetReadBytes - readBytes;
+            span.setAttribute("discardedBytes", bytesToDiscard);
+            while (readBytes < targetReadBytes && fillEncodedBytes()) {
+                int chunk = (int) Math.min(targetReadBytes - readBytes, encodedBytes.remaining());
+                encodedBytes.position(encodedBytes.position() + chunk);
+                onBytesRead(chunk);
+            }
+            return readBytes - startReadBytes;
         } finally {
             span.end();
         }
     }
 
+    /**
+     * Retrieve the tail of the log and position the stream on its first line, the log lines preceding the tail are
+     * never read
+     *
+     * @return {@code false} if the tail of the log can't be used to reach the given position
+     */
+    private boolean skipToTail(long targetReadBytes, long forwardReadStartBytes, Span span) throws IOException {
+        long logLength = Objects.requireNonNull(this.logLength);
+        LogRetrievalMetrics.Retrieval retrieval = getRetrieval();
+        LogLineIterator.LogTail<Id> tail;
+        try {
+            tail = logLines.tail(logLength - targetReadBytes);
+        } catch (IOException | RuntimeException e) {
+            if (retrieval != null) {
+                retrieval.onError();
+            }
+            throw e;
+        }
+        if (tail == null || tail.getLogLines().isEmpty()) {
+            return false;
+        }
+        long tailStartBytes = logLength - tail.getLengthInBytes();
+        span.setAttribute("tail.lines", tail.getLogLines().size());
+        span.setAttribute("tail.startBytes", tailStartBytes);
+        if (tailStartBytes > targetReadBytes
+                || tailStartBytes < forwardReadStartBytes
+                || (tail.getPreviousLogLineId() == null) != (tailStartBytes == 0)) {
+            // the tail doesn't match the length of the log
+            logger.log(Level.FINE, () -> "Ignore " + tail + " starting at " + tailStartBytes + " for " + logLength);
+            return false;
+        }
+        if (retrieval != null) {
+            retrieval.setOperation(LogsOperationValues.TAIL);
+        }
+        List<LogLine<Id>> tailLogLines = tail.getLogLines();
+        // resume the iteration after the tail
+        logLines.skipLines(tailLogLines.get(tailLogLines.size() - 1).getId());
+        this.tailLogLines = tailLogLines.iterator();
+        // discard the line being read
+        currentLine = null;
+        encodedBytes.position(encodedBytes.limit());
+        readBytes = tailStartBytes;
+        lastLogLineId = tail.getPreviousLogLineId();
+        lastLogLineEndBytes = readBytes;
+        lastCheckpointBytes = readBytes;
+        if (lastLogLineId != null) {
+            logLineBytesToLogLineIdConverter.putLogBytesToLogLineId(tailStartBytes, lastLogLineId);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of bytes of the current log line that can be read without retrieving log lines, unlike
+     * {@link #available()} this method never queries the observability backend
+     */
+    public int getBufferedBytes() {
+        return encodedBytes.remaining();
+    }
+
     @Override
     public int available() throws IOException {
         Tracer tracer = logger.isLoggable(Level.FINER)
@@ -116,7 +391,9 @@ public class LogLineIteratorInputStream<Id> extends InputStream {
                 : TracerProvider.noop().get("noop");
         Span span = tracer.spanBuilder("LogLineIteratorInputStream.available").startSpan();
         try (Scope scope = span.makeCurrent()) {
-            if (logLines.hasNext()) {
+            if (encodedBytes.hasRemaining()) {
+                return encodedBytes.remaining();
+            } else if ((tailLogLines != null && tailLogLines.hasNext()) || logLines.hasNext()) {
                 return 1;
             } else {
                 return 0;
@@ -136,11 +413,21 @@ public class LogLineIteratorInputStream<Id> extends InputStream {
                 .setAttribute("lastLogLineId", String.valueOf(lastLogLineId))
                 .startSpan();
         try (Scope scope = span.makeCurrent()) {
-            logLineBytesToLogLineIdConverter.putLogBytesToLogLineId(readBytes, lastLogLineId);
-            if (logLines instanceof Closeable) {
-                ((Closeable) logLines).close();
+            if (lastLogLineId != null) {
+                logLineBytesToLogLineIdConverter.putLogBytesToLogLineId(lastLogLineEndBytes, lastLogLineId);
+            }
+            if (logLines instanceof AutoCloseable) {
+                ((AutoCloseable) logLines).close();
             }
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
         } finally {
+            // record the retrievals abandoned before the end of the log, ignored if the end of the log was reached
+            if (retrieval != null) {
+                retrieval.end();
+            }
             span.end();
         }
     }
@@ -0,0 +1,281 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Executes the blocking calls to the observability backend retrieving logs out of the HTTP request threads so that a
+ * slow backend degrades the log views without starving the other HTTP requests:
+ * </p>
+ * <ul>
+ *     <li>
+ *         The calls run on virtual threads when the JVM supports them (Java 21+), on a bounded pool of platform
+ *         threads otherwise.
+ *     </li>
+ *     <li>
+ *         The number of concurrent calls is bounded by a global limiter, a call waiting too long for a permit fails
+ *         rather than queueing behind a slow backend.
+ *     </li>
+ *     <li>
+ *         The caller waits for the call until the deadline of its HTTP request, the call is then interrupted and
+ *         keeps its permit until it actually completes so that a slow backend isn't flooded with more calls.
+ *     </li>
+ *     <li>
+ *         The slow calls are reported to the {@link CircuitBreaker} of the backend, if any, that short-circuits the
+ *         calls to a backend that is repeatedly slow.
+ *     </li>
+ * </ul>
+ */
+public class LogRetrievalExecutor {
+    private static final Logger logger = Logger.getLogger(LogRetrievalExecutor.class.getName());
+
+    public static final int MAX_CONCURRENCY =
+            Integer.getInteger(LogRetrievalExecutor.class.getName() + ".maxConcurrency", 16);
+    public static final long PERMIT_TIMEOUT_MILLIS =
+            Long.getLong(LogRetrievalExecutor.class.getName() + ".permitTimeoutMillis", 2_000);
+    /**
+     * Max duration of a call to the observability backend, such as a search or a read of the logs fetching the next
+     * page of log lines
+     */
+    public static final long DEADLINE_MILLIS =
+            Long.getLong(LogRetrievalExecutor.class.getName() + ".deadlineMillis", 30_000);
+
+    public static final boolean VIRTUAL_THREADS = Boolean.parseBoolean(
+            System.getProperty(LogRetrievalExecutor.class.getName() + ".virtualThreads", "true"));
+
+    private static final LogRetrievalExecutor INSTANCE = new LogRetrievalExecutor(
+            Context.taskWrapping(newExecutorService(VIRTUAL_THREADS, MAX_CONCURRENCY)),
+            MAX_CONCURRENCY,
+            PERMIT_TIMEOUT_MILLIS);
+
+    @NonNull
+    private final ExecutorService executorService;
+
+    @NonNull
+    private final Semaphore permits;
+
+    private final long permitTimeoutMillis;
+
+    @VisibleForTesting
+    LogRetrievalExecutor(@NonNull ExecutorService executorService, int maxConcurrency, long permitTimeoutMillis) {
+        this.executorService = executorService;
+        this.permits = new Semaphore(maxConcurrency);
+        this.permitTimeoutMillis = permitTimeoutMillis;
+    }
+
+    private static final ContextKey<Boolean> WITHOUT_DEADLINE =
+            ContextKey.named(LogRetrievalExecutor.class.getName() + ".withoutDeadline");
+
+    @NonNull
+    public static LogRetrievalExecutor get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Read the logs on the current thread without deadline until the returned {@link Scope} is closed, for the
+     * downloads of logs and the background fills of the caches of logs that legitimately last longer than the
+     * rendering of a log view
+     */
+    @NonNull
+    public static Scope withoutDeadline() {
+        return Context.current().with(WITHOUT_DEADLINE, Boolean.TRUE).makeCurrent();
+    }
+
+    /**
+     * @return {@code false} if the logs are read without deadline, see {@link #withoutDeadline()}
+     */
+    public static boolean isDeadlineEnabled() {
+        return !Boolean.TRUE.equals(Context.current().get(WITHOUT_DEADLINE));
+    }
+
+    /**
+     * @return the deadline, in {@link System#nanoTime()}, of an HTTP request starting now
+     */
+    public static long newDeadlineInNanos() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEADLINE_MILLIS);
+    }
+
+    /**
+     * Execute the given call to the observability backend and wait for its result until the given deadline
+     *
+     * @param deadlineInNanos see {@link #newDeadlineInNanos()}
+     * @throws IOException if the call fails, if the limiter has no permit available or if the deadline is exceeded
+     */
+    public <T> T call(@NonNull Callable<T> call, long deadlineInNanos) throws IOException {
+        return call(call, deadlineInNanos, null);
+    }
+
+    /**
+     * Execute the given call to the observability backend and wait for its result until the given deadline, reporting
+     * its outcome to the given {@link CircuitBreaker}. The duration of the calls without deadline, see
+     * {@link #withoutDeadline()}, is not reported. The failures are reported, except the
+     * {@link IllegalArgumentException}s of invalid requests.
+     *
+     * @param deadlineInNanos see {@link #newDeadlineInNanos()}
+     * @param circuitBreaker  circuit breaker of the observability backend, {@code null} if none
+     * @throws BackendSlowException if the deadline is exceeded or if the circuit breaker is open
+     * @throws IOException          if the call fails or if the limiter has no permit available
+     */
+    public <T> T call(@NonNull Callable<T> call, long deadlineInNanos, @CheckForNull CircuitBreaker circuitBreaker)
+            throws IOException {
+        long remainingNanos = deadlineInNanos - System.nanoTime();
+        if (remainingNanos <= 0) {
+            throw new BackendSlowException("Deadline exceeded retrieving logs");
+        }
+        if (circuitBreaker != null && !circuitBreaker.allowCall()) {
+            throw new BackendSlowException("Circuit breaker open, skip retrieving logs from " + circuitBreaker);
+        }
+        try {
+            long permitTimeoutNanos = Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(permitTimeoutMillis));
+            if (!permits.tryAcquire(permitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onCallNotSent();
+                }
+                throw new IOException("Too many concurrent log retrievals, retry later");
+            }
+        } catch (InterruptedException e) {
+            if (circuitBreaker != null) {
+                circuitBreaker.onCallNotSent();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a log retrieval permit");
+        }
+        boolean deadlineEnabled = isDeadlineEnabled();
+        long startTimeInNanos = System.nanoTime();
+        // claimed by the call when it starts, or by its cancellation if it never started, to release the permit once
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = executorService.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    // cancelled before starting, the permit has been released
+                    return null;
+                }
+                try {
+                    return call.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            if (circuitBreaker != null) {
+                circuitBreaker.onCallNotSent();
+            }
+            throw new IOException("Log retrieval rejected", e);
+        }
+        try {
+            T result = future.get(Math.max(0, deadlineInNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (circuitBreaker != null && deadlineEnabled) {
+                circuitBreaker.onCall(System.nanoTime() - startTimeInNanos);
+            } else if (circuitBreaker != null) {
+                circuitBreaker.onSuccess();
+            }
+            return result;
+        } catch (TimeoutException e) {
+            cancel(future, claimed);
+            if (circuitBreaker != null && deadlineEnabled) {
+                circuitBreaker.onSlowCall();
+            } else if (circuitBreaker != null) {
+                circuitBreaker.onCallNotSent();
+            }
+            logger.log(Level.FINE, "Deadline exceeded retrieving logs, cancel " + call);
+            throw new BackendSlowException("Deadline exceeded retrieving logs");
+        } catch (InterruptedException e) {
+            cancel(future, claimed);
+            if (circuitBreaker != null) {
+                circuitBreaker.onCallNotSent();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted retrieving logs");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (circuitBreaker != null && cause instanceof IllegalArgumentException) {
+                circuitBreaker.onCallNotSent();
+            } else if (circuitBreaker != null) {
+                circuitBreaker.onFailure();
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Cancel a call, releasing its permit if it never started: a cancelled task that hasn't started never runs
+     */
+    private void cancel(@NonNull Future<?> future, @NonNull AtomicBoolean claimed) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            permits.release();
+        }
+    }
+
+    /**
+     * The observability backend didn't return the logs in time: the deadline of the HTTP request is exceeded or the
+     * {@link CircuitBreaker} of the backend is open
+     */
+    public static class BackendSlowException extends InterruptedIOException {
+        public BackendSlowException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @return the number of calls that can start without waiting
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    @NonNull
+    static ExecutorService newExecutorService(boolean virtualThreads, int maxConcurrency) {
+        if (virtualThreads) {
+            try {
+                // Java 21+
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.log(Level.FINE, () -> "Virtual threads not supported, use platform threads: " + e);
+            }
+        }
+        return Executors.newFixedThreadPool(
+                maxConcurrency,
+                new NamingThreadFactory(
+                        new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()),
+                        LogRetrievalExecutor.class.getName()));
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.JENKINS_LOGS_BACKEND;
+import static io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.JENKINS_LOGS_OPERATION;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVAL_BYTES;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVAL_DURATION;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVAL_ERRORS;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVAL_LINES;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVAL_PAGES;
+import static io.jenkins.plugins.opentelemetry.semconv.JenkinsMetrics.JENKINS_LOGS_RETRIEVAL_TIME_TO_FIRST_LINE;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.JenkinsControllerOpenTelemetry;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+
+/**
+ * <p>
+ * Metrics of the retrieval of the pipeline logs from the observability backends, labeled by backend
+ * ({@link ExtendedJenkinsAttributes.LogsBackendValues}) and by operation
+ * ({@link ExtendedJenkinsAttributes.LogsOperationValues}).
+ * </p>
+ * <p>
+ * The operation of a retrieval is the one of the {@link Context} in which the logs are read, see
+ * {@link #withOperation(String)}, defaulting to the overall log or the log of a step. The logs are read on the
+ * {@link LogRetrievalExecutor} that propagates the {@link Context}.
+ * </p>
+ */
+public class LogRetrievalMetrics {
+
+    private static final ContextKey<String> OPERATION = ContextKey.named(LogRetrievalMetrics.class.getName());
+
+    private LogRetrievalMetrics() {}
+
+    /**
+     * Label the logs retrievals of the current thread with the given operation until the returned {@link Scope} is
+     * closed
+     *
+     * @param operation see {@link ExtendedJenkinsAttributes.LogsOperationValues}
+     */
+    @NonNull
+    public static Scope withOperation(@NonNull String operation) {
+        return Context.current().with(OPERATION, operation).makeCurrent();
+    }
+
+    /**
+     * @param defaultOperation operation of the retrieval if the current {@link Context} doesn't specify any
+     * @return the operation of a retrieval starting now
+     */
+    @NonNull
+    public static String getOperation(@NonNull String defaultOperation) {
+        String operation = Context.current().get(OPERATION);
+        return operation == null ? defaultOperation : operation;
+    }
+
+    /**
+     * Record a page of log lines retrieved from the backend
+     */
+    public static void recordPage(@NonNull String backend, @NonNull String operation) {
+        Instruments.PAGES.add(1, attributes(backend, operation));
+    }
+
+    /**
+     * @return a retrieval of log lines starting now
+     */
+    @NonNull
+    public static Retrieval newRetrieval(@NonNull String backend, @NonNull String operation) {
+        return new Retrieval(backend, operation, System.nanoTime());
+    }
+
+    @NonNull
+    static Attributes attributes(@NonNull String backend, @NonNull String operation) {
+        return Attributes.of(JENKINS_LOGS_BACKEND, backend, JENKINS_LOGS_OPERATION, operation);
+    }
+
+    /**
+     * Retrieval of log lines, not thread safe. The lines and bytes are accumulated and recorded by {@link #end()}.
+     */
+    public static class Retrieval {
+        @NonNull
+        private final String backend;
+
+        @NonNull
+        private String operation;
+
+        private final long startTimeInNanos;
+
+        private long lines;
+        private long bytes;
+        private boolean ended;
+
+        Retrieval(@NonNull String backend, @NonNull String operation, long startTimeInNanos) {
+            this.backend = backend;
+            this.operation = operation;
+            this.startTimeInNanos = startTimeInNanos;
+        }
+
+        /**
+         * @param operation see {@link ExtendedJenkinsAttributes.LogsOperationValues}
+         */
+        public void setOperation(@NonNull String operation) {
+            this.operation = operation;
+        }
+
+        public void onLine(long lengthInBytes) {
+            if (lines == 0) {
+                Instruments.TIME_TO_FIRST_LINE.record(
+                        secondsSince(startTimeInNanos), attributes(backend, operation));
+            }
+            lines++;
+            bytes += lengthInBytes;
+        }
+
+        public void onError() {
+            Instruments.ERRORS.add(1, attributes(backend, operation));
+        }
+
+        /**
+         * Record the retrieval once the end of the log is reached or the retrieval is abandoned, subsequent
+         * invocations are ignored
+         */
+        public void end() {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            Attributes attributes = attributes(backend, operation);
+            Instruments.DURATION.record(secondsSince(startTimeInNanos), attributes);
+            Instruments.LINES.add(lines, attributes);
+            Instruments.BYTES.add(bytes, attributes);
+        }
+
+        long getLines() {
+            return lines;
+        }
+
+        boolean isEnded() {
+            return ended;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        @NonNull
+        String getOperation() {
+            return operation;
+        }
+
+        private static double secondsSince(long startTimeInNanos) {
+            return (System.nanoTime() - startTimeInNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * @return the default {@link Meter} of the Jenkins Controller, that follows the reconfigurations of the
+     * OpenTelemetry SDK, a noop {@link Meter} out of a Jenkins Controller such as in unit tests
+     */
+    @NonNull
+    public static Meter getMeter() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return MeterProvider.noop().get(ExtendedJenkinsAttributes.INSTRUMENTATION_NAME);
+        }
+        return JenkinsControllerOpenTelemetry.get().getDefaultMeter();
+    }
+
+    /**
+     * Lazily created on the first recorded retrieval
+     */
+    private static class Instruments {
+        static final Meter METER = getMeter();
+        static final DoubleHistogram TIME_TO_FIRST_LINE = METER.histogramBuilder(
+                        JENKINS_LOGS_RETRIEVAL_TIME_TO_FIRST_LINE)
+                .setDescription("Time to retrieve the first line of pipeline logs from the observability backend")
+                .setUnit("s")
+                .build();
+        static final DoubleHistogram DURATION = METER.histogramBuilder(JENKINS_LOGS_RETRIEVAL_DURATION)
+                .setDescription("Duration of the retrievals of pipeline logs from the observability backend")
+                .setUnit("s")
+                .build();
+        static final LongCounter PAGES = METER.counterBuilder(JENKINS_LOGS_RETRIEVAL_PAGES)
+                .setDescription("Pages of pipeline logs retrieved from the observability backend")
+                .setUnit("{pages}")
+                .build();
+        static final LongCounter BYTES = METER.counterBuilder(JENKINS_LOGS_RETRIEVAL_BYTES)
+                .setDescription("Bytes of pipeline logs retrieved from the observability backend")
+                .setUnit("By")
+                .build();
+        static final LongCounter LINES = METER.counterBuilder(JENKINS_LOGS_RETRIEVAL_LINES)
+                .setDescription("Lines of pipeline logs retrieved from the observability backend")
+                .setUnit("{lines}")
+                .build();
+        static final LongCounter ERRORS = METER.counterBuilder(JENKINS_LOGS_RETRIEVAL_ERRORS)
+                .setDescription("Failed retrievals of pipeline logs from the observability backend")
+                .setUnit("{errors}")
+                .build();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.job.log.LogTail;
+import io.opentelemetry.api.trace.Span;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+/**
+ * <p>
+ * Readonly {@link ByteBuffer} serving the logs from their {@link LogTail} kept in memory and from the observability
+ * backend before the start of the tail: the tail of the logs of a completed run prefetched by
+ * {@link io.jenkins.plugins.opentelemetry.job.log.LogsPrefetcher} or the live tail of the logs of a running run kept
+ * by {@link io.jenkins.plugins.opentelemetry.job.log.RecentLogLines}.
+ * </p>
+ * <p>
+ * When the observability backend has not yet indexed the log lines preceding the tail, the reads end at the last
+ * indexed log line and the next poll resumes from there.
+ * </p>
+ */
+public class LogTailByteBuffer extends ByteBuffer {
+
+    @NonNull
+    private final ByteBuffer delegate;
+
+    @NonNull
+    private final LogTail tail;
+
+    public LogTailByteBuffer(@NonNull ByteBuffer delegate, @NonNull LogTail tail) {
+        this.delegate = delegate;
+        this.tail = tail;
+    }
+
+    /**
+     * @return the exact length of the logs emitted so far
+     */
+    @Override
+    public long length() {
+        return tail.getEnd();
+    }
+
+    /**
+     * @return an {@link InputStream} deferring the skip to the first read to only query the observability backend
+     * when reading before the tail
+     */
+    @Override
+    public InputStream newInputStream() {
+        return new InputStream() {
+            long position;
+            boolean started;
+            boolean ended;
+
+            @CheckForNull
+            InputStream backend;
+
+            @Override
+            public long skip(long n) throws IOException {
+                if (n <= 0) {
+                    return 0;
+                }
+                if (!started) {
+                    position += n;
+                    return n;
+                }
+                return super.skip(n);
+            }
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                int read = read(b, 0, 1);
+                return read == -1 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(@NonNull byte[] b, int off, int len) throws IOException {
+                if (!started) {
+                    start();
+                }
+                if (len == 0) {
+                    return 0;
+                }
+                if (ended) {
+                    return -1;
+                }
+                int read;
+                if (position < tail.getStart()) {
+                    read = backend.read(b, off, (int) Math.min(len, tail.getStart() - position));
+                    if (read == -1) {
+                        // log lines missing or not yet indexed in the observability backend
+                        ended = true;
+                        return -1;
+                    }
+                } else {
+                    byte[] bytes = tail.getBytes();
+                    int index = (int) Math.min(position - tail.getStart(), bytes.length);
+                    if (index == bytes.length) {
+                        ended = true;
+                        return -1;
+                    }
+                    read = Math.min(len, bytes.length - index);
+                    System.arraycopy(bytes, index, b, off, read);
+                }
+                position += read;
+                return read;
+            }
+
+            private void start() throws IOException {
+                started = true;
+                boolean fromBackend = position < tail.getStart();
+                Span.current().setAttribute("logs.tail", !fromBackend);
+                if (fromBackend) {
+                    backend = delegate.newInputStream();
+                    long remaining = position;
+                    while (remaining > 0) {
+                        long skipped = backend.skip(remaining);
+                        if (skipped <= 0) {
+                            ended = true;
+                            break;
+                        }
+                        remaining -= skipped;
+                    }
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (backend != null) {
+                    backend.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public synchronized void write(int b) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public synchronized void writeTo(OutputStream os) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void write(@NonNull byte[] b) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void flush() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+}
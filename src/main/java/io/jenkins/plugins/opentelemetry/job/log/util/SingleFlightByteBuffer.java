@@ -0,0 +1,376 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.job.RunFlowNodeIdentifier;
+import io.opentelemetry.api.trace.Span;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+/**
+ * <p>
+ * Readonly {@link ByteBuffer} coalescing the concurrent reads of the logs of a running pipeline run (or of a flow
+ * node of a running pipeline run): browsers watching the console of a running build poll
+ * {@code progressiveHtml} from nearly the same offset every second.
+ * </p>
+ * <p>
+ * The first read from an offset fetches the log from the observability backend, up to {@link #MAX_BYTES}, and the
+ * concurrent reads from a greater offset wait for this fetch and are served from its result rather than querying the
+ * backend. The result is kept for {@link #TTL_MILLIS} to serve the polls that follow. A read reaching the end of a
+ * fetch stopped at {@link #MAX_BYTES} chains a fetch from this offset, so that the whole log is read. The chained
+ * fetches continue reading the stream of the delegate where the previous fetch stopped: the streams of the logs
+ * retrieved from the observability backend can't be rewound.
+ * </p>
+ * <p>
+ * The downloads of logs and the background fills of the caches of logs, read without deadline (see
+ * {@link LogRetrievalExecutor#withoutDeadline()}), are not coalesced and read the logs directly.
+ * </p>
+ */
+public class SingleFlightByteBuffer extends ByteBuffer {
+    private static final Logger logger = Logger.getLogger(SingleFlightByteBuffer.class.getName());
+
+    public static final long TTL_MILLIS = Long.getLong(SingleFlightByteBuffer.class.getName() + ".ttlMillis", 1_000);
+
+    public static final int MAX_BYTES =
+            Integer.getInteger(SingleFlightByteBuffer.class.getName() + ".maxBytes", 1024 * 1024);
+
+    static final Cache<RunFlowNodeIdentifier, Flight> FLIGHTS = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger(SingleFlightByteBuffer.class.getName() + ".maxFlights", 1_000))
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .build();
+
+    @NonNull
+    private final RunFlowNodeIdentifier key;
+
+    @NonNull
+    private final ByteBuffer delegate;
+
+    /**
+     * Stream of the {@link #delegate} read by the fetches led by this buffer, kept open to chain the fetches,
+     * {@code null} before the first fetch or once closed
+     */
+    @CheckForNull
+    private InputStream in;
+
+    /**
+     * Offset in the log of the next byte of {@link #in}
+     */
+    private long inPosition;
+
+    public SingleFlightByteBuffer(@NonNull RunFlowNodeIdentifier key, @NonNull ByteBuffer delegate) {
+        this.key = key;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public long length() {
+        return delegate.length();
+    }
+
+    /**
+     * @return an {@link InputStream} deferring the skips to the next fetch to know the offset to fetch from
+     */
+    @Override
+    public InputStream newInputStream() {
+        if (!LogRetrievalExecutor.isDeadlineEnabled()) {
+            return delegate.newInputStream();
+        }
+        return new InputStream() {
+            /**
+             * Offset in the log of the first byte of {@link #bytes}, or of the next fetch if {@link #bytes} is
+             * {@code null}
+             */
+            long position;
+            /**
+             * Bytes of the last fetch, {@code null} before the first fetch or once they are all read or skipped
+             */
+            byte[] bytes;
+
+            int index;
+
+            boolean endOfLog;
+
+            @Override
+            public long skip(long n) throws IOException {
+                if (n <= 0 || endOfLog) {
+                    return 0;
+                }
+                if (bytes == null) {
+                    position += n;
+                    return n;
+                }
+                int skipped = (int) Math.min(n, bytes.length - index);
+                index += skipped;
+                if (index == bytes.length) {
+                    nextFetch();
+                }
+                return skipped;
+            }
+
+            @Override
+            public int read() throws IOException {
+                if (!load()) {
+                    return -1;
+                }
+                int result = bytes[index++] & 0xFF;
+                if (index == bytes.length) {
+                    nextFetch();
+                }
+                return result;
+            }
+
+            @Override
+            public int read(@NonNull byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!load()) {
+                    return -1;
+                }
+                int read = Math.min(len, bytes.length - index);
+                System.arraycopy(bytes, index, b, off, read);
+                index += read;
+                if (index == bytes.length) {
+                    nextFetch();
+                }
+                return read;
+            }
+
+            @Override
+            public int available() {
+                return bytes == null ? 0 : bytes.length - index;
+            }
+
+            @Override
+            public void close() throws IOException {
+                closeDelegateInputStream();
+            }
+
+            /**
+             * @return {@code false} if the end of the log is reached
+             */
+            private boolean load() throws IOException {
+                if (bytes == null && !endOfLog) {
+                    bytes = fetch(position);
+                    index = 0;
+                    if (bytes.length == 0) {
+                        bytes = null;
+                        endOfLog = true;
+                    }
+                }
+                return !endOfLog;
+            }
+
+            /**
+             * Chain the next fetch from the end of the bytes of the last fetch
+             */
+            private void nextFetch() {
+                position += bytes.length;
+                bytes = null;
+            }
+        };
+    }
+
+    /**
+     * @return the bytes of the log from the given offset, fetched from the observability backend or from the result
+     * of a concurrent or recent fetch from a lower offset
+     */
+    @NonNull
+    @VisibleForTesting
+    byte[] fetch(long start) throws IOException {
+        long nowInNanos = System.nanoTime();
+        Flight[] newFlight = new Flight[1];
+        Flight flight = FLIGHTS.asMap().compute(key, (k, current) -> {
+            if (current != null && current.canServe(start, nowInNanos)) {
+                return current;
+            }
+            newFlight[0] = new Flight(start);
+            return newFlight[0];
+        });
+        boolean joined = flight != newFlight[0];
+        Span.current().setAttribute("logs.singleFlight.joined", joined);
+        if (!joined) {
+            try {
+                flight.complete(readDelegate(start));
+            } catch (IOException | RuntimeException e) {
+                flight.fail(e);
+                FLIGHTS.asMap().remove(key, flight);
+                throw e;
+            }
+        } else {
+            logger.log(Level.FINE, () -> key + " - join fetch from " + flight.start + " to read from " + start);
+        }
+        byte[] flightBytes = flight.await(LogRetrievalExecutor.newDeadlineInNanos());
+        if (flight.truncated && start >= flight.start + MAX_BYTES) {
+            // joined a fetch that stopped before the offset to read from
+            return fetch(start);
+        }
+        int offset = (int) Math.min(start - flight.start, flightBytes.length);
+        return offset == 0 ? flightBytes : Arrays.copyOfRange(flightBytes, offset, flightBytes.length);
+    }
+
+    /**
+     * Read up to {@link #MAX_BYTES} from the given offset, continuing the stream of the delegate read by the previous
+     * fetch rather than opening a new one when the offset is ahead of it
+     */
+    @NonNull
+    private synchronized byte[] readDelegate(long start) throws IOException {
+        if (in == null || inPosition > start) {
+            closeDelegateInputStream();
+            in = delegate.newInputStream();
+            inPosition = 0;
+        }
+        try {
+            while (inPosition < start) {
+                long skipped = in.skip(start - inPosition);
+                if (skipped <= 0) {
+                    // end of the log before the offset
+                    closeDelegateInputStream();
+                    return new byte[0];
+                }
+                inPosition += skipped;
+            }
+            byte[] bytes = in.readNBytes(MAX_BYTES);
+            inPosition += bytes.length;
+            if (bytes.length < MAX_BYTES) {
+                // end of the log
+                closeDelegateInputStream();
+            }
+            return bytes;
+        } catch (IOException | RuntimeException e) {
+            try {
+                closeDelegateInputStream();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void closeDelegateInputStream() throws IOException {
+        InputStream in = this.in;
+        this.in = null;
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Fetch of the log from an offset, in progress or completed
+     */
+    static class Flight {
+        final long start;
+        final CompletableFuture<byte[]> bytes = new CompletableFuture<>();
+        volatile long completedAtInNanos;
+        /**
+         * {@code true} if the fetch stopped at {@link #MAX_BYTES} before the end of the log
+         */
+        volatile boolean truncated;
+
+        Flight(long start) {
+            this.start = start;
+        }
+
+        boolean canServe(long start, long nowInNanos) {
+            if (start < this.start || bytes.isCompletedExceptionally()) {
+                return false;
+            }
+            if (truncated && start >= this.start + MAX_BYTES) {
+                return false;
+            }
+            return !bytes.isDone() || nowInNanos - completedAtInNanos < TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS);
+        }
+
+        void complete(@NonNull byte[] bytes) {
+            completedAtInNanos = System.nanoTime();
+            truncated = bytes.length >= MAX_BYTES;
+            this.bytes.complete(bytes);
+        }
+
+        void fail(@NonNull Throwable t) {
+            this.bytes.completeExceptionally(t);
+        }
+
+        @NonNull
+        byte[] await(long deadlineInNanos) throws IOException {
+            try {
+                return bytes.get(Math.max(0, deadlineInNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new InterruptedIOException("Deadline exceeded waiting for a concurrent retrieval of the logs");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a concurrent retrieval of the logs");
+            } catch (ExecutionException e) {
+                throw new IOException("Failure of a concurrent retrieval of the logs", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public synchronized void write(int b) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public synchronized void writeTo(OutputStream os) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void write(@NonNull byte[] b) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unsupported by this readonly {@link ByteBuffer}
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void flush() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -181,6 +181,40 @@ public final class ExtendedJenkinsAttributes extends JenkinsAttributes {
     public static final AttributeKey<String> STATUS = AttributeKey.stringKey("status");
     public static final AttributeKey<String> LABEL = AttributeKey.stringKey("label");
 
+    /**
+     * Observability backend from which pipeline logs are retrieved, values in {@link LogsBackendValues}
+     */
+    public static final AttributeKey<String> JENKINS_LOGS_BACKEND = AttributeKey.stringKey("jenkins.logs.backend");
+
+    public static final class LogsBackendValues {
+        public static final String ELASTICSEARCH = "elasticsearch";
+        public static final String LOKI = "loki";
+    }
+
+    /**
+     * Operation for which pipeline logs are retrieved, values in {@link LogsOperationValues}
+     */
+    public static final AttributeKey<String> JENKINS_LOGS_OPERATION = AttributeKey.stringKey("jenkins.logs.operation");
+
+    public static final class LogsOperationValues {
+        /**
+         * Log of a run
+         */
+        public static final String OVERALL = "overall";
+        /**
+         * Log of a step
+         */
+        public static final String STEP = "step";
+        /**
+         * Last lines of a log
+         */
+        public static final String TAIL = "tail";
+        /**
+         * Whole log downloaded as text
+         */
+        public static final String DOWNLOAD = "download";
+    }
+
     /**
      * Values in {@link EventOutcomeValues}
      */
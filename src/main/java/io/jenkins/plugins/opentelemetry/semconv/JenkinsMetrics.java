@@ -46,6 +46,26 @@ public class JenkinsMetrics {
     public static final String JENKINS_SCM_EVENT_QUEUED_TASKS = "jenkins.scm.event.queued_tasks";
     public static final String JENKINS_SCM_EVENT_COMPLETED_TASKS = "jenkins.scm.event.completed_tasks";
 
+    public static final String JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_LEASED =
+            "jenkins.logs.retriever.http.connections.leased";
+    public static final String JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_PENDING =
+            "jenkins.logs.retriever.http.connections.pending";
+    public static final String JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_AVAILABLE =
+            "jenkins.logs.retriever.http.connections.available";
+    public static final String JENKINS_LOGS_RETRIEVER_HTTP_CONNECTIONS_LEASE_WAIT_TIME =
+            "jenkins.logs.retriever.http.connections.lease_wait_time";
+    public static final String JENKINS_LOGS_LOKI_QUERY_BYTES_PROCESSED = "jenkins.logs.loki.query.bytes_processed";
+    public static final String JENKINS_LOGS_LOKI_QUERY_CHUNKS_DOWNLOADED =
+            "jenkins.logs.loki.query.chunks_downloaded";
+    public static final String JENKINS_LOGS_LOKI_QUERY_EXEC_TIME = "jenkins.logs.loki.query.exec_time";
+    public static final String JENKINS_LOGS_RETRIEVAL_TIME_TO_FIRST_LINE =
+            "jenkins.logs.retrieval.time_to_first_line";
+    public static final String JENKINS_LOGS_RETRIEVAL_DURATION = "jenkins.logs.retrieval.duration";
+    public static final String JENKINS_LOGS_RETRIEVAL_PAGES = "jenkins.logs.retrieval.pages";
+    public static final String JENKINS_LOGS_RETRIEVAL_BYTES = "jenkins.logs.retrieval.bytes";
+    public static final String JENKINS_LOGS_RETRIEVAL_LINES = "jenkins.logs.retrieval.lines";
+    public static final String JENKINS_LOGS_RETRIEVAL_ERRORS = "jenkins.logs.retrieval.errors";
+
     public static final String LOGIN = "login";
     public static final String LOGIN_SUCCESS = "login_success";
     public static final String LOGIN_FAILURE = "login_failure";
@@ -0,0 +1,87 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend;
+
+import groovy.text.GStringTemplateEngine;
+import groovy.text.Template;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares the rendering throughput of a Grafana trace URL by the {@link GStringTemplateEngine} and by the
+ * precompiled {@link UrlTemplate}, each rendering using a freshly built binding map as the links of the runs do. Not a
+ * unit test, run with:
+ * </p>
+ * <pre>{@code
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=io.jenkins.plugins.opentelemetry.backend.UrlTemplateBenchmark
+ * }</pre>
+ */
+public class UrlTemplateBenchmark {
+    static final int RENDERINGS = 1_000_000;
+    static final int WARMUP_ITERATIONS = 3;
+    static final int ITERATIONS = 5;
+
+    static final String TEMPLATE = "${grafanaBaseUrl}/explore?orgId=${grafanaOrgId}&left=%7B%22datasource%22:"
+            + "%22${grafanaTempoDatasourceIdentifier}%22,%22queries%22:%5B%7B%22refId%22:%22A%22,"
+            + "%22datasource%22:%7B%22type%22:%22tempo%22,%22uid%22:%22${grafanaTempoDatasourceIdentifier}%22%7D,"
+            + "%22queryType%22:%22traceql%22,%22query%22:%22${traceId}%22%7D%5D,%22range%22:%7B%22from%22:"
+            + "%22${startTime}%22,%22to%22:%22now%22%7D%7D";
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        Template groovyTemplate = new GStringTemplateEngine().createTemplate(TEMPLATE);
+        Template urlTemplate = UrlTemplate.createTemplate(TEMPLATE);
+        if (!(urlTemplate instanceof UrlTemplate)) {
+            throw new IllegalStateException("Template not precompiled: " + TEMPLATE);
+        }
+        if (!render(groovyTemplate, 1).equals(render(urlTemplate, 1))) {
+            throw new IllegalStateException("Renderings differ");
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            renderAll(groovyTemplate);
+            renderAll(urlTemplate);
+        }
+        long groovyNanos = 0;
+        long urlTemplateNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            renderAll(groovyTemplate);
+            groovyNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            renderAll(urlTemplate);
+            urlTemplateNanos += System.nanoTime() - start;
+        }
+        System.out.printf("GStringTemplateEngine: %.0f renderings/s%n", throughput(groovyNanos));
+        System.out.printf("UrlTemplate:           %.0f renderings/s%n", throughput(urlTemplateNanos));
+    }
+
+    static long renderAll(Template template) {
+        long length = 0;
+        for (int i = 0; i < RENDERINGS; i++) {
+            length += render(template, i).length();
+        }
+        return length;
+    }
+
+    static String render(Template template, int i) {
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put("grafanaBaseUrl", "https://my-stack.grafana.net");
+        bindings.put("grafanaOrgId", "1");
+        bindings.put("grafanaTempoDatasourceIdentifier", "grafanacloud-traces");
+        bindings.put("traceId", String.format("%032x", i));
+        bindings.put("startTime", Instant.ofEpochSecond(1_700_000_000L + i));
+        return template.make(bindings).toString();
+    }
+
+    static double throughput(long nanos) {
+        return RENDERINGS * (double) ITERATIONS / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
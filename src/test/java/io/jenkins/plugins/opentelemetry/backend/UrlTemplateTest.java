@@ -0,0 +1,80 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import groovy.lang.MissingPropertyException;
+import groovy.text.GStringTemplateEngine;
+import groovy.text.Template;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class UrlTemplateTest {
+
+    @Test
+    public void testRenderingIsTheOneOfGroovy() throws IOException, ClassNotFoundException {
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put("jaegerBaseUrl", "https://jaeger.example.com");
+        bindings.put("traceId", "0af7651916cd43dd8448eb211c80319c");
+        bindings.put("startTime", Instant.ofEpochSecond(1_700_000_000));
+        bindings.put("runNumber", 42);
+        bindings.put("nothing", null);
+
+        for (String template : new String[] {
+            "${jaegerBaseUrl}/trace/${traceId}",
+            "https://example.com/?from=${startTime}&run=${runNumber}&n=${nothing}&q=%27${traceId}%27",
+            "no variable",
+            ""
+        }) {
+            Template urlTemplate = UrlTemplate.createTemplate(template);
+            assertTrue(template, urlTemplate instanceof UrlTemplate);
+            assertEquals(
+                    template,
+                    new GStringTemplateEngine()
+                            .createTemplate(template)
+                            .make(bindings)
+                            .toString(),
+                    urlTemplate.make(bindings).toString());
+        }
+    }
+
+    @Test
+    public void testTemplatesWithExpressionsAreRenderedByGroovy() throws IOException, ClassNotFoundException {
+        Map<String, Object> bindings = Map.of("startTime", Instant.ofEpochSecond(1_700_000_000), "traceId", "123");
+        for (String template : new String[] {
+            "${startTime.minusSeconds(600)}", "$traceId", "<%= traceId %>", "\\${traceId}", "${traceId"
+        }) {
+            assertNull(template, UrlTemplate.compile(template));
+        }
+        Template template = UrlTemplate.createTemplate("?from=${startTime.minusSeconds(600)}&traceId=${traceId}");
+        assertFalse(template instanceof UrlTemplate);
+        assertEquals("?from=2023-11-14T22:03:20Z&traceId=123", template.make(bindings).toString());
+    }
+
+    @Test
+    public void testMissingAndComputedBindings() {
+        UrlTemplate urlTemplate = UrlTemplate.compile("${baseUrl}?from=${from}");
+        assertNotNull(urlTemplate);
+        assertThrows(
+                MissingPropertyException.class, () -> urlTemplate.render(Map.of("baseUrl", "https://example.com")));
+
+        UrlTemplate computedUrlTemplate = urlTemplate.withComputedBinding(
+                "from", bindings -> ((Instant) bindings.get("startTime")).toEpochMilli());
+        assertEquals(
+                "https://example.com?from=1700000000000",
+                computedUrlTemplate.render(
+                        Map.of("baseUrl", "https://example.com", "startTime", Instant.ofEpochSecond(1_700_000_000))));
+    }
+}
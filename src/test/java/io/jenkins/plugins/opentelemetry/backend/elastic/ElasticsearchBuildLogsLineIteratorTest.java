@@ -0,0 +1,106 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.elastic;
+
+import static org.junit.Assert.assertEquals;
+
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class ElasticsearchBuildLogsLineIteratorTest {
+
+    private static final String ATTRIBUTES_FIELD = "attributes";
+
+    @Test
+    public void testAddLogLinesByFlowNodeId() {
+        ElasticsearchBuildLogsLineIterator.ElasticsearchHitToFormattedLogLine hitToFormattedLogLine =
+                new ElasticsearchBuildLogsLineIterator.ElasticsearchHitToFormattedLogLine(ATTRIBUTES_FIELD);
+        Map<String, List<LogLine<Long>>> logLinesByFlowNodeId = new LinkedHashMap<>();
+
+        // hits are appended page after page
+        ElasticsearchBuildLogsLineIterator.addLogLinesByFlowNodeId(
+                List.of(newHit("1", "12", "first line of 12"), newHit("2", "15", "first line of 15")),
+                hitToFormattedLogLine,
+                ATTRIBUTES_FIELD,
+                logLinesByFlowNodeId);
+        ElasticsearchBuildLogsLineIterator.addLogLinesByFlowNodeId(
+                List.of(newHit("3", null, "line of no step"), newHit("4", "12", "second line of 12")),
+                hitToFormattedLogLine,
+                ATTRIBUTES_FIELD,
+                logLinesByFlowNodeId);
+
+        assertEquals(List.of("12", "15"), List.copyOf(logLinesByFlowNodeId.keySet()));
+        assertEquals(List.of(1L, 2L), ids(logLinesByFlowNodeId.get("12")));
+        assertEquals(List.of("first line of 12", "second line of 12"), messages(logLinesByFlowNodeId.get("12")));
+        assertEquals(List.of(1L), ids(logLinesByFlowNodeId.get("15")));
+        assertEquals(List.of("first line of 15"), messages(logLinesByFlowNodeId.get("15")));
+    }
+
+    @Test
+    public void testAddLogLinesByFlowNodeIdWithLegacyLabels() {
+        ObjectNode source = JsonNodeFactory.instance.objectNode();
+        source.put(ElasticsearchFields.FIELD_TIMESTAMP, "2024-01-01T00:00:00Z");
+        source.put("message", "legacy line");
+        source.putObject("labels").put("jenkins_pipeline_step_id", "7");
+        Map<String, List<LogLine<Long>>> logLinesByFlowNodeId = new LinkedHashMap<>();
+
+        ElasticsearchBuildLogsLineIterator.addLogLinesByFlowNodeId(
+                List.of(Hit.of(h -> h.index("logs").id("1").source(source))),
+                new ElasticsearchBuildLogsLineIterator.ElasticsearchHitToFormattedLogLine("labels"),
+                "labels",
+                logLinesByFlowNodeId);
+
+        assertEquals(List.of("legacy line"), messages(logLinesByFlowNodeId.get("7")));
+    }
+
+    @Test
+    public void testPositionInTimestamp() {
+        // log lines sharing the same timestamp, without source, in the order of the point in time
+        List<Hit<ObjectNode>> sameTimestampLogLines = List.of(
+                Hit.of(h -> h.index("logs-1").id("a")),
+                Hit.of(h -> h.index("logs-2").id("b")),
+                Hit.of(h -> h.index("logs-1").id("b")));
+
+        assertEquals(
+                0, ElasticsearchBuildLogsLineIterator.getPositionInTimestamp(newHit("a"), sameTimestampLogLines));
+        assertEquals(
+                2, ElasticsearchBuildLogsLineIterator.getPositionInTimestamp(newHit("b"), sameTimestampLogLines));
+        // more log lines share the timestamp than retrieved
+        assertEquals(
+                0, ElasticsearchBuildLogsLineIterator.getPositionInTimestamp(newHit("c"), sameTimestampLogLines));
+    }
+
+    private static Hit<ObjectNode> newHit(String id) {
+        return Hit.of(h -> h.index("logs-1").id(id).source(JsonNodeFactory.instance.objectNode()));
+    }
+
+    private static Hit<ObjectNode> newHit(String id, String flowNodeId, String message) {
+        ObjectNode source = JsonNodeFactory.instance.objectNode();
+        source.put(ElasticsearchFields.FIELD_TIMESTAMP, "2024-01-01T00:00:0" + id + "Z");
+        source.putObject(ElasticsearchFields.FIELD_MESSAGE).put("text", message);
+        ObjectNode attributes = source.putObject(ATTRIBUTES_FIELD);
+        if (flowNodeId != null) {
+            attributes.put(ExtendedJenkinsAttributes.JENKINS_STEP_ID.getKey(), flowNodeId);
+        }
+        return Hit.of(h -> h.index("logs").id(id).source(source));
+    }
+
+    private static List<Long> ids(List<LogLine<Long>> logLines) {
+        return logLines.stream().map(LogLine::getId).collect(Collectors.toList());
+    }
+
+    private static List<String> messages(List<LogLine<Long>> logLines) {
+        return logLines.stream().map(LogLine::getMessage).collect(Collectors.toList());
+    }
+}
@@ -5,21 +5,49 @@
 
 package io.jenkins.plugins.opentelemetry.backend.grafana;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import io.jenkins.plugins.opentelemetry.jenkins.HttpAuthHeaderFactory;
 import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.jenkins.plugins.opentelemetry.job.log.LogSearchHit;
+import io.jenkins.plugins.opentelemetry.job.log.LogSearchResult;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIterator;
 import io.opentelemetry.api.OpenTelemetry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.net.URIBuilder;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 public class LokiBuildLogsLineIteratorTest {
 
@@ -60,4 +88,509 @@ public class LokiBuildLogsLineIteratorTest {
             fail(e.getMessage());
         }
     }
+
+    @Test
+    public void testStreamingParserCountsAllValues() throws Exception {
+        InputStream lokiLogsQueryResponseStream = Thread.currentThread()
+                .getContextClassLoader()
+                .getResourceAsStream("io/jenkins/plugins/opentelemetry/backend/grafana/loki_query_response.json");
+        assertNotNull(lokiLogsQueryResponseStream);
+        try (LokiQueryRangeResponseParser parser = new LokiQueryRangeResponseParser(lokiLogsQueryResponseStream)) {
+            int count = 0;
+            long previousTimestamp = 0;
+            LogLine<Long> lastLogLine = null;
+            while (parser.hasNext()) {
+                lastLogLine = parser.next();
+                assertFalse(lastLogLine.getId() < previousTimestamp);
+                previousTimestamp = lastLogLine.getId();
+                count++;
+            }
+            assertEquals(93, count);
+            assertNotNull(lastLogLine);
+            assertEquals("Finished: SUCCESS", lastLogLine.getMessage());
+        }
+    }
+
+    @Test
+    public void testStreamingParserSkipsStructuredMetadata() throws Exception {
+        String lokiResponse = "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":["
+                + "{\"stream\":{\"service_name\":\"jenkins\"},\"values\":["
+                + "[\"1\",\"line 1\",{\"structuredMetadata\":{\"trace_id\":\"abc\"}}],"
+                + "[\"2\",\"line 2\"]]},"
+                + "{\"stream\":{},\"values\":[[\"3\",\"line 3\",{}]]}"
+                + "],\"stats\":{\"summary\":{\"execTime\":0.1}}}}";
+        try (LokiQueryRangeResponseParser parser = new LokiQueryRangeResponseParser(
+                new ByteArrayInputStream(lokiResponse.getBytes(StandardCharsets.UTF_8)))) {
+            assertEquals("line 1", parser.next().getMessage());
+            assertEquals("jenkins", parser.getCurrentStreamLabels().get("service_name"));
+            assertEquals("line 2", parser.next().getMessage());
+            LogLine<Long> logLine = parser.next();
+            assertEquals(Long.valueOf(3), logLine.getId());
+            assertEquals("line 3", logLine.getMessage());
+            assertFalse(parser.hasNext());
+        }
+    }
+
+    @Test
+    public void testSkipLinesWithinCurrentPage() throws Exception {
+        long startTimeInNanos = 1718111754000000000L;
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/master")
+                .setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setStartTime(Instant.ofEpochSecond(1718111754))
+                .setServiceName("jenkins")
+                .build();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            values.append(i == 0 ? "" : ",")
+                    .append("[\"")
+                    .append(startTimeInNanos + i)
+                    .append("\",\"line ")
+                    .append(i)
+                    .append("\"]");
+        }
+        String lokiResponse = "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":["
+                + "{\"stream\":{\"service_name\":\"jenkins\"},\"values\":[" + values + "]}]}}";
+        try (CloseableHttpClient httpClient = HttpClients.custom().build();
+                LokiBuildLogsLineIterator iterator = new LokiBuildLogsLineIterator(
+                        lokiQueryParameters,
+                        httpClient,
+                        HttpClientContext.create(),
+                        "http://localhost:3100",
+                        Optional.empty(),
+                        Optional.empty(),
+                        OpenTelemetry.noop().getTracer("io.jenkins"))) {
+            iterator.delegate = iterator.loadLogLines(
+                    new ByteArrayInputStream(lokiResponse.getBytes(StandardCharsets.UTF_8)));
+            assertEquals("line 0", iterator.next().getMessage());
+
+            // the target line is in the current page
+            iterator.skipLines(startTimeInNanos + 2);
+            assertEquals("line 3", iterator.next().getMessage());
+            assertEquals(0, iterator.queryCounter);
+
+            // the target line is beyond the current page, the next query starts after it
+            iterator.skipLines(startTimeInNanos + 10);
+            assertNull(iterator.delegate);
+            assertEquals(Long.valueOf(startTimeInNanos + 11), lokiQueryParameters.getStartTimeInNanos());
+            assertEquals(0, iterator.queryCounter);
+        }
+    }
+
+    @Test
+    public void testLoadLogLinesByFlowNodeIdGivesUpAfterMaxQueries() throws Exception {
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/master")
+                .setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setStartTime(Instant.ofEpochSecond(1718111754))
+                .setServiceName("jenkins")
+                .build();
+        try (CloseableHttpClient httpClient = HttpClients.custom().build();
+                LokiBuildLogsLineIterator iterator = new LokiBuildLogsLineIterator(
+                        lokiQueryParameters,
+                        httpClient,
+                        HttpClientContext.create(),
+                        "http://localhost:3100",
+                        Optional.empty(),
+                        Optional.empty(),
+                        OpenTelemetry.noop().getTracer("io.jenkins"))) {
+            // the caller falls back to the retrieval of the logs of each flow node rather than truncating them
+            iterator.queryCounter = LokiBuildLogsLineIterator.MAX_QUERIES + 1;
+            assertNull(iterator.loadLogLinesByFlowNodeId());
+        }
+    }
+
+    @Test
+    public void testSearchNumbersLogLinesWithOneRangeCountPerPage() throws Exception {
+        long startTimeInNanos = 1718111754000000000L;
+        // 10 log lines, one every 10ns, matching log lines at 2, 5 and 7
+        List<Long> logLineTimestamps = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            logLineTimestamps.add(startTimeInNanos + 10L * i);
+        }
+        String lokiSearchResponse = "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":["
+                + "{\"stream\":{\"jenkins_pipeline_step_id\":\"3\"},\"values\":[[\"" + logLineTimestamps.get(2)
+                + "\",\"match a\"],[\"" + logLineTimestamps.get(7) + "\",\"match c\"]]},"
+                + "{\"stream\":{\"jenkins_pipeline_step_id\":\"4\"},\"values\":[[\"" + logLineTimestamps.get(5)
+                + "\",\"match b\"]]}]}}";
+        List<String> searchStartTimes = new ArrayList<>();
+        List<String> countQueries = new ArrayList<>();
+        CloseableHttpClient httpClient =
+                newLokiHttpClient(logLineTimestamps, lokiSearchResponse, searchStartTimes, countQueries);
+        try (LokiBuildLogsLineIterator iterator = newSearchIterator(httpClient)) {
+            LogSearchResult firstPage = iterator.search("match", null, 3);
+            assertEquals(
+                    List.of(3L, 6L, 8L),
+                    firstPage.getHits().stream().map(LogSearchHit::getLineNumber).collect(Collectors.toList()));
+            assertEquals(
+                    List.of("3", "4", "3"),
+                    firstPage.getHits().stream().map(LogSearchHit::getFlowNodeId).collect(Collectors.toList()));
+            // the log lines up to the last matching log line, then the log lines per step between the matching log
+            // lines, whatever the number of matching log lines
+            assertEquals(List.of("71ns", "1ns from 21 to 70"), countQueries);
+            assertEquals((logLineTimestamps.get(7) + 1) + ":8", firstPage.getNextCursor());
+
+            LogSearchResult secondPage = iterator.search("match", firstPage.getNextCursor(), 3);
+            assertTrue(secondPage.getHits().isEmpty());
+            assertNull(secondPage.getNextCursor());
+            assertEquals(
+                    List.of(String.valueOf(startTimeInNanos), String.valueOf(logLineTimestamps.get(7) + 1)),
+                    searchStartTimes);
+            assertEquals(2, countQueries.size());
+        }
+    }
+
+    @Test
+    public void testSearchTellsApartLogLinesSharingTheirTimestamp() throws Exception {
+        long startTimeInNanos = 1718111754000000000L;
+        List<Long> logLineTimestamps =
+                List.of(startTimeInNanos, startTimeInNanos + 10, startTimeInNanos + 10, startTimeInNanos + 20);
+        String lokiSearchResponse = "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":["
+                + "{\"stream\":{\"jenkins_pipeline_step_id\":\"3\"},\"values\":[[\"" + logLineTimestamps.get(1)
+                + "\",\"match a\"],[\"" + logLineTimestamps.get(2) + "\",\"match b\"]]}]}}";
+        List<String> countQueries = new ArrayList<>();
+        CloseableHttpClient httpClient =
+                newLokiHttpClient(logLineTimestamps, lokiSearchResponse, new ArrayList<>(), countQueries);
+        try (LokiBuildLogsLineIterator iterator = newSearchIterator(httpClient)) {
+            LogSearchResult page = iterator.search("match", null, 3);
+            assertEquals(
+                    List.of(2L, 3L),
+                    page.getHits().stream().map(LogSearchHit::getLineNumber).collect(Collectors.toList()));
+            assertEquals(
+                    List.of("match a", "match b"),
+                    page.getHits().stream().map(LogSearchHit::getMessage).collect(Collectors.toList()));
+            assertEquals(List.of("11ns"), countQueries);
+        }
+    }
+
+    @Test
+    public void testParseCountsPerStep() throws Exception {
+        assertArrayEquals(
+                new long[] {42, 0},
+                LokiBuildLogsLineIterator.parseCountsPerStep(
+                        "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":[{\"metric\":{},"
+                                + "\"values\":[[1718111754.042,\"42\"],[1718111754.043,\"0\"]]}]}}",
+                        2));
+        try {
+            LokiBuildLogsLineIterator.parseCountsPerStep(
+                    "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":[{\"metric\":{},"
+                            + "\"values\":[[1718111754.042,\"42\"]]}]}}",
+                    2);
+            fail("Missing step accepted");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * @param logLineTimestamps timestamps of the log lines of the run, counted by the count queries
+     * @param lokiSearchResponse response of the first search query, the following ones return no log line
+     * @param searchStartTimes  start times of the search queries
+     * @param countQueries      ranges of the count instant queries, ranges and time ranges of the count range queries
+     */
+    private static CloseableHttpClient newLokiHttpClient(
+            List<Long> logLineTimestamps,
+            String lokiSearchResponse,
+            List<String> searchStartTimes,
+            List<String> countQueries)
+            throws IOException {
+        String lokiEmptySearchResponse =
+                "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":[]}}";
+        long startTimeInNanos = logLineTimestamps.get(0);
+        CloseableHttpClient httpClient = Mockito.mock(CloseableHttpClient.class);
+        Mockito.when(httpClient.executeOpen(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    ClassicHttpRequest request = invocation.getArgument(1);
+                    Map<String, String> parameters = new HashMap<>();
+                    new URIBuilder(request.getUri())
+                            .getQueryParams()
+                            .forEach(parameter -> parameters.put(parameter.getName(), parameter.getValue()));
+                    Matcher range = Pattern.compile("\\[(\\d+)ns]").matcher(parameters.get("query"));
+                    if (!range.find()) {
+                        searchStartTimes.add(parameters.get("start"));
+                        return newResponse(searchStartTimes.size() == 1 ? lokiSearchResponse : lokiEmptySearchResponse);
+                    }
+                    long rangeInNanos = Long.parseLong(range.group(1));
+                    if (request.getPath().startsWith("/loki/api/v1/query_range")) {
+                        assertTrue(parameters.get("query").endsWith(" or vector(0)"));
+                        long start = Long.parseLong(parameters.get("start"));
+                        long end = Long.parseLong(parameters.get("end"));
+                        long step = new BigDecimal(parameters.get("step"))
+                                .movePointRight(9)
+                                .longValueExact();
+                        countQueries.add(rangeInNanos + "ns from " + (start - startTimeInNanos) + " to "
+                                + (end - startTimeInNanos));
+                        List<String> values = new ArrayList<>();
+                        for (long time = start; time <= end; time += step) {
+                            values.add("[" + BigDecimal.valueOf(time, 9).toPlainString() + ",\""
+                                    + count(logLineTimestamps, time, rangeInNanos) + "\"]");
+                        }
+                        return newResponse("{\"data\":{\"resultType\":\"matrix\",\"result\":[{\"metric\":{},"
+                                + "\"values\":[" + String.join(",", values) + "]}]}}");
+                    }
+                    countQueries.add(rangeInNanos + "ns");
+                    return newResponse("{\"data\":{\"resultType\":\"vector\",\"result\":[{\"metric\":{},"
+                            + "\"value\":[1718111754.042,\""
+                            + count(logLineTimestamps, Long.parseLong(parameters.get("time")), rangeInNanos)
+                            + "\"]}]}}");
+                });
+        return httpClient;
+    }
+
+    /**
+     * @return the number of log lines after {@code time - rangeInNanos} and up to and including {@code time}
+     */
+    private static long count(List<Long> logLineTimestamps, long time, long rangeInNanos) {
+        return logLineTimestamps.stream()
+                .filter(timestamp -> timestamp > time - rangeInNanos && timestamp <= time)
+                .count();
+    }
+
+    private static LokiBuildLogsLineIterator newSearchIterator(CloseableHttpClient httpClient) {
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/master")
+                .setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setStartTime(Instant.ofEpochSecond(1718111754))
+                .setEndTime(Instant.ofEpochSecond(1718111755))
+                .setServiceName("jenkins")
+                .build();
+        return new LokiBuildLogsLineIterator(
+                lokiQueryParameters,
+                httpClient,
+                HttpClientContext.create(),
+                "http://localhost:3100",
+                Optional.empty(),
+                Optional.empty(),
+                OpenTelemetry.noop().getTracer("io.jenkins"));
+    }
+
+    @Test
+    public void testSearchCursor() {
+        LokiBuildLogsLineIterator.SearchCursor searchCursor =
+                LokiBuildLogsLineIterator.SearchCursor.parse("1718111754000000071:8");
+        assertEquals(1718111754000000071L, searchCursor.startTimeInNanos);
+        assertEquals(8, searchCursor.previousLogLines);
+        assertEquals("1718111754000000071:8", searchCursor.toString());
+
+        for (String invalidCursor : List.of("", "1718111754000000071", "a:8", "1718111754000000071:", "-1:8")) {
+            try {
+                LokiBuildLogsLineIterator.SearchCursor.parse(invalidCursor);
+                fail("Invalid cursor '" + invalidCursor + "' accepted");
+            } catch (LogSearchResult.InvalidCursorException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseCount() throws Exception {
+        assertEquals(
+                42,
+                LokiBuildLogsLineIterator.parseCount("{\"status\":\"success\",\"data\":{\"resultType\":\"vector\","
+                        + "\"result\":[{\"metric\":{},\"value\":[1718111754.042,\"42\"]}]}}"));
+        // no log line in the range
+        assertEquals(
+                0,
+                LokiBuildLogsLineIterator.parseCount(
+                        "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":[]}}"));
+        try {
+            LokiBuildLogsLineIterator.parseCount("{\"status\":\"error\"}");
+            fail("Response without data accepted");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    private static ClassicHttpResponse newResponse(String body) {
+        BasicClassicHttpResponse response = new BasicClassicHttpResponse(200, "OK");
+        response.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        return response;
+    }
+
+    @Test
+    public void testStreamingParserReadsQueryStatistics() throws Exception {
+        InputStream lokiLogsQueryResponseStream = Thread.currentThread()
+                .getContextClassLoader()
+                .getResourceAsStream("io/jenkins/plugins/opentelemetry/backend/grafana/loki_query_response.json");
+        assertNotNull(lokiLogsQueryResponseStream);
+        try (LokiQueryRangeResponseParser parser = new LokiQueryRangeResponseParser(lokiLogsQueryResponseStream)) {
+            while (parser.hasNext()) {
+                assertNull(parser.getStatistics());
+                parser.next();
+            }
+            LokiQueryStatistics statistics = parser.getStatistics();
+            assertNotNull(statistics);
+            assertEquals(60602, statistics.getTotalBytesProcessed());
+            assertEquals(97, statistics.getTotalLinesProcessed());
+            assertEquals(93, statistics.getTotalEntriesReturned());
+            assertEquals(1, statistics.getTotalChunksRef());
+            assertEquals(1, statistics.getTotalChunksDownloaded());
+            assertEquals(0.042199, statistics.getExecTimeInSeconds(), 0.000001);
+        }
+    }
+
+    @Test
+    public void testQueryPlannerPushesDownStreamLabels() {
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/\"master\"")
+                .setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setFlowNodeId("12")
+                .setStartTime(Instant.ofEpochSecond(1718111754))
+                .setServiceName("jenkins")
+                .setServiceNamespace("ci")
+                .build();
+        lokiQueryParameters.addLineFilter("ERROR");
+
+        assertEquals(
+                "{service_namespace=\"ci\", service_name=\"jenkins\"} |= \"ERROR\""
+                        + " | jenkins_pipeline_step_id=\"12\", trace_id=\"69a627b7bc02241b6029bed20f4ff8d8\","
+                        + " ci_pipeline_id=\"my-war/\\\"master\\\"\", ci_pipeline_run_number=384 | keep __line__",
+                LokiLogQlQueryPlanner.INSTANCE.plan(lokiQueryParameters));
+
+        assertEquals(
+                "{service_namespace=\"ci\", service_name=\"jenkins\", trace_id=\"69a627b7bc02241b6029bed20f4ff8d8\","
+                        + " ci_pipeline_run_number=\"384\"} |= \"ERROR\""
+                        + " | jenkins_pipeline_step_id=\"12\", ci_pipeline_id=\"my-war/\\\"master\\\"\""
+                        + " | keep __line__",
+                new LokiLogQlQueryPlanner(Set.of("trace_id", "ci_pipeline_run_number")).plan(lokiQueryParameters));
+    }
+
+    @Test
+    public void testTailQueryIsBackward() {
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/master")
+                .setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setStartTime(Instant.ofEpochSecond(1718111754))
+                .setServiceName("jenkins")
+                .build();
+        assertTrue(lokiQueryParameters.toHttpRequest("http://loki").getRequestUri().contains("direction=forward"));
+
+        lokiQueryParameters.setBackward(true);
+        LokiGetJenkinsBuildLogsQueryParameters pageQueryParameters =
+                lokiQueryParameters.withTimeRange(1718111754000000000L, 1718111760000000000L);
+        String requestUri = pageQueryParameters.toHttpRequest("http://loki").getRequestUri();
+        assertTrue(requestUri, requestUri.contains("direction=backward"));
+        assertTrue(requestUri, requestUri.contains("end=1718111760000000000"));
+    }
+
+    @Test
+    public void testTailKeepsLogLinesSharingATimestampAcrossPages() throws Exception {
+        long startTimeInNanos = 1718111754000000000L;
+        int logLinesCount = LokiBuildLogsLineIterator.TAIL_PAGE_SIZE * 3 / 2;
+        // 5 log lines share the timestamp of the oldest log line of the first page
+        int firstSharedLine = logLinesCount - LokiBuildLogsLineIterator.TAIL_PAGE_SIZE - 3;
+        List<Long> logLineTimestamps = new ArrayList<>();
+        for (int i = 0; i < logLinesCount; i++) {
+            logLineTimestamps.add(
+                    startTimeInNanos + (i >= firstSharedLine && i < firstSharedLine + 5 ? firstSharedLine : i));
+        }
+        List<String> endTimes = new ArrayList<>();
+        CloseableHttpClient httpClient = Mockito.mock(CloseableHttpClient.class);
+        Mockito.when(httpClient.executeOpen(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    ClassicHttpRequest request = invocation.getArgument(1);
+                    Map<String, String> parameters = new HashMap<>();
+                    new URIBuilder(request.getUri())
+                            .getQueryParams()
+                            .forEach(parameter -> parameters.put(parameter.getName(), parameter.getValue()));
+                    assertEquals("backward", parameters.get("direction"));
+                    long start = Long.parseLong(parameters.get("start"));
+                    long end = Long.parseLong(parameters.get("end"));
+                    endTimes.add(String.valueOf(end - startTimeInNanos));
+                    // the log lines sharing a timestamp are returned in the reverse of their order in the stream
+                    List<String> values = new ArrayList<>();
+                    for (int i = logLinesCount - 1;
+                            i >= 0 && values.size() < Integer.parseInt(parameters.get("limit"));
+                            i--) {
+                        long timestamp = logLineTimestamps.get(i);
+                        if (timestamp >= start && timestamp < end) {
+                            values.add("[\"" + timestamp + "\",\"line " + i + "\"]");
+                        }
+                    }
+                    return newResponse("{\"status\":\"success\",\"data\":{\"resultType\":\"streams\","
+                            + "\"result\":[{\"stream\":{\"service_name\":\"jenkins\"},\"values\":["
+                            + String.join(",", values) + "]}]}}");
+                });
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/master")
+                .setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setStartTime(Instant.ofEpochSecond(1718111754))
+                .setEndTime(Instant.ofEpochSecond(1718111755))
+                .setServiceName("jenkins")
+                .build();
+        try (LokiBuildLogsLineIterator iterator = new LokiBuildLogsLineIterator(
+                lokiQueryParameters,
+                httpClient,
+                HttpClientContext.create(),
+                "http://localhost:3100",
+                Optional.empty(),
+                Optional.empty(),
+                OpenTelemetry.noop().getTracer("io.jenkins"))) {
+            LogLineIterator.LogTail<Long> tail = iterator.tail(Long.MAX_VALUE);
+            assertNotNull(tail);
+            List<String> expectedMessages = new ArrayList<>();
+            for (int i = 0; i < logLinesCount; i++) {
+                expectedMessages.add("line " + i);
+            }
+            assertEquals(
+                    expectedMessages,
+                    tail.getLogLines().stream().map(LogLine::getMessage).collect(Collectors.toList()));
+            assertNull(tail.getPreviousLogLineId());
+            // the second page ends at the shared timestamp, inclusive
+            assertEquals(List.of("1000000000", String.valueOf(firstSharedLine + 1)), endTimes);
+        }
+    }
+
+    @Test
+    public void testQueryPlannerMatchesSeveralFlowNodes() {
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/master")
+                .setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setStartTime(Instant.ofEpochSecond(1718111754))
+                .setServiceName("jenkins")
+                .build();
+        lokiQueryParameters.setFlowNodeIds(new LinkedHashSet<>(List.of("12", "15", "a.b")));
+
+        assertEquals(
+                "{service_name=\"jenkins\"}"
+                        + " | jenkins_pipeline_step_id=~\"12|15|a\\\\.b\","
+                        + " trace_id=\"69a627b7bc02241b6029bed20f4ff8d8\","
+                        + " ci_pipeline_id=\"my-war/master\", ci_pipeline_run_number=384"
+                        + " | keep __line__, jenkins_pipeline_step_id",
+                LokiLogQlQueryPlanner.INSTANCE.plan(lokiQueryParameters));
+    }
+
+    @Test
+    public void testSearchQueryKeepsFlowNodeId() {
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/master")
+                .setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setStartTime(Instant.ofEpochSecond(1718111754))
+                .setServiceName("jenkins")
+                .build();
+        String runLogQl = "{service_name=\"jenkins\"} | trace_id=\"69a627b7bc02241b6029bed20f4ff8d8\","
+                + " ci_pipeline_id=\"my-war/master\", ci_pipeline_run_number=384 | keep __line__";
+        assertEquals(
+                "sum(count_over_time(" + runLogQl + " [60000000000ns]))",
+                LokiLogQlQueryPlanner.INSTANCE.planCount(lokiQueryParameters, 60_000_000_000L));
+
+        LokiGetJenkinsBuildLogsQueryParameters searchQueryParameters =
+                lokiQueryParameters.withTimeRange(1718111754000000000L, 1718111760000000000L);
+        searchQueryParameters.addLineFilter("BUILD FAILURE");
+        searchQueryParameters.setKeepFlowNodeId(true);
+        assertEquals(
+                "{service_name=\"jenkins\"} |= \"BUILD FAILURE\" | trace_id=\"69a627b7bc02241b6029bed20f4ff8d8\","
+                        + " ci_pipeline_id=\"my-war/master\", ci_pipeline_run_number=384"
+                        + " | keep __line__, jenkins_pipeline_step_id",
+                LokiLogQlQueryPlanner.INSTANCE.plan(searchQueryParameters));
+        assertFalse(lokiQueryParameters.isKeepFlowNodeId());
+    }
 }
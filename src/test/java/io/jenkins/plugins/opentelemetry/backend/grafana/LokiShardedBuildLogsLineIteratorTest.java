@@ -0,0 +1,190 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.grafana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.opentelemetry.api.OpenTelemetry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LokiShardedBuildLogsLineIteratorTest {
+
+    static final Instant PIPELINE_START_TIME = Instant.ofEpochSecond(1718111754);
+
+    /**
+     * A log line every 10 seconds during the 3 hours of the build
+     */
+    static final long LOG_LINES_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    static final int LOG_LINES_COUNT = 1_080;
+
+    final AtomicInteger loadedPages = new AtomicInteger();
+
+    ExecutorService executorService;
+
+    CloseableHttpClient httpClient;
+
+    @Before
+    public void before() {
+        executorService = Executors.newFixedThreadPool(2);
+        httpClient = HttpClients.custom().build();
+    }
+
+    @After
+    public void after() throws IOException {
+        executorService.shutdownNow();
+        httpClient.close();
+    }
+
+    @Test
+    public void testShardDurationAdaptsToLogLinesDensity() {
+        try (LokiShardedBuildLogsLineIterator iterator = newIterator(1000, TimeUnit.SECONDS.toNanos(60))) {
+            assertEquals(TimeUnit.SECONDS.toNanos(60), iterator.computeNextShardDuration());
+
+            // 100 lines per minute -> 10 minutes for 1000 lines
+            iterator.recordShardStatistics(100, TimeUnit.SECONDS.toNanos(60));
+            assertEquals(
+                    TimeUnit.MINUTES.toNanos(10), iterator.computeNextShardDuration(), TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    public void testShardDurationWidensWithoutLogLines() {
+        try (LokiShardedBuildLogsLineIterator iterator = newIterator(1000, TimeUnit.SECONDS.toNanos(60))) {
+            iterator.recordShardStatistics(0, TimeUnit.SECONDS.toNanos(120));
+            assertEquals(TimeUnit.SECONDS.toNanos(240), iterator.computeNextShardDuration());
+        }
+    }
+
+    @Test
+    public void testShardsAreReturnedInOrder() {
+        try (LokiShardedBuildLogsLineIterator iterator = newIterator(100, TimeUnit.SECONDS.toNanos(60))) {
+            assertLogLines(iterator, 0);
+            assertFalse(iterator.hasNext());
+            // the first shards of 6 lines widen the next ones to about 100 lines
+            assertTrue(String.valueOf(iterator.shardCounter), iterator.shardCounter > 2);
+            assertTrue(iterator.shardCounter < LOG_LINES_COUNT / 6);
+        }
+    }
+
+    @Test
+    public void testNextPagesOfDenseShardAreStreamed() {
+        // a single shard of 1080 lines, paginated by 100 lines
+        try (LokiShardedBuildLogsLineIterator iterator = newIterator(100, TimeUnit.HOURS.toNanos(3))) {
+            assertLogLines(iterator, 100);
+            assertEquals("only the first page is loaded ahead", 1, loadedPages.get());
+
+            assertLogLines(iterator, 0);
+            assertFalse(iterator.hasNext());
+            assertEquals(1, iterator.shardCounter);
+            // 11 pages and an empty page
+            assertEquals(12, loadedPages.get());
+        }
+    }
+
+    int consumedLines;
+
+    /**
+     * @param count number of log lines to consume, all the remaining log lines if {@code 0}
+     */
+    void assertLogLines(Iterator<LogLine<Long>> iterator, int count) {
+        for (int i = 0; (count == 0 || i < count) && iterator.hasNext(); i++) {
+            LogLine<Long> logLine = iterator.next();
+            assertEquals("line " + consumedLines, logLine.getMessage());
+            assertEquals(Long.valueOf(timestampInNanos(consumedLines)), logLine.getId());
+            consumedLines++;
+        }
+        if (count == 0) {
+            assertEquals(LOG_LINES_COUNT, consumedLines);
+        }
+    }
+
+    static long timestampInNanos(long lineNumber) {
+        return LokiGetJenkinsBuildLogsQueryParameters.instantToEpochNanos(PIPELINE_START_TIME)
+                + lineNumber * LOG_LINES_INTERVAL_IN_NANOS;
+    }
+
+    LokiShardedBuildLogsLineIterator newIterator(int linesPerShard, long initialShardDurationInNanos) {
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/master")
+                .setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setStartTime(PIPELINE_START_TIME)
+                .setEndTime(PIPELINE_START_TIME.plus(3, ChronoUnit.HOURS))
+                .setServiceName("jenkins")
+                .build();
+        return new LokiShardedBuildLogsLineIterator(
+                lokiQueryParameters,
+                httpClient,
+                "http://localhost:3100",
+                Optional.empty(),
+                Optional.empty(),
+                OpenTelemetry.noop().getTracer("io.jenkins"),
+                executorService,
+                2,
+                linesPerShard,
+                initialShardDurationInNanos) {
+            @Override
+            LokiBuildLogsLineIterator newShardIterator(LokiGetJenkinsBuildLogsQueryParameters shardQueryParameters) {
+                return new InMemoryLokiBuildLogsLineIterator(shardQueryParameters);
+            }
+        };
+    }
+
+    /**
+     * Streams the Loki {@code query_range} responses of the log lines of the build generated on the fly
+     */
+    class InMemoryLokiBuildLogsLineIterator extends LokiBuildLogsLineIterator {
+
+        InMemoryLokiBuildLogsLineIterator(LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters) {
+            super(
+                    lokiQueryParameters,
+                    httpClient,
+                    HttpClientContext.create(),
+                    "http://localhost:3100",
+                    Optional.empty(),
+                    Optional.empty(),
+                    OpenTelemetry.noop().getTracer("io.jenkins"));
+        }
+
+        @Override
+        protected Iterator<LogLine<Long>> loadNextLogLines() throws IOException {
+            loadedPages.incrementAndGet();
+            long startTimeInNanos = lokiQueryParameters.getStartTimeInNanos();
+            long endTimeInNanos = lokiQueryParameters.getEndTimeInNanos().orElseThrow();
+            String values = LongStream.range(0, LOG_LINES_COUNT)
+                    .filter(lineNumber -> timestampInNanos(lineNumber) >= startTimeInNanos
+                            && timestampInNanos(lineNumber) < endTimeInNanos)
+                    .limit(lokiQueryParameters.getLimit().orElse(DEFAULT_LIMIT))
+                    .mapToObj(lineNumber -> "[\"" + timestampInNanos(lineNumber) + "\",\"line " + lineNumber + "\"]")
+                    .collect(Collectors.joining(","));
+            String lokiResponse = "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":["
+                    + "{\"stream\":{\"service_name\":\"jenkins\"},\"values\":[" + values + "]}]}}";
+            return loadLogLines(new ByteArrayInputStream(lokiResponse.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class LastRunTracesTest {
+
+    final WorkflowJob job = Mockito.mock(WorkflowJob.class);
+
+    @After
+    public void after() {
+        LastRunTraces.invalidateAll();
+    }
+
+    @Test
+    public void testLastCompletedRunIsTracked() {
+        WorkflowRun run1 = newRun(1, "0af7651916cd43dd8448eb211c80319c");
+        WorkflowRun run2 = newRun(2, "4bf92f3577b34da6a3ce929d0e0e4736");
+        Mockito.when(job.getLastCompletedBuild()).thenReturn(run1);
+
+        LastRunTraces.LastRunTrace lastRunTrace = LastRunTraces.getOrLoad(job);
+        assertNotNull(lastRunTrace);
+        assertEquals(1, lastRunTrace.getRunNumber());
+        assertEquals(1_000, lastRunTrace.getStartTimeInMillis());
+
+        LastRunTraces.onCompleted(run2);
+        // run completed after a more recent run
+        LastRunTraces.onCompleted(run1);
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", LastRunTraces.getOrLoad(job).getTraceId());
+        Mockito.verify(job, Mockito.times(1)).getLastCompletedBuild();
+
+        LastRunTraces.onDeleted(run1);
+        assertEquals(2, LastRunTraces.getOrLoad(job).getRunNumber());
+        LastRunTraces.onDeleted(run2);
+        assertEquals(1, LastRunTraces.getOrLoad(job).getRunNumber());
+    }
+
+    @Test
+    public void testRunCompletedWhileLoadingIsKept() {
+        WorkflowRun run1 = newRun(1, "0af7651916cd43dd8448eb211c80319c");
+        WorkflowRun run2 = newRun(2, "4bf92f3577b34da6a3ce929d0e0e4736");
+        Mockito.when(job.getLastCompletedBuild()).thenAnswer(invocation -> {
+            LastRunTraces.onCompleted(run2);
+            return run1;
+        });
+
+        assertEquals(2, LastRunTraces.getOrLoad(job).getRunNumber());
+        assertEquals(2, LastRunTraces.getOrLoad(job).getRunNumber());
+    }
+
+    @Test
+    public void testLastCompletedRunNotMonitored() {
+        WorkflowRun run1 = newRun(1, "0af7651916cd43dd8448eb211c80319c");
+        WorkflowRun run2 = newRun(2, null);
+        LastRunTraces.onCompleted(run1);
+        assertEquals(1, LastRunTraces.getOrLoad(job).getRunNumber());
+
+        LastRunTraces.onCompleted(run2);
+        assertNull(LastRunTraces.getOrLoad(job));
+        // run completed after a more recent run that isn't monitored
+        LastRunTraces.onCompleted(run1);
+        assertNull(LastRunTraces.getOrLoad(job));
+        Mockito.verify(job, Mockito.never()).getLastCompletedBuild();
+
+        LastRunTraces.onDeleted(run2);
+        Mockito.when(job.getLastCompletedBuild()).thenReturn(run1);
+        assertEquals(1, LastRunTraces.getOrLoad(job).getRunNumber());
+    }
+
+    @Test
+    public void testJobWithoutMonitoredRun() {
+        assertNull(LastRunTraces.getOrLoad(job));
+        assertNull(LastRunTraces.getOrLoad(job));
+        Mockito.verify(job, Mockito.times(1)).getLastCompletedBuild();
+    }
+
+    WorkflowRun newRun(int number, String traceId) {
+        MonitoringAction monitoringAction = Mockito.mock(MonitoringAction.class);
+        Mockito.when(monitoringAction.getTraceId()).thenReturn(traceId);
+        WorkflowRun run = Mockito.mock(WorkflowRun.class);
+        Mockito.when(run.getParent()).thenReturn(job);
+        Mockito.when(run.getNumber()).thenReturn(number);
+        Mockito.when(run.getStartTimeInMillis()).thenReturn(1_000L * number);
+        Mockito.when(run.getAction(MonitoringAction.class)).thenReturn(monitoringAction);
+        return run;
+    }
+}
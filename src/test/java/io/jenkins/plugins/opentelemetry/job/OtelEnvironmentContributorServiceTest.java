@@ -0,0 +1,95 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import static io.jenkins.plugins.opentelemetry.semconv.ConfigurationKey.OTEL_EXPORTER_OTLP_ENDPOINT;
+import static io.jenkins.plugins.opentelemetry.semconv.ConfigurationKey.OTEL_INSTRUMENTATION_JENKINS_EXPORT_OTEL_CONFIG_AS_ENV_VARS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import hudson.EnvVars;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.autoconfigure.spi.internal.DefaultConfigProperties;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class OtelEnvironmentContributorServiceTest {
+
+    static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    final OtelEnvironmentContributorService service = new OtelEnvironmentContributorService();
+
+    final MonitoringAction monitoringAction = Mockito.mock(MonitoringAction.class);
+
+    final WorkflowRun run = newRun();
+
+    @Test
+    public void testRunEnvironmentVariablesAreMemoized() {
+        service.afterConfiguration(DefaultConfigProperties.createFromMap(
+                Map.of(OTEL_EXPORTER_OTLP_ENDPOINT.asProperty(), "http://otel-collector:4317")));
+
+        EnvVars envs1 = new EnvVars();
+        service.addEnvironmentVariables(run, envs1, newSpan("b7ad6b7169203331"));
+        EnvVars envs2 = new EnvVars();
+        service.addEnvironmentVariables(run, envs2, newSpan("00f067aa0ba902b7"));
+
+        Mockito.verify(monitoringAction, Mockito.times(1)).getLinks();
+        for (EnvVars envs : List.of(envs1, envs2)) {
+            assertEquals("https://jaeger.example.com/trace/" + TRACE_ID, envs.get("JAEGER_PIPELINE_URL"));
+            assertEquals("http://otel-collector:4317", envs.get(OTEL_EXPORTER_OTLP_ENDPOINT.asEnvVar()));
+            assertEquals(TRACE_ID, envs.get(OtelEnvironmentContributorService.TRACE_ID));
+        }
+        assertEquals("b7ad6b7169203331", envs1.get(OtelEnvironmentContributorService.SPAN_ID));
+        assertEquals("00-" + TRACE_ID + "-b7ad6b7169203331-01", envs1.get("TRACEPARENT"));
+        assertEquals("00f067aa0ba902b7", envs2.get(OtelEnvironmentContributorService.SPAN_ID));
+        assertEquals("00-" + TRACE_ID + "-00f067aa0ba902b7-01", envs2.get("TRACEPARENT"));
+    }
+
+    @Test
+    public void testReconfigurationInvalidatesMemoizedEnvironmentVariables() {
+        service.afterConfiguration(DefaultConfigProperties.createFromMap(Map.of(
+                OTEL_EXPORTER_OTLP_ENDPOINT.asProperty(), "http://otel-collector:4317",
+                OTEL_INSTRUMENTATION_JENKINS_EXPORT_OTEL_CONFIG_AS_ENV_VARS.asProperty(), "false")));
+        Map<String, String> runEnvironmentVariables = service.getRunEnvironmentVariables(run);
+        assertSame(runEnvironmentVariables, service.getRunEnvironmentVariables(run));
+
+        EnvVars envs = new EnvVars();
+        service.addEnvironmentVariables(run, envs, newSpan("b7ad6b7169203331"));
+        assertFalse(envs.containsKey(OTEL_EXPORTER_OTLP_ENDPOINT.asEnvVar()));
+
+        service.afterConfiguration(DefaultConfigProperties.createFromMap(Map.of()));
+        service.getRunEnvironmentVariables(run);
+        Mockito.verify(monitoringAction, Mockito.times(2)).getLinks();
+    }
+
+    WorkflowRun newRun() {
+        Mockito.when(monitoringAction.getLinks())
+                .thenReturn(List.of(new MonitoringAction.ObservabilityBackendLink(
+                        "View pipeline with Jaeger",
+                        "https://jaeger.example.com/trace/" + TRACE_ID,
+                        "/plugin/opentelemetry/images/svgs/jaeger.svg",
+                        "JAEGER_PIPELINE_URL")));
+        WorkflowJob job = Mockito.mock(WorkflowJob.class);
+        Mockito.when(job.getFullName()).thenReturn("my-team/my-pipeline");
+        WorkflowRun run = Mockito.mock(WorkflowRun.class);
+        Mockito.when(run.getParent()).thenReturn(job);
+        Mockito.when(run.getNumber()).thenReturn(1);
+        Mockito.when(run.getAction(MonitoringAction.class)).thenReturn(monitoringAction);
+        return run;
+    }
+
+    static Span newSpan(String spanId) {
+        return Span.wrap(SpanContext.create(TRACE_ID, spanId, TraceFlags.getSampled(), TraceState.getDefault()));
+    }
+}
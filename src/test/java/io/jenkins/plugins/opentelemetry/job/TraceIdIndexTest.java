@@ -0,0 +1,84 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TraceIdIndexTest {
+
+    static final String TRACE_ID_1 = "0af7651916cd43dd8448eb211c80319c";
+    static final String TRACE_ID_2 = "4bf92f3577b34da6a3ce929d0e0e4736";
+    static final String TRACE_ID_3 = "5b8efff798038103d269b633813fc60c";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIndexIsPersistedAcrossRestarts() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("trace-ids.idx");
+        TraceIdIndex traceIdIndex = new TraceIdIndex(file, 10);
+        traceIdIndex.put(TRACE_ID_1, "folder/my-job", 1);
+        traceIdIndex.put(TRACE_ID_2, "folder/my-job", 2);
+        traceIdIndex.remove(TRACE_ID_1);
+        traceIdIndex.close();
+        // partially written record
+        Files.write(file, new byte[] {1, 0, 0}, StandardOpenOption.APPEND);
+
+        TraceIdIndex reloadedTraceIdIndex = new TraceIdIndex(file, 10);
+        assertNull(reloadedTraceIdIndex.get(TRACE_ID_1));
+        assertEquals(new RunIdentifier("folder/my-job", 2), reloadedTraceIdIndex.get(TRACE_ID_2.toUpperCase()));
+        assertNull(reloadedTraceIdIndex.get("not-a-trace-id"));
+
+        reloadedTraceIdIndex.put(TRACE_ID_3, "my-other-job", 3);
+        reloadedTraceIdIndex.close();
+        assertEquals(new RunIdentifier("my-other-job", 3), new TraceIdIndex(file, 10).get(TRACE_ID_3));
+    }
+
+    @Test
+    public void testOldestEntriesAreEvictedAndFileIsCompacted() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("trace-ids.idx");
+        TraceIdIndex traceIdIndex = new TraceIdIndex(file, 2);
+        traceIdIndex.put(TRACE_ID_1, "my-job", 1);
+        traceIdIndex.put(TRACE_ID_2, "my-job", 2);
+        traceIdIndex.put(TRACE_ID_3, "my-job", 3);
+        traceIdIndex.put(TRACE_ID_3, "my-job", 3);
+        traceIdIndex.put(TRACE_ID_3, "my-job", 3);
+        traceIdIndex.close();
+
+        assertNull(traceIdIndex.get(TRACE_ID_1));
+        TraceIdIndex reloadedTraceIdIndex = new TraceIdIndex(file, 2);
+        assertNull(reloadedTraceIdIndex.get(TRACE_ID_1));
+        assertEquals(new RunIdentifier("my-job", 2), reloadedTraceIdIndex.get(TRACE_ID_2));
+        assertEquals(new RunIdentifier("my-job", 3), reloadedTraceIdIndex.get(TRACE_ID_3));
+        // header and the records of the 2 entries
+        assertEquals(4 + 2 * (1 + 16 + 2 + "my-job".length() + 4), Files.size(file));
+    }
+
+    @Test
+    public void testRunsOfRenamedJobsAreIndexedUnderTheirNewName() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("trace-ids.idx");
+        TraceIdIndex traceIdIndex = new TraceIdIndex(file, 10);
+        traceIdIndex.load();
+        traceIdIndex.put(TRACE_ID_1, "folder/my-job", 1);
+        traceIdIndex.put(TRACE_ID_2, "folder/my-job-2", 1);
+        traceIdIndex.onLocationChanged("folder/my-job", "other-folder/my-job");
+        traceIdIndex.close();
+
+        assertEquals(new RunIdentifier("other-folder/my-job", 1), traceIdIndex.get(TRACE_ID_1));
+        TraceIdIndex reloadedTraceIdIndex = new TraceIdIndex(file, 10);
+        assertEquals(new RunIdentifier("other-folder/my-job", 1), reloadedTraceIdIndex.get(TRACE_ID_1));
+        assertEquals(new RunIdentifier("folder/my-job-2", 1), reloadedTraceIdIndex.get(TRACE_ID_2));
+    }
+}
@@ -6,6 +6,7 @@
 package io.jenkins.plugins.opentelemetry.job.log;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -34,6 +35,32 @@ public class ConsoleNotesTest {
         verifyParsing(expectedMessage, data);
     }
 
+    @Test
+    public void testAnnotationsEncoding() {
+        String data =
+                "\u001B[8mha:////4M6NtB0GTRQCAdaplVIR0VJ+LHnCL5SK5Up3VN+g96s2AAAAoh+LCAAAAAAAAP9tjTEOAiEURD9rLGwtPQTbGRNjZUtoPAGyiLDkfxZYdytP5NW8g8RNrJxkknnTvNcb1jnBiZLl3mDvMGvHYxhtXXyi1N8CTdzTlWvCTMFwaSZJnTkvKKkYWMIaWAnYGNSBskNbYCu8eqg2KLTtpaT6HQU0rhvgCUxUc1GpfGFOsLuPXSb8ef4KYI6xADvU7j9Dg2gqvAAAAA==\u001B[0m[Pipeline] }"
+                        + " \u001B[8mnot a hash\u001B[0mdone";
+        byte[] dataAsBytes = data.getBytes(StandardCharsets.UTF_8);
+        ConsoleNotes.TextAndAnnotations textAndAnnotations = ConsoleNotes.parse(dataAsBytes, dataAsBytes.length);
+        Assert.assertNotNull(textAndAnnotations.annotations);
+        Assert.assertEquals(2, textAndAnnotations.annotations.size());
+
+        String encodedAnnotations = ConsoleNotes.encodeAnnotations(textAndAnnotations.annotations);
+        Assert.assertTrue(encodedAnnotations.startsWith(ConsoleNotes.ANNOTATIONS_V1_PREFIX));
+        List<ConsoleNotes.Annotation> annotations = ConsoleNotes.decodeAnnotations(encodedAnnotations);
+        Assert.assertEquals(textAndAnnotations.annotations, annotations);
+        Assert.assertEquals(data, ConsoleNotes.readFormattedMessage(textAndAnnotations.text, annotations));
+    }
+
+    @Test
+    public void testLegacyJsonAnnotationsDecoding() {
+        List<ConsoleNotes.Annotation> annotations = ConsoleNotes.decodeAnnotations(
+                "[{\"position\":0,\"note\":\"ha:////4M6N\"}," + "{\"position\":12,\"note\":\"x\"}]");
+        Assert.assertEquals(
+                List.of(new ConsoleNotes.Annotation(0, "ha:////4M6N"), new ConsoleNotes.Annotation(12, "x")),
+                annotations);
+    }
+
     private void verifyParsing(String expectedMessage, String data) {
         byte[] dataAsBytes = data.getBytes(StandardCharsets.UTF_8);
         ConsoleNotes.TextAndAnnotations textAndAnnotations = ConsoleNotes.parse(dataAsBytes, dataAsBytes.length);
@@ -0,0 +1,122 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class LiveLogTailTest {
+
+    @Test
+    public void testConcurrentViewersShareOnePoll() throws Exception {
+        TestLogSource logSource = new TestLogSource("line 1\nline 2\n", false);
+        LiveLogTail tail = new LiveLogTail(logSource, 0, TimeUnit.HOURS.toNanos(1));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<LiveLogTail.Chunk>> chunks = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                chunks.add(executorService.submit(() -> tail.read(0, TimeUnit.SECONDS.toNanos(5))));
+            }
+            for (Future<LiveLogTail.Chunk> chunk : chunks) {
+                assertEquals("line 1\nline 2\n", new String(chunk.get().bytes, StandardCharsets.UTF_8));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(1, logSource.reads.get());
+
+        LiveLogTail.Chunk chunk = tail.read(7, TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals("line 2\n", new String(chunk.bytes, StandardCharsets.UTF_8));
+        LiveLogTail.Chunk noNewLine = tail.read(14, TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(0, noNewLine.bytes.length);
+        assertFalse(noNewLine.complete);
+        assertEquals(1, logSource.reads.get());
+    }
+
+    @Test
+    public void testOffsetBeforeTailIsReadByTheViewer() throws Exception {
+        LiveLogTail tail = new LiveLogTail(new TestLogSource("line 1\nline 2\n", false), 7, 0);
+
+        assertNull(tail.read(0, TimeUnit.MILLISECONDS.toNanos(10)));
+    }
+
+    @Test
+    public void testIncompleteLastLineIsOnlyReadOnceComplete() throws IOException {
+        LiveLogTail.Chunk running = LiveLogTail.readLogLines(new TestLogSource("line 1\nline", false), 0);
+        assertEquals("line 1\n", new String(running.bytes, StandardCharsets.UTF_8));
+        assertFalse(running.complete);
+
+        LiveLogTail.Chunk completed = LiveLogTail.readLogLines(new TestLogSource("line 1\nline", true), 0);
+        assertEquals("line 1\nline", new String(completed.bytes, StandardCharsets.UTF_8));
+        assertTrue(completed.complete);
+    }
+
+    @Test
+    public void testEventsAreIdentifiedByTheOffsetFollowingTheLogLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogStreamAction.EventOutputStream events = new LogStreamAction.EventOutputStream(10, out);
+        events.write("line 1\nline".getBytes(StandardCharsets.UTF_8));
+        events.flush();
+        assertEquals("id: 17\ndata: line 1\n\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(17, events.position);
+    }
+
+    @Test
+    public void testSkippedLogLineIsNotSent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogStreamAction.EventOutputStream events = new LogStreamAction.EventOutputStream(10, out, true);
+        events.write("ne 1\nline 2\n".getBytes(StandardCharsets.UTF_8));
+        events.flush();
+        assertEquals("id: 22\ndata: line 2\n\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(22, events.position);
+    }
+
+    static class TestLogSource implements LiveLogTail.LogSource {
+        final byte[] log;
+        final boolean complete;
+        final AtomicInteger reads = new AtomicInteger();
+
+        TestLogSource(String log, boolean complete) {
+            this.log = log.getBytes(StandardCharsets.UTF_8);
+            this.complete = complete;
+        }
+
+        @Override
+        public boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        public long length() {
+            return log.length;
+        }
+
+        @Override
+        public void writeLogTo(long start, @NonNull OutputStream out) throws IOException {
+            reads.incrementAndGet();
+            if (start < log.length) {
+                out.write(log, (int) start, log.length - (int) start);
+            }
+        }
+    }
+}
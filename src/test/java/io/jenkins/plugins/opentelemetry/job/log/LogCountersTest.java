@@ -0,0 +1,92 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class LogCountersTest {
+
+    @Test
+    public void testCountersMatchRenderedLogBytes() {
+        List<String> logLines = List.of("[Pipeline] Start of Pipeline", "Café 🚀 日本語", "unpaired \uD83D surrogate");
+        LogCounters logCounters = new LogCounters();
+        logLines.forEach(logLine -> logCounters.onLogLine(null, logLine));
+
+        StringBuilder log = new StringBuilder();
+        logLines.forEach(logLine -> log.append(logLine).append('\n'));
+        LogStatistics logStatistics = logCounters.getStatistics(null);
+        assertNotNull(logStatistics);
+        assertEquals(log.toString().getBytes(StandardCharsets.UTF_8).length, logStatistics.getLengthInBytes());
+        assertEquals(3, logStatistics.getLineCount());
+    }
+
+    @Test
+    public void testFlowNodeCounters() {
+        LogCounters logCounters = new LogCounters();
+        logCounters.onLogLine(null, "run");
+        logCounters.onLogLine("3", "step 3");
+        logCounters.onLogLine("3", "step 3");
+        logCounters.onLogLine("5", "step 5");
+
+        assertEquals(4 + 7 + 7 + 7, logCounters.getStatistics(null).getLengthInBytes());
+        assertEquals(14, logCounters.getStatistics("3").getLengthInBytes());
+        assertEquals(2, logCounters.getStatistics("3").getLineCount());
+        assertEquals(0, logCounters.getStatistics("7").getLengthInBytes());
+        Map<String, LogStatistics> flowNodesStatistics = logCounters.getFlowNodesStatistics();
+        assertEquals(2, flowNodesStatistics.size());
+        assertEquals(7, flowNodesStatistics.get("5").getLengthInBytes());
+    }
+
+    @Test
+    public void testIncompleteCountersReportNoStatistics() {
+        LogCounters logCounters = new LogCounters();
+        logCounters.onLogLine("3", "step 3");
+        logCounters.markIncomplete();
+
+        assertTrue(logCounters.isIncomplete());
+        assertNull(logCounters.getStatistics(null));
+        assertNull(logCounters.getStatistics("3"));
+        assertTrue(logCounters.getFlowNodesStatistics().isEmpty());
+    }
+
+    @Test
+    public void testCountersOfLogLinesWithConsoleNotes() {
+        LogCounters logCounters = new LogCounters();
+        logCounters.onLogLine("3", "step 3");
+        // counts reported by a Jenkins Agent: 2 log lines with console notes
+        logCounters.add("3", 14, 64, 2);
+
+        LogStatistics logStatistics = logCounters.getStatistics("3");
+        assertEquals(21, logStatistics.getLengthInBytes());
+        assertEquals(71, logStatistics.getLengthWithConsoleNotesInBytes());
+        assertEquals(3, logStatistics.getLineCount());
+
+        LogStorageRetriever logStorageRetriever = mock(LogStorageRetriever.class);
+        assertEquals(21, logStatistics.renderedBy(logStorageRetriever).getLengthInBytes());
+        when(logStorageRetriever.isRenderingConsoleNotes()).thenReturn(true);
+        assertEquals(71, logStatistics.renderedBy(logStorageRetriever).getLengthInBytes());
+        assertEquals(3, logStatistics.renderedBy(logStorageRetriever).getLineCount());
+    }
+
+    @Test
+    public void testCountersNotExportedOutOfRemotingAreIncomplete() {
+        LogCounters logCounters = new LogCounters();
+        logCounters.onLogLine(null, "run");
+
+        assertNull(logCounters.export());
+        assertTrue(logCounters.isIncomplete());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import io.jenkins.plugins.opentelemetry.job.MonitoringAction;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+
+public class LogSearchActionTest {
+
+    private LogSearchAction logSearchAction;
+
+    private StaplerResponse2 rsp;
+
+    @Before
+    public void before() throws Exception {
+        Run<?, ?> run = mock(Run.class);
+        Job job = mock(Job.class);
+        when(run.getParent()).thenReturn(job);
+        logSearchAction = new LogSearchAction(run, mock(MonitoringAction.class));
+        rsp = mock(StaplerResponse2.class);
+        when(rsp.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+    }
+
+    @Test
+    public void testMissingPhraseIsBadRequest() throws Exception {
+        generateResponse(logSearchAction.doIndex(" ", null, null));
+        verify(rsp).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testInvalidPageSizeIsBadRequest() throws Exception {
+        generateResponse(logSearchAction.doIndex("BUILD FAILURE", null, "twenty"));
+        verify(rsp).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testInvalidCursorIsBadRequest() throws Exception {
+        generateResponse(
+                LogSearchAction.badRequest(new LogSearchResult.InvalidCursorException("a:8", null).getMessage()));
+        verify(rsp).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private void generateResponse(HttpResponse httpResponse) throws Exception {
+        httpResponse.generateResponse(mock(StaplerRequest2.class), rsp, null);
+    }
+}
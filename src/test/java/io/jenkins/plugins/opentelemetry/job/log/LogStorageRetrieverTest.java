@@ -0,0 +1,58 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class LogStorageRetrieverTest {
+
+    @Test
+    public void testDefaultStepLogsRetrievesEachFlowNode() throws IOException {
+        LogStorageRetriever logStorageRetriever = mock(LogStorageRetriever.class);
+        LogsQueryResult logsQueryResult12 = mock(LogsQueryResult.class);
+        LogsQueryResult logsQueryResult7 = mock(LogsQueryResult.class);
+        when(logStorageRetriever.stepLog(
+                        anyString(), anyInt(), eq("12"), anyString(), anyString(), anyBoolean(), any(), any()))
+                .thenReturn(logsQueryResult12);
+        when(logStorageRetriever.stepLog(
+                        anyString(), anyInt(), eq("7"), anyString(), anyString(), anyBoolean(), any(), any()))
+                .thenReturn(logsQueryResult7);
+        when(logStorageRetriever.stepLogs(
+                        anyString(), anyInt(), anySet(), anyString(), anyString(), anyBoolean(), any(), any()))
+                .thenCallRealMethod();
+
+        Map<String, LogsQueryResult> stepLogs = logStorageRetriever.stepLogs(
+                "my-job",
+                1,
+                new LinkedHashSet<>(List.of("12", "7")),
+                "trace-id",
+                "span-id",
+                true,
+                Instant.now(),
+                null);
+
+        // flow nodes are returned in the iteration order of the requested flow node ids
+        assertEquals(List.of("12", "7"), List.copyOf(stepLogs.keySet()));
+        assertSame(logsQueryResult12, stepLogs.get("12"));
+        assertSame(logsQueryResult7, stepLogs.get("7"));
+    }
+}
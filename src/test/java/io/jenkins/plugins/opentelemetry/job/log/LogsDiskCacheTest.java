@@ -0,0 +1,199 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.jenkins.plugins.opentelemetry.job.log.util.InputStreamByteBuffer;
+import io.jenkins.plugins.opentelemetry.job.log.util.ListLogLineIterator;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIterator;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIteratorInputStream;
+import io.opentelemetry.api.OpenTelemetry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+public class LogsDiskCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCachedLogsAreReadFromAnyOffset() throws IOException {
+        LogsDiskCache logsDiskCache = newLogsDiskCache(Long.MAX_VALUE);
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; log.length() < 3 * LogsDiskCache.BLOCK_SIZE; i++) {
+            log.append("log line ").append(i).append('\n');
+        }
+        byte[] bytes = log.toString().getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(logsDiskCache.fill(LogsDiskCache.key("trace-1", null), newLogsQueryResult(bytes), null));
+        LogsQueryResult cached = logsDiskCache.get("trace-1", null);
+        assertNotNull(cached);
+        assertTrue(cached.isComplete());
+        assertEquals("Elastic", cached.getLogsViewHeader().getBackendName());
+        assertEquals(bytes.length, cached.getByteBuffer().length());
+        assertArrayEquals(bytes, read(cached.getByteBuffer(), 0));
+        long tail = bytes.length - LogsDiskCache.BLOCK_SIZE / 2;
+        assertArrayEquals(Arrays.copyOfRange(bytes, (int) tail, bytes.length), read(cached.getByteBuffer(), tail));
+
+        assertNull(logsDiskCache.get("trace-1", "12"));
+        assertNull(logsDiskCache.get("trace-2", null));
+    }
+
+    @Test
+    public void testLogsOfUnexpectedLengthAreNotCached() throws IOException {
+        LogsDiskCache logsDiskCache = newLogsDiskCache(Long.MAX_VALUE);
+        byte[] bytes = "line 1\n".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(logsDiskCache.fill(LogsDiskCache.key("trace-1", "12"), newLogsQueryResult(bytes), 14L));
+        assertNull(logsDiskCache.get("trace-1", "12"));
+    }
+
+    @Test
+    public void testTruncatedLogsAreNotCached() throws IOException {
+        LogsDiskCache logsDiskCache = newLogsDiskCache(Long.MAX_VALUE);
+        // log lines of a backend whose limits have been reached before the end of the log
+        LogLineIterator<Long> logLines =
+                new ListLogLineIterator<>(List.of(new LogLine<>(1L, "line 1"), new LogLine<>(2L, "line 2"))) {
+                    @Override
+                    public boolean isTruncated() {
+                        return !hasNext();
+                    }
+                };
+        Map<Long, Long> logBytesToLogLineId = new HashMap<>();
+        LogLineIteratorInputStream<Long> in = new LogLineIteratorInputStream<>(
+                logLines,
+                new LogLineIterator.LogLineBytesToLogLineIdMapper<>() {
+                    @Override
+                    public Long getLogLineIdFromLogBytes(long bytes) {
+                        return logBytesToLogLineId.get(bytes);
+                    }
+
+                    @Override
+                    public void putLogBytesToLogLineId(long bytes, Long logLineId) {
+                        logBytesToLogLineId.put(bytes, logLineId);
+                    }
+                },
+                OpenTelemetry.noop().getTracer("io.jenkins"));
+        LogsQueryResult logsQueryResult = new LogsQueryResult(
+                new InputStreamByteBuffer(in, OpenTelemetry.noop().getTracer("io.jenkins")),
+                new LogsViewHeader("Loki", "https://grafana.example.com", "/plugin/opentelemetry/loki.svg"),
+                StandardCharsets.UTF_8,
+                true);
+
+        assertFalse(logsDiskCache.fill(LogsDiskCache.key("trace-1", null), logsQueryResult, null));
+        assertNull(logsDiskCache.get("trace-1", null));
+    }
+
+    @Test
+    public void testEvictionBeforeTheFirstFill() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath().resolve("opentelemetry-logs");
+        new LogsDiskCache(directory, Long.MAX_VALUE, TimeUnit.DAYS.toMillis(1), null).evict();
+        assertFalse(directory.toFile().exists());
+    }
+
+    @Test
+    public void testLeastRecentlyReadLogsAreEvictedBeyondMaxSize() throws Exception {
+        LogsDiskCache logsDiskCache = newLogsDiskCache(1);
+        byte[] bytes = "line 1\n".getBytes(StandardCharsets.UTF_8);
+
+        logsDiskCache.fill(LogsDiskCache.key("trace-1", null), newLogsQueryResult(bytes), null);
+        assertNull(logsDiskCache.get("trace-1", null));
+    }
+
+    @Test
+    public void testLogsAreCachedOnTheirSecondMiss() throws IOException {
+        LogsDiskCache logsDiskCache = newLogsDiskCache(Long.MAX_VALUE);
+
+        assertFalse(logsDiskCache.onMiss("trace-1", null));
+        assertFalse(logsDiskCache.onMiss("trace-1", "12"));
+        assertTrue(logsDiskCache.onMiss("trace-1", null));
+    }
+
+    @Test
+    public void testRejectedFillIsGivenUp() throws Exception {
+        ThreadPoolExecutor fillExecutorService =
+                new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        try {
+            LogsDiskCache logsDiskCache = new LogsDiskCache(
+                    temporaryFolder.newFolder().toPath(),
+                    Long.MAX_VALUE,
+                    TimeUnit.DAYS.toMillis(1),
+                    fillExecutorService);
+            byte[] bytes = "line 1\n".getBytes(StandardCharsets.UTF_8);
+            CountDownLatch busy = new CountDownLatch(1);
+            fillExecutorService.execute(() -> {
+                try {
+                    busy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            fillExecutorService.execute(() -> {});
+
+            // rejected, the fill thread and the queue are busy
+            logsDiskCache.fillAsync("trace-1", null, null, () -> newLogsQueryResult(bytes));
+            busy.countDown();
+            awaitUntil(() -> fillExecutorService.getCompletedTaskCount() == 2);
+            assertFalse(logsDiskCache.contains("trace-1", null));
+
+            logsDiskCache.fillAsync("trace-1", null, null, () -> newLogsQueryResult(bytes));
+            awaitUntil(() -> logsDiskCache.contains("trace-1", null));
+        } finally {
+            fillExecutorService.shutdownNow();
+        }
+    }
+
+    static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadlineInNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timeout", System.nanoTime() < deadlineInNanos);
+            Thread.sleep(10);
+        }
+    }
+
+    LogsDiskCache newLogsDiskCache(long maxSizeInBytes) throws IOException {
+        Path directory = temporaryFolder.newFolder().toPath();
+        return new LogsDiskCache(directory, maxSizeInBytes, TimeUnit.DAYS.toMillis(1), null);
+    }
+
+    static LogsQueryResult newLogsQueryResult(byte[] bytes) throws IOException {
+        ByteBuffer byteBuffer = new ByteBuffer();
+        byteBuffer.write(bytes);
+        return new LogsQueryResult(
+                byteBuffer,
+                new LogsViewHeader("Elastic", "https://kibana.example.com", "/plugin/opentelemetry/elastic.svg"),
+                StandardCharsets.UTF_8,
+                true);
+    }
+
+    static byte[] read(ByteBuffer byteBuffer, long start) throws IOException {
+        try (InputStream in = byteBuffer.newInputStream()) {
+            assertEquals(start, in.skip(start));
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.console.AnnotatedLargeText;
+import hudson.model.Api;
+import hudson.model.Run;
+import io.jenkins.plugins.opentelemetry.job.RunFlowNodeIdentifier;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Test;
+import org.kohsuke.stapler.Ancestor;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+public class LogsPrefetcherTest {
+
+    @After
+    public void after() {
+        LogsPrefetcher.invalidateAll();
+    }
+
+    @Test
+    public void testTailOfCompleteLogIsPrefetched() throws IOException {
+        byte[] log = "log line\n"
+                .repeat((int) (2 * LogsPrefetcher.TAIL_SIZE_IN_BYTES / 9))
+                .getBytes(StandardCharsets.UTF_8);
+        RunFlowNodeIdentifier runFlowNodeIdentifier = new RunFlowNodeIdentifier("my-job", 1, null);
+
+        assertTrue(LogsPrefetcher.prefetch(
+                runFlowNodeIdentifier, new LogStatistics(log.length, 0), newLogText(log, true)));
+
+        LogTail tail = LogsPrefetcher.getTail(runFlowNodeIdentifier);
+        assertNotNull(tail);
+        assertEquals(log.length - LogsPrefetcher.TAIL_SIZE_IN_BYTES, tail.getStart());
+        assertEquals(log.length, tail.getEnd());
+        assertArrayEquals(Arrays.copyOfRange(log, (int) tail.getStart(), log.length), tail.getBytes());
+        assertNull(LogsPrefetcher.getTail(new RunFlowNodeIdentifier("my-job", 1, "3")));
+    }
+
+    @Test
+    public void testLogsNotFullyIndexedAreNotPrefetched() throws IOException {
+        byte[] log = "log line\n".getBytes(StandardCharsets.UTF_8);
+        RunFlowNodeIdentifier runFlowNodeIdentifier = new RunFlowNodeIdentifier("my-job", 1, "3");
+
+        assertFalse(LogsPrefetcher.prefetch(
+                runFlowNodeIdentifier, new LogStatistics(log.length + 9, 2), newLogText(log, true)));
+        assertFalse(LogsPrefetcher.prefetch(runFlowNodeIdentifier, null, newLogText(log, true)));
+        assertFalse(LogsPrefetcher.prefetch(
+                runFlowNodeIdentifier, new LogStatistics(log.length, 1), newLogText(log, false)));
+        assertNull(LogsPrefetcher.getTail(runFlowNodeIdentifier));
+    }
+
+    @Test
+    public void testOnlyTheRequestsOfTheRunPageTriggerAPrefetch() {
+        Run<?, ?> run = mock(Run.class);
+
+        assertTrue(LogsPrefetcher.Trigger.isPageOf(newRequest("GET", run), run));
+        assertFalse(LogsPrefetcher.Trigger.isPageOf(newRequest("POST", run), run));
+        assertFalse(LogsPrefetcher.Trigger.isPageOf(newRequest("GET", run, mock(Api.class)), run));
+        assertFalse(LogsPrefetcher.Trigger.isPageOf(newRequest("GET", mock(Run.class)), run));
+        assertFalse(LogsPrefetcher.Trigger.isPageOf(null, run));
+    }
+
+    static StaplerRequest2 newRequest(String method, Object... objects) {
+        List<Ancestor> ancestors = Arrays.stream(objects)
+                .map(object -> {
+                    Ancestor ancestor = mock(Ancestor.class);
+                    when(ancestor.getObject()).thenReturn(object);
+                    return ancestor;
+                })
+                .collect(Collectors.toList());
+        StaplerRequest2 request = mock(StaplerRequest2.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getAncestors()).thenReturn(ancestors);
+        return request;
+    }
+
+    static AnnotatedLargeText<?> newLogText(byte[] log, boolean complete) throws IOException {
+        ByteBuffer byteBuffer = new ByteBuffer();
+        byteBuffer.write(log);
+        return new AnnotatedLargeText<>(byteBuffer, StandardCharsets.UTF_8, complete, null);
+    }
+}
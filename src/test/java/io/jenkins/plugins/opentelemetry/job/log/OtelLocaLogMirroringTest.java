@@ -6,15 +6,18 @@ import static org.junit.Assert.*;
 import static org.junit.Assume.assumeFalse;
 
 import hudson.ExtensionList;
+import hudson.model.Label;
 import hudson.model.Result;
 import io.jenkins.plugins.opentelemetry.JenkinsControllerOpenTelemetry;
 import io.jenkins.plugins.opentelemetry.OpenTelemetryConfiguration;
 import io.jenkins.plugins.opentelemetry.api.ReconfigurableOpenTelemetry;
+import io.jenkins.plugins.opentelemetry.job.MonitoringAction;
 import io.jenkins.plugins.opentelemetry.job.OtelTraceService;
 import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.sdk.testing.exporter.InMemoryMetricExporterProvider;
 import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporterProvider;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Collections;
 import java.util.HashMap;
@@ -181,4 +184,41 @@ public class OtelLocaLogMirroringTest {
 
         assertEquals(Files.readString(build.getLogFile().toPath()), logText);
     }
+
+    @Test
+    public void count_log_lines_emitted_on_agent() throws Exception {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put("otel.logs.exporter", "otlp");
+        configuration.put("otel.logs.mirror_to_disk", "true");
+        reInitProvider(configuration);
+        jenkinsRule.createOnlineSlave(Label.get("remote"));
+
+        WorkflowJob pipeline = jenkinsRule.createProject(
+                WorkflowJob.class, "test-logs-counting-on-agent-" + jobNameSuffix.incrementAndGet());
+        pipeline.setDefinition(new CpsFlowDefinition(
+                "node('remote') {\n" + "  sh 'echo " + printedLine + "; echo again " + printedLine + "'\n" + "}",
+                true));
+        WorkflowRun build = jenkinsRule.assertBuildStatus(Result.SUCCESS, pipeline.scheduleBuild2(0));
+        jenkinsRule.assertLogContains("again " + printedLine, build);
+
+        // the mirrored log contains the log lines emitted on the agent, count their plain text
+        long lengthInBytes = 0;
+        long lineCount = 0;
+        for (String line : Files.readString(build.getLogFile().toPath()).split("\n")) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0) {
+                continue;
+            }
+            String plainLogLine = ConsoleNotes.parse(bytes, bytes.length).text;
+            if (plainLogLine != null && !plainLogLine.isEmpty()) {
+                lengthInBytes += LogLine.lengthInBytes(plainLogLine);
+                lineCount++;
+            }
+        }
+        LogStatistics logStatistics = build.getAction(MonitoringAction.class).getLogStatistics(null);
+        assertNotNull(logStatistics);
+        assertEquals(lineCount, logStatistics.getLineCount());
+        assertEquals(lengthInBytes, logStatistics.getLengthInBytes());
+    }
 }
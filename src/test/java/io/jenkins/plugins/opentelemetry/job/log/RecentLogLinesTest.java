@@ -0,0 +1,84 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class RecentLogLinesTest {
+
+    @Test
+    public void testTailIsPositionedAtRenderedLogOffsets() {
+        RecentLogLines recentLogLines = new RecentLogLines(14);
+        recentLogLines.onLogLine(null, 1, "run", false);
+        recentLogLines.onLogLine("3", 2, "step 3", false);
+        recentLogLines.onLogLine("3", 3, "step 3", false);
+        recentLogLines.onLogLine("5", 4, "step 5", false);
+
+        LogTail tail = recentLogLines.getTail(null, false);
+        assertEquals(4 + 7, tail.getStart());
+        assertEquals(4 + 7 + 7 + 7, tail.getEnd());
+        assertEquals("step 3\nstep 5\n", new String(tail.getBytes(), StandardCharsets.UTF_8));
+
+        LogTail flowNodeTail = recentLogLines.getTail("3", false);
+        assertEquals(7, flowNodeTail.getStart());
+        assertEquals("step 3\n", new String(flowNodeTail.getBytes(), StandardCharsets.UTF_8));
+
+        LogTail unknownFlowNodeTail = recentLogLines.getTail("7", false);
+        assertEquals(0, unknownFlowNodeTail.getStart());
+        assertEquals(0, unknownFlowNodeTail.getEnd());
+    }
+
+    @Test
+    public void testLogLinesReportedLateByAgentsAreOrderedByTimestamp() {
+        RecentLogLines recentLogLines = new RecentLogLines(21);
+        recentLogLines.onLogLine(null, 10, "line 1", false);
+        recentLogLines.onLogLine(null, 40, "line 4", false);
+        // reported by a Jenkins Agent after the log line emitted on the Jenkins Controller at 40
+        recentLogLines.onLogLine("3", 20, "line 2", false);
+        recentLogLines.onLogLine("3", 30, "line 3", false);
+
+        LogTail tail = recentLogLines.getTail(null, false);
+        assertEquals(7, tail.getStart());
+        assertEquals("line 2\nline 3\nline 4\n", new String(tail.getBytes(), StandardCharsets.UTF_8));
+
+        // older than the log lines kept in the buffer
+        recentLogLines.onLogLine("3", 5, "line 0", false);
+        tail = recentLogLines.getTail(null, false);
+        assertEquals(14, tail.getStart());
+        assertEquals(35, tail.getEnd());
+        LogTail flowNodeTail = recentLogLines.getTail("3", false);
+        assertEquals(7, flowNodeTail.getStart());
+        assertEquals("line 2\nline 3\n", new String(flowNodeTail.getBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNoTailWhenConsoleNotesAreRendered() {
+        RecentLogLines recentLogLines = new RecentLogLines(1024);
+        recentLogLines.onLogLine(null, 1, "run", false);
+        assertNotNull(recentLogLines.getTail(null, true));
+
+        recentLogLines.onLogLine(null, 2, "annotated", true);
+        assertNull(recentLogLines.getTail(null, true));
+        assertEquals(4 + 10, recentLogLines.getTail(null, false).getEnd());
+    }
+
+    @Test
+    public void testDisabledBufferHasNoTail() {
+        LogCounters logCounters = new LogCounters();
+        logCounters.addRecentLogLines("3", new long[] {1}, new String[] {"step 3"}, false);
+        assertEquals(7, logCounters.getRecentLogLines("3", false).getEnd());
+
+        logCounters.markIncomplete();
+        assertNull(logCounters.getRecentLogLines(null, false));
+        assertNull(logCounters.getRecentLogLines("3", false));
+        assertNull(new RecentLogLines(0).getTail(null, false));
+    }
+}
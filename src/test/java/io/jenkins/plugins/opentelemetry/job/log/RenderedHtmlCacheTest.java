@@ -0,0 +1,78 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.Test;
+
+public class RenderedHtmlCacheTest {
+
+    @Test
+    public void testCapturedRenderingIsChunkedAndReplayed() throws IOException {
+        String html = "<b>line</b>\n".repeat(RenderedHtmlCache.CHUNK_SIZE / 4);
+        StringWriter rendered = new StringWriter();
+        RenderedHtmlCache.CapturingWriter capturingWriter = new RenderedHtmlCache.CapturingWriter(rendered);
+        capturingWriter.write(html);
+
+        RenderedHtmlCache.Rendering rendering = capturingWriter.toRendering(1234, "annotator");
+        assertNotNull(rendering);
+        assertEquals(html, rendered.toString());
+        assertEquals(html.length() + "annotator".length(), rendering.size);
+        assertEquals("annotator", rendering.consoleAnnotator);
+        assertEquals(
+                (html.length() + RenderedHtmlCache.CHUNK_SIZE - 1) / RenderedHtmlCache.CHUNK_SIZE,
+                rendering.chunks.size());
+
+        StringWriter replayed = new StringWriter();
+        assertEquals(1234, rendering.writeTo(replayed));
+        assertEquals(html, replayed.toString());
+    }
+
+    @Test
+    public void testAnnotationContextDependsOnUserAndRequestButNotOnSession() {
+        List<String> factories = List.of("hudson.plugins.timestamper.annotator.TimestampAnnotatorFactory3");
+        String annotationContext = RenderedHtmlCache.annotationContext(
+                "alice",
+                factories,
+                newRequest(new Cookie("JSESSIONID.1234", "a"), new Cookie("jenkins-timestamper-offset", "0")));
+
+        assertEquals(
+                annotationContext,
+                RenderedHtmlCache.annotationContext(
+                        "alice",
+                        factories,
+                        newRequest(
+                                new Cookie("jenkins-timestamper-offset", "0"), new Cookie("JSESSIONID.1234", "b"))));
+        assertNotEquals(
+                annotationContext,
+                RenderedHtmlCache.annotationContext(
+                        "alice", factories, newRequest(new Cookie("jenkins-timestamper-offset", "-7200000"))));
+        assertNotEquals(
+                annotationContext,
+                RenderedHtmlCache.annotationContext(
+                        "bob", factories, newRequest(new Cookie("jenkins-timestamper-offset", "0"))));
+        assertNotEquals(
+                annotationContext,
+                RenderedHtmlCache.annotationContext(
+                        "alice", List.of(), newRequest(new Cookie("jenkins-timestamper-offset", "0"))));
+    }
+
+    static HttpServletRequest newRequest(Cookie... cookies) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getCookies()).thenReturn(cookies);
+        return request;
+    }
+}
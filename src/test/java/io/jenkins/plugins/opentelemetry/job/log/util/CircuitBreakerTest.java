@@ -0,0 +1,159 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import io.opentelemetry.context.Scope;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    final ExecutorService executorService = Executors.newCachedThreadPool();
+
+    @After
+    public void after() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testCircuitOpensAfterSlowCallsAndClosesAfterFastTrialCall() {
+        long openDuration = TimeUnit.MINUTES.toNanos(1);
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", TimeUnit.SECONDS.toNanos(1), 2, openDuration);
+        long now = System.nanoTime();
+
+        assertTrue(circuitBreaker.allowCall(now));
+        circuitBreaker.onSlowCall(now);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.onSlowCall(now);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowCall(now + 1));
+
+        // single trial call once the open duration elapsed
+        assertTrue(circuitBreaker.allowCall(now + openDuration));
+        assertFalse(circuitBreaker.allowCall(now + openDuration));
+        circuitBreaker.onSlowCall(now + openDuration);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        assertTrue(circuitBreaker.allowCall(now + 2 * openDuration));
+        circuitBreaker.onCall(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowCall(now + 2 * openDuration));
+    }
+
+    @Test
+    public void testFastFailuresOpenTheCircuit() {
+        long openDuration = TimeUnit.MINUTES.toNanos(1);
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", TimeUnit.SECONDS.toNanos(1), 2, openDuration);
+        long now = System.nanoTime();
+
+        circuitBreaker.onFailure(now);
+        circuitBreaker.onSlowCall(now);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // a failed trial call opens the circuit again
+        assertTrue(circuitBreaker.allowCall(now + openDuration));
+        circuitBreaker.onFailure(now + openDuration);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testFailedCallsAreReportedAsFailures() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", Long.MAX_VALUE, 1, TimeUnit.MINUTES.toNanos(1));
+        LogRetrievalExecutor logRetrievalExecutor = new LogRetrievalExecutor(executorService, 2, 100);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> logRetrievalExecutor.call(
+                        () -> {
+                            throw new IllegalArgumentException("invalid cursor");
+                        },
+                        LogRetrievalExecutor.newDeadlineInNanos(),
+                        circuitBreaker));
+        assertFalse(circuitBreaker.isOpen());
+
+        assertThrows(
+                IOException.class,
+                () -> logRetrievalExecutor.call(
+                        () -> {
+                            throw new IOException("connection refused");
+                        },
+                        LogRetrievalExecutor.newDeadlineInNanos(),
+                        circuitBreaker));
+        assertTrue(circuitBreaker.isOpen());
+    }
+
+    @Test
+    public void testSlowCallsWithoutDeadlineAreNotReported() throws IOException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 0, 1, TimeUnit.MINUTES.toNanos(1));
+        LogRetrievalExecutor logRetrievalExecutor = new LogRetrievalExecutor(executorService, 2, 100);
+
+        try (Scope ignored = LogRetrievalExecutor.withoutDeadline()) {
+            assertEquals(
+                    "log",
+                    logRetrievalExecutor.call(() -> "log", LogRetrievalExecutor.newDeadlineInNanos(), circuitBreaker));
+        }
+        assertFalse(circuitBreaker.isOpen());
+
+        logRetrievalExecutor.call(() -> "log", LogRetrievalExecutor.newDeadlineInNanos(), circuitBreaker);
+        assertTrue(circuitBreaker.isOpen());
+    }
+
+    @Test
+    public void testSlowBackendTruncatesCompleteLogWithMarker() throws IOException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", Long.MAX_VALUE, 1, TimeUnit.MINUTES.toNanos(1));
+        LogRetrievalExecutor logRetrievalExecutor = new LogRetrievalExecutor(executorService, 2, 100);
+        byte[] firstLine = "line 1\n".getBytes(StandardCharsets.UTF_8);
+        InputStream slowBackend = new ByteArrayInputStream(firstLine) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (available() == 0) {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.read(b, off, len);
+            }
+        };
+        AtomicBoolean truncated = new AtomicBoolean();
+        DeadlineInputStream in = new DeadlineInputStream(
+                slowBackend,
+                logRetrievalExecutor,
+                TimeUnit.MILLISECONDS.toNanos(200),
+                circuitBreaker,
+                true,
+                () -> truncated.set(true));
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        log.write(firstLine);
+        log.write(DeadlineInputStream.TRUNCATION_MARKER);
+        assertArrayEquals(log.toByteArray(), in.readAllBytes());
+        assertTrue(truncated.get());
+        assertTrue(circuitBreaker.isOpen());
+
+        // the open circuit short-circuits the calls to the backend
+        assertThrows(
+                LogRetrievalExecutor.BackendSlowException.class,
+                () -> logRetrievalExecutor.call(
+                        () -> "result", LogRetrievalExecutor.newDeadlineInNanos(), circuitBreaker));
+    }
+}
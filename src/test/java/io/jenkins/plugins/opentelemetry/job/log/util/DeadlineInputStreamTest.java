@@ -0,0 +1,84 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class DeadlineInputStreamTest {
+
+    final AtomicInteger executedCalls = new AtomicInteger();
+
+    final ExecutorService executorService =
+            new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+                @Override
+                protected void beforeExecute(Thread t, Runnable r) {
+                    executedCalls.incrementAndGet();
+                }
+            };
+
+    @After
+    public void after() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testDeadlineAppliesToEachRead() throws IOException {
+        LogRetrievalExecutor logRetrievalExecutor = new LogRetrievalExecutor(executorService, 2, 100);
+        byte[] log = "log line\n".repeat(10).getBytes(StandardCharsets.UTF_8);
+        InputStream slowBackend = new ByteArrayInputStream(log) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.read(b, off, Math.min(len, 9));
+            }
+        };
+        InputStream in =
+                new DeadlineInputStream(slowBackend, logRetrievalExecutor, TimeUnit.MILLISECONDS.toNanos(200));
+
+        // reading the whole log lasts longer than the deadline of a single read
+        assertArrayEquals(log, in.readAllBytes());
+    }
+
+    @Test
+    public void testBufferedBytesAreReadOnTheCallingThread() throws IOException {
+        LogRetrievalExecutor logRetrievalExecutor = new LogRetrievalExecutor(executorService, 2, 100);
+        List<LogLine<Long>> logLines = List.of(new LogLine<>(0L, "first line"), new LogLine<>(1L, "second line"));
+        InputStream in = new DeadlineInputStream(
+                LogLineIteratorInputStreamTest.newInputStream(logLines, new HashMap<>()),
+                logRetrievalExecutor,
+                TimeUnit.MILLISECONDS.toNanos(200));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            out.write(b);
+        }
+        assertEquals("first line\nsecond line\n", out.toString(StandardCharsets.UTF_8));
+        // one call per log line and one to reach the end of the log, rather than one per byte
+        assertEquals(3, executedCalls.get());
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.opentelemetry.api.OpenTelemetry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class InputStreamByteBufferTest {
+
+    @Test
+    public void testTruncatedCompleteLogEndsWithTheTruncationMarker() throws IOException {
+        assertArrayEquals(DeadlineInputStream.TRUNCATION_MARKER, readTruncated(true));
+    }
+
+    @Test
+    public void testTruncatedGrowingLogEndsRightAway() throws IOException {
+        assertArrayEquals(new byte[0], readTruncated(false));
+    }
+
+    /**
+     * @param complete completeness of the log given to {@link InputStreamByteBuffer#withLength(long, boolean)}, the
+     *                 opposite being given to {@link InputStreamByteBuffer#withCircuitBreaker(CircuitBreaker, boolean)}
+     */
+    static byte[] readTruncated(boolean complete) throws IOException {
+        byte[] log = "line 1\nline 2\n".getBytes(StandardCharsets.UTF_8);
+        CircuitBreaker circuitBreaker =
+                new CircuitBreaker("test", TimeUnit.SECONDS.toNanos(1), 1, TimeUnit.MINUTES.toNanos(1));
+        circuitBreaker.onSlowCall();
+        assertTrue(circuitBreaker.isOpen());
+        InputStreamByteBuffer byteBuffer = new InputStreamByteBuffer(
+                        new ByteArrayInputStream(log), OpenTelemetry.noop().getTracer("io.jenkins"))
+                .withCircuitBreaker(circuitBreaker, !complete)
+                .withLength(log.length, complete);
+        // the open circuit truncates the log
+        try (InputStream in = byteBuffer.newInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
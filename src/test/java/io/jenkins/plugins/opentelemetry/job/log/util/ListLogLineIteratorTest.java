@@ -0,0 +1,78 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.Test;
+
+public class ListLogLineIteratorTest {
+
+    @Test
+    public void testIteratesInOrder() {
+        ListLogLineIterator<Long> iterator = new ListLogLineIterator<>(newLogLines(3));
+        List<Long> ids = new ArrayList<>();
+        iterator.forEachRemaining(logLine -> ids.add(logLine.getId()));
+        assertEquals(List.of(1L, 3L, 5L), ids);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextAfterLastLine() {
+        ListLogLineIterator<Long> iterator = new ListLogLineIterator<>(newLogLines(0));
+        iterator.next();
+    }
+
+    @Test
+    public void testSkipLines() {
+        ListLogLineIterator<Long> iterator = new ListLogLineIterator<>(newLogLines(5));
+
+        iterator.skipLines(5L);
+        assertEquals(Long.valueOf(7), iterator.next().getId());
+
+        iterator.skipLines(4L);
+        assertEquals(Long.valueOf(5), iterator.next().getId());
+
+        iterator.skipLines(0L);
+        assertEquals(Long.valueOf(1), iterator.next().getId());
+
+        iterator.skipLines(9L);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testTail() {
+        List<LogLine<Long>> logLines = newLogLines(5);
+        ListLogLineIterator<Long> iterator = new ListLogLineIterator<>(logLines);
+
+        LogLineIterator.LogTail<Long> tail = iterator.tail(logLines.get(4).getLengthInBytes() + 1);
+        assertEquals(logLines.subList(3, 5), tail.getLogLines());
+        assertEquals(Long.valueOf(5), tail.getPreviousLogLineId());
+
+        LogLineIterator.LogTail<Long> wholeLog = iterator.tail(Long.MAX_VALUE);
+        assertEquals(logLines, wholeLog.getLogLines());
+        assertNull(wholeLog.getPreviousLogLineId());
+        assertTrue(iterator.tail(0).getLogLines().isEmpty());
+    }
+
+    /**
+     * @return log lines with the odd ids 1, 3, 5...
+     */
+    private static List<LogLine<Long>> newLogLines(int count) {
+        List<LogLine<Long>> logLines = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            logLines.add(new LogLine<>(2 * i + 1, "line " + i));
+        }
+        return logLines;
+    }
+}
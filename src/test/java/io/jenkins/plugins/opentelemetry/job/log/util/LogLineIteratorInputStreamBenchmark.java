@@ -0,0 +1,86 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares the throughput of the single byte and of the bulk read paths of {@link LogLineIteratorInputStream} on a
+ * 100 MB log. Not a unit test, run with:
+ * </p>
+ * <pre>{@code
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=io.jenkins.plugins.opentelemetry.job.log.util.LogLineIteratorInputStreamBenchmark
+ * }</pre>
+ */
+public class LogLineIteratorInputStreamBenchmark {
+    static final long LOG_SIZE_IN_BYTES = 100L * 1024 * 1024;
+    static final int WARMUP_ITERATIONS = 3;
+    static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        List<LogLine<Long>> logLines = new ArrayList<>();
+        long size = 0;
+        for (long id = 0; size < LOG_SIZE_IN_BYTES; id++) {
+            String message = "[2024-06-11T13:15:54.515Z] line " + id
+                    + " - Downloading https://repo.jenkins-ci.org/public/org/jenkins-ci/plugins/plugin.pom éè";
+            logLines.add(new LogLine<>(id, message));
+            size += message.length() + 1;
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            readSingleBytes(logLines);
+            readBulk(logLines);
+        }
+        long singleByteNanos = 0;
+        long bulkNanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            bytes = readSingleBytes(logLines);
+            singleByteNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            readBulk(logLines);
+            bulkNanos += System.nanoTime() - start;
+        }
+        System.out.printf("single byte read: %.1f MB/s%n", throughput(bytes * ITERATIONS, singleByteNanos));
+        System.out.printf("bulk read:        %.1f MB/s%n", throughput(bytes * ITERATIONS, bulkNanos));
+    }
+
+    static long readSingleBytes(List<LogLine<Long>> logLines) throws IOException {
+        long count = 0;
+        try (InputStream in = LogLineIteratorInputStreamTest.newInputStream(logLines, new HashMap<>())) {
+            while (in.read() != -1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static long readBulk(List<LogLine<Long>> logLines) throws IOException {
+        long count = 0;
+        // buffer size used by `org.kohsuke.stapler.framework.io.ByteBuffer#write(InputStream)`
+        byte[] buffer = new byte[8192];
+        try (InputStream in = LogLineIteratorInputStreamTest.newInputStream(logLines, new HashMap<>())) {
+            int read;
+            while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+                count += read;
+            }
+        }
+        return count;
+    }
+
+    static double throughput(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsBackendValues;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsOperationValues;
+import io.opentelemetry.api.OpenTelemetry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class LogLineIteratorInputStreamTest {
+
+    @Test
+    public void testBulkReadMatchesLineBytes() throws IOException {
+        List<LogLine<Long>> logLines = newLogLines();
+        Map<Long, Long> logBytesToLogLineId = new HashMap<>();
+        try (InputStream in = newInputStream(logLines, logBytesToLogLineId)) {
+            assertArrayEquals(toBytes(logLines), in.readAllBytes());
+        }
+        assertEquals(Map.of((long) toBytes(logLines).length, (long) logLines.size() - 1), logBytesToLogLineId);
+    }
+
+    @Test
+    public void testSingleByteReadMatchesLineBytes() throws IOException {
+        List<LogLine<Long>> logLines = newLogLines();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = newInputStream(logLines, new HashMap<>())) {
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+        }
+        assertArrayEquals(toBytes(logLines), out.toByteArray());
+    }
+
+    @Test
+    public void testCloseBeforeTheEndOfTheLogEndsTheRetrieval() throws IOException {
+        List<LogLine<Long>> logLines = newLogLines();
+        LogLineIteratorInputStream<Long> in = new LogLineIteratorInputStream<>(
+                newLogLineIterator(logLines),
+                newMapper(new HashMap<>()),
+                OpenTelemetry.noop().getTracer("io.jenkins"),
+                LogsBackendValues.LOKI,
+                LogsOperationValues.OVERALL);
+        assertEquals(logLines.get(0).getMessage().charAt(0), in.read());
+        LogRetrievalMetrics.Retrieval retrieval = in.getRetrieval();
+        assertNotNull(retrieval);
+        assertFalse(retrieval.isEnded());
+
+        in.close();
+        assertTrue(retrieval.isEnded());
+        assertEquals(1, retrieval.getLines());
+    }
+
+    @Test
+    public void testCloseInTheMiddleOfALineRecordsTheLastCompleteLine() throws IOException {
+        List<LogLine<Long>> logLines = newLogLines();
+        Map<Long, Long> logBytesToLogLineId = new HashMap<>();
+        int firstLineLength = (logLines.get(0).getMessage() + "\n").getBytes(StandardCharsets.UTF_8).length;
+        try (InputStream in = newInputStream(logLines, logBytesToLogLineId)) {
+            byte[] buffer = new byte[firstLineLength + 2];
+            assertEquals(buffer.length, in.read(buffer, 0, buffer.length));
+        }
+        assertEquals(Map.of((long) firstLineLength, 0L), logBytesToLogLineId);
+    }
+
+    @Test
+    public void testSkipResumesFromFloorCheckpoint() throws IOException {
+        List<LogLine<Long>> logLines = new ArrayList<>();
+        for (long id = 0; id < 20_000; id++) {
+            logLines.add(new LogLine<>(id, "line " + id + " é"));
+        }
+        byte[] log = toBytes(logLines);
+        LogBytesToLogLineIdIndex index = new LogBytesToLogLineIdIndex(LogBytesToLogLineIdIndex.MAX_CHECKPOINTS);
+        try (InputStream in = newInputStream(logLines, index)) {
+            assertArrayEquals(log, in.readAllBytes());
+        }
+        // checkpoints recorded every `CHECKPOINT_INTERVAL_BYTES` and at the end of the log
+        assertTrue(log.length > 2 * LogLineIteratorInputStream.CHECKPOINT_INTERVAL_BYTES);
+        assertTrue(index.size() >= 2);
+
+        int[] offsets = {0, 7, LogLineIteratorInputStream.CHECKPOINT_INTERVAL_BYTES + 3, log.length - 5};
+        for (int offset : offsets) {
+            try (InputStream in = newInputStream(logLines, index)) {
+                assertEquals(offset, in.skip(offset));
+                assertArrayEquals(Arrays.copyOfRange(log, offset, log.length), in.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    public void testSkipWithoutCheckpointRescans() throws IOException {
+        List<LogLine<Long>> logLines = newLogLines();
+        byte[] log = toBytes(logLines);
+        try (InputStream in = newInputStream(logLines, new HashMap<>())) {
+            assertEquals(40, in.skip(40));
+            assertArrayEquals(Arrays.copyOfRange(log, 40, log.length), in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testSkipToTheTailRetrievesTheTailFirst() throws IOException {
+        List<LogLine<Long>> logLines = new ArrayList<>();
+        for (long id = 0; id < 20_000; id++) {
+            logLines.add(new LogLine<>(id, "line " + id + " é"));
+        }
+        byte[] log = toBytes(logLines);
+        int[] forwardReadLines = new int[1];
+        LogLineIterator<Long> logLineIterator = new LogLineIterator<>() {
+            int index;
+
+            @Override
+            public void skipLines(Long toLogLineId) {
+                index = toLogLineId.intValue() + 1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < logLines.size();
+            }
+
+            @Override
+            public LogLine<Long> next() {
+                forwardReadLines[0]++;
+                return logLines.get(index++);
+            }
+
+            @Override
+            public LogTail<Long> tail(long minLengthInBytes) {
+                int first = logLines.size();
+                long lengthInBytes = 0;
+                while (lengthInBytes < minLengthInBytes && first > 0) {
+                    lengthInBytes += logLines.get(--first).getLengthInBytes();
+                }
+                return new LogTail<>(logLines.subList(first, logLines.size()), first == 0 ? null : first - 1L);
+            }
+        };
+        Map<Long, Long> logBytesToLogLineId = new HashMap<>();
+        try (LogLineIteratorInputStream<Long> in = new LogLineIteratorInputStream<>(
+                logLineIterator,
+                new LogLineIterator.LogLineBytesToLogLineIdMapper<>() {
+                    @Override
+                    public Long getLogLineIdFromLogBytes(long bytes) {
+                        return logBytesToLogLineId.get(bytes);
+                    }
+
+                    @Override
+                    public void putLogBytesToLogLineId(long bytes, Long logLineId) {
+                        logBytesToLogLineId.put(bytes, logLineId);
+                    }
+                },
+                OpenTelemetry.noop().getTracer("io.jenkins"))) {
+            in.setLogLength(log.length);
+            int offset = log.length - 1_000;
+            assertEquals(offset, in.skip(offset));
+            assertArrayEquals(Arrays.copyOfRange(log, offset, log.length), in.readAllBytes());
+        }
+        // the tail lines are not read forward
+        assertEquals(0, forwardReadLines[0]);
+        // the start of the tail is a checkpoint
+        assertTrue(logBytesToLogLineId.size() >= 2);
+    }
+
+    @Test
+    public void testLogBytesIndexIsBounded() {
+        LogBytesToLogLineIdIndex index = new LogBytesToLogLineIdIndex(8);
+        for (long i = 1; i <= 20; i++) {
+            index.putLogBytesToLogLineId(i * 100, i);
+        }
+        assertTrue(index.size() <= 8);
+        assertNull(index.getFloorLogLineIdFromLogBytes(99));
+        LogLineIterator.LogBytesCheckpoint<Long> checkpoint = index.getFloorLogLineIdFromLogBytes(2_000);
+        assertNotNull(checkpoint);
+        assertEquals(2_000, checkpoint.getLogBytes());
+        assertEquals(Long.valueOf(20), checkpoint.getLogLineId());
+        checkpoint = index.getFloorLogLineIdFromLogBytes(1_550);
+        assertNotNull(checkpoint);
+        assertTrue(checkpoint.getLogBytes() <= 1_550);
+        assertEquals(checkpoint.getLogBytes() / 100, checkpoint.getLogLineId().longValue());
+    }
+
+    static List<LogLine<Long>> newLogLines() {
+        List<LogLine<Long>> logLines = new ArrayList<>();
+        logLines.add(new LogLine<>(0L, "[Pipeline] Start of Pipeline"));
+        logLines.add(new LogLine<>(1L, ""));
+        logLines.add(new LogLine<>(2L, "Café 🚀 日本語"));
+        // longer than the encode buffer, the multibyte chars straddle the chunk boundaries
+        logLines.add(new LogLine<>(3L, "é".repeat(LogLineIteratorInputStream.ENCODE_BUFFER_SIZE + 3)));
+        logLines.add(new LogLine<>(4L, "Finished: SUCCESS"));
+        return logLines;
+    }
+
+    static byte[] toBytes(List<LogLine<Long>> logLines) {
+        StringBuilder log = new StringBuilder();
+        logLines.forEach(logLine -> log.append(logLine.getMessage()).append('\n'));
+        return log.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static InputStream newInputStream(List<LogLine<Long>> logLines, Map<Long, Long> logBytesToLogLineId) {
+        return newInputStream(logLines, newMapper(logBytesToLogLineId));
+    }
+
+    static LogLineIterator.LogLineBytesToLogLineIdMapper<Long> newMapper(Map<Long, Long> logBytesToLogLineId) {
+        return new LogLineIterator.LogLineBytesToLogLineIdMapper<>() {
+            @Override
+            public Long getLogLineIdFromLogBytes(long bytes) {
+                return logBytesToLogLineId.get(bytes);
+            }
+
+            @Override
+            public void putLogBytesToLogLineId(long bytes, Long logLineId) {
+                logBytesToLogLineId.put(bytes, logLineId);
+            }
+        };
+    }
+
+    /**
+     * @param logLines log lines identified by their index in the list
+     */
+    static InputStream newInputStream(
+            List<LogLine<Long>> logLines, LogLineIterator.LogLineBytesToLogLineIdMapper<Long> mapper) {
+        return new LogLineIteratorInputStream<>(
+                newLogLineIterator(logLines), mapper, OpenTelemetry.noop().getTracer("io.jenkins"));
+    }
+
+    /**
+     * @param logLines log lines identified by their index in the list
+     */
+    static LogLineIterator<Long> newLogLineIterator(List<LogLine<Long>> logLines) {
+        return new LogLineIterator<>() {
+            int index;
+
+            @Override
+            public void skipLines(Long toLogLineId) {
+                index = toLogLineId.intValue() + 1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < logLines.size();
+            }
+
+            @Override
+            public LogLine<Long> next() {
+                return logLines.get(index++);
+            }
+        };
+    }
+}
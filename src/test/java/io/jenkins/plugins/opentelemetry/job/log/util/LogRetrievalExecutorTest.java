@@ -0,0 +1,135 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class LogRetrievalExecutorTest {
+
+    final ExecutorService executorService = Executors.newCachedThreadPool();
+
+    @After
+    public void after() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testCallReturnsResultAndPropagatesIOException() throws IOException {
+        LogRetrievalExecutor logRetrievalExecutor = new LogRetrievalExecutor(executorService, 2, 100);
+        long deadline = LogRetrievalExecutor.newDeadlineInNanos();
+
+        assertEquals("result", logRetrievalExecutor.call(() -> "result", deadline));
+        IOException e = assertThrows(
+                IOException.class,
+                () -> logRetrievalExecutor.call(
+                        () -> {
+                            throw new IOException("backend failure");
+                        },
+                        deadline));
+        assertEquals("backend failure", e.getMessage());
+        assertEquals(2, logRetrievalExecutor.getAvailablePermits());
+    }
+
+    @Test
+    public void testDeadlineExceededKeepsPermitUntilCallCompletes() throws Exception {
+        LogRetrievalExecutor logRetrievalExecutor = new LogRetrievalExecutor(executorService, 1, 100);
+        CountDownLatch callInterrupted = new CountDownLatch(1);
+        CountDownLatch releaseCall = new CountDownLatch(1);
+
+        assertThrows(
+                InterruptedIOException.class,
+                () -> logRetrievalExecutor.call(
+                        () -> {
+                            // like a blocking socket read, the call ignores the interruption
+                            while (true) {
+                                try {
+                                    if (releaseCall.await(10, TimeUnit.SECONDS)) {
+                                        return null;
+                                    }
+                                } catch (InterruptedException e) {
+                                    callInterrupted.countDown();
+                                }
+                            }
+                        },
+                        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50)));
+        assertTrue(callInterrupted.await(5, TimeUnit.SECONDS));
+        // the interrupted call is still running and keeps its permit
+        assertEquals(0, logRetrievalExecutor.getAvailablePermits());
+
+        releaseCall.countDown();
+        long deadlineInNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (logRetrievalExecutor.getAvailablePermits() == 0 && System.nanoTime() < deadlineInNanos) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, logRetrievalExecutor.getAvailablePermits());
+    }
+
+    @Test
+    public void testLimiterRejectsCallsWithoutPermit() throws Exception {
+        LogRetrievalExecutor logRetrievalExecutor = new LogRetrievalExecutor(executorService, 1, 50);
+        CountDownLatch slowCallStarted = new CountDownLatch(1);
+        CountDownLatch releaseSlowCall = new CountDownLatch(1);
+        executorService.submit(() -> logRetrievalExecutor.call(
+                () -> {
+                    slowCallStarted.countDown();
+                    return releaseSlowCall.await(5, TimeUnit.SECONDS);
+                },
+                LogRetrievalExecutor.newDeadlineInNanos()));
+        assertTrue(slowCallStarted.await(5, TimeUnit.SECONDS));
+
+        IOException e = assertThrows(
+                IOException.class,
+                () -> logRetrievalExecutor.call(() -> "result", LogRetrievalExecutor.newDeadlineInNanos()));
+        assertTrue(e.getMessage(), e.getMessage().contains("Too many concurrent log retrievals"));
+
+        releaseSlowCall.countDown();
+    }
+
+    @Test
+    public void testDeadlineExceededBeforeCallStartsReleasesPermit() throws Exception {
+        // like the fixed pool used without virtual threads, the calls queue once the pool is busy
+        ExecutorService singleThreadExecutorService = Executors.newFixedThreadPool(1);
+        try {
+            LogRetrievalExecutor logRetrievalExecutor = new LogRetrievalExecutor(singleThreadExecutorService, 2, 100);
+            CountDownLatch slowCallStarted = new CountDownLatch(1);
+            CountDownLatch releaseSlowCall = new CountDownLatch(1);
+            executorService.submit(() -> logRetrievalExecutor.call(
+                    () -> {
+                        slowCallStarted.countDown();
+                        return releaseSlowCall.await(5, TimeUnit.SECONDS);
+                    },
+                    LogRetrievalExecutor.newDeadlineInNanos()));
+            assertTrue(slowCallStarted.await(5, TimeUnit.SECONDS));
+
+            assertThrows(
+                    InterruptedIOException.class,
+                    () -> logRetrievalExecutor.call(
+                            () -> "result", System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50)));
+            // the cancelled call never started, its permit is released
+            assertEquals(1, logRetrievalExecutor.getAvailablePermits());
+
+            releaseSlowCall.countDown();
+            long deadlineInNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (logRetrievalExecutor.getAvailablePermits() < 2 && System.nanoTime() < deadlineInNanos) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, logRetrievalExecutor.getAvailablePermits());
+        } finally {
+            singleThreadExecutorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static org.junit.Assert.assertEquals;
+
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsBackendValues;
+import io.jenkins.plugins.opentelemetry.semconv.ExtendedJenkinsAttributes.LogsOperationValues;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+
+public class LogRetrievalMetricsTest {
+
+    @Test
+    public void testOperationOfTheContextOverridesTheDefaultOperation() throws Exception {
+        assertEquals(LogsOperationValues.STEP, LogRetrievalMetrics.getOperation(LogsOperationValues.STEP));
+        ExecutorService executorService = Context.taskWrapping(Executors.newSingleThreadExecutor());
+        try (Scope ignored = LogRetrievalMetrics.withOperation(LogsOperationValues.DOWNLOAD)) {
+            assertEquals(LogsOperationValues.DOWNLOAD, LogRetrievalMetrics.getOperation(LogsOperationValues.STEP));
+            // propagated to the threads of the LogRetrievalExecutor
+            assertEquals(
+                    LogsOperationValues.DOWNLOAD,
+                    executorService
+                            .submit(() -> LogRetrievalMetrics.getOperation(LogsOperationValues.OVERALL))
+                            .get());
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(LogsOperationValues.STEP, LogRetrievalMetrics.getOperation(LogsOperationValues.STEP));
+    }
+
+    @Test
+    public void testRetrievalAccumulatesLinesAndBytes() {
+        LogRetrievalMetrics.Retrieval retrieval =
+                LogRetrievalMetrics.newRetrieval(LogsBackendValues.LOKI, LogsOperationValues.OVERALL);
+        retrieval.onLine(7);
+        retrieval.onLine(10);
+        retrieval.setOperation(LogsOperationValues.TAIL);
+        retrieval.end();
+        retrieval.end();
+
+        assertEquals(2, retrieval.getLines());
+        assertEquals(17, retrieval.getBytes());
+        assertEquals(LogsOperationValues.TAIL, retrieval.getOperation());
+    }
+}
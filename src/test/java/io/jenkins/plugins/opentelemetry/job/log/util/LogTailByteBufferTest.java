@@ -0,0 +1,45 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static org.junit.Assert.assertEquals;
+
+import io.jenkins.plugins.opentelemetry.job.log.LogTail;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+public class LogTailByteBufferTest {
+
+    @Test
+    public void testByteBufferReadsOlderLinesFromBackend() throws IOException {
+        LogTail tail = new LogTail(7, "line 2\n".getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer backend = newByteBuffer("line 1\n");
+        assertEquals(14, new LogTailByteBuffer(backend, tail).length());
+        assertEquals("line 1\nline 2\n", read(new LogTailByteBuffer(backend, tail), 0));
+        assertEquals("ne 2\n", read(new LogTailByteBuffer(backend, tail), 9));
+
+        ByteBuffer emptyBackend = newByteBuffer("");
+        assertEquals("", read(new LogTailByteBuffer(emptyBackend, tail), 0));
+        assertEquals("line 2\n", read(new LogTailByteBuffer(emptyBackend, tail), 7));
+    }
+
+    static String read(ByteBuffer byteBuffer, long start) throws IOException {
+        try (InputStream in = byteBuffer.newInputStream()) {
+            assertEquals(start, in.skip(start));
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static ByteBuffer newByteBuffer(String content) throws IOException {
+        ByteBuffer byteBuffer = new ByteBuffer();
+        byteBuffer.write(content.getBytes(StandardCharsets.UTF_8));
+        return byteBuffer;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.jenkins.plugins.opentelemetry.job.RunFlowNodeIdentifier;
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.context.Scope;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
+import org.junit.Test;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+public class SingleFlightByteBufferTest {
+
+    @After
+    public void after() {
+        SingleFlightByteBuffer.FLIGHTS.invalidateAll();
+    }
+
+    @Test
+    public void testReadFromGreaterOffsetIsServedByPreviousFetch() throws IOException {
+        AtomicInteger fetches = new AtomicInteger();
+        ByteBuffer delegate = newByteBuffer("line 1\nline 2\nline 3\n", fetches);
+        RunFlowNodeIdentifier key = new RunFlowNodeIdentifier("my-job", 1, null);
+
+        assertEquals("line 1\nline 2\nline 3\n", read(new SingleFlightByteBuffer(key, delegate), 0));
+        assertEquals("line 2\nline 3\n", read(new SingleFlightByteBuffer(key, delegate), 7));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void testReadFromLowerOffsetOrOtherFlowNodeFetchesAgain() throws IOException {
+        AtomicInteger fetches = new AtomicInteger();
+        ByteBuffer delegate = newByteBuffer("line 1\nline 2\nline 3\n", fetches);
+
+        assertEquals(
+                "line 2\nline 3\n",
+                read(new SingleFlightByteBuffer(new RunFlowNodeIdentifier("my-job", 1, null), delegate), 7));
+        assertEquals(
+                "line 1\nline 2\nline 3\n",
+                read(new SingleFlightByteBuffer(new RunFlowNodeIdentifier("my-job", 1, null), delegate), 0));
+        assertEquals(
+                "line 3\n",
+                read(new SingleFlightByteBuffer(new RunFlowNodeIdentifier("my-job", 1, "12"), delegate), 14));
+        assertEquals(3, fetches.get());
+    }
+
+    @Test
+    public void testConcurrentReadsAreCoalesced() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch releaseFetch = new CountDownLatch(1);
+        ByteBuffer delegate = new ByteBuffer() {
+            @Override
+            public InputStream newInputStream() {
+                fetches.incrementAndGet();
+                try {
+                    // slow backend
+                    assertTrue(releaseFetch.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                return super.newInputStream();
+            }
+        };
+        delegate.write("line 1\nline 2\nline 3\n".getBytes(StandardCharsets.UTF_8));
+        RunFlowNodeIdentifier key = new RunFlowNodeIdentifier("my-job", 1, null);
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            Future<String> firstRead = executorService.submit(() -> read(new SingleFlightByteBuffer(key, delegate), 0));
+            awaitUntil(() -> fetches.get() == 1);
+            Future<String> secondRead =
+                    executorService.submit(() -> read(new SingleFlightByteBuffer(key, delegate), 7));
+            Future<String> thirdRead =
+                    executorService.submit(() -> read(new SingleFlightByteBuffer(key, delegate), 14));
+            // both reads wait for the fetch in flight
+            awaitUntil(() -> SingleFlightByteBuffer.FLIGHTS.getIfPresent(key).bytes.getNumberOfDependents() == 2);
+            releaseFetch.countDown();
+
+            assertEquals("line 1\nline 2\nline 3\n", firstRead.get(5, TimeUnit.SECONDS));
+            assertEquals("line 2\nline 3\n", secondRead.get(5, TimeUnit.SECONDS));
+            assertEquals("line 3\n", thirdRead.get(5, TimeUnit.SECONDS));
+            assertEquals(1, fetches.get());
+        } finally {
+            releaseFetch.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReadBeyondMaxBytesChainsFetches() throws IOException {
+        AtomicInteger fetches = new AtomicInteger();
+        String log = "log line\n".repeat(SingleFlightByteBuffer.MAX_BYTES * 5 / 2 / 9);
+        ByteBuffer delegate = newByteBuffer(log, fetches);
+        RunFlowNodeIdentifier key = new RunFlowNodeIdentifier("my-job", 1, null);
+
+        assertEquals(log, read(new SingleFlightByteBuffer(key, delegate), 0));
+        // the chained fetches continue reading the same stream
+        assertEquals(1, fetches.get());
+        assertEquals(log.substring(5), read(new SingleFlightByteBuffer(key, delegate), 5));
+    }
+
+    @Test
+    public void testReadBeyondMaxBytesChainsFetchesOnTheSameLogLineIterator() throws IOException {
+        List<LogLine<Long>> logLines = new ArrayList<>();
+        StringBuilder log = new StringBuilder();
+        for (long id = 0; log.length() < SingleFlightByteBuffer.MAX_BYTES * 5L / 2; id++) {
+            String message = "log line " + id;
+            logLines.add(new LogLine<>(id, message));
+            log.append(message).append('\n');
+        }
+        AtomicBoolean closed = new AtomicBoolean();
+        LogLineIterator<Long> logLineIterator = new CloseableLogLineIterator(logLines, closed);
+        // like the log storage retrievers, the stream of the logs retrieved from the backend can't be rewound
+        InputStreamByteBuffer delegate = new InputStreamByteBuffer(
+                new LogLineIteratorInputStream<>(
+                        logLineIterator,
+                        LogLineIteratorInputStreamTest.newMapper(new HashMap<>()),
+                        OpenTelemetry.noop().getTracer("io.jenkins")),
+                OpenTelemetry.noop().getTracer("io.jenkins"));
+        RunFlowNodeIdentifier key = new RunFlowNodeIdentifier("my-job", 1, null);
+
+        assertEquals(log.substring(5), read(new SingleFlightByteBuffer(key, delegate), 5));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testReadWithoutDeadlineIsNotCoalesced() throws IOException {
+        AtomicInteger fetches = new AtomicInteger();
+        ByteBuffer delegate = newByteBuffer("line 1\nline 2\nline 3\n", fetches);
+        RunFlowNodeIdentifier key = new RunFlowNodeIdentifier("my-job", 1, null);
+
+        try (Scope ignored = LogRetrievalExecutor.withoutDeadline()) {
+            assertEquals("line 2\nline 3\n", read(new SingleFlightByteBuffer(key, delegate), 7));
+        }
+        assertEquals(1, fetches.get());
+        assertNull(SingleFlightByteBuffer.FLIGHTS.getIfPresent(key));
+    }
+
+    /**
+     * {@link LogLineIterator} failing when read once closed
+     */
+    static class CloseableLogLineIterator implements LogLineIterator<Long>, AutoCloseable {
+        final List<LogLine<Long>> logLines;
+        final AtomicBoolean closed;
+        int index;
+
+        CloseableLogLineIterator(List<LogLine<Long>> logLines, AtomicBoolean closed) {
+            this.logLines = logLines;
+            this.closed = closed;
+        }
+
+        @Override
+        public void skipLines(Long toLogLineId) {
+            index = toLogLineId.intValue() + 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            assertFalse("Read once closed", closed.get());
+            return index < logLines.size();
+        }
+
+        @Override
+        public LogLine<Long> next() {
+            assertFalse("Read once closed", closed.get());
+            return logLines.get(index++);
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+
+    static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadlineInNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timeout", System.nanoTime() < deadlineInNanos);
+            Thread.sleep(10);
+        }
+    }
+
+    static String read(ByteBuffer byteBuffer, long start) throws IOException {
+        try (InputStream in = byteBuffer.newInputStream()) {
+            assertEquals(start, in.skip(start));
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static ByteBuffer newByteBuffer(String content, AtomicInteger fetches) throws IOException {
+        ByteBuffer byteBuffer = new ByteBuffer() {
+            @Override
+            public InputStream newInputStream() {
+                fetches.incrementAndGet();
+                return super.newInputStream();
+            }
+        };
+        byteBuffer.write(content.getBytes(StandardCharsets.UTF_8));
+        return byteBuffer;
+    }
+}